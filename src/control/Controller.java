@@ -27,11 +27,16 @@ import java.util.TreeMap;
 
 import org.apache.hadoop.fs.Path;
 
+import datatypes.LongTriple;
 import datatypes.exceptions.JoinException;
 import datatypes.exceptions.PartitioningError;
 import datatypes.exceptions.RearrangementError;
 import histogram.mapreduce.HistogramCreator;
+import join.mbi.MBIJoinEngine.JoinEngine;
+import join.mbi.MBIJoinEngine.JoinOutputMode;
+import join.mbi.MBucketI.RecordFormat;
 import join.mbi.MBucketI;
+import join.mbi.MBucketILocal;
 import model.BucketBoundaries;
 import model.PartitionMatrix;
 import model.partitioning.Partition;
@@ -41,7 +46,10 @@ import partitioning.Partitioner.BinarySearchPolicy;
 import partitioning.Partitioner.SearchPolicy;
 import partitioning.clustering.MergingPartitionToPartition;
 import partitioning.clustering.MergingPartitionToPartition.DistanceMeasure;
+import partitioning.clustering.MergingPartitionToPartition.MergingEngine;
+import partitioning.clustering.MergingPartitionToPartition.MergingNeighbourhood;
 import partitioning.clustering.MergingPartitionToPartitionF;
+import partitioning.clustering.MergingPartitionToPartitionF.WhatIfEngine;
 import partitioning.mbucketi.MBIPartitioner;
 import rearranging.BondEnergyAlgorithm;
 import rearranging.BondEnergyAlgorithmRadius;
@@ -56,6 +64,7 @@ import utils.exporters.PartitionMatrixExporter;
 import utils.exporters.PartitioningExporter;
 import utils.exporters.RearrangementsExporter;
 import utils.factories.PartitionMatrixFactory;
+import utils.factories.PartitionMatrixFactory.CellStorage;
 import utils.factories.VirtualPartitionMatrixFactory;
 import utils.handlers.partitioner.PartitionerRangeSearchHandler;
 import utils.importers.DatasetImporter;
@@ -130,10 +139,15 @@ public class Controller {
 				
 				/*	Output	*/
 				Path datasetDirectory = new Path(argsMap.get("datasetDirectory")); 
+				
+				boolean binaryDataset = false;
+				if(argsMap.containsKey("binaryDataset")) {
+					binaryDataset = Boolean.valueOf(argsMap.get("binaryDataset"));
+				}
 
 				/*	Execution	*/
 				ctrl.executeDataGeneration(from, to, valueReplication, sizeS, sizeT, 
-					generatorSeed, generatorMode, distribution,datasetDirectory);
+					generatorSeed, generatorMode, distribution,binaryDataset,datasetDirectory);
 			} else if (argsMap.get("executionMode").equals("histograms")) {
 				/*	Input	*/
 				int buckets = Integer.valueOf(argsMap.get("buckets"));
@@ -153,6 +167,22 @@ public class Controller {
 				int sparsity = Integer.valueOf(argsMap.get("sparsity"));
 				int bands = Integer.valueOf(argsMap.get("bands"));
 				int bandsOffsetSeed = Integer.valueOf(argsMap.get("bandsOffsetSeed"));
+				CellStorage cellStorage = CellStorage.DENSE;
+				if(argsMap.containsKey("cellStorage")) {
+					cellStorage = CellStorage.valueOf(argsMap.get("cellStorage"));
+				}
+				int partitionMatrixThreads = 1;
+				if(argsMap.containsKey("partitionMatrixThreads")) {
+					partitionMatrixThreads = Integer.valueOf(argsMap.get("partitionMatrixThreads"));
+				}
+				String query = null;
+				if(argsMap.containsKey("query")) {
+					query = argsMap.get("query");
+				}
+				String partitionMatrixFormat = "CSV";
+				if(argsMap.containsKey("partitionMatrixFormat")) {
+					partitionMatrixFormat = argsMap.get("partitionMatrixFormat");
+				}
 				
 				Path datasetDirectory = new Path(argsMap.get("datasetDirectory"));
 				Path histogramsDirectory = new Path(argsMap.get("histogramsDirectory"));
@@ -161,8 +191,8 @@ public class Controller {
 				Path partitionMatrixDirectory = new Path(argsMap.get("partitionMatrixDirectory"));
 
 				/*	Execution	*/
-				ctrl.executePartitionMatrix(buckets, sparsity, bands, bandsOffsetSeed,
-					datasetDirectory, histogramsDirectory, partitionMatrixDirectory);
+				ctrl.executePartitionMatrix(buckets, sparsity, bands, bandsOffsetSeed, query, cellStorage, partitionMatrixThreads,
+					partitionMatrixFormat, datasetDirectory, histogramsDirectory, partitionMatrixDirectory);
 			} else if (argsMap.get("executionMode").equals("rearrangement")) {
 				/*	Input	*/
 				String rearrangementPolicy = argsMap.get("rearrangementPolicy");
@@ -171,13 +201,17 @@ public class Controller {
 				Path datasetDirectory = new Path(argsMap.get("datasetDirectory"));
 				Path partitionMatrixDirectory = new Path(argsMap.get("partitionMatrixDirectory"));
 				Path tspk = rearrangementPolicy.startsWith("TSPk")?new Path(argsMap.get("tspk")):new Path("/");
+				String partitionMatrixFormat = "CSV";
+				if(argsMap.containsKey("partitionMatrixFormat")) {
+					partitionMatrixFormat = argsMap.get("partitionMatrixFormat");
+				}
 				
 				/*	Output	*/
 				Path partitionMatrixRearrangedDirectory = new Path(argsMap.get("partitionMatrixRearrangedDirectory"));
 
 				/*	Execution	*/
 				ctrl.executeRearrangement(rearrangementPolicy,numPartitions, datasetDirectory,
-					partitionMatrixDirectory, partitionMatrixRearrangedDirectory, tspk);
+					partitionMatrixDirectory, partitionMatrixRearrangedDirectory, tspk, partitionMatrixFormat);
 			} else if (argsMap.get("executionMode").equals("partitioning")) {
 				/*	Input	*/
 				int numPartitions = Integer.valueOf(argsMap.get("numPartitions"));
@@ -196,11 +230,41 @@ public class Controller {
 					rangeSearchUpperBoundGranularity = argsMap.get("rangeSearchUpperBoundGranularity");
 				}
 				
+				String rangeSearchStopMetric = null;
+				if (argsMap.containsKey("rangeSearchStopMetric")) {
+					rangeSearchStopMetric = argsMap.get("rangeSearchStopMetric");
+				}
+				int rangeSearchStopPatience = 1;
+				if (argsMap.containsKey("rangeSearchStopPatience")) {
+					rangeSearchStopPatience = Integer.valueOf(argsMap.get("rangeSearchStopPatience"));
+				}
+				
 				BinarySearchPolicy bsp = BinarySearchPolicy.MAX_PARTITION_INPUT;
 				if(argsMap.containsKey("binarySearchPolicy")) {
 					bsp = BinarySearchPolicy.valueOf(argsMap.get("binarySearchPolicy"));
 				}
 				
+				MergingEngine mergingEngine = MergingEngine.TREE_MAP;
+				if(argsMap.containsKey("mergingEngine")) {
+					mergingEngine = MergingEngine.valueOf(argsMap.get("mergingEngine"));
+				}
+				MergingNeighbourhood mergingNeighbourhood = MergingNeighbourhood.ALL;
+				if(argsMap.containsKey("mergingNeighbourhood")) {
+					mergingNeighbourhood = MergingNeighbourhood.valueOf(argsMap.get("mergingNeighbourhood"));
+				}
+				int mergingNeighbourhoodSize = 8;
+				if(argsMap.containsKey("mergingNeighbourhoodSize")) {
+					mergingNeighbourhoodSize = Integer.valueOf(argsMap.get("mergingNeighbourhoodSize"));
+				}
+				int partitioningThreads = 1;
+				if(argsMap.containsKey("partitioningThreads")) {
+					partitioningThreads = Integer.valueOf(argsMap.get("partitioningThreads"));
+				}
+				WhatIfEngine whatIfEngine = WhatIfEngine.SCAN;
+				if(argsMap.containsKey("whatIfEngine")) {
+					whatIfEngine = WhatIfEngine.valueOf(argsMap.get("whatIfEngine"));
+				}
+				
 				Path datasetDirectory = new Path(argsMap.get("datasetDirectory"));
 				Path rearrangements = new Path(File.separator);
 				if(argsMap.containsKey("rearrangements")) {
@@ -217,8 +281,8 @@ public class Controller {
 				Path partitioningDirectory = new Path(argsMap.get("partitioningDirectory"));
 				
 				/*	Execution	*/
-				new Controller().executePartitioning(numPartitions, partitioningPolicy, sp, rangeSearchUpperBoundGranularity, rangeSearchWeights, 
-						bsp, datasetDirectory, rearrangements, defaultPartitioningDirectory,	partitionMatrixDirectory, partitioningDirectory);
+				new Controller().executePartitioning(numPartitions, partitioningPolicy, sp, rangeSearchUpperBoundGranularity, rangeSearchWeights, rangeSearchStopMetric, rangeSearchStopPatience, 
+						bsp, mergingEngine, mergingNeighbourhood, mergingNeighbourhoodSize, partitioningThreads, whatIfEngine, datasetDirectory, rearrangements, defaultPartitioningDirectory,	partitionMatrixDirectory, partitioningDirectory);
 			} else if (argsMap.get("executionMode").equals("join")) {
 				/*	Input	*/
 				int numPartitions = Integer.valueOf(argsMap.get("numPartitions"));
@@ -233,11 +297,52 @@ public class Controller {
 				Path histogramIndexToPartitionsMapping = new Path(argsMap.get("histogramIndexToPartitionsMapping"));
 				Path partitionToCellsMapping = new Path(argsMap.get("partitionToCellsMapping"));
 				
+				JoinEngine joinEngine = JoinEngine.TREE_MAP;
+				if(argsMap.containsKey("joinEngine")) {
+					joinEngine = JoinEngine.valueOf(argsMap.get("joinEngine"));
+				}
+				RecordFormat inputFormat = RecordFormat.TEXT;
+				if(argsMap.containsKey("inputFormat")) {
+					inputFormat = RecordFormat.valueOf(argsMap.get("inputFormat"));
+				}
+				RecordFormat outputFormat = RecordFormat.TEXT;
+				if(argsMap.containsKey("outputFormat")) {
+					outputFormat = RecordFormat.valueOf(argsMap.get("outputFormat"));
+				}
+				JoinOutputMode joinOutputMode = JoinOutputMode.MATERIALIZE;
+				if(argsMap.containsKey("joinOutputMode")) {
+					joinOutputMode = JoinOutputMode.valueOf(argsMap.get("joinOutputMode"));
+				}
+				boolean compressedMapOutput = false;
+				if(argsMap.containsKey("compressedMapOutput")) {
+					compressedMapOutput = Boolean.valueOf(argsMap.get("compressedMapOutput"));
+				}
+				long maxReducerInput = 0; // 0: no skew handling
+				if(argsMap.containsKey("maxReducerInput")) {
+					maxReducerInput = Long.valueOf(argsMap.get("maxReducerInput"));
+				}
+				long reducerMemoryBudgetS = 0; // 0: S is kept in memory
+				if(argsMap.containsKey("reducerMemoryBudgetS")) {
+					reducerMemoryBudgetS = Long.valueOf(argsMap.get("reducerMemoryBudgetS"));
+				}
+				long reducerMemoryBudgetT = 0; // 0: T is kept in memory
+				if(argsMap.containsKey("reducerMemoryBudgetT")) {
+					reducerMemoryBudgetT = Long.valueOf(argsMap.get("reducerMemoryBudgetT"));
+				}
+				int localThreads = 0; // 0: MapReduce job, otherwise local execution with that many threads
+				if(argsMap.containsKey("localThreads")) {
+					localThreads = Integer.valueOf(argsMap.get("localThreads"));
+				}
+				boolean mapperAllocationProbe = false;
+				if(argsMap.containsKey("mapperAllocationProbe")) {
+					mapperAllocationProbe = Boolean.valueOf(argsMap.get("mapperAllocationProbe"));
+				}
+				
 				/*	Output	*/
 				Path mBucketIDirectory = new Path(argsMap.get("mBucketIDirectory"));
 				
 				/*	Execution	*/
-				new Controller().executeMBucketI(numPartitions,jobMaxExecutionHours,datasetDirectory,rearrangements,
+				new Controller().executeMBucketI(numPartitions,jobMaxExecutionHours,joinEngine,joinOutputMode,inputFormat,outputFormat,compressedMapOutput,mapperAllocationProbe,maxReducerInput,reducerMemoryBudgetS,reducerMemoryBudgetT,localThreads,datasetDirectory,rearrangements,
 					properties,histogramIndexToPartitionsMapping,partitionToCellsMapping,mBucketIDirectory);
 			} else if (argsMap.get("executionMode").equals("virtualPartitionMatrix")) {
 				/**
@@ -254,13 +359,21 @@ public class Controller {
 				int bands = Integer.valueOf(argsMap.get("bands"));
 				int bandsOffsetSeed = Integer.valueOf(argsMap.get("bandsOffsetSeed"));
 				String bandType = argsMap.get("bandType");
+				int partitionMatrixThreads = 1;
+				if(argsMap.containsKey("partitionMatrixThreads")) {
+					partitionMatrixThreads = Integer.valueOf(argsMap.get("partitionMatrixThreads"));
+				}
+				String partitionMatrixFormat = "CSV";
+				if(argsMap.containsKey("partitionMatrixFormat")) {
+					partitionMatrixFormat = argsMap.get("partitionMatrixFormat");
+				}
 				
 				/*	Output	*/
 				Path partitionMatrixDirectory = new Path(argsMap.get("partitionMatrixDirectory"));
 
 				/*	Execution	*/
 				new Controller().executeVirtualPartitionMatrix(buckets, sparsity, bands, 
-					bandsOffsetSeed,bandType,partitionMatrixDirectory);
+					bandsOffsetSeed,bandType,partitionMatrixThreads,partitionMatrixFormat,partitionMatrixDirectory);
 			}
 		} catch (IOException e) {
 			System.err.println("IOException: " + e.getMessage());
@@ -288,7 +401,7 @@ public class Controller {
 	
 	private void executeDataGeneration(long from, long to, long valueReplication, long sizeS, 
 			long sizeT, long generatorSeed,String generatorMode, String distribution, 
-			Path datasetDirectory) throws IOException {
+			boolean binaryDataset, Path datasetDirectory) throws IOException {
 		
 		Path dataset = new Path(datasetDirectory + File.separator + "files" + File.separator + "dataset.csv");
 		Path datasetSizes = new Path(datasetDirectory + File.separator + "datasetSizes.csv");
@@ -300,6 +413,9 @@ public class Controller {
 		} else if (generatorMode.equals("distribution")) {
 			dge.generateDistribution(from, to, sizeS, sizeT, distribution);
 		}
+		if (binaryDataset) {
+			dge.exportBinary(new Path(datasetDirectory + File.separator + "filesBinary" + File.separator + "dataset.bin"));
+		}
 		dge.exportExecutionTimes(executionTimes);
 	}
 	
@@ -320,8 +436,8 @@ public class Controller {
 				hc.getExecutionTimeEquiDepthHistograms2(), executionTimes);
 	}
 
-	private void executePartitionMatrix(int buckets, int sparsity, int bands, int bandsOffsetSeed,
-		Path datasetDirectory, Path histogramsDirectory, Path partitionMatrixDirectory) throws IOException {
+	private void executePartitionMatrix(int buckets, int sparsity, int bands, int bandsOffsetSeed, String query, CellStorage cellStorage, int partitionMatrixThreads,
+			String partitionMatrixFormat, 		Path datasetDirectory, Path histogramsDirectory, Path partitionMatrixDirectory) throws IOException {
 		
 		Path dataset = new Path(datasetDirectory + File.separator + "files");
 		Path datasetSizes = new Path(datasetDirectory + File.separator + "datasetSizes.csv");
@@ -341,35 +457,32 @@ public class Controller {
 		PartitionMatrixFactory pmf = new PartitionMatrixFactory(buckets,boundariesS,boundariesT,
 																countsS,countsT,sizeS,sizeT,
 																bands,sparsity,bandsOffsetSeed);
+		pmf.setQuery(query);
+		pmf.setCellStorage(cellStorage);
+		pmf.setParallelism(partitionMatrixThreads);
 		PartitionMatrix pm = pmf.getPartitionMatrix();
 		
 		PartitionMatrixExporter pme = new PartitionMatrixExporter(pm,partitionMatrixDirectory);
 		
-		Path partitionMatrix = new Path(partitionMatrixDirectory + File.separator + "pm.csv");
 		//Path partitionMatrixBoundaries = new Path(partitionMatrixDirectory + File.separator + "boundaries.csv");
 		//Path partitionMatrixCounts = new Path(partitionMatrixDirectory + File.separator + "counts.csv");
 		Path properties = new Path(partitionMatrixDirectory + File.separator + "properties.csv");
 		Path partitionMatrixPNG = new Path(partitionMatrixDirectory + File.separator + "pm.png");
 		Path executionTimes = new Path(partitionMatrixDirectory + File.separator + "executionTimes.csv");
 		
-		pme.exportPartitionMatrixCSV(partitionMatrix);
+		pme.exportPartitionMatrix(partitionMatrixFormat);
 		//pme.exportBoundariesCSV(partitionMatrixBoundaries);
 		//pme.exportCountsCSV(partitionMatrixCounts);
 		
-		String query = PartitionMatrixFactory.getQuery(bands,sparsity,bandsOffsetSeed,buckets,boundariesS,boundariesT);
-		
-		pme.exportPropertiesCSV(sizeS,sizeT,buckets,sparsity,bands,bandsOffsetSeed,query,dataset, properties);
+		pme.exportPropertiesCSV(sizeS,sizeT,buckets,sparsity,bands,bandsOffsetSeed,pmf.getQuery(),dataset, properties);
 		pme.exportPartitionMatrixPNG(buckets,sparsity,bands,bandsOffsetSeed, dataset, partitionMatrixPNG);
 		pme.exportExecutionTimes(pmf.getExecutionTime(), executionTimes);
 	}
 	
 	private void executeRearrangement(String rearrangementPolicy, int numPartitions, Path datasetDirectory, Path partitionMatrixDirectory, 
-		Path partitionMatrixRearrangedDirectory, Path tspk) throws IOException, RearrangementError {
-		Path partitionMatrix = new Path(partitionMatrixDirectory.toString() + File.separator + "pm.csv");
-		
+		Path partitionMatrixRearrangedDirectory, Path tspk, String partitionMatrixFormat) throws IOException, RearrangementError {
 		Path properties = new Path(partitionMatrixDirectory.toString() + File.separator + "properties.csv");
 		
-		Path partitionMatrixRearranged = new Path(partitionMatrixRearrangedDirectory.toString() + File.separator + "pm.csv");
 		Path propertiesRearranged = new Path(partitionMatrixRearrangedDirectory.toString() + File.separator + "properties.csv");
 		Path partitionMatrixRearrangedPNG = new Path(partitionMatrixRearrangedDirectory.toString() + File.separator + "pm.png");
 		Path rearrangements = new Path(partitionMatrixRearrangedDirectory.toString() + File.separator + "rearrangements.csv");
@@ -377,6 +490,8 @@ public class Controller {
 		
 		PartitionMatrixImporter pmi = new PartitionMatrixImporter();
 		
+		Path partitionMatrix = pmi.getPartitionMatrixPath(partitionMatrixDirectory);
+		
 		long sizeS = Long.valueOf(pmi.importProperty("sizeS", properties));
 		long sizeT = Long.valueOf(pmi.importProperty("sizeT", properties));
 		int buckets = Integer.valueOf(pmi.importProperty("buckets", properties));
@@ -402,7 +517,7 @@ public class Controller {
 			
 		PartitionMatrixExporter pme = new PartitionMatrixExporter(pm,partitionMatrixRearrangedDirectory);
 		
-		pme.exportPartitionMatrixCSV(partitionMatrixRearranged);
+		pme.exportPartitionMatrix(partitionMatrixFormat);
 		pme.exportProperties(pmi.importProperties(properties),propertiesRearranged);
 		
 		String currentRearrangements = pmi.importProperty("rearrangements", propertiesRearranged);
@@ -443,14 +558,15 @@ public class Controller {
 	 * @throws IOException
 	 * @throws PartitioningError
 	 */
-	private void executePartitioning(int numPartitions, String partitioningPolicy, SearchPolicy sp, String rangeSearchUpperBoundGranularity, String rangeSearchWeights,
-			BinarySearchPolicy bsp, Path datasetDirectory, Path rearrangements, Path defaultPartitioningDirectory, Path partitionMatrixDirectory, Path partitioningDirectory) throws IOException, PartitioningError {
+	private void executePartitioning(int numPartitions, String partitioningPolicy, SearchPolicy sp, String rangeSearchUpperBoundGranularity, String rangeSearchWeights, String rangeSearchStopMetric, int rangeSearchStopPatience,
+			BinarySearchPolicy bsp, MergingEngine mergingEngine, MergingNeighbourhood mergingNeighbourhood, int mergingNeighbourhoodSize, int partitioningThreads, WhatIfEngine whatIfEngine, Path datasetDirectory, Path rearrangements, Path defaultPartitioningDirectory, Path partitionMatrixDirectory, Path partitioningDirectory) throws IOException, PartitioningError {
 		
-		Path partitionMatrix = new Path(partitionMatrixDirectory.toString() + File.separator + "pm.csv");
 		Path properties = new Path(partitionMatrixDirectory.toString() + File.separator + "properties.csv");
 		
 		PartitionMatrixImporter pmi = new PartitionMatrixImporter();
 		
+		Path partitionMatrix = pmi.getPartitionMatrixPath(partitionMatrixDirectory);
+		
 		long sizeS = Long.valueOf(pmi.importProperty("sizeS", properties));
 		long sizeT = Long.valueOf(pmi.importProperty("sizeT", properties));
 		int buckets = Integer.valueOf(pmi.importProperty("buckets", properties));
@@ -501,7 +617,10 @@ public class Controller {
 		
 		/* Experimental merging by target function */
 		if(partitioningPolicy.equals("targetf")) {
-			prt = new MergingPartitionToPartitionF(pm, partitioningPolicy, sizeS, sizeT, numPartitions);
+			MergingPartitionToPartitionF mptpf = new MergingPartitionToPartitionF(pm, partitioningPolicy, sizeS, sizeT, numPartitions);
+			mptpf.setParallelism(partitioningThreads);
+			mptpf.setWhatIfEngine(whatIfEngine);
+			prt = mptpf;
 			prt.execute(-1);
 			
 			HashMap<String, Double> metricsCase = new AllMetrics(prt.getPartitions(),prt.getPartitionsCount(),sizeS,sizeT,buckets,buckets, countsS).getAllMetrics();
@@ -509,9 +628,16 @@ public class Controller {
 			exportPartitioning(prt, pm, pmi, numPartitions, partitioningPolicy, sizeS, sizeT, buckets,metricsCase,  properties, partitioningDirectory);
 		} else if (sp == Partitioner.SearchPolicy.BINARY_SEARCH) {
 			if (partitioningPolicy.equals("MBI") || partitioningPolicy.equals("MBIREP")) { // TODO: remove partitioningPolicy: MBIREP
-				prt = new MBIPartitioner(pm,partitioningPolicy,sizeS,sizeT,numPartitions);
+				MBIPartitioner mbip = new MBIPartitioner(pm,partitioningPolicy,sizeS,sizeT,numPartitions);
+				mbip.setParallelism(partitioningThreads);
+				prt = mbip;
 			} else {
-				prt = new MergingPartitionToPartition(pm,partitioningPolicy,sizeS,sizeT,numPartitions,dm,dmParameters, bsp);
+				MergingPartitionToPartition mptp = new MergingPartitionToPartition(pm,partitioningPolicy,sizeS,sizeT,numPartitions,dm,dmParameters, bsp);
+				mptp.setMergingEngine(mergingEngine);
+				mptp.setMergingNeighbourhood(mergingNeighbourhood);
+				mptp.setMergingNeighbourhoodSize(mergingNeighbourhoodSize);
+				mptp.setParallelism(partitioningThreads);
+				prt = mptp;
 			}
 			prt.findLowest();
 			
@@ -520,9 +646,16 @@ public class Controller {
 			exportPartitioning(prt, pm, pmi, numPartitions, partitioningPolicy, sizeS, sizeT, buckets,metricsCase,  properties, partitioningDirectory);
 		} else if (sp == Partitioner.SearchPolicy.RANGE_SEARCH) {				
 			if (partitioningPolicy.equals("MBI") || partitioningPolicy.equals("MBIREP")) { // TODO: remove partitioningPolicy: MBIREP
-				prt = new MBIPartitioner(pm,partitioningPolicy,sizeS,sizeT,numPartitions);
+				MBIPartitioner mbip = new MBIPartitioner(pm,partitioningPolicy,sizeS,sizeT,numPartitions);
+				mbip.setParallelism(partitioningThreads);
+				prt = mbip;
 			} else {
-				prt = new MergingPartitionToPartition(pm,partitioningPolicy,sizeS,sizeT,numPartitions,dm, dmParameters, bsp);
+				MergingPartitionToPartition mptp = new MergingPartitionToPartition(pm,partitioningPolicy,sizeS,sizeT,numPartitions,dm, dmParameters, bsp);
+				mptp.setMergingEngine(mergingEngine);
+				mptp.setMergingNeighbourhood(mergingNeighbourhood);
+				mptp.setMergingNeighbourhoodSize(mergingNeighbourhoodSize);
+				mptp.setParallelism(partitioningThreads);
+				prt = mptp;
 			}
 			
 			Path defaultPartitioningProperties = new Path(defaultPartitioningDirectory.toString() + File.separator + "partitionsStatistics.csv");
@@ -547,6 +680,8 @@ public class Controller {
 					break;
 			}
 			
+			prt.setRangeSearchStopMetric(rangeSearchStopMetric);
+			prt.setRangeSearchStopPatience(rangeSearchStopPatience);
 			prt.rangeSearch(lower, upper, granularity);
 			
 			PartitionerRangeSearchHandler prsh = new PartitionerRangeSearchHandler();
@@ -656,7 +791,9 @@ public class Controller {
 		pe.exportExecutionTimes(executionTimeBinarySearch, executionTimeRangeSearch, executionTimes);
 	}
 
-	private void executeMBucketI(int numPartitions,int jobMaxExecutionHours, Path datasetDirectory, Path rearrangements, Path properties, Path histogramIndexToPartitionsMapping,
+	private void executeMBucketI(int numPartitions,int jobMaxExecutionHours, JoinEngine joinEngine, JoinOutputMode joinOutputMode, RecordFormat inputFormat, 
+			RecordFormat outputFormat, boolean compressedMapOutput, boolean mapperAllocationProbe, long maxReducerInput, long reducerMemoryBudgetS, long reducerMemoryBudgetT, int localThreads, 
+			Path datasetDirectory, Path rearrangements, Path properties, Path histogramIndexToPartitionsMapping,
 			Path partitionToCellsMapping,	Path mBucketIDirectory) throws IOException, JoinException {
 		PartitionMatrixImporter pmi = new PartitionMatrixImporter();
 		long sizeS = Long.valueOf(pmi.importProperty("sizeS", properties));
@@ -664,12 +801,45 @@ public class Controller {
 		int buckets = Integer.valueOf(pmi.importProperty("buckets", properties));
 		String query = pmi.importProperty("query",properties);
 		
-		Path dataset = new Path(datasetDirectory + File.separator + "files");
+		Path dataset = new Path(datasetDirectory + File.separator + (inputFormat == RecordFormat.BINARY ? "filesBinary" : "files"));
 		
 		Path boundaries = new Path(datasetDirectory + File.separator + String.valueOf(buckets) + File.separator + "boundaries.csv");
 		
-		MBucketI mbi = new MBucketI(buckets,query,numPartitions,jobMaxExecutionHours,dataset,boundaries,rearrangements,histogramIndexToPartitionsMapping, partitionToCellsMapping);
-		mbi.join();
+		HashMap<String, LongTriple> countersMBucketIPartitionsInOut;
+		long executionTime;
+		
+		if (localThreads > 0) {
+			if (compressedMapOutput || mapperAllocationProbe || maxReducerInput > 0 || reducerMemoryBudgetS > 0 || reducerMemoryBudgetT > 0) {
+				String errorMessage = 	"ERROR - Controller.executeMBucketI, compressedMapOutput, mapperAllocationProbe, maxReducerInput and "+
+										"the reducer memory budgets are not supported by the local execution (localThreads > 0).";
+				throw new JoinException(errorMessage);
+			}
+			MBucketILocal mbil = new MBucketILocal(buckets,query,numPartitions,localThreads,dataset,boundaries,rearrangements,histogramIndexToPartitionsMapping, partitionToCellsMapping);
+			mbil.setJoinEngine(joinEngine);
+			mbil.setJoinOutputMode(joinOutputMode);
+			mbil.setInputFormat(inputFormat);
+			mbil.setOutputFormat(outputFormat);
+			mbil.join();
+			
+			countersMBucketIPartitionsInOut = mbil.getCountersMBucketIPartitionsInOut();
+			executionTime = mbil.getExecutionTime();
+		} else {
+			MBucketI mbi = new MBucketI(buckets,query,numPartitions,jobMaxExecutionHours,dataset,boundaries,rearrangements,histogramIndexToPartitionsMapping, partitionToCellsMapping);
+			mbi.setJoinEngine(joinEngine);
+			mbi.setJoinOutputMode(joinOutputMode);
+			mbi.setInputFormat(inputFormat);
+			mbi.setOutputFormat(outputFormat);
+			mbi.setCompressedMapOutput(compressedMapOutput);
+			mbi.setMapperAllocationProbe(mapperAllocationProbe);
+			mbi.setMaxReducerInput(maxReducerInput);
+			mbi.setCounts(new Path(datasetDirectory + File.separator + String.valueOf(buckets) + File.separator + "counts.csv"));
+			mbi.setReducerMemoryBudgetS(reducerMemoryBudgetS);
+			mbi.setReducerMemoryBudgetT(reducerMemoryBudgetT);
+			mbi.join();
+			
+			countersMBucketIPartitionsInOut = mbi.getCountersMBucketIPartitionsInOut();
+			executionTime = mbi.getExecutionTime();
+		}
 		
 		MBucketIExporter mbie = new MBucketIExporter();
 		
@@ -677,9 +847,9 @@ public class Controller {
 		Path partitionsStatistics = new Path(mBucketIDirectory + File.separator + "partitionsStatistics.csv");
 		Path executionTimes = new Path(mBucketIDirectory + File.separator + "executionTimes.csv");
 		
-		mbie.exportCountersCSV(mbi.getCountersMBucketIPartitionsInOut(), counters);
-		mbie.exportMBucketIStatisticsCSV(sizeS, sizeT, mbi.getCountersMBucketIPartitionsInOut(), partitionsStatistics);
-		mbie.exportExecutionTimes(mbi.getExecutionTime(), executionTimes);
+		mbie.exportCountersCSV(countersMBucketIPartitionsInOut, counters);
+		mbie.exportMBucketIStatisticsCSV(sizeS, sizeT, countersMBucketIPartitionsInOut, partitionsStatistics);
+		mbie.exportExecutionTimes(executionTime, executionTimes);
 		
 	}
 	
@@ -692,17 +862,17 @@ public class Controller {
 	 * TODO: delete this mode, as AD-HOC queries can be emulated with synthetic data.
 	 */
 	private void executeVirtualPartitionMatrix(int buckets, int sparsity, int bands, 
-			int bandsOffsetSeed, String bandType, Path partitionMatrixDirectory) throws IOException {
+			int bandsOffsetSeed, String bandType, int partitionMatrixThreads, String partitionMatrixFormat, Path partitionMatrixDirectory) throws IOException {
 		
 		int sizeS = buckets;
 		int sizeT = buckets;
 		
 		VirtualPartitionMatrixFactory vpmf = new VirtualPartitionMatrixFactory(buckets,sparsity,bands,bandsOffsetSeed,bandType);
+		vpmf.setParallelism(partitionMatrixThreads);
 		PartitionMatrix pm = vpmf.getPartitionMatrix();
 		
 		PartitionMatrixExporter pme = new PartitionMatrixExporter(pm,partitionMatrixDirectory);
 		
-		Path partitionMatrix = new Path(partitionMatrixDirectory + File.separator + "pm.csv");
 		Path partitionMatrixBoundaries = new Path(partitionMatrixDirectory + File.separator + "boundaries.csv");
 		Path partitionMatrixCounts = new Path(partitionMatrixDirectory + File.separator + "counts.csv");
 		Path properties = new Path(partitionMatrixDirectory + File.separator + "properties.csv");
@@ -710,7 +880,7 @@ public class Controller {
 		Path partitionMatrixPNG = new Path(partitionMatrixDirectory + File.separator + "pm.png");
 		Path executionTimes = new Path(partitionMatrixDirectory + File.separator + "executionTimes.csv");
 		
-		pme.exportPartitionMatrixCSV(partitionMatrix);
+		pme.exportPartitionMatrix(partitionMatrixFormat);
 		pme.exportBoundariesCSV(partitionMatrixBoundaries);
 		pme.exportCountsCSV(partitionMatrixCounts);
 		
@@ -0,0 +1,229 @@
+/**
+ * BucketSet.java
+ * 
+ * A set of bucket indices (rows of S or columns of T) on a long[] bitset.
+ * Apart from the Set<Integer> interface, it gives the sizes and the sums of
+ * counts of unions and intersections with another BucketSet, word by word
+ * and without building the union or the intersection.
+ * 
+ * The words grow with the largest index that is added.
+ * 
+ * @author John Koumarelas
+ */
+
+package datatypes;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+public class BucketSet extends AbstractSet<Integer> {
+	
+	private static final long[] EMPTY = new long[0];
+	
+	private long[] words;
+	private int size;
+	
+	public BucketSet() {
+		this.words = EMPTY;
+		this.size = 0;
+	}
+	
+	public BucketSet(BucketSet other) {
+		this.words = Arrays.copyOf(other.words, other.words.length);
+		this.size = other.size;
+	}
+	
+	@Override
+	public boolean add(Integer idx) {
+		int word = idx >>> 6;
+		if (word >= words.length) {
+			words = Arrays.copyOf(words, Math.max(word + 1, words.length << 1));
+		}
+		long bit = 1L << idx;
+		if ((words[word] & bit) != 0) {
+			return false;
+		}
+		words[word] |= bit;
+		++size;
+		return true;
+	}
+	
+	@Override
+	public boolean addAll(Collection<? extends Integer> c) {
+		if (!(c instanceof BucketSet)) {
+			return super.addAll(c);
+		}
+		BucketSet other = (BucketSet) c;
+		if (other.words.length > words.length) {
+			words = Arrays.copyOf(words, other.words.length);
+		}
+		int sizeBefore = size;
+		size = 0;
+		for (int w = 0 ; w < words.length; ++w) {
+			if (w < other.words.length) {
+				words[w] |= other.words[w];
+			}
+			size += Long.bitCount(words[w]);
+		}
+		return size != sizeBefore;
+	}
+	
+	@Override
+	public boolean contains(Object o) {
+		if (!(o instanceof Integer)) {
+			return false;
+		}
+		return contains(((Integer) o).intValue());
+	}
+	
+	public boolean contains(int idx) {
+		int word = idx >>> 6;
+		return idx >= 0 && word < words.length && (words[word] & (1L << idx)) != 0;
+	}
+	
+	@Override
+	public boolean remove(Object o) {
+		if (!contains(o)) {
+			return false;
+		}
+		int idx = (Integer) o;
+		words[idx >>> 6] &= ~(1L << idx);
+		--size;
+		return true;
+	}
+	
+	@Override
+	public void clear() {
+		Arrays.fill(words, 0L);
+		size = 0;
+	}
+	
+	@Override
+	public int size() {
+		return size;
+	}
+	
+	/**
+	 * |this & other|
+	 */
+	public int intersectionSize(BucketSet other) {
+		int n = Math.min(words.length, other.words.length);
+		int intersectionSize = 0;
+		for (int w = 0 ; w < n; ++w) {
+			intersectionSize += Long.bitCount(words[w] & other.words[w]);
+		}
+		return intersectionSize;
+	}
+	
+	/**
+	 * |this | other|
+	 */
+	public int unionSize(BucketSet other) {
+		return size + other.size - intersectionSize(other);
+	}
+	
+	/**
+	 * Sum of counts[idx] over the indices of the set.
+	 */
+	public long sum(long[] counts) {
+		long sum = 0L;
+		for (int w = 0 ; w < words.length; ++w) {
+			sum += sumWord(words[w], w, counts);
+		}
+		return sum;
+	}
+	
+	/**
+	 * Sum of counts[idx] over the indices of this | other.
+	 */
+	public long unionSum(BucketSet other, long[] counts) {
+		long[] longer = words.length >= other.words.length ? words : other.words;
+		long[] shorter = longer == words ? other.words : words;
+		long sum = 0L;
+		for (int w = 0 ; w < longer.length; ++w) {
+			sum += sumWord(w < shorter.length ? longer[w] | shorter[w] : longer[w], w, counts);
+		}
+		return sum;
+	}
+	
+	/**
+	 * Sum of counts[idx] over the indices of this & other.
+	 */
+	public long intersectionSum(BucketSet other, long[] counts) {
+		int n = Math.min(words.length, other.words.length);
+		long sum = 0L;
+		for (int w = 0 ; w < n; ++w) {
+			sum += sumWord(words[w] & other.words[w], w, counts);
+		}
+		return sum;
+	}
+	
+	private static long sumWord(long word, int w, long[] counts) {
+		long sum = 0L;
+		int base = w << 6;
+		while (word != 0) {
+			sum += counts[base + Long.numberOfTrailingZeros(word)];
+			word &= word - 1;
+		}
+		return sum;
+	}
+	
+	/**
+	 * Iterates over the indices in ascending order.
+	 */
+	@Override
+	public Iterator<Integer> iterator() {
+		return new Iterator<Integer>() {
+			private int next = nextSetBit(0);
+			private int last = -1;
+			
+			@Override
+			public boolean hasNext() {
+				return next >= 0;
+			}
+			
+			@Override
+			public Integer next() {
+				if (next < 0) {
+					throw new NoSuchElementException();
+				}
+				last = next;
+				next = nextSetBit(next + 1);
+				return last;
+			}
+			
+			@Override
+			public void remove() {
+				if (last < 0) {
+					throw new IllegalStateException();
+				}
+				BucketSet.this.remove(last);
+				last = -1;
+			}
+		};
+	}
+	
+	/**
+	 * @return the smallest index >= from, -1 if there is none.
+	 */
+	public int nextSetBit(int from) {
+		int w = from >>> 6;
+		if (w >= words.length) {
+			return -1;
+		}
+		long word = words[w] & (-1L << from);
+		while (true) {
+			if (word != 0) {
+				return (w << 6) + Long.numberOfTrailingZeros(word);
+			}
+			if (++w == words.length) {
+				return -1;
+			}
+			word = words[w];
+		}
+	}
+	
+}
@@ -0,0 +1,253 @@
+/**
+ * CellSet.java
+ * 
+ * A set of cells (row, column) of the partition matrix on a sorted long[] of
+ * row << 32 | column, i.e. in row-major order. Apart from the Set<IntPair>
+ * interface, it gives the size of the union with another CellSet by a merge
+ * of the two arrays, and indexed access to the rows and columns.
+ * 
+ * The cells are mostly added in row-major order (appended). A cell out of
+ * order is appended too and the array is sorted (and the duplicates dropped)
+ * once, on the next read, so that adding cells column by column (as the
+ * M-Bucket-I partitioner does) costs O(n log n) instead of O(n^2).
+ * 
+ * A set may be read by several threads once it is built: the first read
+ * after out of order adds sorts it under the lock of the set.
+ * 
+ * @author John Koumarelas
+ */
+
+package datatypes;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+public class CellSet extends AbstractSet<IntPair> {
+	
+	private static final long[] EMPTY = new long[0];
+	
+	private long[] cells;
+	private int size;
+	private volatile boolean sorted; // false: cells were appended out of order
+	
+	public CellSet() {
+		this.cells = EMPTY;
+		this.size = 0;
+		this.sorted = true;
+	}
+	
+	public CellSet(CellSet other) {
+		other.ensureSorted();
+		this.cells = Arrays.copyOf(other.cells, other.size);
+		this.size = other.size;
+		this.sorted = true;
+	}
+	
+	private static long encode(int row, int column) {
+		return ((long) row << 32) | (column & 0xFFFFFFFFL);
+	}
+	
+	@Override
+	public boolean add(IntPair cell) {
+		if (contains(cell)) {
+			return false;
+		}
+		add(cell.getFirst(), cell.getSecond());
+		return true;
+	}
+	
+	/**
+	 * Adds the cell, without telling whether it was already in the set: a cell out
+	 * of row-major order is only sorted in (or dropped, if it is a duplicate) on the
+	 * next read.
+	 */
+	public void add(int row, int column) {
+		long cell = encode(row, column);
+		if (sorted && size > 0 && cells[size - 1] == cell) {
+			return;
+		}
+		if (size == cells.length) {
+			cells = Arrays.copyOf(cells, Math.max(4, cells.length << 1));
+		}
+		if (size > 0 && cells[size - 1] > cell) {
+			sorted = false;
+		}
+		cells[size++] = cell;
+	}
+	
+	private void ensureSorted() {
+		if (!sorted) {
+			synchronized (this) {
+				if (!sorted) {
+					sort();
+				}
+			}
+		}
+	}
+	
+	private void sort() {
+		Arrays.sort(cells, 0, size);
+		int distinct = 0;
+		for (int i = 0 ; i < size; ++i) {
+			if (distinct == 0 || cells[distinct - 1] != cells[i]) {
+				cells[distinct++] = cells[i];
+			}
+		}
+		size = distinct;
+		sorted = true;
+	}
+	
+	@Override
+	public boolean addAll(Collection<? extends IntPair> c) {
+		if (!(c instanceof CellSet)) {
+			return super.addAll(c);
+		}
+		CellSet other = (CellSet) c;
+		other.ensureSorted();
+		if (other.size == 0) {
+			return false;
+		}
+		ensureSorted();
+		long[] merged = new long[size + other.size];
+		int mergedSize = 0;
+		int i = 0, j = 0;
+		while (i < size || j < other.size) {
+			long cell;
+			if (j == other.size || (i < size && cells[i] < other.cells[j])) {
+				cell = cells[i++];
+			} else if (i == size || other.cells[j] < cells[i]) {
+				cell = other.cells[j++];
+			} else {
+				cell = cells[i++];
+				++j;
+			}
+			merged[mergedSize++] = cell;
+		}
+		boolean changed = mergedSize != size;
+		cells = merged;
+		size = mergedSize;
+		return changed;
+	}
+	
+	@Override
+	public boolean contains(Object o) {
+		if (!(o instanceof IntPair)) {
+			return false;
+		}
+		IntPair cell = (IntPair) o;
+		ensureSorted();
+		return Arrays.binarySearch(cells, 0, size, encode(cell.getFirst(), cell.getSecond())) >= 0;
+	}
+	
+	@Override
+	public boolean remove(Object o) {
+		if (!(o instanceof IntPair)) {
+			return false;
+		}
+		IntPair cell = (IntPair) o;
+		ensureSorted();
+		int position = Arrays.binarySearch(cells, 0, size, encode(cell.getFirst(), cell.getSecond()));
+		if (position < 0) {
+			return false;
+		}
+		removeAt(position);
+		return true;
+	}
+	
+	private void removeAt(int position) {
+		System.arraycopy(cells, position + 1, cells, position, size - position - 1);
+		--size;
+	}
+	
+	@Override
+	public void clear() {
+		size = 0;
+		sorted = true;
+	}
+	
+	@Override
+	public int size() {
+		ensureSorted();
+		return size;
+	}
+	
+	/**
+	 * |this | other|
+	 */
+	public int unionSize(CellSet other) {
+		ensureSorted();
+		other.ensureSorted();
+		int i = 0, j = 0, common = 0;
+		while (i < size && j < other.size) {
+			if (cells[i] < other.cells[j]) {
+				++i;
+			} else if (other.cells[j] < cells[i]) {
+				++j;
+			} else {
+				++common;
+				++i;
+				++j;
+			}
+		}
+		return size + other.size - common;
+	}
+	
+	/**
+	 * Row of the index-th cell, in row-major order.
+	 */
+	public int row(int index) {
+		ensureSorted();
+		return (int) (cells[index] >> 32);
+	}
+	
+	/**
+	 * Column of the index-th cell, in row-major order.
+	 */
+	public int column(int index) {
+		ensureSorted();
+		return (int) cells[index];
+	}
+	
+	public IntPair get(int index) {
+		return new IntPair(row(index), column(index));
+	}
+	
+	/**
+	 * Iterates over the cells in row-major order.
+	 */
+	@Override
+	public Iterator<IntPair> iterator() {
+		ensureSorted();
+		return new Iterator<IntPair>() {
+			private int next = 0;
+			private boolean removable = false;
+			
+			@Override
+			public boolean hasNext() {
+				return next < size;
+			}
+			
+			@Override
+			public IntPair next() {
+				if (next >= size) {
+					throw new NoSuchElementException();
+				}
+				removable = true;
+				return get(next++);
+			}
+			
+			@Override
+			public void remove() {
+				if (!removable) {
+					throw new IllegalStateException();
+				}
+				removeAt(--next);
+				removable = false;
+			}
+		};
+	}
+	
+}
@@ -0,0 +1,119 @@
+/**
+ * LongLongHashMap.java
+ *
+ * A map of long keys to long values on primitive arrays (open addressing,
+ * linear probing), for counting duplications without boxing.
+ *
+ * The keys are also kept in insertion order, which gives indexed access to
+ * the entries (getKey(i), getValue(i)) and a clear() that costs O(size)
+ * instead of O(capacity), so a single map can be reused across many groups.
+ *
+ * @author John Koumarelas
+ */
+
+package datatypes;
+
+public class LongLongHashMap {
+
+	private static final int MIN_CAPACITY = 16;
+
+	private long[] keys;
+	private long[] values;
+	private boolean[] used;
+	private int[] order; // insertion index -> slot
+	private int size;
+	private int mask;
+
+	public LongLongHashMap(int expectedSize) {
+		int capacity = MIN_CAPACITY;
+		while (capacity < 2 * expectedSize) {
+			capacity <<= 1;
+		}
+		allocate(capacity);
+	}
+
+	/**
+	 * Adds delta to the value of the key (a missing key counts as 0).
+	 */
+	public void add(long key, long delta) {
+		int slot = hash(key) & mask;
+		while (used[slot]) {
+			if (keys[slot] == key) {
+				values[slot] += delta;
+				return;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		used[slot] = true;
+		keys[slot] = key;
+		values[slot] = delta;
+		order[size++] = slot;
+
+		/*	Load factor of 1/2.	*/
+		if (2 * size > keys.length) {
+			grow();
+		}
+	}
+
+	public void clear() {
+		for (int i = 0 ; i < size; ++i) {
+			used[order[i]] = false;
+		}
+		size = 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the key of the i-th entry, in insertion order.
+	 */
+	public long getKey(int i) {
+		return keys[order[i]];
+	}
+
+	/**
+	 * @return the value of the i-th entry, in insertion order.
+	 */
+	public long getValue(int i) {
+		return values[order[i]];
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new long[capacity];
+		used = new boolean[capacity];
+		order = new int[capacity];
+		mask = capacity - 1;
+	}
+
+	private void grow() {
+		long[] oldKeys = keys;
+		long[] oldValues = values;
+		int[] oldOrder = order;
+		int oldSize = size;
+
+		allocate(keys.length << 1);
+		size = 0;
+		for (int i = 0 ; i < oldSize; ++i) {
+			int oldSlot = oldOrder[i];
+
+			int slot = hash(oldKeys[oldSlot]) & mask;
+			while (used[slot]) {
+				slot = (slot + 1) & mask;
+			}
+			used[slot] = true;
+			keys[slot] = oldKeys[oldSlot];
+			values[slot] = oldValues[oldSlot];
+			order[size++] = slot;
+		}
+	}
+
+	private static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+}
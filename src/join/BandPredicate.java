@@ -0,0 +1,100 @@
+/**
+ * BandPredicate.java
+ *
+ * The band join condition: T + c1 <= S <= T + c2.
+ * In a query: [c1|c2], e.g. [10|15].
+ *
+ * The ranges are clamped to the domain instead of overflowing: a range that is
+ * entirely beyond an end of the domain is empty, [Long.MAX_VALUE, Long.MIN_VALUE]
+ * (see ThetaPredicate).
+ *
+ * @author John Koumarelas
+ */
+
+package join;
+
+import model.BucketBoundaries;
+
+public class BandPredicate implements ThetaPredicate {
+
+	private static final long EMPTY_LOWEST = Long.MAX_VALUE;
+	private static final long EMPTY_HIGHEST = Long.MIN_VALUE;
+
+	private long c1;
+	private long c2;
+
+	public BandPredicate(long c1, long c2) {
+		this.c1 = c1;
+		this.c2 = c2;
+	}
+
+	/**
+	 * The bucket of T shifted by the band, [T.first + c1, T.last + c2], overlaps the bucket of S
+	 * (see PartitionMatrixFactory.evaluateQueryHistogramsEnds).
+	 */
+	@Override
+	public boolean mayMatch(BucketBoundaries boundaryS, BucketBoundaries boundaryT) {
+		return boundaryT.getFrom() + c1 <= boundaryS.getTo() && boundaryS.getFrom() <= boundaryT.getTo() + c2;
+	}
+
+	@Override
+	public long lowestS(long valueT) {
+		return lowest(valueT, c1, c2);
+	}
+
+	@Override
+	public long highestS(long valueT) {
+		return highest(valueT, c1, c2);
+	}
+
+	@Override
+	public long lowestT(long valueS) {
+		return lowest(valueS, -c2, -c1);
+	}
+
+	@Override
+	public long highestT(long valueS) {
+		return highest(valueS, -c2, -c1);
+	}
+
+	/**
+	 * @return the lowest value of [value + lo, value + hi] in the domain, EMPTY_LOWEST if none.
+	 */
+	static long lowest(long value, long lo, long hi) {
+		if (overflowsAbove(value, lo) || overflowsBelow(value, hi)) {
+			return EMPTY_LOWEST;
+		}
+		return overflowsBelow(value, lo) ? Long.MIN_VALUE : value + lo;
+	}
+
+	/**
+	 * @return the highest value of [value + lo, value + hi] in the domain, EMPTY_HIGHEST if none.
+	 */
+	static long highest(long value, long lo, long hi) {
+		if (overflowsAbove(value, lo) || overflowsBelow(value, hi)) {
+			return EMPTY_HIGHEST;
+		}
+		return overflowsAbove(value, hi) ? Long.MAX_VALUE : value + hi;
+	}
+
+	private static boolean overflowsAbove(long value, long c) {
+		return c > 0 && value > Long.MAX_VALUE - c;
+	}
+
+	private static boolean overflowsBelow(long value, long c) {
+		return c < 0 && value < Long.MIN_VALUE - c;
+	}
+
+	public long getC1() {
+		return c1;
+	}
+
+	public long getC2() {
+		return c2;
+	}
+
+	@Override
+	public String toString() {
+		return "[" + c1 + "|" + c2 + "]";
+	}
+}
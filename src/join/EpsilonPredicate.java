@@ -0,0 +1,59 @@
+/**
+ * EpsilonPredicate.java
+ *
+ * The similarity join condition: |S - T| <= eps, i.e. the band [-eps|eps].
+ * In a query: [~eps], e.g. [~5].
+ * The ranges are clamped to the domain as the ones of BandPredicate.
+ *
+ * @author John Koumarelas
+ */
+
+package join;
+
+import model.BucketBoundaries;
+
+public class EpsilonPredicate implements ThetaPredicate {
+
+	private long eps;
+
+	public EpsilonPredicate(long eps) {
+		this.eps = eps;
+	}
+
+	/**
+	 * The buckets are less than eps apart.
+	 */
+	@Override
+	public boolean mayMatch(BucketBoundaries boundaryS, BucketBoundaries boundaryT) {
+		return boundaryT.getFrom() - eps <= boundaryS.getTo() && boundaryS.getFrom() <= boundaryT.getTo() + eps;
+	}
+
+	@Override
+	public long lowestS(long valueT) {
+		return BandPredicate.lowest(valueT, -eps, eps);
+	}
+
+	@Override
+	public long highestS(long valueT) {
+		return BandPredicate.highest(valueT, -eps, eps);
+	}
+
+	@Override
+	public long lowestT(long valueS) {
+		return BandPredicate.lowest(valueS, -eps, eps);
+	}
+
+	@Override
+	public long highestT(long valueS) {
+		return BandPredicate.highest(valueS, -eps, eps);
+	}
+
+	public long getEps() {
+		return eps;
+	}
+
+	@Override
+	public String toString() {
+		return "[~" + eps + "]";
+	}
+}
@@ -0,0 +1,140 @@
+/**
+ * InequalityPredicate.java
+ *
+ * The inequality join conditions S < T, S <= T, S > T and S >= T.
+ * In a query: [<], [<=], [>], [>=].
+ *
+ * The ranges are open-ended (Long.MIN_VALUE or Long.MAX_VALUE). The strict
+ * operators give an empty range, [Long.MAX_VALUE, Long.MIN_VALUE], to a value at
+ * the end of the domain that nothing is strictly beyond, instead of overflowing
+ * (see ThetaPredicate).
+ *
+ * @author John Koumarelas
+ */
+
+package join;
+
+import model.BucketBoundaries;
+
+public class InequalityPredicate implements ThetaPredicate {
+
+	public enum Operator {
+		LT("<"), LE("<="), GT(">"), GE(">=");
+
+		String operator;
+
+		private Operator(String operator) {
+			this.operator = operator;
+		}
+
+		/**
+		 * @return the Operator written as operator (e.g. "<="), null if none.
+		 */
+		public static Operator of(String operator) {
+			for (Operator op : values()) {
+				if (op.operator.equals(operator)) {
+					return op;
+				}
+			}
+			return null;
+		}
+
+		@Override
+		public String toString() {
+			return operator;
+		}
+	}
+
+	private static final long EMPTY_LOWEST = Long.MAX_VALUE;
+	private static final long EMPTY_HIGHEST = Long.MIN_VALUE;
+
+	private Operator operator;
+
+	public InequalityPredicate(Operator operator) {
+		this.operator = operator;
+	}
+
+	/**
+	 * The lowest value of S compared to the highest value of T, or the highest value of S
+	 * compared to the lowest value of T.
+	 */
+	@Override
+	public boolean mayMatch(BucketBoundaries boundaryS, BucketBoundaries boundaryT) {
+		switch (operator) {
+			case LT:
+				return boundaryS.getFrom() < boundaryT.getTo();
+			case LE:
+				return boundaryS.getFrom() <= boundaryT.getTo();
+			case GT:
+				return boundaryS.getTo() > boundaryT.getFrom();
+			case GE:
+			default:
+				return boundaryS.getTo() >= boundaryT.getFrom();
+		}
+	}
+
+	@Override
+	public long lowestS(long valueT) {
+		switch (operator) {
+			case GT:
+				return valueT == Long.MAX_VALUE ? EMPTY_LOWEST : valueT + 1;
+			case LT:
+				return valueT == Long.MIN_VALUE ? EMPTY_LOWEST : Long.MIN_VALUE;
+			case GE:
+				return valueT;
+			default:
+				return Long.MIN_VALUE;
+		}
+	}
+
+	@Override
+	public long highestS(long valueT) {
+		switch (operator) {
+			case LT:
+				return valueT == Long.MIN_VALUE ? EMPTY_HIGHEST : valueT - 1;
+			case GT:
+				return valueT == Long.MAX_VALUE ? EMPTY_HIGHEST : Long.MAX_VALUE;
+			case LE:
+				return valueT;
+			default:
+				return Long.MAX_VALUE;
+		}
+	}
+
+	@Override
+	public long lowestT(long valueS) {
+		switch (operator) {
+			case LT:
+				return valueS == Long.MAX_VALUE ? EMPTY_LOWEST : valueS + 1;
+			case GT:
+				return valueS == Long.MIN_VALUE ? EMPTY_LOWEST : Long.MIN_VALUE;
+			case LE:
+				return valueS;
+			default:
+				return Long.MIN_VALUE;
+		}
+	}
+
+	@Override
+	public long highestT(long valueS) {
+		switch (operator) {
+			case GT:
+				return valueS == Long.MIN_VALUE ? EMPTY_HIGHEST : valueS - 1;
+			case LT:
+				return valueS == Long.MAX_VALUE ? EMPTY_HIGHEST : Long.MAX_VALUE;
+			case GE:
+				return valueS;
+			default:
+				return Long.MAX_VALUE;
+		}
+	}
+
+	public Operator getOperator() {
+		return operator;
+	}
+
+	@Override
+	public String toString() {
+		return "[" + operator + "]";
+	}
+}
@@ -1,9 +1,52 @@
 package join;
 
+import java.util.regex.Pattern;
+
+import join.InequalityPredicate.Operator;
 import datatypes.exceptions.JoinException;
 
 public abstract class ThetaJoin {
 	
+	private static final Pattern BAND = Pattern.compile("-?\\d+\\|-?\\d+");
+	private static final Pattern EPSILON = Pattern.compile("~\\d+");
+	
 	public abstract void join() throws JoinException ;
 	
+	/**
+	 * "_" -> splits the parts of the query, a pair matches the query if it matches any of them
+	 * 
+	 * Every part is one of:
+	 * 	[c1|c2]				band:		T + c1 <= S <= T + c2 (see BandPredicate)
+	 * 	[<], [<=], [>], [>=]	inequality:	S < T, ... (see InequalityPredicate)
+	 * 	[~eps]				epsilon:	|S - T| <= eps (see EpsilonPredicate)
+	 * 
+	 * example [10|15]_[20|25] --> two bands: (10,15),(20,25)
+	 */
+	public static ThetaPredicate[] getQueryParts(String query) {
+		String[] queryToks = query.trim().split("_", -1); // "-1": an empty trailing part is invalid, not dropped
+		
+		ThetaPredicate[] queryParts = new ThetaPredicate[queryToks.length];
+		
+		for (int i = 0 ; i < queryToks.length; ++i) {
+			String tok = queryToks[i].trim();
+			if (!tok.startsWith("[") || !tok.endsWith("]")) {
+				throw new IllegalArgumentException("Invalid query part: " + tok);
+			}
+			tok = tok.substring(1, tok.length() - 1);
+			
+			if (BAND.matcher(tok).matches()) {
+				String[] toks = tok.split("\\|");
+				queryParts[i] = new BandPredicate(Long.valueOf(toks[0]), Long.valueOf(toks[1]));
+			} else if (EPSILON.matcher(tok).matches()) {
+				queryParts[i] = new EpsilonPredicate(Long.valueOf(tok.substring(1)));
+			} else if (Operator.of(tok) != null) {
+				queryParts[i] = new InequalityPredicate(Operator.of(tok));
+			} else {
+				throw new IllegalArgumentException("Invalid query part: [" + tok + "]");
+			}
+		}
+		
+		return queryParts;
+	}
+	
 }
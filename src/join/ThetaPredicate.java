@@ -0,0 +1,62 @@
+/**
+ * ThetaPredicate.java
+ *
+ * A join condition between a value of S and a value of T, for which the
+ * values of S that match a value of T form a range, and vice versa:
+ * 	(S,T) matches	<=>	lowestS(T) <= S <= highestS(T)
+ * 					<=>	lowestT(S) <= T <= highestT(S)
+ * with all four bounds non-decreasing in their argument.
+ * 
+ * A value at an end of the domain (Long.MIN_VALUE or Long.MAX_VALUE) may match
+ * nothing, e.g. T = Long.MAX_VALUE for S > T. Its range is then empty, with the
+ * lowest bound greater than the highest one, and the bounds of the empty ranges
+ * are not ordered with the others: the users skip an empty range before using
+ * its bounds.
+ *
+ * The ranges are what the sliding windows of the MBucketI reducer (range probes
+ * over the sorted values of S) and the candidate-cell construction of the
+ * PartitionMatrixFactory (over the sorted buckets of T) rely on. mayMatch prunes
+ * the cells of the partition matrix on the bucket boundaries alone.
+ *
+ * Implementations:
+ * 	-	BandPredicate: c1 <= S - T <= c2.
+ * 	-	InequalityPredicate: S < T, S <= T, S > T, S >= T.
+ * 	-	EpsilonPredicate: |S - T| <= eps.
+ *
+ * A query is the disjunction of ThetaPredicates (see ThetaJoin.getQueryParts).
+ *
+ * @author John Koumarelas
+ */
+
+package join;
+
+import model.BucketBoundaries;
+
+public interface ThetaPredicate {
+
+	/**
+	 * @return true if some value of the bucket of S may match some value of the bucket of T (candidate cell).
+	 */
+	boolean mayMatch(BucketBoundaries boundaryS, BucketBoundaries boundaryT);
+
+	/**
+	 * @return the lowest value of S that matches valueT.
+	 */
+	long lowestS(long valueT);
+
+	/**
+	 * @return the highest value of S that matches valueT.
+	 */
+	long highestS(long valueT);
+
+	/**
+	 * @return the lowest value of T that matches valueS.
+	 */
+	long lowestT(long valueS);
+
+	/**
+	 * @return the highest value of T that matches valueS.
+	 */
+	long highestT(long valueS);
+
+}
@@ -0,0 +1,81 @@
+/**
+ * AllocationProbe.java
+ *
+ * Measures the bytes allocated on the heap by the current thread between
+ * begin() and end(), through com.sun.management.ThreadMXBean.
+ *
+ * Used by the mappers of MBucketI to confirm that processing a record does
+ * not allocate. The cost of the measurement itself is calibrated once and
+ * subtracted. If the JVM does not support it, nothing is measured and
+ * isSupported() returns false.
+ *
+ * @author John Koumarelas
+ */
+
+package join.mbi;
+
+import java.lang.management.ManagementFactory;
+
+public class AllocationProbe {
+
+	private com.sun.management.ThreadMXBean threadMXBean = null;
+	private long threadId;
+
+	private long overhead = 0;
+	private long startBytes;
+
+	private long allocatedBytes = 0;
+	private long measurements = 0;
+
+	public AllocationProbe() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+			if (sunBean.isThreadAllocatedMemorySupported() && sunBean.isThreadAllocatedMemoryEnabled()) {
+				threadMXBean = sunBean;
+			}
+		}
+		threadId = Thread.currentThread().getId();
+
+		if (threadMXBean != null) {
+			/*	Some JVMs allocate inside of getThreadAllocatedBytes(), keep the lowest cost.	*/
+			overhead = Long.MAX_VALUE;
+			for (int i = 0 ; i < 16; ++i) {
+				long start = threadMXBean.getThreadAllocatedBytes(threadId);
+				long end = threadMXBean.getThreadAllocatedBytes(threadId);
+				overhead = Math.min(overhead, end - start);
+			}
+		}
+	}
+
+	public boolean isSupported() {
+		return threadMXBean != null;
+	}
+
+	public void begin() {
+		if (threadMXBean != null) {
+			startBytes = threadMXBean.getThreadAllocatedBytes(threadId);
+		}
+	}
+
+	public void end() {
+		if (threadMXBean != null) {
+			long bytes = threadMXBean.getThreadAllocatedBytes(threadId) - startBytes - overhead;
+			if (bytes > 0) {
+				allocatedBytes += bytes;
+			}
+			++measurements;
+		}
+	}
+
+	/*	Getters - Setters	*/
+
+	public long getAllocatedBytes() {
+		return allocatedBytes;
+	}
+
+	public long getMeasurements() {
+		return measurements;
+	}
+
+}
@@ -0,0 +1,121 @@
+/**
+ * HistogramIndexer.java
+ *
+ * Maps the values of the two relations to the (possibly rearranged)
+ * histogram index of the bucket they belong to.
+ *
+ * It is shared by the mapper and the reducer of MBucketI, as both of
+ * them need to locate the row (S) or the column (T) of the
+ * PartitionMatrix in which a value falls.
+ *
+ * @author John Koumarelas
+ */
+
+package join.mbi;
+
+import java.io.IOException;
+
+import model.BucketBoundaries;
+
+import org.apache.hadoop.fs.Path;
+
+import utils.importers.HistogramImporter;
+import utils.importers.RearrangementsImporter;
+
+public class HistogramIndexer {
+
+	private BucketBoundaries[] boundariesS;
+	private BucketBoundaries[] boundariesT;
+
+	private int[] defaultToRearrangedS;
+	private int[] defaultToRearrangedT;
+
+	public HistogramIndexer(BucketBoundaries[] boundariesS, BucketBoundaries[] boundariesT,
+			int[] defaultToRearrangedS, int[] defaultToRearrangedT) {
+		this.boundariesS = boundariesS;
+		this.boundariesT = boundariesT;
+		this.defaultToRearrangedS = defaultToRearrangedS;
+		this.defaultToRearrangedT = defaultToRearrangedT;
+	}
+
+	/**
+	 * Loads the boundaries and the rearrangements (if any).
+	 *
+	 * @param rearrangements: "/" when no rearrangement has been applied.
+	 */
+	public static HistogramIndexer load(int buckets, Path boundaries, Path rearrangements) throws IOException {
+		BucketBoundaries[] boundariesS = new HistogramImporter().importBoundaries("S", buckets, boundaries);
+		BucketBoundaries[] boundariesT = new HistogramImporter().importBoundaries("T", buckets, boundaries);
+
+		int[] defaultToRearrangedS = null;
+		int[] defaultToRearrangedT = null;
+
+		if(!rearrangements.toString().equals("/")) {
+			defaultToRearrangedS = new RearrangementsImporter().importDefaultToRearranged("S", buckets, rearrangements);
+			defaultToRearrangedT = new RearrangementsImporter().importDefaultToRearranged("T", buckets, rearrangements);
+		} else {
+			defaultToRearrangedS = new int[buckets];
+			defaultToRearrangedT = new int[buckets];
+
+			for(int i = 0 ; i < buckets; ++i) {
+				defaultToRearrangedS[i] = i;
+				defaultToRearrangedT[i] = i;
+			}
+		}
+
+		return new HistogramIndexer(boundariesS, boundariesT, defaultToRearrangedS, defaultToRearrangedT);
+	}
+
+	public int valueToBoundaryIndex(long value, boolean isRelationS) {
+
+		BucketBoundaries[] boundaries = (isRelationS ? boundariesS : boundariesT);
+
+		int start = 0;
+	    int end = boundaries.length - 1;
+
+	    while (start <= end)
+	    {
+	        int middle = start + (end - start)/2;
+	        if (boundaries[middle].getFrom() <= value && value <= boundaries[middle].getTo()) {
+	            return (isRelationS?defaultToRearrangedS:defaultToRearrangedT)[middle];
+	        } else if (value < boundaries[middle].getFrom()) {
+	            end = middle - 1;
+	        } else if (boundaries[middle].getTo() < value) {
+	        	start = middle + 1;
+	        }
+	    }
+	    return -1;
+	}
+
+	/**
+	 * The (possibly rearranged) histogram index of a bucket, given its index in the histograms.
+	 */
+	public int defaultToRearranged(int index, boolean isRelationS) {
+		return (isRelationS?defaultToRearrangedS:defaultToRearrangedT)[index];
+	}
+
+	/**
+	 * Same as valueToBoundaryIndex, but for a whole run of values that is sorted
+	 * in ascending order. The boundaries are walked once together with the values,
+	 * instead of a binary search per value.
+	 */
+	public void sortedValuesToBoundaryIndices(long[] sortedValues, int size, boolean isRelationS, int[] indices) {
+
+		BucketBoundaries[] boundaries = (isRelationS ? boundariesS : boundariesT);
+		int[] defaultToRearranged = (isRelationS ? defaultToRearrangedS : defaultToRearrangedT);
+
+		int b = 0;
+		for (int i = 0 ; i < size; ++i) {
+			long value = sortedValues[i];
+			while (b < boundaries.length && boundaries[b].getTo() < value) {
+				++b;
+			}
+			if (b < boundaries.length && boundaries[b].getFrom() <= value) {
+				indices[i] = defaultToRearranged[b];
+			} else {
+				indices[i] = -1;
+			}
+		}
+	}
+
+}
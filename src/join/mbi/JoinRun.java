@@ -0,0 +1,44 @@
+/**
+ * JoinRun.java
+ *
+ * Read access to the values of one relation of a partition, sorted in ascending
+ * order with equal values collapsed, whether they are held in memory (SortedRun)
+ * or in a memory-mapped local file (SpilledRun).
+ *
+ * Besides every value, its duplication and its histogram index, a run gives the
+ * segments of consecutive values with the same histogram index, together with sums
+ * of the duplications, so that a window of values can be aggregated segment by
+ * segment (see MBIJoinEngine#emitAggregateWindow()).
+ *
+ * @author John Koumarelas
+ */
+
+package join.mbi;
+
+public interface JoinRun {
+
+	public int size();
+
+	public long value(int i);
+
+	public long duplication(int i);
+
+	public int histogramIndex(int i);
+
+	/**
+	 * Index of the first value that is greater than or equal to the given one.
+	 * (size if there is none)
+	 */
+	public int ceilingIndex(long value);
+
+	/**
+	 * First position of the segment (equal histogram index) that position i belongs to.
+	 */
+	public int segmentStart(int i);
+
+	/**
+	 * duplication(from) + ... + duplication(to - 1)
+	 */
+	public long duplications(int from, int to);
+
+}
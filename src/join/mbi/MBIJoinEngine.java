@@ -0,0 +1,246 @@
+/**
+ * MBIJoinEngine.java
+ *
+ * The join logic of an MBucketI reducer, for a single partition.
+ *
+ * The reducer first feeds all the values of S (as (value, duplication) pairs),
+ * then all the values of T. For every pair that satisfies a part of the query
+ * and falls in a cell of the partition, a result is passed to the ResultCollector.
+ *
+ * Implementations differ in the data structures that hold S:
+ * 	-	TREE_MAP (default): TreeMaps probed once per distinct T value and part of the query; T is streamed.
+ * 	-	SORTED_RUN: sorted primitive columns, joined with T by a sliding window per part; T is buffered
+ * 		(and spilled to local files beyond its memory budget, as S).
+ * 	-	STREAMING_MERGE: for values that arrive already sorted (secondary sort), S is
+ * 		appended to sorted primitive columns and T is streamed through a window per part.
+ * 
+ * Every part of the query is a ThetaPredicate, whose values of S for a value of T
+ * form a range [lowestS(T), highestS(T)] (the window).
+ * 
+ * The results are either passed to the ResultCollector (MATERIALIZE), or only
+ * counted (COUNT, SUM). See JoinOutputMode.
+ *
+ * @author John Koumarelas
+ */
+
+package join.mbi;
+
+import java.io.File;
+import java.io.IOException;
+
+import join.ThetaJoin;
+import join.ThetaPredicate;
+
+public abstract class MBIJoinEngine {
+
+	public enum JoinEngine {
+		TREE_MAP("TREE_MAP"),
+		SORTED_RUN("SORTED_RUN"),
+		STREAMING_MERGE("STREAMING_MERGE");
+
+		String engine;
+
+		private JoinEngine(String engine) {
+			this.engine = engine;
+		}
+
+		@Override
+		public String toString() {
+			return engine;
+		}
+	}
+
+	/**
+	 * 	-	MATERIALIZE: every result (valueS, valueT, multiplicity) is collected.
+	 * 	-	COUNT: nothing is collected; the output counter is the number of (valueS, valueT) result pairs.
+	 * 	-	SUM: nothing is collected; the output counter is the sum of the multiplicities,
+	 * 		as with MATERIALIZE.
+	 */
+	public enum JoinOutputMode {
+		MATERIALIZE("MATERIALIZE"),
+		COUNT("COUNT"),
+		SUM("SUM");
+
+		String mode;
+
+		private JoinOutputMode(String mode) {
+			this.mode = mode;
+		}
+
+		@Override
+		public String toString() {
+			return mode;
+		}
+	}
+
+	public interface ResultCollector {
+		public void collect(long valueS, long valueT, long multiplicity) throws IOException, InterruptedException;
+	}
+
+	protected ThetaPredicate[] queryParts;
+	protected HistogramIndexer histogramIndexer;
+	protected ResultCollector collector;
+
+	protected PartitionCells partitionCells;
+
+	protected JoinOutputMode outputMode = JoinOutputMode.MATERIALIZE;
+
+	/*	Heap budgets for the values of S and T (0: unlimited), only for engines that spill (SORTED_RUN).	*/
+	protected long memoryBudgetS = 0;
+	protected long memoryBudgetT = 0;
+	protected File spillDirectory = null;
+
+	private long counterOutput = 0;
+	private long counterOutputCompletedLongMax = 0; // How many times counterOutput completed LONG_MAX
+
+	public MBIJoinEngine(ThetaPredicate[] queryParts, HistogramIndexer histogramIndexer, ResultCollector collector) {
+		this.queryParts = queryParts;
+		this.histogramIndexer = histogramIndexer;
+		this.collector = collector;
+	}
+
+	public static MBIJoinEngine create(JoinEngine joinEngine, ThetaPredicate[] queryParts,
+			HistogramIndexer histogramIndexer, ResultCollector collector) {
+		switch(joinEngine) {
+			case SORTED_RUN:
+				return new SortedRunJoinEngine(queryParts, histogramIndexer, collector);
+			case STREAMING_MERGE:
+				return new StreamingMergeJoinEngine(queryParts, histogramIndexer, collector);
+			case TREE_MAP:
+			default:
+				return new TreeMapJoinEngine(queryParts, histogramIndexer, collector);
+		}
+	}
+
+	/**
+	 * See ThetaJoin.getQueryParts.
+	 *
+	 * example [10|15]_[20|25] --> two bands: (10,15),(20,25)
+	 */
+	public static ThetaPredicate[] getQueryParts(String query) {
+		return ThetaJoin.getQueryParts(query);
+	}
+
+	/*	S side	*/
+
+	public abstract void clearS() throws IOException;
+
+	public abstract void addS(long valueS, long duplicationS) throws IOException;
+
+	/**
+	 * Called once all the values of S of the partition have been added.
+	 */
+	public abstract void finishS() throws IOException;
+
+	/*	T side	*/
+
+	public void setPartitionCells(PartitionCells partitionCells) {
+		this.partitionCells = partitionCells;
+	}
+
+	public abstract void addT(long valueT, long duplicationT) throws IOException, InterruptedException;
+
+	/**
+	 * Called once all the values of T of the partition have been added.
+	 */
+	public abstract void finishT() throws IOException, InterruptedException;
+
+	/**
+	 * Releases any resources (e.g. spill files) of the engine.
+	 */
+	public void close() throws IOException {
+		;// Nothing to release by default
+	}
+
+	/*	Output	*/
+
+	protected void emit(long valueS, long duplicationS, long valueT, long duplicationT)
+			throws IOException, InterruptedException {
+		long multiplicity = duplicationS*duplicationT;
+
+		if (outputMode != JoinOutputMode.MATERIALIZE) {
+			emitAggregate(1, multiplicity);
+			return;
+		}
+
+		addToCounterOutput(multiplicity);
+
+		collector.collect(valueS, valueT, multiplicity);
+	}
+
+	/**
+	 * Accounts for a number of result pairs, with the given total multiplicity,
+	 * without collecting them.
+	 */
+	protected void emitAggregate(long pairs, long multiplicity) {
+		addToCounterOutput(outputMode == JoinOutputMode.COUNT ? pairs : multiplicity);
+	}
+
+	/**
+	 * Aggregates the results of a value of T with the window [low, high) of a
+	 * run of S, segment by segment (from the last one backwards).
+	 */
+	protected void emitAggregateWindow(JoinRun runS, int low, int high, int histogramIndexT, long duplicationT) {
+		long pairs = 0;
+		long duplicationS = 0;
+		int position = high - 1;
+		while (position >= low) {
+			int from = Math.max(low, runS.segmentStart(position));
+			if (partitionCells.contains(runS.histogramIndex(position), histogramIndexT)) {
+				pairs += position + 1 - from;
+				duplicationS += runS.duplications(from, position + 1);
+			}
+			position = from - 1;
+		}
+		if (pairs > 0) {
+			emitAggregate(pairs, duplicationS * duplicationT);
+		}
+	}
+
+	private void addToCounterOutput(long amount) {
+		if((Long.MAX_VALUE - counterOutput) <= amount){
+			++counterOutputCompletedLongMax;
+
+			counterOutput = amount - (Long.MAX_VALUE - counterOutput);
+		} else {
+			counterOutput += amount;
+		}
+	}
+
+	/*	Getters - Setters	*/
+
+	public JoinOutputMode getOutputMode() {
+		return outputMode;
+	}
+
+	public void setOutputMode(JoinOutputMode outputMode) {
+		this.outputMode = outputMode;
+	}
+
+	/**
+	 * @param memoryBudgetS: bytes of heap that the values of S may take, 0 for unlimited.
+	 * @param spillDirectory: local directory for the values of S that exceed it.
+	 */
+	public void setMemoryBudgetS(long memoryBudgetS, File spillDirectory) {
+		this.memoryBudgetS = memoryBudgetS;
+		this.spillDirectory = spillDirectory;
+	}
+
+	/**
+	 * @param memoryBudgetT: bytes of heap that the values of T may take, 0 for unlimited.
+	 * @param spillDirectory: local directory for the values of T that exceed it.
+	 */
+	public void setMemoryBudgetT(long memoryBudgetT, File spillDirectory) {
+		this.memoryBudgetT = memoryBudgetT;
+		this.spillDirectory = spillDirectory;
+	}
+
+	public long getCounterOutput() {
+		return counterOutput;
+	}
+
+	public long getCounterOutputCompletedLongMax() {
+		return counterOutputCompletedLongMax;
+	}
+
+}
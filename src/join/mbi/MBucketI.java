@@ -13,27 +13,28 @@
 
 package join.mbi;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.Map.Entry;
-import java.util.NavigableMap;
-import java.util.Set;
-import java.util.TreeMap;
 
 import join.ThetaJoin;
-import model.BucketBoundaries;
+import join.ThetaPredicate;
+import join.mbi.MBIJoinEngine.JoinEngine;
+import join.mbi.MBIJoinEngine.JoinOutputMode;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.examples.SecondarySort.IntPair;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.NullWritable;
 import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.mapreduce.Counter;
 import org.apache.hadoop.mapreduce.CounterGroup;
 import org.apache.hadoop.mapreduce.Job;
@@ -42,16 +43,38 @@ import org.apache.hadoop.mapreduce.Partitioner;
 import org.apache.hadoop.mapreduce.Reducer;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.NullOutputFormat;
 
 import utils.importers.HistogramImporter;
 import utils.importers.PartitioningImporter;
-import utils.importers.RearrangementsImporter;
+import datatypes.LongLongHashMap;
 import datatypes.LongPair;
 import datatypes.LongTriple;
 import datatypes.exceptions.JoinException;
 
 public class MBucketI extends ThetaJoin {
 
+	/**
+	 * Format of the dataset read by the mappers and of the results written by the reducers.
+	 * 	-	TEXT: CSV dataset ("S,value") and tab separated results ("valueS\tvalueT\tmultiplicity").
+	 * 	-	BINARY: PackedRelationValueInputFormat and PackedJoinResultOutputFormat.
+	 */
+	public enum RecordFormat {
+		TEXT("TEXT"),
+		BINARY("BINARY");
+		
+		String format;
+		
+		private RecordFormat(String format) {
+			this.format = format;
+		}
+		
+		@Override
+		public String toString() {
+			return format;
+		}
+	}
+
 	private int buckets;
 	private String query;
 	private int numReducers;
@@ -62,13 +85,25 @@ public class MBucketI extends ThetaJoin {
 	private Path histogramIndexToPartitionsMapping;
 	private Path partitionToCellsMapping;
 	
+	private JoinEngine joinEngine = JoinEngine.TREE_MAP;
+	private JoinOutputMode joinOutputMode = JoinOutputMode.MATERIALIZE;
+	private RecordFormat inputFormat = RecordFormat.TEXT;
+	private RecordFormat outputFormat = RecordFormat.TEXT;
+	private boolean compressedMapOutput = false;
+	private boolean mapperAllocationProbe = false;
+	private long maxReducerInput = 0; // 0: no skew handling
+	private Path counts = null; // counts.csv of the histograms, for the skew handling
+	private long reducerMemoryBudgetS = 0; // bytes, 0: S is kept in memory
+	private long reducerMemoryBudgetT = 0; // bytes, 0: T is kept in memory
+	private SkewHandler skewHandler = new SkewHandler();
+	
 	private final static Path outputMBucketI = new Path("btj/mbi");
 	
 	private long executionTime;
 	
 	private HashMap<String, LongTriple> countersMBucketIPartitionsInOut = new HashMap<String,LongTriple>();
 
-	public MBucketI(int buckets, String query, int numPartitions, int jobMaxExecutionHours, Path dataset,Path boundaries,Path rearrangements, Path histogramIndexToPartitionsMapping, Path groupToCellMapping) {
+	public MBucketI(int buckets, String query, int numPartitions, int jobMaxExecutionHours, Path dataset,Path boundaries,Path rearrangements, Path histogramIndexToPartitionsMapping, Path partitionToCellsMapping) {
 		this.buckets = buckets;
 		this.query = query;
 		this.numReducers = numPartitions;
@@ -80,81 +115,264 @@ public class MBucketI extends ThetaJoin {
 		this.partitionToCellsMapping = partitionToCellsMapping;
 	}
 
-	public static class MBIMapper extends
-	Mapper<LongWritable, Text, IntPair, LongWritable> {
+	/**
+	 * Dense form of the histogram index to partitions mapping.
+	 * Histogram indices without partitions (pruned) get an empty array.
+	 */
+	static int[][] toPartitionsArray(HashMap<Integer,ArrayList<Integer>> hm, int buckets) {
+		int[][] partitions = new int[buckets][];
+		for (int i = 0 ; i < buckets; ++i) {
+			ArrayList<Integer> al = hm.get(i);
+			if (al == null) {
+				partitions[i] = new int[0];
+			} else {
+				partitions[i] = new int[al.size()];
+				for (int j = 0 ; j < al.size(); ++j) {
+					partitions[i][j] = al.get(j);
+				}
+			}
+		}
+		return partitions;
+	}
 
-		private BucketBoundaries[] boundariesS;
-		private BucketBoundaries[] boundariesT;
+	/**
+	 * Common part of the mappers of MBucketI, whatever the format of the input.
+	 * Each value is sent to all the partitions that its histogram index is mapped to.
+	 * 
+	 * With compressedMapOutput, equal values are first aggregated inside of the mapper
+	 * (as in EquiDepthHistograms1Compressed) and each distinct value is sent once per
+	 * partition, together with its duplication: (partition, relation) -> (value, duplication).
+	 * The aggregation is flushed whenever it holds compressedMapOutputMaxValues values.
+	 * 
+	 * The histogram index to partitions mapping is kept as dense int[][] arrays and the
+	 * output key/value objects are reused, so that emitting a record does not allocate.
+	 * With mapperAllocationProbe, the bytes allocated by map() are measured (AllocationProbe)
+	 * and reported at the counter group "mapperAllocation".
+	 * 
+	 * With skewSplits (see SkewHandler), the split side of an oversized partition is sent
+	 * round-robin to its virtual partitions, while the other side is sent to all of them.
+	 * 
+	 * With the STREAMING_MERGE join engine, the value is moved into the key for the
+	 * secondary sort: PartitionRelationValue -> NullWritable, or -> duplication with
+	 * compressedMapOutput.
+	 */
+	public static abstract class AbstractMBIMapper<KEYIN, VALUEIN> extends
+	Mapper<KEYIN, VALUEIN, Writable, Writable> {
 
-		private int[] defaultToRearrangedS = null;
-		private int[] defaultToRearrangedT = null;
+		private HistogramIndexer histogramIndexer;
+		
+		private int[][] partitionsS; // histogram index -> partitions
+		private int[][] partitionsT;
+		
+		private IntPair outKey = new IntPair();
+		private LongWritable outValue = new LongWritable();
+		private LongPair outValueCompressed = new LongPair();
+		private PartitionRelationValue outKeySorted = new PartitionRelationValue();
+		
+		private boolean secondarySort;
+		
+		private AllocationProbe allocationProbe = null;
 		
-		private HashMap<Integer,ArrayList<Integer>> hmS;
-		private HashMap<Integer,ArrayList<Integer>> hmT;
+		private int[][] splitTargetsS; // partition -> virtual partitions, if its S is split
+		private int[][] splitTargetsT;
+		private int[] splitRoundRobin;
 		
-		private final int relID_S = 0;
-		private final int relID_T = 1;
+		private boolean compressedMapOutput;
+		private int compressedMapOutputMaxValues;
+		private LongLongHashMap valueReplicationS;
+		private LongLongHashMap valueReplicationT;
+		
+		protected final int relID_S = 0;
+		protected final int relID_T = 1;
 		
 		@Override
 		protected void setup(Context context) throws IOException, InterruptedException {
 			Configuration conf = context.getConfiguration();
-			// Boundaries
-			int buckets = Integer.valueOf(conf.get("buckets"));
-			Path boundaries = new Path(conf.get("boundaries"));
 			
-			boundariesS = new HistogramImporter().importBoundaries("S", buckets, boundaries);
-			boundariesT = new HistogramImporter().importBoundaries("T", buckets, boundaries);
+			compressedMapOutput = conf.getBoolean("compressedMapOutput", false);
+			compressedMapOutputMaxValues = conf.getInt("compressedMapOutputMaxValues", 1000000);
+			valueReplicationS = new LongLongHashMap(1024);
+			valueReplicationT = new LongLongHashMap(1024);
 			
-			// Rearrangements
-			if(!conf.get("rearrangements").equals("/")) {
-				Path rearrangements = new Path(conf.get("rearrangements"));
-				
-				defaultToRearrangedS = new RearrangementsImporter().importDefaultToRearranged("S", buckets, rearrangements);
-				defaultToRearrangedT = new RearrangementsImporter().importDefaultToRearranged("T", buckets, rearrangements);
-			} else {
-				defaultToRearrangedS = new int[buckets];
-				defaultToRearrangedT = new int[buckets];
-				
-				for(int i = 0 ; i < buckets; ++i) {
-					defaultToRearrangedS[i] = i;
-					defaultToRearrangedT[i] = i;
-				}
-			}
+			// Boundaries - Rearrangements
+			int buckets = Integer.valueOf(conf.get("buckets"));
+			histogramIndexer = HistogramIndexer.load(buckets, new Path(conf.get("boundaries")), new Path(conf.get("rearrangements")));
 			
 			// Mapping
 			Path histogramIndexToPartitionsMapping = new Path(conf.get("histogramIndexToPartitionsMapping"));
 			
-			hmS = new HashMap<Integer,ArrayList<Integer>>();
-			hmT = new HashMap<Integer,ArrayList<Integer>>();
+			HashMap<Integer,ArrayList<Integer>> hmS = new HashMap<Integer,ArrayList<Integer>>();
+			HashMap<Integer,ArrayList<Integer>> hmT = new HashMap<Integer,ArrayList<Integer>>();
 			new PartitioningImporter().importHistogramIndexToPartitionsMapping(hmS, hmT, histogramIndexToPartitionsMapping);
+			
+			partitionsS = toPartitionsArray(hmS, buckets);
+			partitionsT = toPartitionsArray(hmT, buckets);
+			
+			// Skew
+			SkewHandler skewHandler = SkewHandler.parse(conf.get("skewSplits"));
+			partitionsS = skewHandler.replicate(partitionsS, true);
+			partitionsT = skewHandler.replicate(partitionsT, false);
+			splitTargetsS = skewHandler.splitTargets(true);
+			splitTargetsT = skewHandler.splitTargets(false);
+			splitRoundRobin = new int[Math.max(splitTargetsS.length, splitTargetsT.length)];
+			
+			secondarySort = JoinEngine.valueOf(conf.get("joinEngine", JoinEngine.TREE_MAP.toString())) == JoinEngine.STREAMING_MERGE;
+			
+			if (conf.getBoolean("mapperAllocationProbe", false)) {
+				allocationProbe = new AllocationProbe();
+			}
 		}
 		
 		public int valueToBoundaryIndex(long value, boolean isRelationS) {
+			return histogramIndexer.valueToBoundaryIndex(value, isRelationS);
+		}
+		
+		@Override
+		protected void map(KEYIN key, VALUEIN value, Context context)
+				throws IOException, InterruptedException {
+			if (allocationProbe == null) {
+				mapRecord(key, value, context);
+			} else {
+				allocationProbe.begin();
+				mapRecord(key, value, context);
+				allocationProbe.end();
+			}
+		}
+		
+		protected abstract void mapRecord(KEYIN key, VALUEIN value, Context context)
+				throws IOException, InterruptedException;
+		
+		@Override
+		protected void cleanup(Context context) throws IOException, InterruptedException {
+			flushValueReplication(context);
+			
+			if (allocationProbe != null && allocationProbe.isSupported()) {
+				context.getCounter("mapperAllocation", "records").increment(allocationProbe.getMeasurements());
+				context.getCounter("mapperAllocation", "allocatedBytes").increment(allocationProbe.getAllocatedBytes());
+			}
 			
-			BucketBoundaries[] boundaries = (isRelationS ? boundariesS : boundariesT);
-			
-			int start = 0;
-		    int end = boundaries.length - 1;
-		    int middle;
-		    
-		    while (start <= end) 
-		    {
-		        middle = start + (end - start)/2;
-		        if (boundaries[middle].getFrom() <= value && value <= boundaries[middle].getTo()) {
-		            return (isRelationS?defaultToRearrangedS:defaultToRearrangedT)[middle];
-		        } else if (value < boundaries[middle].getFrom()) {
-		            end = middle - 1;
-		        } else if (boundaries[middle].getTo() < value) {
-		        	start = middle + 1;
-		        }
-		    }
-		    return -1;
+			super.cleanup(context);
 		}
 		
+		protected void emit(long value, boolean isRelationS, Context context)
+				throws IOException, InterruptedException {
+			if (!compressedMapOutput) {
+				write(value, 1, isRelationS, context);
+				return;
+			}
+			
+			(isRelationS ? valueReplicationS : valueReplicationT).add(value, 1);
+			
+			if (valueReplicationS.size() + valueReplicationT.size() >= compressedMapOutputMaxValues) {
+				flushValueReplication(context);
+			}
+		}
+		
+		private void flushValueReplication(Context context) throws IOException, InterruptedException {
+			for (int i = 0 ; i < valueReplicationS.size(); ++i) {
+				write(valueReplicationS.getKey(i), valueReplicationS.getValue(i), true, context);
+			}
+			valueReplicationS.clear();
+			
+			for (int i = 0 ; i < valueReplicationT.size(); ++i) {
+				write(valueReplicationT.getKey(i), valueReplicationT.getValue(i), false, context);
+			}
+			valueReplicationT.clear();
+		}
+		
+		private void write(long value, long duplication, boolean isRelationS, Context context)
+				throws IOException, InterruptedException {
+			int histogramsIndex = valueToBoundaryIndex(value, isRelationS);
+			
+			// Outside of the histograms
+			if (histogramsIndex < 0) {
+				return;
+			}
+			
+			// If not pruned by our algorithm, needs to be sent.
+			int[] partitions = (isRelationS ? partitionsS : partitionsT)[histogramsIndex];
+			
+			int[][] splitTargets = isRelationS ? splitTargetsS : splitTargetsT;
+			
+			for (int i = 0 ; i < partitions.length; ++i){
+				int partition = partitions[i];
+				if (partition < splitTargets.length && splitTargets[partition] != null) {
+					int[] virtualPartitions = splitTargets[partition];
+					partition = virtualPartitions[splitRoundRobin[partitions[i]]];
+					splitRoundRobin[partitions[i]] = (splitRoundRobin[partitions[i]] + 1) % virtualPartitions.length;
+				}
+				
+				if (secondarySort) {
+					outKeySorted.set(partition, isRelationS?relID_S:relID_T, value);
+					if (compressedMapOutput) {
+						outValue.set(duplication);
+						context.write(outKeySorted, outValue);
+					} else {
+						context.write(outKeySorted, NullWritable.get());
+					}
+					continue;
+				}
+				
+				outKey.set(partition,isRelationS?relID_S:relID_T);
+				
+				if (compressedMapOutput) {
+					outValueCompressed.set(value, duplication);
+					context.write(outKey,outValueCompressed);
+				} else {
+					outValue.set(value);
+					context.write(outKey,outValue);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Mapper for the CSV dataset: "S,value" or "T,value" per line.
+	 * 
+	 * Well-formed lines are parsed directly from the bytes of the Text, without
+	 * creating Strings. Anything else falls back to String splitting.
+	 */
+	public static class MBIMapper extends AbstractMBIMapper<LongWritable, Text> {
+		
+		private static final int MAX_FAST_DIGITS = 18; // cannot overflow a long
+		
 		@Override
-		protected void map(LongWritable key, Text value,Context context)
+		protected void mapRecord(LongWritable key, Text value,Context context)
+				throws IOException, InterruptedException {
+			byte[] bytes = value.getBytes();
+			int length = value.getLength();
+			
+			if (length >= 3 && bytes[1] == ',' && (bytes[0] == 'S' || bytes[0] == 'T')) {
+				int pos = 2;
+				boolean negative = false;
+				if (bytes[pos] == '-') {
+					negative = true;
+					++pos;
+				}
+				
+				int digits = length - pos;
+				if (digits > 0 && digits <= MAX_FAST_DIGITS) {
+					long number = 0;
+					for (; pos < length; ++pos) {
+						int digit = bytes[pos] - '0';
+						if (digit < 0 || digit > 9) {
+							break;
+						}
+						number = number * 10 + digit;
+					}
+					
+					if (pos == length) {
+						emit(negative ? -number : number, bytes[0] == 'S', context);
+						return;
+					}
+				}
+			}
+			
+			mapLine(value.toString(), context);
+		}
+		
+		private void mapLine(String line, Context context)
 				throws IOException, InterruptedException {
-			String line = value.toString();
 			
 			if (line.trim().equals("")) {
 				return;
@@ -162,314 +380,458 @@ public class MBucketI extends ThetaJoin {
 			
 			String[] strToks = line.split(",");
 
-			if (strToks != null) {				
+			if (strToks.length >= 2) {				
 				
 				boolean isRelationS = strToks[0].equals("S");
 				
-				ArrayList<Integer> al = null;
-
-				int histogramsIndex = -1;
 				try {
-					histogramsIndex = valueToBoundaryIndex(Integer.parseInt(strToks[1]), isRelationS);
-					
-					al = ( isRelationS ? hmS : hmT).get(histogramsIndex);
-					
-					// If not pruned by our algorithm, needs to be sent.
-					if (al != null) {
-						for (int i = 0 ; i < al.size(); ++i){
-							IntPair ip = new IntPair();
-							ip.set(al.get(i),isRelationS?relID_S:relID_T);
-							
-							context.write(ip,new LongWritable(Long.valueOf(strToks[1])));
-						}
-					}
-				} catch (Exception e) {
+					emit(Long.parseLong(strToks[1]), isRelationS, context);
+				} catch (NumberFormatException e) {
 					e.printStackTrace();
 				}
 			}
 		}
 	}
 	
-	public static class MBIPartitioner extends Partitioner<IntPair,LongWritable> {
+	/**
+	 * Mapper for the binary dataset of PackedRelationValueInputFormat.
+	 */
+	public static class MBIBinaryMapper extends AbstractMBIMapper<IntWritable, LongWritable> {
+		
+		@Override
+		protected void mapRecord(IntWritable key, LongWritable value,Context context)
+				throws IOException, InterruptedException {
+			emit(value.get(), key.get() == relID_S, context);
+		}
+	}
+	
+	public static class MBIPartitioner extends Partitioner<IntPair,Writable> {
 	    @Override
-	    public int getPartition(IntPair key, LongWritable value, int numPartitions) {
+	    public int getPartition(IntPair key, Writable value, int numPartitions) {
 	    	return key.getFirst()%numPartitions;
 	    }
 	}
 	
-	public static class MBIReducer extends Reducer<IntPair, LongWritable, Text, NullWritable> {
-		private TreeMap<Long,Long> sValuesDuplication = new TreeMap<Long,Long>();
-		private TreeMap<Long,Integer> sValuesToHistogramMapping = new TreeMap<Long, Integer>(); // Mapping of S values to their histogram index
-		
-		private HashMap<Integer,HashSet<datatypes.IntPair>> partitionToCellsMapping;
-		
-		private int buckets;
-		private BucketBoundaries[] boundariesS;
-		private BucketBoundaries[] boundariesT;
-		
-		private int[] defaultToRearrangedS;
-		private int[] defaultToRearrangedT;
-		
-		private long counterInput = 0;
-		
-		private long counterOutput = 0;
-		private long counterOutputCompletedLongMax = 0; // How many times counterOutput completed LONG_MAX
-		
-		private LongPair[] queryParts;
-		
-		//private long maxMemory;
-		//private long memoryCounter;
-		
-		private final int relID_S = 0;
-		private final int relID_T = 1;
+	public static class MBISortedPartitioner extends Partitioner<PartitionRelationValue,Writable> {
+	    @Override
+	    public int getPartition(PartitionRelationValue key, Writable value, int numPartitions) {
+	    	return key.getPartition()%numPartitions;
+	    }
+	}
+	
+	/**
+	 * Combiner of the compressedMapOutput: sums the duplications of equal values
+	 * sent to the same partition by the same relation.
+	 */
+	public static class MBICombinerCompressed extends Reducer<IntPair, LongPair, IntPair, LongPair> {
+		private LongLongHashMap valueReplication = new LongLongHashMap(1024);
+		private LongPair outValue = new LongPair();
 		
 		@Override
-		protected void setup(org.apache.hadoop.mapreduce.Reducer.Context context)
-			throws IOException, InterruptedException {
-			super.setup(context);
-			
-			Configuration conf = context.getConfiguration();
-			
-			queryParts = getQueryParts(context.getConfiguration().get("query"));
-			//maxMemory = Runtime.getRuntime().maxMemory();
-			//memoryCounter = 0;
-			
-			// Mapping
-			partitionToCellsMapping = new PartitioningImporter().importPartitionToCellsMapping(new Path(conf.get("partitionToCellsMapping")));
+		protected void reduce(IntPair key, Iterable<LongPair> values,Context context) throws IOException, InterruptedException {
 			
-			// Boundaries
-			buckets = Integer.valueOf(conf.get("buckets"));
-			Path boundaries = new Path(conf.get("boundaries"));
+			valueReplication.clear();
 			
-			boundariesS = new HistogramImporter().importBoundaries("S", buckets, boundaries);
-			boundariesT = new HistogramImporter().importBoundaries("T", buckets, boundaries);
+			Iterator<LongPair> itValues = values.iterator();
+			while (itValues.hasNext()) {
+				LongPair lp = itValues.next();
+				valueReplication.add(lp.getFirst(), lp.getSecond());
+			}
 			
-			// Rearrangements
-			if(!conf.get("rearrangements").equals("/")) {
-				Path rearrangements = new Path(conf.get("rearrangements"));
-				
-				defaultToRearrangedS = new RearrangementsImporter().importDefaultToRearranged("S", buckets, rearrangements);
-				defaultToRearrangedT = new RearrangementsImporter().importDefaultToRearranged("T", buckets, rearrangements);
-			} else {
-				defaultToRearrangedS = new int[buckets];
-				defaultToRearrangedT = new int[buckets];
-				
-				for(int i = 0 ; i < buckets; ++i) {
-					defaultToRearrangedS[i] = i;
-					defaultToRearrangedT[i] = i;
-				}
+			for (int i = 0 ; i < valueReplication.size(); ++i) {
+				outValue.set(valueReplication.getKey(i), valueReplication.getValue(i));
+				context.write(key,outValue);
 			}
 		}
+	}
+	
+	/**
+	 * Combiner of the compressedMapOutput with secondary sort: sums the duplications
+	 * of equal keys (partition, relation, value).
+	 */
+	public static class MBISortedCombinerCompressed extends Reducer<PartitionRelationValue, LongWritable, PartitionRelationValue, LongWritable> {
+		private PartitionRelationValue outKey = new PartitionRelationValue();
+		private LongWritable outValue = new LongWritable();
 		
 		@Override
-		protected void cleanup(org.apache.hadoop.mapreduce.Reducer.Context context)
-			throws IOException, InterruptedException {
-			
-			String strID = String.valueOf(context.getTaskAttemptID().getTaskID().getId());
+		protected void reduce(PartitionRelationValue key, Iterable<LongWritable> values,Context context) throws IOException, InterruptedException {
+			int relation = key.getRelation();
+			long value = key.getValue();
+			long duplication = 0;
 			
-			context.getCounter("reducerInput", strID).setValue(counterInput);
-			context.getCounter("reducerOutput", strID).setValue(counterOutput);
-			context.getCounter("reducerOutputCompletedLongMax", strID).setValue(counterOutputCompletedLongMax);
+			/*	The key changes along with the values, in case the combiner groups more than equal keys.	*/
+			for (LongWritable lw : values) {
+				if (key.getRelation() != relation || key.getValue() != value) {
+					outKey.set(key.getPartition(), relation, value);
+					outValue.set(duplication);
+					context.write(outKey, outValue);
+					
+					relation = key.getRelation();
+					value = key.getValue();
+					duplication = 0;
+				}
+				duplication += lw.get();
+			}
 			
-			super.cleanup(context);
+			outKey.set(key.getPartition(), relation, value);
+			outValue.set(duplication);
+			context.write(outKey, outValue);
 		}
-		
-		public int valueToBoundaryIndex(long value, boolean isRelationS) {
-			
-			BucketBoundaries[] boundaries = (isRelationS ? boundariesS : boundariesT);
-			
-			int start = 0;
-		    int end = boundaries.length - 1;
-		     
-		    while (start <= end) 
-		    {
-		        int middle = start + (end - start)/2;
-		        if (boundaries[middle].getFrom() <= value && value <= boundaries[middle].getTo()) {
-		            return (isRelationS?defaultToRearrangedS:defaultToRearrangedT)[middle];
-		        } else if (value < boundaries[middle].getFrom()) {
-		            end = middle - 1;
-		        } else if (boundaries[middle].getTo() < value) {
-		        	start = middle + 1;
-		        }
-		    }
-		    return -1;
+	}
+	
+	/**
+	 * Reducer of the (uncompressed) map output: every value has a duplication of 1.
+	 */
+	public static class MBIReducer extends AbstractMBIReducer<LongWritable> {
+		@Override
+		protected long getValue(LongWritable value) {
+			return value.get();
 		}
 		
-		private static LongPair[] getQueryParts(String query) {
-			String[] queryToks = query.trim().split("_");
-			
-			LongPair[] queryParts = new LongPair[queryToks.length];
-			
-			for (int i = 0 ; i < queryToks.length; ++i) {
-				String[] toks = queryToks[i].substring(1,queryToks[i].length()-1).split("\\|");
-				queryParts[i] = new LongPair(Integer.valueOf(toks[0]), Integer.valueOf(toks[1]));
-			}
-			
-			return queryParts;
+		@Override
+		protected long getDuplication(LongWritable value) {
+			return 1;
+		}
+	}
+	
+	/**
+	 * Reducer of the compressedMapOutput: values arrive as (value, duplication).
+	 */
+	public static class MBIReducerCompressed extends AbstractMBIReducer<LongPair> {
+		@Override
+		protected long getValue(LongPair value) {
+			return value.getFirst();
 		}
 		
-		private void join(int key, long valueT, long duplicationT, int histogramIndexT, boolean[][] partitionCellsBitmap, Context context) 
-				throws IOException, InterruptedException {
-			//if( ((valueT + lp.getFirst()) <= valueS) && (valueS <= (valueT + lp.getSecond()) ) ) {
-			
-			for(LongPair lp : queryParts){
-				
-				long lowestValueT = valueT + lp.getFirst();
-				long highestValueT = valueT + lp.getSecond();
-				
-				Long lowestS = sValuesDuplication.ceilingKey(lowestValueT);
-				if (lowestS == null) {
-					continue;
-				}
-				if (lowestS > highestValueT) {
-					continue;
-				}
-				Long highestS = sValuesDuplication.floorKey(highestValueT);
-				if (highestS == null) {
-					continue;
-				}
-				if(highestS < lowestValueT) {
-					continue;
-				}
-				 
-				NavigableMap<Long,Long> possibleDuplicationS =  sValuesDuplication.subMap(lowestS, true, highestS, true);
-				NavigableMap<Long,Integer> possibleHistogramS =  sValuesToHistogramMapping.subMap(lowestS, true, highestS, true);
-				
-				if(possibleDuplicationS.size() == 0) {
-					continue;
-				}
-				
-				Iterator<Entry<Long,Long>> itValuesSD = possibleDuplicationS.entrySet().iterator();
-				Iterator<Entry<Long,Integer>> itValuesSHM = possibleHistogramS.entrySet().iterator();
-				
-				while(itValuesSD.hasNext()) {
-					Entry<Long,Long> entrySD = itValuesSD.next();
-					long valueS = entrySD.getKey();
-					long duplicationS = entrySD.getValue();
-					
-					Entry<Long, Integer> entrySHM = itValuesSHM.next();
-					int histogramIndexS = entrySHM.getValue();
-					
-					if(partitionCellsBitmap[histogramIndexS][histogramIndexT]) {
-						if((Long.MAX_VALUE - counterOutput) <= (duplicationS*duplicationT)){
-							++counterOutputCompletedLongMax;
-							
-							counterOutput = duplicationS*duplicationT - (Long.MAX_VALUE - counterOutput);
-						} else {
-							counterOutput += duplicationS*duplicationT;
-						}
-						
-						String result;
-						
-						result = new String(valueS + "\t" + valueT);
-						result += "\t"+duplicationS*duplicationT;
-						
-						context.write(new Text(result), NullWritable.get());
-					}
-				}
-			}
+		@Override
+		protected long getDuplication(LongPair value) {
+			return value.getSecond();
 		}
+	}
+	
+	/**
+	 * Reducer of the secondary sort (uncompressed): every value has a duplication of 1.
+	 */
+	public static class MBISortedReducer extends AbstractMBISortedReducer<NullWritable> {
+		@Override
+		protected long getDuplication(NullWritable value) {
+			return 1;
+		}
+	}
+	
+	/**
+	 * Reducer of the secondary sort with compressedMapOutput: the values are the duplications.
+	 */
+	public static class MBISortedReducerCompressed extends AbstractMBISortedReducer<LongWritable> {
+		@Override
+		protected long getDuplication(LongWritable value) {
+			return value.get();
+		}
+	}
+	
+	/**
+	 * Common part of the reducers of MBucketI with keys (partition, relation).
+	 * The values of S of a partition are given to the join engine, followed by the values of T.
+	 */
+	public static abstract class AbstractMBIReducer<VALUEIN> extends AbstractMBIJoinReducer<IntPair, VALUEIN> {
 		
 		private int previousRelation = -1;
 		
+		protected abstract long getValue(VALUEIN value);
+		
 		@Override
-		protected void reduce(IntPair key, Iterable<LongWritable> values,
+		protected void reduce(IntPair key, Iterable<VALUEIN> values,
 				Context context)
 				throws IOException, InterruptedException {
 			
-			HashSet<datatypes.IntPair> partitionCells = partitionToCellsMapping.get(key.getFirst());
-			boolean[][] partitionCellsBitmap = new boolean[buckets][buckets];
-			for(int i = 0; i < buckets; ++i) {
-				Arrays.fill(partitionCellsBitmap[i], false);
-			}
-			for(datatypes.IntPair pair: partitionCells) {
-				partitionCellsBitmap[pair.getFirst()][pair.getSecond()] = true;
-			}
-			
-			LongWritable value;
+			VALUEIN value;
 			
 			if (key.getSecond() == relID_S){
-				sValuesDuplication.clear();
+				joinEngine.clearS();
 				
 				long valueS = -1;
 				long duplicationS = 0;
 				
-				Iterator<LongWritable> itValues = values.iterator();
+				Iterator<VALUEIN> itValues = values.iterator();
 				while (itValues.hasNext()) {
 					value = itValues.next();
+					long current = getValue(value);
+					long duplication = getDuplication(value);
 					
-					++counterInput;
+					counterInput += duplication;
 					
-					if (valueS == value.get()){
-						++duplicationS;
+					if (valueS == current){
+						duplicationS += duplication;
 					} else if (valueS == -1) {
-						valueS = value.get();
-						duplicationS = 1;
+						valueS = current;
+						duplicationS = duplication;
 					} else { // the value has changed from a previous non default value
-						if (sValuesDuplication.containsKey(valueS)) {
-							duplicationS += sValuesDuplication.get(valueS);
-						}
+						joinEngine.addS(valueS, duplicationS);
 						
-						sValuesDuplication.put(valueS,duplicationS);
-						
-						valueS = value.get();
-						duplicationS = 1;
+						valueS = current;
+						duplicationS = duplication;
 					}
 				}
 				/*	Last	*/
 				if (valueS != -1){
-					if (sValuesDuplication.containsKey(valueS)) {
-						duplicationS += sValuesDuplication.get(valueS);
-					} 
-					sValuesDuplication.put(valueS,duplicationS);
+					joinEngine.addS(valueS, duplicationS);
 				}
+				
+				joinEngine.finishS();
 			} else {
 				if (key.getSecond() == relID_T && previousRelation == relID_S){
 					long valueT =-1;
 					long duplicationT =0;
 					
-					boolean isRelationS = true;
-					
-					/*	Transform tuples from S to include their histogram indices.	*/
-					sValuesToHistogramMapping.clear();
-					for(Entry<Long,Long> entry : sValuesDuplication.entrySet()) {
-						sValuesToHistogramMapping.put(entry.getKey(), valueToBoundaryIndex(entry.getKey(),isRelationS));
-					}
-					
-					isRelationS = false;
+					joinEngine.setPartitionCells(getPartitionCells(key.getFirst()));
 					
-					Iterator<LongWritable> itValues = values.iterator();
+					Iterator<VALUEIN> itValues = values.iterator();
 					while (itValues.hasNext()) {
 						value = itValues.next();
+						long current = getValue(value);
+						long duplication = getDuplication(value);
 						
-						++counterInput;
+						counterInput += duplication;
 						
 						if(valueT == -1) {
-							valueT = value.get();
-							duplicationT = 1;
-						} else if(valueT == value.get()) {
-							++duplicationT;
+							valueT = current;
+							duplicationT = duplication;
+						} else if(valueT == current) {
+							duplicationT += duplication;
 						} else { // the value has changed from a previous non default value
+							joinEngine.addT(valueT, duplicationT);
 							
-							int histogramIndexT = valueToBoundaryIndex(valueT,isRelationS);
-							
-							join(key.getFirst(),valueT,duplicationT,histogramIndexT,partitionCellsBitmap, context);					
-							valueT = value.get();
-							duplicationT = 1;
+							valueT = current;
+							duplicationT = duplication;
 						}
 					}
 					if(valueT != -1) {
-						int histogramIndexT = valueToBoundaryIndex(valueT,isRelationS);
-						join(key.getFirst(),valueT,duplicationT,histogramIndexT,partitionCellsBitmap, context);
+						joinEngine.addT(valueT, duplicationT);
 					}
 					
+					joinEngine.finishT();
 				}
 			}
 			previousRelation = key.getSecond();
 		}
 	}
 	
+	/**
+	 * Common part of the reducers of the secondary sort (STREAMING_MERGE join engine).
+	 * 
+	 * The keys (partition, relation, value) are grouped by partition, so a single reduce
+	 * call receives the values of S in ascending order, followed by the values of T in
+	 * ascending order; the key changes along with the values. Equal values are collapsed
+	 * on the fly and streamed to the join engine: no sorting, trees or buffering of T.
+	 */
+	public static abstract class AbstractMBISortedReducer<VALUEIN> extends AbstractMBIJoinReducer<PartitionRelationValue, VALUEIN> {
+		
+		@Override
+		protected void reduce(PartitionRelationValue key, Iterable<VALUEIN> values,
+				Context context)
+				throws IOException, InterruptedException {
+			
+			int partition = key.getPartition();
+			
+			joinEngine.clearS();
+			boolean isRelationS = true;
+			
+			long current = 0;
+			long duplicationCurrent = 0;
+			boolean hasCurrent = false;
+			
+			for (VALUEIN value : values) {
+				long duplication = getDuplication(value);
+				
+				if (isRelationS && key.getRelation() == relID_T) {
+					/*	Last of S	*/
+					if (hasCurrent) {
+						joinEngine.addS(current, duplicationCurrent);
+					}
+					joinEngine.finishS();
+					
+					/*	Without S, the values of T are neither joined nor counted.	*/
+					if (!hasCurrent) {
+						return;
+					}
+					
+					joinEngine.setPartitionCells(getPartitionCells(partition));
+					isRelationS = false;
+					hasCurrent = false;
+				}
+				
+				counterInput += duplication;
+				
+				if (hasCurrent && key.getValue() == current) {
+					duplicationCurrent += duplication;
+				} else {
+					if (hasCurrent) {
+						add(current, duplicationCurrent, isRelationS);
+					}
+					current = key.getValue();
+					duplicationCurrent = duplication;
+					hasCurrent = true;
+				}
+			}
+			
+			if (hasCurrent) {
+				add(current, duplicationCurrent, isRelationS);
+			}
+			
+			if (isRelationS) {
+				joinEngine.finishS();
+			} else {
+				joinEngine.finishT();
+			}
+		}
+		
+		private void add(long value, long duplication, boolean isRelationS) throws IOException, InterruptedException {
+			if (isRelationS) {
+				joinEngine.addS(value, duplication);
+			} else {
+				joinEngine.addT(value, duplication);
+			}
+		}
+	}
+	
+	/**
+	 * Common part of all the reducers of MBucketI: the cells of the partitions, the
+	 * join engine and the counters.
+	 */
+	public static abstract class AbstractMBIJoinReducer<KEYIN, VALUEIN> extends Reducer<KEYIN, VALUEIN, Writable, NullWritable> {
+		private HashMap<Integer,HashSet<datatypes.IntPair>> partitionToCellsMapping;
+		private PartitionCells[] partitionCells; // partition -> cells, cached across keys
+		private SkewHandler skewHandler;
+		
+		private int buckets;
+		
+		private HistogramIndexer histogramIndexer;
+		
+		protected MBIJoinEngine joinEngine;
+		
+		protected long counterInput = 0;
+		
+		//private long maxMemory;
+		//private long memoryCounter;
+		
+		protected final int relID_S = 0;
+		protected final int relID_T = 1;
+		
+		@Override
+		protected void setup(final Context context)
+			throws IOException, InterruptedException {
+			super.setup(context);
+			
+			Configuration conf = context.getConfiguration();
+			
+			ThetaPredicate[] queryParts = MBIJoinEngine.getQueryParts(conf.get("query"));
+			//maxMemory = Runtime.getRuntime().maxMemory();
+			//memoryCounter = 0;
+			
+			// Mapping
+			partitionToCellsMapping = new PartitioningImporter().importPartitionToCellsMapping(new Path(conf.get("partitionToCellsMapping")));
+			skewHandler = SkewHandler.parse(conf.get("skewSplits"));
+			
+			/*	Cells of the partitions assigned to this reducer by MBIPartitioner.	*/
+			int maxPartition = -1;
+			for (int partition : partitionToCellsMapping.keySet()) {
+				maxPartition = Math.max(maxPartition, partition);
+			}
+			partitionCells = new PartitionCells[maxPartition + 1];
+			
+			int numReduceTasks = context.getNumReduceTasks();
+			int taskId = context.getTaskAttemptID().getTaskID().getId();
+			for (int partition = 0 ; partition <= maxPartition; ++partition) {
+				if (numReduceTasks <= 1 || partition % numReduceTasks == taskId) {
+					partitionCells[partition] = new PartitionCells(partitionToCellsMapping.get(partition));
+				}
+			}
+			
+			// Boundaries - Rearrangements
+			buckets = Integer.valueOf(conf.get("buckets"));
+			histogramIndexer = HistogramIndexer.load(buckets, new Path(conf.get("boundaries")), new Path(conf.get("rearrangements")));
+			
+			// Join engine
+			JoinEngine engine = JoinEngine.valueOf(conf.get("joinEngine", JoinEngine.TREE_MAP.toString()));
+			RecordFormat outputFormat = RecordFormat.valueOf(conf.get("outputFormat", RecordFormat.TEXT.toString()));
+			
+			MBIJoinEngine.ResultCollector collector;
+			if (outputFormat == RecordFormat.BINARY) {
+				collector = new MBIJoinEngine.ResultCollector() {
+					private LongTriple result = new LongTriple();
+					
+					@Override
+					public void collect(long valueS, long valueT, long multiplicity) throws IOException, InterruptedException {
+						result.set(valueS, valueT, multiplicity);
+						context.write(result, NullWritable.get());
+					}
+				};
+			} else {
+				collector = new MBIJoinEngine.ResultCollector() {
+					private Text result = new Text();
+					
+					@Override
+					public void collect(long valueS, long valueT, long multiplicity) throws IOException, InterruptedException {
+						result.set(valueS + "\t" + valueT + "\t" + multiplicity);
+						context.write(result, NullWritable.get());
+					}
+				};
+			}
+			joinEngine = MBIJoinEngine.create(engine, queryParts, histogramIndexer, collector);
+			joinEngine.setOutputMode(JoinOutputMode.valueOf(conf.get("joinOutputMode", JoinOutputMode.MATERIALIZE.toString())));
+			
+			// Memory budgets of S and T, spills at the local directory of the job
+			long memoryBudgetS = conf.getLong("reducerMemoryBudgetS", 0);
+			long memoryBudgetT = conf.getLong("reducerMemoryBudgetT", 0);
+			if (memoryBudgetS > 0 || memoryBudgetT > 0) {
+				File spillDirectory = new File(conf.get("job.local.dir", System.getProperty("java.io.tmpdir")));
+				spillDirectory.mkdirs();
+				joinEngine.setMemoryBudgetS(memoryBudgetS, spillDirectory);
+				joinEngine.setMemoryBudgetT(memoryBudgetT, spillDirectory);
+			}
+		}
+		
+		@Override
+		protected void cleanup(Context context)
+			throws IOException, InterruptedException {
+			
+			String strID = String.valueOf(context.getTaskAttemptID().getTaskID().getId());
+			
+			context.getCounter("reducerInput", strID).setValue(counterInput);
+			context.getCounter("reducerOutput", strID).setValue(joinEngine.getCounterOutput());
+			context.getCounter("reducerOutputCompletedLongMax", strID).setValue(joinEngine.getCounterOutputCompletedLongMax());
+			
+			joinEngine.close();
+			
+			super.cleanup(context);
+		}
+		
+		public int valueToBoundaryIndex(long value, boolean isRelationS) {
+			return histogramIndexer.valueToBoundaryIndex(value, isRelationS);
+		}
+		
+		/**
+		 * The cells of a partition that was not expected at this reducer (or of a virtual
+		 * partition of the SkewHandler) are built on demand.
+		 */
+		protected PartitionCells getPartitionCells(int partition) {
+			if (partition >= partitionCells.length) {
+				partitionCells = Arrays.copyOf(partitionCells, partition + 1);
+			}
+			if (partitionCells[partition] == null) {
+				partitionCells[partition] = new PartitionCells(partitionToCellsMapping.get(skewHandler.originalPartition(partition)));
+			}
+			return partitionCells[partition];
+		}
+		
+		protected abstract long getDuplication(VALUEIN value);
+	}
+	
 	public void join() throws JoinException {
+		if ((reducerMemoryBudgetS > 0 || reducerMemoryBudgetT > 0) && joinEngine != JoinEngine.SORTED_RUN) {
+			throw new JoinException("ERROR - MBucketI#join(), the reducer memory budgets are only supported by the SORTED_RUN join engine.");
+		}
+		
 		try {
 			Configuration conf = new Configuration();
 
@@ -494,6 +856,23 @@ public class MBucketI extends ThetaJoin {
 			conf.set("rearrangements",rearrangements.toString());
 			conf.set("histogramIndexToPartitionsMapping", histogramIndexToPartitionsMapping.toString());
 			conf.set("partitionToCellsMapping", partitionToCellsMapping.toString());
+			conf.set("joinEngine", joinEngine.toString());
+			conf.set("joinOutputMode", joinOutputMode.toString());
+			conf.set("inputFormat", inputFormat.toString());
+			conf.set("outputFormat", outputFormat.toString());
+			conf.setBoolean("compressedMapOutput", compressedMapOutput);
+			conf.setBoolean("mapperAllocationProbe", mapperAllocationProbe);
+			conf.setLong("reducerMemoryBudgetS", reducerMemoryBudgetS);
+			conf.setLong("reducerMemoryBudgetT", reducerMemoryBudgetT);
+			
+			int numReduceTasks = numReducers;
+			if (maxReducerInput > 0) {
+				skewHandler = planSkew();
+				conf.set("skewSplits", skewHandler.toString());
+				numReduceTasks += skewHandler.getExtraPartitions();
+				
+				System.out.println("Skew splits (partition,side,virtual partitions): " + skewHandler.toString());
+			}
 
 			Job job = new Job(conf, "MBucketI");
 			
@@ -504,17 +883,51 @@ public class MBucketI extends ThetaJoin {
 
 			job.setJarByClass(MBucketI.class);
 
-			job.setMapperClass(MBIMapper.class);
-			job.setPartitionerClass(MBIPartitioner.class);
-			job.setReducerClass(MBIReducer.class);
-
-			job.setMapOutputKeyClass(IntPair.class);
-			job.setMapOutputValueClass(LongWritable.class);
+			if (inputFormat == RecordFormat.BINARY) {
+				job.setInputFormatClass(PackedRelationValueInputFormat.class);
+				job.setMapperClass(MBIBinaryMapper.class);
+			} else {
+				job.setMapperClass(MBIMapper.class);
+			}
+			if (joinEngine == JoinEngine.STREAMING_MERGE) {
+				/*	Secondary sort: (partition, relation, value), grouped by partition.	*/
+				job.setPartitionerClass(MBISortedPartitioner.class);
+				job.setGroupingComparatorClass(PartitionRelationValue.GroupingComparator.class);
+				job.setMapOutputKeyClass(PartitionRelationValue.class);
+				if (compressedMapOutput) {
+					job.setCombinerClass(MBISortedCombinerCompressed.class);
+					job.setReducerClass(MBISortedReducerCompressed.class);
+					job.setMapOutputValueClass(LongWritable.class);
+				} else {
+					job.setReducerClass(MBISortedReducer.class);
+					job.setMapOutputValueClass(NullWritable.class);
+				}
+			} else if (compressedMapOutput) {
+				job.setPartitionerClass(MBIPartitioner.class);
+				job.setMapOutputKeyClass(IntPair.class);
+				job.setCombinerClass(MBICombinerCompressed.class);
+				job.setReducerClass(MBIReducerCompressed.class);
+				job.setMapOutputValueClass(LongPair.class);
+			} else {
+				job.setPartitionerClass(MBIPartitioner.class);
+				job.setMapOutputKeyClass(IntPair.class);
+				job.setReducerClass(MBIReducer.class);
+				job.setMapOutputValueClass(LongWritable.class);
+			}
 
-			job.setOutputKeyClass(Text.class);
+			if (joinOutputMode != JoinOutputMode.MATERIALIZE) {
+				/*	Only the counters are needed.	*/
+				job.setOutputFormatClass(NullOutputFormat.class);
+				job.setOutputKeyClass(Text.class);
+			} else if (outputFormat == RecordFormat.BINARY) {
+				job.setOutputFormatClass(PackedJoinResultOutputFormat.class);
+				job.setOutputKeyClass(LongTriple.class);
+			} else {
+				job.setOutputKeyClass(Text.class);
+			}
 			job.setOutputValueClass(NullWritable.class);
 
-			job.setNumReduceTasks(numReducers);
+			job.setNumReduceTasks(numReduceTasks);
 
 			long start = System.currentTimeMillis();
 			int exitStatus = job.waitForCompletion(true) ? 0 : 1;
@@ -543,6 +956,63 @@ public class MBucketI extends ThetaJoin {
 		}
 	}
 	
+	/**
+	 * Plan of the skew handling, from the counts of the histograms (counts.csv): the
+	 * tuples of every (partition, relation) are the sum of the counts of the buckets that
+	 * are mapped to it, so no pass over the dataset is needed. The oversized partitions are
+	 * then split so that no reducer receives more than maxReducerInput tuples, if possible.
+	 * 
+	 * Virtual partitions get ids after both the reducers and the partitions of the
+	 * mapping, so that each one gets a reducer of its own.
+	 */
+	private SkewHandler planSkew() throws IOException, JoinException {
+		if (counts == null) {
+			throw new JoinException("ERROR - MBucketI#planSkew(), maxReducerInput needs the counts of the histograms.");
+		}
+		
+		/*	Partitions of the mapping	*/
+		HashMap<Integer,ArrayList<Integer>> hmS = new HashMap<Integer,ArrayList<Integer>>();
+		HashMap<Integer,ArrayList<Integer>> hmT = new HashMap<Integer,ArrayList<Integer>>();
+		new PartitioningImporter().importHistogramIndexToPartitionsMapping(hmS, hmT, histogramIndexToPartitionsMapping);
+		
+		int maxPartition = -1;
+		for (ArrayList<Integer> al : hmS.values()) {
+			for (int partition : al) {
+				maxPartition = Math.max(maxPartition, partition);
+			}
+		}
+		for (ArrayList<Integer> al : hmT.values()) {
+			for (int partition : al) {
+				maxPartition = Math.max(maxPartition, partition);
+			}
+		}
+		
+		/*	Tuples per partition	*/
+		long[] inputS = new long[maxPartition + 1];
+		long[] inputT = new long[maxPartition + 1];
+		
+		HistogramIndexer histogramIndexer = HistogramIndexer.load(buckets, boundaries, rearrangements);
+		long[] countsS = new HistogramImporter().importCounts("S", buckets, counts);
+		long[] countsT = new HistogramImporter().importCounts("T", buckets, counts);
+		
+		for (int i = 0 ; i < buckets; ++i) {
+			ArrayList<Integer> al = hmS.get(histogramIndexer.defaultToRearranged(i, true));
+			if (al != null) {
+				for (int partition : al) {
+					inputS[partition] += countsS[i];
+				}
+			}
+			al = hmT.get(histogramIndexer.defaultToRearranged(i, false));
+			if (al != null) {
+				for (int partition : al) {
+					inputT[partition] += countsT[i];
+				}
+			}
+		}
+		
+		return SkewHandler.plan(inputS, inputT, maxReducerInput, numReducers, Math.max(numReducers, maxPartition + 1));
+	}
+	
 	/*	Getters - Setters	*/
 	
 	public long getExecutionTime() {
@@ -553,4 +1023,99 @@ public class MBucketI extends ThetaJoin {
 		return countersMBucketIPartitionsInOut;
 	}
 	
+	public JoinEngine getJoinEngine() {
+		return joinEngine;
+	}
+	
+	public void setJoinEngine(JoinEngine joinEngine) {
+		this.joinEngine = joinEngine;
+	}
+	
+	public boolean isCompressedMapOutput() {
+		return compressedMapOutput;
+	}
+	
+	public void setCompressedMapOutput(boolean compressedMapOutput) {
+		this.compressedMapOutput = compressedMapOutput;
+	}
+	
+	public long getMaxReducerInput() {
+		return maxReducerInput;
+	}
+	
+	public void setMaxReducerInput(long maxReducerInput) {
+		this.maxReducerInput = maxReducerInput;
+	}
+	
+	public Path getCounts() {
+		return counts;
+	}
+	
+	/**
+	 * The counts of the histograms (counts.csv), from which the skew handling is planned.
+	 */
+	public void setCounts(Path counts) {
+		this.counts = counts;
+	}
+	
+	public long getReducerMemoryBudgetS() {
+		return reducerMemoryBudgetS;
+	}
+	
+	/**
+	 * Heap (bytes) that the values of S of a partition may take at a reducer before
+	 * being spilled to local files (SORTED_RUN engine only). 0 for unlimited.
+	 */
+	public void setReducerMemoryBudgetS(long reducerMemoryBudgetS) {
+		this.reducerMemoryBudgetS = reducerMemoryBudgetS;
+	}
+	
+	public long getReducerMemoryBudgetT() {
+		return reducerMemoryBudgetT;
+	}
+	
+	/**
+	 * Heap (bytes) that the values of T of a partition may take at a reducer before
+	 * being spilled to local files (SORTED_RUN engine only). 0 for unlimited.
+	 */
+	public void setReducerMemoryBudgetT(long reducerMemoryBudgetT) {
+		this.reducerMemoryBudgetT = reducerMemoryBudgetT;
+	}
+	
+	public SkewHandler getSkewHandler() {
+		return skewHandler;
+	}
+	
+	public boolean isMapperAllocationProbe() {
+		return mapperAllocationProbe;
+	}
+	
+	public void setMapperAllocationProbe(boolean mapperAllocationProbe) {
+		this.mapperAllocationProbe = mapperAllocationProbe;
+	}
+	
+	public JoinOutputMode getJoinOutputMode() {
+		return joinOutputMode;
+	}
+	
+	public void setJoinOutputMode(JoinOutputMode joinOutputMode) {
+		this.joinOutputMode = joinOutputMode;
+	}
+	
+	public RecordFormat getInputFormat() {
+		return inputFormat;
+	}
+	
+	public void setInputFormat(RecordFormat inputFormat) {
+		this.inputFormat = inputFormat;
+	}
+	
+	public RecordFormat getOutputFormat() {
+		return outputFormat;
+	}
+	
+	public void setOutputFormat(RecordFormat outputFormat) {
+		this.outputFormat = outputFormat;
+	}
+	
 }
@@ -0,0 +1,374 @@
+/**
+ * MBucketILocal.java
+ *
+ * In-process execution of MBucketI, without submitting a Hadoop job.
+ *
+ * It reads the same artifacts as MBucketI (dataset, boundaries, rearrangements,
+ * histogramIndexToPartitionsMapping and partitionToCellsMapping):
+ * 	-	"Map": the dataset is read once and every value is appended to the
+ * 		SortedRuns of the partitions that its histogram index is mapped to.
+ * 	-	"Reduce": each reducer (partition % numReducers, as MBIPartitioner) is
+ * 		a task on a ForkJoinPool, joining its partitions with an MBIJoinEngine.
+ *
+ * The counters per reducer (in, completedLongMax, out) are the same as the ones
+ * of MBucketI#getCountersMBucketIPartitionsInOut(). Meant for validating
+ * partitionings on a single machine, for datasets that fit in memory.
+ *
+ * @author John Koumarelas
+ */
+
+package join.mbi;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import join.ThetaJoin;
+import join.ThetaPredicate;
+import join.mbi.MBIJoinEngine.JoinEngine;
+import join.mbi.MBIJoinEngine.JoinOutputMode;
+import join.mbi.MBucketI.RecordFormat;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+
+import utils.importers.PartitioningImporter;
+import datatypes.IntPair;
+import datatypes.LongTriple;
+import datatypes.exceptions.JoinException;
+
+public class MBucketILocal extends ThetaJoin {
+
+	private int buckets;
+	private String query;
+	private int numReducers;
+	private int numThreads;
+	private Path dataset;
+	private Path boundaries;
+	private Path rearrangements;
+	private Path histogramIndexToPartitionsMapping;
+	private Path partitionToCellsMapping;
+
+	private JoinEngine joinEngine = JoinEngine.TREE_MAP;
+	private JoinOutputMode joinOutputMode = JoinOutputMode.MATERIALIZE;
+	private RecordFormat inputFormat = RecordFormat.TEXT;
+	private RecordFormat outputFormat = RecordFormat.TEXT;
+
+	private final static Path outputMBucketILocal = new Path("btj/mbiLocal");
+
+	private long executionTime;
+
+	private HashMap<String, LongTriple> countersMBucketIPartitionsInOut = new HashMap<String,LongTriple>();
+
+	/**
+	 * @param numThreads: parallelism of the ForkJoinPool, e.g. Runtime.getRuntime().availableProcessors()
+	 */
+	public MBucketILocal(int buckets, String query, int numPartitions, int numThreads, Path dataset,Path boundaries,Path rearrangements, Path histogramIndexToPartitionsMapping, Path partitionToCellsMapping) {
+		this.buckets = buckets;
+		this.query = query;
+		this.numReducers = numPartitions;
+		this.numThreads = numThreads;
+		this.dataset = dataset;
+		this.boundaries = boundaries;
+		this.rearrangements = rearrangements;
+		this.histogramIndexToPartitionsMapping = histogramIndexToPartitionsMapping;
+		this.partitionToCellsMapping = partitionToCellsMapping;
+	}
+
+	/**
+	 * The join of the partitions of a single reducer.
+	 */
+	private class ReducerTask implements Callable<LongTriple> {
+
+		private int reducer;
+		private ThetaPredicate[] queryParts;
+		private HistogramIndexer histogramIndexer;
+		private HashMap<Integer,HashSet<IntPair>> partitionToCells;
+		private SortedRun[] runsS;
+		private SortedRun[] runsT;
+
+		public ReducerTask(int reducer, ThetaPredicate[] queryParts, HistogramIndexer histogramIndexer,
+				HashMap<Integer,HashSet<IntPair>> partitionToCells, SortedRun[] runsS, SortedRun[] runsT) {
+			this.reducer = reducer;
+			this.queryParts = queryParts;
+			this.histogramIndexer = histogramIndexer;
+			this.partitionToCells = partitionToCells;
+			this.runsS = runsS;
+			this.runsT = runsT;
+		}
+
+		@Override
+		public LongTriple call() throws Exception {
+			FileSystem fs = FileSystem.get(new Configuration());
+
+			BufferedWriter outText = null;
+			DataOutputStream outBinary = null;
+			MBIJoinEngine.ResultCollector collector = null;
+
+			if (joinOutputMode == JoinOutputMode.MATERIALIZE) {
+				Path part = new Path(outputMBucketILocal, String.format("part-r-%05d", reducer));
+
+				if (outputFormat == RecordFormat.BINARY) {
+					outBinary = new DataOutputStream(new BufferedOutputStream(fs.create(new Path(part.toString() + ".bin"), true)));
+					final PackedJoinResultOutputFormat.PackedJoinResultRecordWriter writer =
+							new PackedJoinResultOutputFormat.PackedJoinResultRecordWriter(outBinary);
+					collector = new MBIJoinEngine.ResultCollector() {
+						private LongTriple result = new LongTriple();
+
+						@Override
+						public void collect(long valueS, long valueT, long multiplicity) throws IOException {
+							result.set(valueS, valueT, multiplicity);
+							writer.write(result, NullWritable.get());
+						}
+					};
+				} else {
+					outText = new BufferedWriter(new OutputStreamWriter(fs.create(part, true)));
+					final BufferedWriter out = outText;
+					collector = new MBIJoinEngine.ResultCollector() {
+						@Override
+						public void collect(long valueS, long valueT, long multiplicity) throws IOException {
+							out.write(valueS + "\t" + valueT + "\t" + multiplicity);
+							out.newLine();
+						}
+					};
+				}
+			}
+
+			MBIJoinEngine engine = MBIJoinEngine.create(joinEngine, queryParts, histogramIndexer, collector);
+			engine.setOutputMode(joinOutputMode);
+
+			long counterInput = 0;
+
+			for (int partition = reducer ; partition < runsS.length; partition += numReducers) {
+				SortedRun runS = runsS[partition];
+
+				/*	As the reducer of MBucketI, T is only joined (and counted) after S.	*/
+				if (runS == null) {
+					continue;
+				}
+
+				runS.sortAndCollapse();
+				engine.clearS();
+				for (int i = 0 ; i < runS.size(); ++i) {
+					engine.addS(runS.getValues()[i], runS.getDuplications()[i]);
+					counterInput += runS.getDuplications()[i];
+				}
+				engine.finishS();
+				runsS[partition] = null;
+
+				SortedRun runT = runsT[partition];
+				if (runT == null) {
+					continue;
+				}
+
+				runT.sortAndCollapse();
+				engine.setPartitionCells(new PartitionCells(partitionToCells.get(partition)));
+				for (int i = 0 ; i < runT.size(); ++i) {
+					engine.addT(runT.getValues()[i], runT.getDuplications()[i]);
+					counterInput += runT.getDuplications()[i];
+				}
+				engine.finishT();
+				runsT[partition] = null;
+			}
+
+			engine.close();
+
+			if (outText != null) {
+				outText.close();
+			}
+			if (outBinary != null) {
+				outBinary.close();
+			}
+
+			return new LongTriple(counterInput, engine.getCounterOutputCompletedLongMax(), engine.getCounterOutput());
+		}
+	}
+
+	@Override
+	public void join() throws JoinException {
+		try {
+			long start = System.currentTimeMillis();
+
+			FileSystem fs = FileSystem.get(new Configuration());
+			fs.delete(outputMBucketILocal, true);
+
+			ThetaPredicate[] queryParts = MBIJoinEngine.getQueryParts(query);
+			HistogramIndexer histogramIndexer = HistogramIndexer.load(buckets, boundaries, rearrangements);
+
+			HashMap<Integer,ArrayList<Integer>> hmS = new HashMap<Integer,ArrayList<Integer>>();
+			HashMap<Integer,ArrayList<Integer>> hmT = new HashMap<Integer,ArrayList<Integer>>();
+			new PartitioningImporter().importHistogramIndexToPartitionsMapping(hmS, hmT, histogramIndexToPartitionsMapping);
+			int[][] partitionsS = MBucketI.toPartitionsArray(hmS, buckets);
+			int[][] partitionsT = MBucketI.toPartitionsArray(hmT, buckets);
+
+			HashMap<Integer,HashSet<IntPair>> partitionToCells = new PartitioningImporter().importPartitionToCellsMapping(partitionToCellsMapping);
+
+			int maxPartition = -1;
+			for (int i = 0 ; i < buckets; ++i) {
+				for (int partition : partitionsS[i]) {
+					maxPartition = Math.max(maxPartition, partition);
+				}
+				for (int partition : partitionsT[i]) {
+					maxPartition = Math.max(maxPartition, partition);
+				}
+			}
+
+			/*	Map	*/
+			SortedRun[] runsS = new SortedRun[maxPartition + 1];
+			SortedRun[] runsT = new SortedRun[maxPartition + 1];
+
+			FileStatus[] files = fs.isFile(dataset) ? new FileStatus[] { fs.getFileStatus(dataset) } : fs.listStatus(dataset);
+			for (FileStatus file : files) {
+				String name = file.getPath().getName();
+				if (file.isDir() || name.startsWith("_") || name.startsWith(".")) {
+					continue;
+				}
+
+				if (inputFormat == RecordFormat.BINARY) {
+					mapBinary(fs, file.getPath(), histogramIndexer, partitionsS, partitionsT, runsS, runsT);
+				} else {
+					mapText(fs, file.getPath(), histogramIndexer, partitionsS, partitionsT, runsS, runsT);
+				}
+			}
+
+			/*	Reduce	*/
+			List<Callable<LongTriple>> tasks = new ArrayList<Callable<LongTriple>>();
+			for (int reducer = 0 ; reducer < numReducers; ++reducer) {
+				tasks.add(new ReducerTask(reducer, queryParts, histogramIndexer, partitionToCells, runsS, runsT));
+			}
+
+			ForkJoinPool pool = new ForkJoinPool(numThreads);
+			List<Future<LongTriple>> results = pool.invokeAll(tasks);
+			pool.shutdown();
+
+			countersMBucketIPartitionsInOut.clear();
+			for (int reducer = 0 ; reducer < numReducers; ++reducer) {
+				countersMBucketIPartitionsInOut.put(String.valueOf(reducer), results.get(reducer).get());
+			}
+
+			long end = System.currentTimeMillis();
+			executionTime = end-start;
+		} catch (Exception e) {
+			e.printStackTrace();
+			String errorMessage = "ERROR - MBucketILocal#join(), Problem during the local join.";
+			throw new JoinException(errorMessage);
+		}
+	}
+
+	private void mapValue(long value, boolean isRelationS, HistogramIndexer histogramIndexer,
+			int[][] partitionsS, int[][] partitionsT, SortedRun[] runsS, SortedRun[] runsT) {
+		int histogramsIndex = histogramIndexer.valueToBoundaryIndex(value, isRelationS);
+
+		// Outside of the histograms
+		if (histogramsIndex < 0) {
+			return;
+		}
+
+		SortedRun[] runs = isRelationS ? runsS : runsT;
+		int[] partitions = (isRelationS ? partitionsS : partitionsT)[histogramsIndex];
+		for (int i = 0 ; i < partitions.length; ++i) {
+			if (runs[partitions[i]] == null) {
+				runs[partitions[i]] = new SortedRun();
+			}
+			runs[partitions[i]].add(value, 1);
+		}
+	}
+
+	private void mapText(FileSystem fs, Path file, HistogramIndexer histogramIndexer,
+			int[][] partitionsS, int[][] partitionsT, SortedRun[] runsS, SortedRun[] runsT) throws IOException {
+		BufferedReader br = new BufferedReader(new InputStreamReader(fs.open(file)));
+		String line;
+		while ((line = br.readLine()) != null) {
+			if (line.trim().equals("")) {
+				continue;
+			}
+
+			String[] strToks = line.split(",");
+			if (strToks.length < 2) {
+				continue;
+			}
+
+			try {
+				mapValue(Long.parseLong(strToks[1]), strToks[0].equals("S"), histogramIndexer, partitionsS, partitionsT, runsS, runsT);
+			} catch (NumberFormatException e) {
+				e.printStackTrace();
+			}
+		}
+		br.close();
+	}
+
+	private void mapBinary(FileSystem fs, Path file, HistogramIndexer histogramIndexer,
+			int[][] partitionsS, int[][] partitionsT, SortedRun[] runsS, SortedRun[] runsT) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(fs.open(file)));
+		try {
+			while (true) {
+				int relID = in.readByte();
+				long value = in.readLong();
+				mapValue(value, relID == PackedRelationValueInputFormat.relID_S, histogramIndexer, partitionsS, partitionsT, runsS, runsT);
+			}
+		} catch (EOFException e) {
+			;// End of the file
+		}
+		in.close();
+	}
+
+	/*	Getters - Setters	*/
+
+	public long getExecutionTime() {
+		return executionTime;
+	}
+
+	public HashMap<String, LongTriple> getCountersMBucketIPartitionsInOut() {
+		return countersMBucketIPartitionsInOut;
+	}
+
+	public JoinEngine getJoinEngine() {
+		return joinEngine;
+	}
+
+	public void setJoinEngine(JoinEngine joinEngine) {
+		this.joinEngine = joinEngine;
+	}
+
+	public JoinOutputMode getJoinOutputMode() {
+		return joinOutputMode;
+	}
+
+	public void setJoinOutputMode(JoinOutputMode joinOutputMode) {
+		this.joinOutputMode = joinOutputMode;
+	}
+
+	public RecordFormat getInputFormat() {
+		return inputFormat;
+	}
+
+	public void setInputFormat(RecordFormat inputFormat) {
+		this.inputFormat = inputFormat;
+	}
+
+	public RecordFormat getOutputFormat() {
+		return outputFormat;
+	}
+
+	public void setOutputFormat(RecordFormat outputFormat) {
+		this.outputFormat = outputFormat;
+	}
+
+}
@@ -0,0 +1,83 @@
+/**
+ * PackedJoinResultOutputFormat.java
+ *
+ * Binary output of MBucketI. Each result is written as a fixed length
+ * record of RECORD_LENGTH bytes:
+ * 	-	8 bytes: value of S
+ * 	-	8 bytes: value of T
+ * 	-	8 bytes: multiplicity (duplicationS * duplicationT)
+ *
+ * All of them big-endian longs, without any separators. The key given to
+ * the RecordWriter is a LongTriple (valueS, valueT, multiplicity).
+ *
+ * @author John Koumarelas
+ */
+
+package join.mbi;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+
+import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+
+import datatypes.LongTriple;
+
+public class PackedJoinResultOutputFormat extends FileOutputFormat<LongTriple, NullWritable> {
+
+	public static final int RECORD_LENGTH = 24;
+
+	@Override
+	public RecordWriter<LongTriple, NullWritable> getRecordWriter(TaskAttemptContext context)
+			throws IOException, InterruptedException {
+		Path file = getDefaultWorkFile(context, ".bin");
+		FileSystem fs = file.getFileSystem(context.getConfiguration());
+		FSDataOutputStream fileOut = fs.create(file, false);
+
+		return new PackedJoinResultRecordWriter(new DataOutputStream(new BufferedOutputStream(fileOut)));
+	}
+
+	/**
+	 * Reads the next result into lt. Returns false at the end of the stream.
+	 */
+	public static boolean readRecord(DataInputStream in, LongTriple lt) throws IOException {
+		long valueS;
+		try {
+			valueS = in.readLong();
+		} catch (EOFException e) {
+			return false;
+		}
+		lt.set(valueS, in.readLong(), in.readLong());
+		return true;
+	}
+
+	public static class PackedJoinResultRecordWriter extends RecordWriter<LongTriple, NullWritable> {
+
+		private DataOutputStream out;
+
+		public PackedJoinResultRecordWriter(DataOutputStream out) {
+			this.out = out;
+		}
+
+		@Override
+		public void write(LongTriple key, NullWritable value) throws IOException {
+			out.writeLong(key.getFirst());
+			out.writeLong(key.getSecond());
+			out.writeLong(key.getThird());
+		}
+
+		@Override
+		public void close(TaskAttemptContext context) throws IOException {
+			out.close();
+		}
+	}
+
+}
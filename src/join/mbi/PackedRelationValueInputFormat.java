@@ -0,0 +1,125 @@
+/**
+ * PackedRelationValueInputFormat.java
+ *
+ * Binary input of MBucketI. Each record of the dataset has a fixed length
+ * of RECORD_LENGTH bytes:
+ * 	-	1 byte: relation id (0: S, 1: T)
+ * 	-	8 bytes: the value (big-endian long)
+ *
+ * Compared to the CSV dataset, no String splitting or number parsing
+ * is needed in the mapper. As records have a fixed length, the files
+ * can be split anywhere; each split starts at the first record boundary
+ * inside of it.
+ *
+ * @author John Koumarelas
+ */
+
+package join.mbi;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+
+public class PackedRelationValueInputFormat extends FileInputFormat<IntWritable, LongWritable> {
+
+	public static final int RECORD_LENGTH = 9;
+
+	public static final int relID_S = 0;
+	public static final int relID_T = 1;
+
+	@Override
+	public RecordReader<IntWritable, LongWritable> createRecordReader(InputSplit split, TaskAttemptContext context)
+			throws IOException, InterruptedException {
+		return new PackedRelationValueRecordReader();
+	}
+
+	public static void writeRecord(DataOutputStream out, int relID, long value) throws IOException {
+		out.writeByte(relID);
+		out.writeLong(value);
+	}
+
+	public static class PackedRelationValueRecordReader extends RecordReader<IntWritable, LongWritable> {
+
+		private static final int BUFFER_SIZE = 64 * 1024;
+
+		private long start;
+		private long end;
+		private long pos;
+
+		private FSDataInputStream fileIn;
+		private DataInputStream in;
+
+		private IntWritable key = new IntWritable();
+		private LongWritable value = new LongWritable();
+
+		@Override
+		public void initialize(InputSplit genericSplit, TaskAttemptContext context) throws IOException, InterruptedException {
+			FileSplit split = (FileSplit) genericSplit;
+
+			/*	The first record that starts inside of this split.	*/
+			start = ((split.getStart() + RECORD_LENGTH - 1) / RECORD_LENGTH) * RECORD_LENGTH;
+			end = split.getStart() + split.getLength();
+			pos = start;
+
+			Path file = split.getPath();
+			FileSystem fs = file.getFileSystem(context.getConfiguration());
+			fileIn = fs.open(file);
+			fileIn.seek(start);
+			in = new DataInputStream(new BufferedInputStream(fileIn, BUFFER_SIZE));
+		}
+
+		@Override
+		public boolean nextKeyValue() throws IOException, InterruptedException {
+			if (pos >= end) {
+				return false;
+			}
+			try {
+				key.set(in.readByte());
+				value.set(in.readLong());
+			} catch (EOFException e) {
+				return false;
+			}
+			pos += RECORD_LENGTH;
+			return true;
+		}
+
+		@Override
+		public IntWritable getCurrentKey() {
+			return key;
+		}
+
+		@Override
+		public LongWritable getCurrentValue() {
+			return value;
+		}
+
+		@Override
+		public float getProgress() {
+			if (start == end) {
+				return 0.0f;
+			}
+			return Math.min(1.0f, (pos - start) / (float) (end - start));
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (in != null) {
+				in.close();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,71 @@
+/**
+ * PartitionCells.java
+ *
+ * The cells (histogram index of S, histogram index of T) of the PartitionMatrix
+ * that belong to a partition, as a bitset.
+ *
+ * Only the bounding box of the cells is kept: bit (i-minRow)*width + (j-minColumn)
+ * is set when cell (i,j) belongs to the partition. Lookups are O(1) and do not
+ * allocate.
+ *
+ * @author John Koumarelas
+ */
+
+package join.mbi;
+
+import java.util.HashSet;
+
+import datatypes.IntPair;
+
+public class PartitionCells {
+
+	private int minRow;
+	private int maxRow;
+	private int minColumn;
+	private int maxColumn;
+	private int width;
+
+	private long[] bits;
+
+	public PartitionCells(HashSet<IntPair> cells) {
+		if (cells == null || cells.isEmpty()) {
+			/*	Empty box: nothing is ever contained.	*/
+			minRow = 0;
+			maxRow = -1;
+			minColumn = 0;
+			maxColumn = -1;
+			width = 0;
+			bits = new long[0];
+			return;
+		}
+
+		minRow = Integer.MAX_VALUE;
+		maxRow = Integer.MIN_VALUE;
+		minColumn = Integer.MAX_VALUE;
+		maxColumn = Integer.MIN_VALUE;
+		for (IntPair cell : cells) {
+			minRow = Math.min(minRow, cell.getFirst());
+			maxRow = Math.max(maxRow, cell.getFirst());
+			minColumn = Math.min(minColumn, cell.getSecond());
+			maxColumn = Math.max(maxColumn, cell.getSecond());
+		}
+
+		width = maxColumn - minColumn + 1;
+		long size = (long) (maxRow - minRow + 1) * width;
+		bits = new long[(int) ((size + 63) >>> 6)];
+
+		for (IntPair cell : cells) {
+			long bit = (long) (cell.getFirst() - minRow) * width + (cell.getSecond() - minColumn);
+			bits[(int) (bit >>> 6)] |= 1L << (bit & 63);
+		}
+	}
+
+	public boolean contains(int row, int column) {
+		if (row < minRow || row > maxRow || column < minColumn || column > maxColumn) {
+			return false;
+		}
+		long bit = (long) (row - minRow) * width + (column - minColumn);
+		return (bits[(int) (bit >>> 6)] & (1L << (bit & 63))) != 0;
+	}
+
+}
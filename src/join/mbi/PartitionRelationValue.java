@@ -0,0 +1,142 @@
+/**
+ * PartitionRelationValue.java
+ *
+ * Map output key of MBucketI with secondary sort: (partition, relation, value).
+ * It is serialized in a byte comparable format, so that the shuffle sorts the
+ * keys by partition, then relation (S before T), then value.
+ *
+ * The GroupingComparator compares only the partition, so a single reduce call
+ * receives all the values of a partition: first the values of S, then the values
+ * of T, each in ascending order.
+ *
+ * @author John Koumarelas
+ */
+
+package join.mbi;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+
+public class PartitionRelationValue implements WritableComparable<PartitionRelationValue> {
+	private int partition = 0;
+	private int relation = 0;
+	private long value = 0;
+
+	public PartitionRelationValue() {
+	}
+
+	public PartitionRelationValue(int partition, int relation, long value) {
+		this.partition = partition;
+		this.relation = relation;
+		this.value = value;
+	}
+
+	public void set(int partition, int relation, long value) {
+		this.partition = partition;
+		this.relation = relation;
+		this.value = value;
+	}
+
+	/**
+	 * Encoded as: MIN_VALUE -> 0, 0 -> -MIN_VALUE, MAX_VALUE-> -1
+	 */
+	@Override
+	public void readFields(DataInput in) throws IOException {
+		partition = in.readInt() + Integer.MIN_VALUE;
+		relation = in.readInt() + Integer.MIN_VALUE;
+		value = in.readLong() + Long.MIN_VALUE;
+	}
+
+	@Override
+	public void write(DataOutput out) throws IOException {
+		out.writeInt(partition - Integer.MIN_VALUE);
+		out.writeInt(relation - Integer.MIN_VALUE);
+		out.writeLong(value - Long.MIN_VALUE);
+	}
+
+	@Override
+	public int hashCode() {
+		return (int) (463*partition + 157*relation + value);
+	}
+
+	@Override
+	public boolean equals(Object right) {
+		if (right instanceof PartitionRelationValue) {
+			PartitionRelationValue r = (PartitionRelationValue) right;
+			return r.partition == partition && r.relation == relation && r.value == value;
+		} else {
+			return false;
+		}
+	}
+
+	/** A Comparator that compares serialized PartitionRelationValue. */
+	public static class Comparator extends WritableComparator {
+		public Comparator() {
+			super(PartitionRelationValue.class);
+		}
+
+		public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+			return compareBytes(b1, s1, l1, b2, s2, l2);
+		}
+	}
+
+	static { // register this comparator
+		WritableComparator.define(PartitionRelationValue.class, new Comparator());
+	}
+
+	/** Groups the keys by partition only. */
+	public static class GroupingComparator extends WritableComparator {
+		public GroupingComparator() {
+			super(PartitionRelationValue.class, true);
+		}
+
+		public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+			return compareBytes(b1, s1, 4, b2, s2, 4);
+		}
+
+		@SuppressWarnings("rawtypes")
+		@Override
+		public int compare(WritableComparable a, WritableComparable b) {
+			int partitionA = ((PartitionRelationValue) a).partition;
+			int partitionB = ((PartitionRelationValue) b).partition;
+			return partitionA < partitionB ? -1 : (partitionA == partitionB ? 0 : 1);
+		}
+	}
+
+	@Override
+	public int compareTo(PartitionRelationValue o) {
+		if (partition != o.partition) {
+			return partition < o.partition ? -1 : 1;
+		} else if (relation != o.relation) {
+			return relation < o.relation ? -1 : 1;
+		} else if (value != o.value) {
+			return value < o.value ? -1 : 1;
+		} else {
+			return 0;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "[" + partition + ","  + relation + "," + value + "]";
+	}
+
+	/*	Getters - Setters	*/
+
+	public int getPartition() {
+		return partition;
+	}
+
+	public int getRelation() {
+		return relation;
+	}
+
+	public long getValue() {
+		return value;
+	}
+
+}
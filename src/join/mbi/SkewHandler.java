@@ -0,0 +1,181 @@
+/**
+ * SkewHandler.java
+ *
+ * Splits the partitions whose input (|S| + |T|), as given by the counts of the
+ * histograms, exceeds a maximum input per reducer.
+ *
+ * The bigger side of an oversized partition is split into k chunks, sent round-robin
+ * to k virtual partitions, while the other side is replicated to all of them.
+ * Each virtual partition joins a disjoint part of the bigger side with the whole
+ * other side, over the cells of the original partition, so the union of their
+ * results is the result of the original partition. k is the smallest number of
+ * chunks for which |bigger side| / k + |other side| <= maxInput, up to maxSplits.
+ *
+ * The first chunk keeps the id of the original partition, the rest get new ids
+ * starting at firstVirtualPartition.
+ *
+ * Serialized (for the Configuration) as: "partition,S|T,id1,...,idk;..." where S|T
+ * is the side that is split.
+ *
+ * @author John Koumarelas
+ */
+
+package join.mbi;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+public class SkewHandler {
+
+	private TreeMap<Integer,int[]> splits = new TreeMap<Integer,int[]>(); // partition -> virtual partitions (itself first)
+	private HashMap<Integer,Boolean> splitSideIsS = new HashMap<Integer,Boolean>();
+	private HashMap<Integer,Integer> virtualToOriginal = new HashMap<Integer,Integer>();
+
+	private int extraPartitions = 0;
+
+	/**
+	 * @param inputS: |S| per partition
+	 * @param inputT: |T| per partition
+	 */
+	public static SkewHandler plan(long[] inputS, long[] inputT, long maxInput, int maxSplits, int firstVirtualPartition) {
+		SkewHandler sh = new SkewHandler();
+
+		int nextVirtualPartition = firstVirtualPartition;
+		for (int partition = 0 ; partition < inputS.length; ++partition) {
+			long input = inputS[partition] + inputT[partition];
+			if (input <= maxInput) {
+				continue;
+			}
+
+			boolean splitS = inputS[partition] >= inputT[partition];
+			long split = splitS ? inputS[partition] : inputT[partition];
+			long replicated = splitS ? inputT[partition] : inputS[partition];
+
+			int k = maxSplits;
+			if (replicated < maxInput) {
+				k = (int) Math.min(maxSplits, (split + (maxInput - replicated) - 1) / (maxInput - replicated));
+			}
+			if (k < 2) {
+				continue;
+			}
+
+			int[] virtualPartitions = new int[k];
+			virtualPartitions[0] = partition;
+			for (int i = 1 ; i < k; ++i) {
+				virtualPartitions[i] = nextVirtualPartition++;
+			}
+			sh.addSplit(partition, splitS, virtualPartitions);
+		}
+
+		return sh;
+	}
+
+	public static SkewHandler parse(String str) {
+		SkewHandler sh = new SkewHandler();
+		if (str == null || str.trim().equals("")) {
+			return sh;
+		}
+
+		for (String split : str.split(";")) {
+			String[] toks = split.split(",");
+			int[] virtualPartitions = new int[toks.length - 2];
+			for (int i = 2 ; i < toks.length; ++i) {
+				virtualPartitions[i - 2] = Integer.valueOf(toks[i]);
+			}
+			sh.addSplit(Integer.valueOf(toks[0]), toks[1].equals("S"), virtualPartitions);
+		}
+		return sh;
+	}
+
+	private void addSplit(int partition, boolean splitS, int[] virtualPartitions) {
+		splits.put(partition, virtualPartitions);
+		splitSideIsS.put(partition, splitS);
+		for (int virtualPartition : virtualPartitions) {
+			virtualToOriginal.put(virtualPartition, partition);
+		}
+		extraPartitions += virtualPartitions.length - 1;
+	}
+
+	public boolean isEmpty() {
+		return splits.isEmpty();
+	}
+
+	/**
+	 * The partition whose cells a (possibly virtual) partition joins.
+	 */
+	public int originalPartition(int partition) {
+		Integer original = virtualToOriginal.get(partition);
+		return original == null ? partition : original;
+	}
+
+	/**
+	 * The histogram index to partitions mapping of a relation, with the partitions
+	 * whose other side is split replaced by all of their virtual partitions.
+	 */
+	public int[][] replicate(int[][] partitions, boolean isRelationS) {
+		int[][] replicated = new int[partitions.length][];
+		for (int i = 0 ; i < partitions.length; ++i) {
+			ArrayList<Integer> al = new ArrayList<Integer>();
+			for (int partition : partitions[i]) {
+				int[] virtualPartitions = splits.get(partition);
+				if (virtualPartitions != null && splitSideIsS.get(partition) != isRelationS) {
+					for (int virtualPartition : virtualPartitions) {
+						al.add(virtualPartition);
+					}
+				} else {
+					al.add(partition);
+				}
+			}
+			replicated[i] = new int[al.size()];
+			for (int j = 0 ; j < al.size(); ++j) {
+				replicated[i][j] = al.get(j);
+			}
+		}
+		return replicated;
+	}
+
+	/**
+	 * partition -> virtual partitions, for the partitions whose given side is split
+	 * (null for the rest).
+	 */
+	public int[][] splitTargets(boolean isRelationS) {
+		int size = splits.isEmpty() ? 0 : splits.lastKey() + 1;
+		int[][] targets = new int[size][];
+		for (Entry<Integer,int[]> entry : splits.entrySet()) {
+			if (splitSideIsS.get(entry.getKey()) == isRelationS) {
+				targets[entry.getKey()] = entry.getValue();
+			}
+		}
+		return targets;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (Entry<Integer,int[]> entry : splits.entrySet()) {
+			if (sb.length() > 0) {
+				sb.append(";");
+			}
+			sb.append(entry.getKey()).append(",").append(splitSideIsS.get(entry.getKey()) ? "S" : "T");
+			for (int virtualPartition : entry.getValue()) {
+				sb.append(",").append(virtualPartition);
+			}
+		}
+		return sb.toString();
+	}
+
+	/*	Getters - Setters	*/
+
+	public int getExtraPartitions() {
+		return extraPartitions;
+	}
+
+	public int[] getVirtualPartitions(int partition) {
+		int[] virtualPartitions = splits.get(partition);
+		return virtualPartitions == null ? null : Arrays.copyOf(virtualPartitions, virtualPartitions.length);
+	}
+
+}
@@ -0,0 +1,283 @@
+/**
+ * SortedRun.java
+ *
+ * Holds the values of one relation that a reducer received for a
+ * partition, as primitive columns:
+ * 	-	values: distinct values in ascending order
+ * 	-	duplications: how many times each value was received
+ * 	-	histogramIndices: the (rearranged) histogram index of each value
+ *
+ * Values are appended in arbitrary order and then sorted and collapsed
+ * in place, so that no boxing takes place on the reducer's hot path.
+ * Values that already arrive in ascending order (secondary sort) are
+ * appended with appendSorted(), which collapses them on the fly.
+ * 
+ * For aggregate-only joins, computeSegments() additionally builds:
+ * 	-	prefixDuplications: prefixDuplications[i] = duplications[0] + ... + duplications[i-1]
+ * 	-	segments: maximal ranges of consecutive values with the same histogram index
+ * 
+ * As a JoinRun, segmentStart() and duplications() need computeSegments().
+ *
+ * @author John Koumarelas
+ */
+
+package join.mbi;
+
+import java.util.Arrays;
+
+public class SortedRun implements JoinRun {
+
+	private static final int INITIAL_CAPACITY = 1024;
+	private static final int INSERTION_SORT_THRESHOLD = 16;
+
+	private long[] values;
+	private long[] duplications;
+	private int[] histogramIndices;
+	private int size;
+
+	private long[] prefixDuplications;
+	private int[] segmentOf; // position -> segment
+	private int[] segmentStarts; // segment -> first position, segmentStarts[segments] = size
+	private int segments;
+
+	public SortedRun() {
+		this.values = new long[INITIAL_CAPACITY];
+		this.duplications = new long[INITIAL_CAPACITY];
+		this.histogramIndices = new int[INITIAL_CAPACITY];
+		this.size = 0;
+
+		this.prefixDuplications = new long[0];
+		this.segmentOf = new int[0];
+		this.segmentStarts = new int[0];
+		this.segments = 0;
+	}
+
+	public void clear() {
+		size = 0;
+	}
+
+	public void add(long value, long duplication) {
+		if (size == values.length) {
+			int capacity = values.length << 1;
+			values = Arrays.copyOf(values, capacity);
+			duplications = Arrays.copyOf(duplications, capacity);
+			histogramIndices = Arrays.copyOf(histogramIndices, capacity);
+		}
+		values[size] = value;
+		duplications[size] = duplication;
+		++size;
+	}
+
+	/**
+	 * Appends a value that is greater than or equal to the last one, so that
+	 * the run stays sorted and collapsed without calling sortAndCollapse().
+	 */
+	public void appendSorted(long value, long duplication) {
+		if (size > 0 && values[size - 1] == value) {
+			duplications[size - 1] += duplication;
+		} else {
+			add(value, duplication);
+		}
+	}
+
+	/**
+	 * Sorts the values in ascending order and merges equal values into a
+	 * single entry, summing up their duplications.
+	 */
+	public void sortAndCollapse() {
+		if (size == 0) {
+			return;
+		}
+
+		sort(0, size - 1);
+
+		int last = 0;
+		for (int i = 1 ; i < size; ++i) {
+			if (values[i] == values[last]) {
+				duplications[last] += duplications[i];
+			} else {
+				++last;
+				values[last] = values[i];
+				duplications[last] = duplications[i];
+			}
+		}
+		size = last + 1;
+	}
+
+	/**
+	 * Must be called after sortAndCollapse().
+	 */
+	public void computeHistogramIndices(HistogramIndexer indexer, boolean isRelationS) {
+		indexer.sortedValuesToBoundaryIndices(values, size, isRelationS, histogramIndices);
+	}
+
+	/**
+	 * Must be called after computeHistogramIndices().
+	 */
+	public void computeSegments() {
+		if (prefixDuplications.length < size + 1) {
+			prefixDuplications = new long[values.length + 1];
+			segmentOf = new int[values.length];
+			segmentStarts = new int[values.length + 1];
+		}
+
+		segments = 0;
+		prefixDuplications[0] = 0;
+		for (int i = 0 ; i < size; ++i) {
+			prefixDuplications[i + 1] = prefixDuplications[i] + duplications[i];
+
+			if (i == 0 || histogramIndices[i] != histogramIndices[i - 1]) {
+				segmentStarts[segments] = i;
+				++segments;
+			}
+			segmentOf[i] = segments - 1;
+		}
+		segmentStarts[segments] = size;
+	}
+
+	@Override
+	public int ceilingIndex(long value) {
+		int start = 0;
+		int end = size;
+		while (start < end) {
+			int middle = (start + end) >>> 1;
+			if (values[middle] < value) {
+				start = middle + 1;
+			} else {
+				end = middle;
+			}
+		}
+		return start;
+	}
+
+	/*
+	 * Quicksort on the parallel columns values/duplications
+	 * (median of three, insertion sort for small ranges).
+	 */
+	private void sort(int left, int right) {
+		while (right - left > INSERTION_SORT_THRESHOLD) {
+			int middle = (left + right) >>> 1;
+			if (values[middle] < values[left]) {
+				swap(middle, left);
+			}
+			if (values[right] < values[left]) {
+				swap(right, left);
+			}
+			if (values[right] < values[middle]) {
+				swap(right, middle);
+			}
+			long pivot = values[middle];
+
+			int i = left;
+			int j = right;
+			while (i <= j) {
+				while (values[i] < pivot) {
+					++i;
+				}
+				while (pivot < values[j]) {
+					--j;
+				}
+				if (i <= j) {
+					swap(i, j);
+					++i;
+					--j;
+				}
+			}
+
+			/*	Recurse on the smaller part, loop on the larger one.	*/
+			if (j - left < right - i) {
+				sort(left, j);
+				left = i;
+			} else {
+				sort(i, right);
+				right = j;
+			}
+		}
+
+		for (int i = left + 1 ; i <= right; ++i) {
+			long value = values[i];
+			long duplication = duplications[i];
+			int j = i - 1;
+			while (j >= left && values[j] > value) {
+				values[j + 1] = values[j];
+				duplications[j + 1] = duplications[j];
+				--j;
+			}
+			values[j + 1] = value;
+			duplications[j + 1] = duplication;
+		}
+	}
+
+	private void swap(int i, int j) {
+		long tmpValue = values[i];
+		values[i] = values[j];
+		values[j] = tmpValue;
+
+		long tmpDuplication = duplications[i];
+		duplications[i] = duplications[j];
+		duplications[j] = tmpDuplication;
+	}
+
+	/*	JoinRun	*/
+
+	@Override
+	public long value(int i) {
+		return values[i];
+	}
+
+	@Override
+	public long duplication(int i) {
+		return duplications[i];
+	}
+
+	@Override
+	public int histogramIndex(int i) {
+		return histogramIndices[i];
+	}
+
+	@Override
+	public int segmentStart(int i) {
+		return segmentStarts[segmentOf[i]];
+	}
+
+	@Override
+	public long duplications(int from, int to) {
+		return prefixDuplications[to] - prefixDuplications[from];
+	}
+
+	/*	Getters - Setters	*/
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	public long[] getValues() {
+		return values;
+	}
+
+	public long[] getDuplications() {
+		return duplications;
+	}
+
+	public int[] getHistogramIndices() {
+		return histogramIndices;
+	}
+
+	public long[] getPrefixDuplications() {
+		return prefixDuplications;
+	}
+
+	public int[] getSegmentOf() {
+		return segmentOf;
+	}
+
+	public int[] getSegmentStarts() {
+		return segmentStarts;
+	}
+
+	public int getSegments() {
+		return segments;
+	}
+
+}
@@ -0,0 +1,217 @@
+/**
+ * SortedRunJoinEngine.java
+ *
+ * Join engine of the MBucketI reducer that keeps both relations of a
+ * partition as SortedRuns (primitive long[]/int[] columns).
+ *
+ * Once both sides are sorted, every part of the query is evaluated with a
+ * merge-style sliding window: as T grows, both ends of the window
+ * [lowestS(T), highestS(T)] over S only move forward. This gives
+ * O(|S| + |T| + output) per part after sorting, without boxing or pointer chasing.
+ *
+ * The price is that T is buffered too, instead of being streamed.
+ *
+ * When the results are only counted (JoinOutputMode COUNT or SUM), the window
+ * is not iterated value by value: S is split into segments of equal histogram
+ * index and the window is summed up with prefix sums over the duplications,
+ * one segment at a time.
+ *
+ * With a memory budget for S (setMemoryBudgetS) or T (setMemoryBudgetT), a relation
+ * is spilled to sorted local files whenever it exceeds its budget. The spills are
+ * merged into a single memory-mapped SpilledRun, over which the same sliding window
+ * (and aggregation) runs, as both kinds of runs are JoinRuns.
+ *
+ * @author John Koumarelas
+ */
+
+package join.mbi;
+
+import java.io.IOException;
+
+import join.ThetaPredicate;
+
+public class SortedRunJoinEngine extends MBIJoinEngine {
+
+	/*	Heap taken by a value in a SortedRun: value, duplication, histogram index.	*/
+	private static final int BYTES_PER_VALUE = 8 + 8 + 4;
+
+	private SortedRun runS = new SortedRun();
+	private SortedRun runT = new SortedRun();
+
+	private SpilledRun spilledS = null;
+	private SpilledRun spilledT = null;
+	private boolean isSpilledS = false;
+
+	public SortedRunJoinEngine(ThetaPredicate[] queryParts, HistogramIndexer histogramIndexer, ResultCollector collector) {
+		super(queryParts, histogramIndexer, collector);
+	}
+
+	@Override
+	public void clearS() throws IOException {
+		runS.clear();
+		runT.clear();
+		if (spilledS != null) {
+			spilledS.close();
+		}
+		if (spilledT != null) {
+			spilledT.close();
+		}
+		isSpilledS = false;
+	}
+
+	@Override
+	public void addS(long valueS, long duplicationS) throws IOException {
+		runS.add(valueS, duplicationS);
+
+		if (memoryBudgetS > 0 && (long) runS.size() * BYTES_PER_VALUE > memoryBudgetS) {
+			if (spilledS == null) {
+				spilledS = new SpilledRun(spillDirectory);
+			}
+			spillIfOverBudget(runS, spilledS, memoryBudgetS);
+		}
+	}
+
+	@Override
+	public void finishS() throws IOException {
+		runS.sortAndCollapse();
+
+		if (spilledS != null && !spilledS.isEmpty()) {
+			if (runS.size() > 0) {
+				spilledS.spill(runS);
+				runS.clear();
+			}
+			spilledS.merge(histogramIndexer, true);
+			isSpilledS = true;
+			runT.clear();
+			return;
+		}
+
+		runS.computeHistogramIndices(histogramIndexer, true);
+		if (outputMode != JoinOutputMode.MATERIALIZE) {
+			runS.computeSegments();
+		}
+		runT.clear();
+	}
+
+	@Override
+	public void addT(long valueT, long duplicationT) throws IOException {
+		runT.add(valueT, duplicationT);
+
+		if (memoryBudgetT > 0 && (long) runT.size() * BYTES_PER_VALUE > memoryBudgetT) {
+			if (spilledT == null) {
+				spilledT = new SpilledRun(spillDirectory);
+			}
+			spillIfOverBudget(runT, spilledT, memoryBudgetT);
+		}
+	}
+
+	@Override
+	public void finishT() throws IOException, InterruptedException {
+		runT.sortAndCollapse();
+
+		JoinRun joinRunT = runT;
+		if (spilledT != null && !spilledT.isEmpty()) {
+			if (runT.size() > 0) {
+				spilledT.spill(runT);
+				runT.clear();
+			}
+			spilledT.merge(histogramIndexer, false);
+			joinRunT = spilledT;
+		} else {
+			runT.computeHistogramIndices(histogramIndexer, false);
+		}
+
+		join(isSpilledS ? spilledS : runS, joinRunT);
+
+		runT.clear();
+		if (spilledT != null) {
+			spilledT.close();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (spilledS != null) {
+			spilledS.close();
+		}
+		if (spilledT != null) {
+			spilledT.close();
+		}
+	}
+
+	/**
+	 * Sorts and collapses the run, and spills it unless collapsing the
+	 * duplicates freed enough space.
+	 */
+	private void spillIfOverBudget(SortedRun run, SpilledRun spilled, long memoryBudget) throws IOException {
+		run.sortAndCollapse();
+
+		if ((long) run.size() * BYTES_PER_VALUE > memoryBudget / 2) {
+			spilled.spill(run);
+			run.clear();
+		}
+	}
+
+	/**
+	 * The sliding window of every part of the query, of S over T.
+	 */
+	private void join(JoinRun joinRunS, JoinRun joinRunT) throws IOException, InterruptedException {
+		int sizeS = joinRunS.size();
+		int sizeT = joinRunT.size();
+		if (sizeS == 0 || sizeT == 0) {
+			return;
+		}
+
+		boolean aggregate = outputMode != JoinOutputMode.MATERIALIZE;
+
+		for (ThetaPredicate predicate : queryParts) {
+			/*	Window [low, high) over S, for the current value of T (from the first one with a non-empty range).	*/
+			int low = -1;
+			int high = -1;
+
+			for (int t = 0 ; t < sizeT; ++t) {
+				long valueT = joinRunT.value(t);
+				long lowestValueS = predicate.lowestS(valueT);
+				long highestValueS = predicate.highestS(valueT);
+				if (lowestValueS > highestValueS) {
+					continue;
+				}
+				if (low < 0) {
+					low = joinRunS.ceilingIndex(lowestValueS);
+					high = low;
+				}
+
+				while (low < sizeS && joinRunS.value(low) < lowestValueS) {
+					++low;
+				}
+				if (high < low) {
+					high = low;
+				}
+				while (high < sizeS && joinRunS.value(high) <= highestValueS) {
+					++high;
+				}
+				if (low == sizeS) {
+					break;
+				}
+
+				int histogramIndexT = joinRunT.histogramIndex(t);
+				if (histogramIndexT < 0 || low == high) {
+					continue;
+				}
+
+				if (aggregate) {
+					emitAggregateWindow(joinRunS, low, high, histogramIndexT, joinRunT.duplication(t));
+					continue;
+				}
+
+				long duplicationT = joinRunT.duplication(t);
+				for (int s = low ; s < high; ++s) {
+					if (partitionCells.contains(joinRunS.histogramIndex(s), histogramIndexT)) {
+						emit(joinRunS.value(s), joinRunS.duplication(s), valueT, duplicationT);
+					}
+				}
+			}
+		}
+	}
+
+}
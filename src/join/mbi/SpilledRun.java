@@ -0,0 +1,255 @@
+/**
+ * SpilledRun.java
+ *
+ * The on-disk counterpart of a SortedRun, for relations that do not fit in
+ * the memory budget of a reducer.
+ *
+ * Sorted runs are spilled to local files as (value, duplication) records.
+ * merge() then merges them (k-way) into a single file of fixed length records,
+ * sorted by value with equal values collapsed:
+ * 	-	8 bytes: value
+ * 	-	8 bytes: duplication
+ * 	-	4 bytes: histogram index
+ * 	-	4 bytes: first position of its segment (equal histogram index)
+ * 	-	8 bytes: sum of the duplications of the previous records
+ *
+ * The merged file is memory-mapped (in chunks, as a MappedByteBuffer cannot
+ * exceed 2GB) and accessed by record index.
+ *
+ * @author John Koumarelas
+ */
+
+package join.mbi;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.PriorityQueue;
+
+public class SpilledRun implements JoinRun {
+
+	private static final int RECORD_LENGTH = 32;
+	private static final int CHUNK_RECORDS = (1 << 30) / RECORD_LENGTH;
+
+	private File directory;
+
+	private ArrayList<File> spills = new ArrayList<File>();
+
+	private File merged = null;
+	private RandomAccessFile mergedFile = null;
+	private MappedByteBuffer[] chunks = new MappedByteBuffer[0];
+	private int size = 0;
+	private long totalDuplication = 0;
+
+	/**
+	 * Cursor over a spill, during the merge.
+	 */
+	private static class SpillCursor implements Comparable<SpillCursor> {
+		private DataInputStream in;
+		private long value;
+		private long duplication;
+
+		public SpillCursor(File spill) throws IOException {
+			in = new DataInputStream(new BufferedInputStream(new FileInputStream(spill), 64 * 1024));
+		}
+
+		public boolean next() throws IOException {
+			try {
+				value = in.readLong();
+				duplication = in.readLong();
+				return true;
+			} catch (EOFException e) {
+				in.close();
+				return false;
+			}
+		}
+
+		@Override
+		public int compareTo(SpillCursor o) {
+			return value < o.value ? -1 : (value == o.value ? 0 : 1);
+		}
+	}
+
+	public SpilledRun(File directory) {
+		this.directory = directory;
+	}
+
+	public boolean isEmpty() {
+		return spills.isEmpty() && merged == null;
+	}
+
+	/**
+	 * Writes the run (already sorted and collapsed) to a new spill.
+	 */
+	public void spill(SortedRun run) throws IOException {
+		File spill = File.createTempFile("mbiSpill", ".bin", directory);
+		spill.deleteOnExit();
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(spill), 64 * 1024));
+		long[] values = run.getValues();
+		long[] duplications = run.getDuplications();
+		for (int i = 0 ; i < run.size(); ++i) {
+			out.writeLong(values[i]);
+			out.writeLong(duplications[i]);
+		}
+		out.close();
+
+		spills.add(spill);
+	}
+
+	/**
+	 * Merges the spills into a single sorted file, with the histogram index and the segment
+	 * of every value, and maps it to memory. The spills are deleted.
+	 */
+	public void merge(HistogramIndexer histogramIndexer, boolean isRelationS) throws IOException {
+		merged = File.createTempFile("mbiMerged", ".bin", directory);
+		merged.deleteOnExit();
+
+		PriorityQueue<SpillCursor> pq = new PriorityQueue<SpillCursor>();
+		for (File spill : spills) {
+			SpillCursor cursor = new SpillCursor(spill);
+			if (cursor.next()) {
+				pq.add(cursor);
+			}
+		}
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(merged), 64 * 1024));
+		size = 0;
+		totalDuplication = 0;
+		int histogramIndexPrevious = 0;
+		int segmentStart = 0;
+		while (!pq.isEmpty()) {
+			SpillCursor cursor = pq.poll();
+			long value = cursor.value;
+			long duplication = cursor.duplication;
+			if (cursor.next()) {
+				pq.add(cursor);
+			}
+
+			/*	Collapse equal values of different spills.	*/
+			while (!pq.isEmpty() && pq.peek().value == value) {
+				cursor = pq.poll();
+				duplication += cursor.duplication;
+				if (cursor.next()) {
+					pq.add(cursor);
+				}
+			}
+
+			int histogramIndex = histogramIndexer.valueToBoundaryIndex(value, isRelationS);
+			if (size == 0 || histogramIndex != histogramIndexPrevious) {
+				segmentStart = size;
+				histogramIndexPrevious = histogramIndex;
+			}
+
+			out.writeLong(value);
+			out.writeLong(duplication);
+			out.writeInt(histogramIndex);
+			out.writeInt(segmentStart);
+			out.writeLong(totalDuplication);
+			totalDuplication += duplication;
+			++size;
+		}
+		out.close();
+
+		for (File spill : spills) {
+			spill.delete();
+		}
+		spills.clear();
+
+		mergedFile = new RandomAccessFile(merged, "r");
+		FileChannel channel = mergedFile.getChannel();
+		chunks = new MappedByteBuffer[(size + CHUNK_RECORDS - 1) / CHUNK_RECORDS];
+		for (int i = 0 ; i < chunks.length; ++i) {
+			long position = (long) i * CHUNK_RECORDS * RECORD_LENGTH;
+			long length = Math.min((long) CHUNK_RECORDS * RECORD_LENGTH, (long) size * RECORD_LENGTH - position);
+			chunks[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+		}
+	}
+
+	/**
+	 * Releases the files. The mappings are released by the garbage collector.
+	 */
+	public void close() throws IOException {
+		for (File spill : spills) {
+			spill.delete();
+		}
+		spills.clear();
+
+		if (mergedFile != null) {
+			mergedFile.close();
+			mergedFile = null;
+		}
+		if (merged != null) {
+			merged.delete();
+			merged = null;
+		}
+		chunks = new MappedByteBuffer[0];
+		size = 0;
+		totalDuplication = 0;
+	}
+
+	/*	Access of the merged run, by record index.	*/
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public long value(int i) {
+		return chunks[i / CHUNK_RECORDS].getLong((i % CHUNK_RECORDS) * RECORD_LENGTH);
+	}
+
+	@Override
+	public long duplication(int i) {
+		return chunks[i / CHUNK_RECORDS].getLong((i % CHUNK_RECORDS) * RECORD_LENGTH + 8);
+	}
+
+	@Override
+	public int histogramIndex(int i) {
+		return chunks[i / CHUNK_RECORDS].getInt((i % CHUNK_RECORDS) * RECORD_LENGTH + 16);
+	}
+
+	@Override
+	public int segmentStart(int i) {
+		return chunks[i / CHUNK_RECORDS].getInt((i % CHUNK_RECORDS) * RECORD_LENGTH + 20);
+	}
+
+	@Override
+	public long duplications(int from, int to) {
+		return prefixDuplication(to) - prefixDuplication(from);
+	}
+
+	private long prefixDuplication(int i) {
+		if (i == size) {
+			return totalDuplication;
+		}
+		return chunks[i / CHUNK_RECORDS].getLong((i % CHUNK_RECORDS) * RECORD_LENGTH + 24);
+	}
+
+	@Override
+	public int ceilingIndex(long value) {
+		int start = 0;
+		int end = size;
+		while (start < end) {
+			int middle = (start + end) >>> 1;
+			if (value(middle) < value) {
+				start = middle + 1;
+			} else {
+				end = middle;
+			}
+		}
+		return start;
+	}
+
+}
@@ -0,0 +1,124 @@
+/**
+ * StreamingMergeJoinEngine.java
+ *
+ * Join engine of the MBucketI reducer for values that arrive already sorted,
+ * as with the secondary sort of PartitionRelationValue: first the values of S
+ * in ascending order, then the values of T in ascending order.
+ *
+ * S is appended to a SortedRun without sorting. T is not buffered at all: every
+ * value of T is joined as soon as it is added, with one window [lowestS(T), highestS(T)]
+ * over S per part of the query. As T only grows, both ends of every window only move
+ * forward, which gives O(|S| + |T| + output) per part, without trees or sorting.
+ *
+ * @author John Koumarelas
+ */
+
+package join.mbi;
+
+import java.io.IOException;
+
+import join.ThetaPredicate;
+
+public class StreamingMergeJoinEngine extends MBIJoinEngine {
+
+	private SortedRun runS = new SortedRun();
+
+	/*	Window [low[b], high[b]) over S, per part b of the query.	*/
+	private int[] low;
+	private int[] high;
+
+	public StreamingMergeJoinEngine(ThetaPredicate[] queryParts, HistogramIndexer histogramIndexer, ResultCollector collector) {
+		super(queryParts, histogramIndexer, collector);
+
+		this.low = new int[queryParts.length];
+		this.high = new int[queryParts.length];
+	}
+
+	@Override
+	public void clearS() {
+		runS.clear();
+	}
+
+	/**
+	 * The values of S must be added in ascending order.
+	 */
+	@Override
+	public void addS(long valueS, long duplicationS) {
+		runS.appendSorted(valueS, duplicationS);
+	}
+
+	@Override
+	public void finishS() {
+		runS.computeHistogramIndices(histogramIndexer, true);
+		if (outputMode != JoinOutputMode.MATERIALIZE) {
+			runS.computeSegments();
+		}
+
+		for (int b = 0 ; b < queryParts.length; ++b) {
+			low[b] = 0;
+			high[b] = 0;
+		}
+	}
+
+	/**
+	 * The values of T must be added in ascending order.
+	 */
+	@Override
+	public void addT(long valueT, long duplicationT) throws IOException, InterruptedException {
+		int sizeS = runS.size();
+		if (sizeS == 0) {
+			return;
+		}
+
+		int histogramIndexT = histogramIndexer.valueToBoundaryIndex(valueT, false);
+
+		long[] valuesS = runS.getValues();
+		long[] duplicationsS = runS.getDuplications();
+		int[] histogramIndicesS = runS.getHistogramIndices();
+
+		boolean aggregate = outputMode != JoinOutputMode.MATERIALIZE;
+
+		for (int b = 0 ; b < queryParts.length; ++b) {
+			long lowestValueS = queryParts[b].lowestS(valueT);
+			long highestValueS = queryParts[b].highestS(valueT);
+			if (lowestValueS > highestValueS) {
+				continue;
+			}
+
+			int l = low[b];
+			int h = high[b];
+			while (l < sizeS && valuesS[l] < lowestValueS) {
+				++l;
+			}
+			if (h < l) {
+				h = l;
+			}
+			while (h < sizeS && valuesS[h] <= highestValueS) {
+				++h;
+			}
+			low[b] = l;
+			high[b] = h;
+
+			if (histogramIndexT < 0 || l == h) {
+				continue;
+			}
+
+			if (aggregate) {
+				emitAggregateWindow(runS, l, h, histogramIndexT, duplicationT);
+				continue;
+			}
+
+			for (int s = l ; s < h; ++s) {
+				if (partitionCells.contains(histogramIndicesS[s], histogramIndexT)) {
+					emit(valuesS[s], duplicationsS[s], valueT, duplicationT);
+				}
+			}
+		}
+	}
+
+	@Override
+	public void finishT() {
+		;// Every T value has already been joined at addT
+	}
+
+}
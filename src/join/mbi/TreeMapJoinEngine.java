@@ -0,0 +1,113 @@
+/**
+ * TreeMapJoinEngine.java
+ *
+ * The original join of the MBucketI reducer. The values of S are kept
+ * in a TreeMap (value -> duplication) and each distinct T value probes
+ * it once per part of the query.
+ *
+ * T is streamed: only S is held in memory. This is the default engine.
+ *
+ * @author John Koumarelas
+ */
+
+package join.mbi;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map.Entry;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+
+import join.ThetaPredicate;
+
+public class TreeMapJoinEngine extends MBIJoinEngine {
+
+	private TreeMap<Long,Long> sValuesDuplication = new TreeMap<Long,Long>();
+	private TreeMap<Long,Integer> sValuesToHistogramMapping = new TreeMap<Long, Integer>(); // Mapping of S values to their histogram index
+
+	public TreeMapJoinEngine(ThetaPredicate[] queryParts, HistogramIndexer histogramIndexer, ResultCollector collector) {
+		super(queryParts, histogramIndexer, collector);
+	}
+
+	@Override
+	public void clearS() {
+		sValuesDuplication.clear();
+	}
+
+	@Override
+	public void addS(long valueS, long duplicationS) {
+		if (sValuesDuplication.containsKey(valueS)) {
+			duplicationS += sValuesDuplication.get(valueS);
+		}
+
+		sValuesDuplication.put(valueS,duplicationS);
+	}
+
+	@Override
+	public void finishS() {
+		boolean isRelationS = true;
+
+		/*	Transform tuples from S to include their histogram indices.	*/
+		sValuesToHistogramMapping.clear();
+		for(Entry<Long,Long> entry : sValuesDuplication.entrySet()) {
+			sValuesToHistogramMapping.put(entry.getKey(), histogramIndexer.valueToBoundaryIndex(entry.getKey(),isRelationS));
+		}
+	}
+
+	@Override
+	public void addT(long valueT, long duplicationT) throws IOException, InterruptedException {
+		boolean isRelationS = false;
+
+		int histogramIndexT = histogramIndexer.valueToBoundaryIndex(valueT,isRelationS);
+
+		for(ThetaPredicate predicate : queryParts){
+
+			long lowestValueT = predicate.lowestS(valueT);
+			long highestValueT = predicate.highestS(valueT);
+
+			Long lowestS = sValuesDuplication.ceilingKey(lowestValueT);
+			if (lowestS == null) {
+				continue;
+			}
+			if (lowestS > highestValueT) {
+				continue;
+			}
+			Long highestS = sValuesDuplication.floorKey(highestValueT);
+			if (highestS == null) {
+				continue;
+			}
+			if(highestS < lowestValueT) {
+				continue;
+			}
+
+			NavigableMap<Long,Long> possibleDuplicationS =  sValuesDuplication.subMap(lowestS, true, highestS, true);
+			NavigableMap<Long,Integer> possibleHistogramS =  sValuesToHistogramMapping.subMap(lowestS, true, highestS, true);
+
+			if(possibleDuplicationS.size() == 0) {
+				continue;
+			}
+
+			Iterator<Entry<Long,Long>> itValuesSD = possibleDuplicationS.entrySet().iterator();
+			Iterator<Entry<Long,Integer>> itValuesSHM = possibleHistogramS.entrySet().iterator();
+
+			while(itValuesSD.hasNext()) {
+				Entry<Long,Long> entrySD = itValuesSD.next();
+				long valueS = entrySD.getKey();
+				long duplicationS = entrySD.getValue();
+
+				Entry<Long, Integer> entrySHM = itValuesSHM.next();
+				int histogramIndexS = entrySHM.getValue();
+
+				if(partitionCells.contains(histogramIndexS, histogramIndexT)) {
+					emit(valueS, duplicationS, valueT, duplicationT);
+				}
+			}
+		}
+	}
+
+	@Override
+	public void finishT() {
+		;// Every T value has already been joined at addT
+	}
+
+}
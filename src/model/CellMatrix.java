@@ -0,0 +1,60 @@
+/**
+ * CellMatrix.java
+ *
+ * The cells of the partition matrix. The cell (i,j) is non-zero when the
+ * i-th bucket of S and the j-th bucket of T may produce join results (a
+ * candidate cell).
+ *
+ * The non-zero cells of a row are iterated with nextNonZero, and its
+ * intervals of consecutive non-zero cells with nextNonZero and nextZero:
+ * 	column = nextNonZero(row, 0)
+ * 	while column < getColumns():
+ * 		end = nextZero(row, column) // [column, end) are non-zero
+ * 		column = nextNonZero(row, end)
+ *
+ * Implementations:
+ * 	-	DenseCellMatrix: every cell, in a long[rows][columns].
+ * 	-	SparseCellMatrix: only the non-zero cells of every row (CSR) and their
+ * 		intervals, for matrices that are mostly empty (e.g. band joins).
+ *
+ * @author John Koumarelas
+ */
+
+package model;
+
+public interface CellMatrix {
+
+	int getRows();
+
+	int getColumns();
+
+	long get(int row, int column);
+
+	/**
+	 * @return the first column from column onwards whose cell is non-zero, getColumns() if none.
+	 */
+	int nextNonZero(int row, int column);
+
+	/**
+	 * @return the first column from column onwards whose cell is zero, getColumns() if none.
+	 */
+	int nextZero(int row, int column);
+
+	/**
+	 * The number of candidate cells.
+	 */
+	int countNonZero();
+
+	/**
+	 * The matrix whose cell (i,j) is the cell (rows[i],columns[j]) of this one.
+	 */
+	CellMatrix permute(int[] rows, int[] columns);
+
+	CellMatrix transpose();
+
+	/**
+	 * The cells in a long[rows][columns], for the algorithms that need every cell.
+	 */
+	long[][] toArray();
+
+}
@@ -0,0 +1,107 @@
+/**
+ * DenseCellMatrix.java
+ *
+ * A CellMatrix that stores every cell in a long[rows][columns].
+ *
+ * @author John Koumarelas
+ */
+
+package model;
+
+public class DenseCellMatrix implements CellMatrix {
+
+	private long[][] matrix;
+
+	public DenseCellMatrix(int rows, int columns) {
+		this.matrix = new long[rows][columns];
+	}
+
+	/**
+	 * The matrix is not copied.
+	 */
+	public DenseCellMatrix(long[][] matrix) {
+		this.matrix = matrix;
+	}
+
+	@Override
+	public int getRows() {
+		return matrix.length;
+	}
+
+	@Override
+	public int getColumns() {
+		return matrix.length == 0 ? 0 : matrix[0].length;
+	}
+
+	@Override
+	public long get(int row, int column) {
+		return matrix[row][column];
+	}
+
+	public void set(int row, int column, long value) {
+		matrix[row][column] = value;
+	}
+
+	@Override
+	public int nextNonZero(int row, int column) {
+		long[] cells = matrix[row];
+		while (column < cells.length && cells[column] == 0) {
+			++column;
+		}
+		return column;
+	}
+
+	@Override
+	public int nextZero(int row, int column) {
+		long[] cells = matrix[row];
+		while (column < cells.length && cells[column] != 0) {
+			++column;
+		}
+		return column;
+	}
+
+	@Override
+	public int countNonZero() {
+		int counter = 0;
+		for (long[] cells : matrix) {
+			for (long cell : cells) {
+				if (cell != 0) {
+					++counter;
+				}
+			}
+		}
+		return counter;
+	}
+
+	@Override
+	public DenseCellMatrix permute(int[] rows, int[] columns) {
+		long[][] permuted = new long[rows.length][columns.length];
+		for (int i = 0 ; i < rows.length; ++i) {
+			long[] cells = matrix[rows[i]];
+			for (int j = 0 ; j < columns.length; ++j) {
+				permuted[i][j] = cells[columns[j]];
+			}
+		}
+		return new DenseCellMatrix(permuted);
+	}
+
+	@Override
+	public DenseCellMatrix transpose() {
+		long[][] transposed = new long[getColumns()][getRows()];
+		for (int i = 0 ; i < getRows(); ++i) {
+			for (int j = 0 ; j < getColumns(); ++j) {
+				transposed[j][i] = matrix[i][j];
+			}
+		}
+		return new DenseCellMatrix(transposed);
+	}
+
+	/**
+	 * The matrix itself, not a copy.
+	 */
+	@Override
+	public long[][] toArray() {
+		return matrix;
+	}
+
+}
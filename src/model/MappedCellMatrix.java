@@ -0,0 +1,502 @@
+/**
+ * MappedCellMatrix.java
+ *
+ * A read-only CellMatrix over the binary partition matrix file (pm.bin),
+ * memory-mapped instead of parsed: every row is decoded the first time it is
+ * accessed and kept decoded from then on.
+ *
+ * The file (big-endian):
+ * 	-	4 bytes: MAGIC
+ * 	-	4 bytes: VERSION
+ * 	-	1 byte: Format (ordinal)
+ * 	-	4 bytes: rows
+ * 	-	4 bytes: columns
+ * 	-	8 bytes: number of non-zero cells
+ * 	-	8 bytes * (rows + 1): offset of every row (and of the end), from the start of the rows
+ * 	-	the rows, one block per row, as of the Format:
+ * 		-	DENSE: every cell, 8 bytes.
+ * 		-	SPARSE: the number of non-zero cells (4 bytes), their columns (4 bytes each)
+ * 			and their values (8 bytes each).
+ * 		-	DENSE_VARINT: every cell, as a varint.
+ * 		-	SPARSE_VARINT: the number of non-zero cells, then for every one of them the
+ * 			gap from the previous column (column - previous - 1) and the value, all varints.
+ * 	Varints are zigzag LEB128 (1 byte for values in [-64, 64)).
+ *
+ * The file is mapped in chunks of whole rows, as a MappedByteBuffer cannot
+ * exceed 2GB. A file that cannot be mapped (e.g. on HDFS) is decoded from a
+ * stream into a SparseCellMatrix instead (read()).
+ *
+ * @author John Koumarelas
+ */
+
+package model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+public class MappedCellMatrix implements CellMatrix {
+
+	public static final int MAGIC = 0x504D4231; // "PMB1"
+	public static final int VERSION = 1;
+
+	private static final int HEADER_LENGTH = 4 + 4 + 1 + 4 + 4 + 8;
+	private static final long CHUNK_BYTES = 1L << 30;
+
+	public enum Format {
+		DENSE("DENSE"), SPARSE("SPARSE"), DENSE_VARINT("DENSE_VARINT"), SPARSE_VARINT("SPARSE_VARINT");
+
+		String format;
+
+		private Format(String format) {
+			this.format = format;
+		}
+
+		@Override
+		public String toString() {
+			return format;
+		}
+	}
+
+	/**
+	 * The non-zero cells of a decoded row.
+	 */
+	private static class Row {
+		private final int[] columns;
+		private final long[] values;
+
+		public Row(int[] columns, long[] values) {
+			this.columns = columns;
+			this.values = values;
+		}
+	}
+
+	private Format format;
+	private int rows;
+	private int columns;
+	private int nonZero;
+
+	private long[] rowOffsets;
+	private ByteBuffer[] chunks;
+	private int[] rowChunk; // row -> its chunk
+	private long[] chunkOffsets; // chunk -> offset of its first row
+
+	/*	row -> the row, once decoded. Shared by the threads: a Row is immutable,
+		so a thread at worst decodes a row that another one is decoding too.	*/
+	private Row[] decodedRows;
+
+	private MappedCellMatrix() {
+	}
+
+	/**
+	 * Maps the file of the channel (read-only). The channel may be closed afterwards.
+	 */
+	public static MappedCellMatrix map(FileChannel channel) throws IOException {
+		ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, Math.min(channel.size(), HEADER_LENGTH));
+		MappedCellMatrix matrix = readHeader(header);
+
+		long indexLength = 8L * (matrix.rows + 1);
+		ByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_LENGTH, indexLength);
+		matrix.readRowOffsets(index);
+
+		long dataStart = HEADER_LENGTH + indexLength;
+		matrix.splitChunks();
+		matrix.chunks = new ByteBuffer[matrix.chunkOffsets.length - 1];
+		for (int c = 0 ; c < matrix.chunks.length; ++c) {
+			long length = matrix.chunkOffsets[c + 1] - matrix.chunkOffsets[c];
+			matrix.chunks[c] = channel.map(FileChannel.MapMode.READ_ONLY, dataStart + matrix.chunkOffsets[c], length);
+		}
+		matrix.decodedRows = new Row[matrix.rows];
+		return matrix;
+	}
+
+	/**
+	 * Decodes the whole file from the stream, in a single pass (e.g. from a non-local
+	 * file system, which cannot be mapped). The stream is not closed.
+	 */
+	public static SparseCellMatrix read(InputStream stream) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(stream, 64 * 1024));
+
+		byte[] header = new byte[HEADER_LENGTH];
+		in.readFully(header);
+		MappedCellMatrix matrix = readHeader(ByteBuffer.wrap(header));
+		for (int i = 0 ; i <= matrix.rows; ++i) {
+			in.readLong(); // the row offsets, not needed sequentially
+		}
+
+		SparseCellMatrix.Builder builder = new SparseCellMatrix.Builder(matrix.rows, matrix.columns);
+		for (int i = 0 ; i < matrix.rows; ++i) {
+			switch (matrix.format) {
+				case DENSE:
+					for (int j = 0 ; j < matrix.columns; ++j) {
+						builder.add(j, in.readLong());
+					}
+					break;
+				case SPARSE: {
+					int count = in.readInt();
+					int[] rowColumns = new int[count];
+					for (int k = 0 ; k < count; ++k) {
+						rowColumns[k] = in.readInt();
+					}
+					for (int k = 0 ; k < count; ++k) {
+						builder.add(rowColumns[k], in.readLong());
+					}
+					break;
+				}
+				case DENSE_VARINT:
+					for (int j = 0 ; j < matrix.columns; ++j) {
+						builder.add(j, readVarint(in));
+					}
+					break;
+				case SPARSE_VARINT: {
+					int count = (int) readVarint(in);
+					int column = -1;
+					for (int k = 0 ; k < count; ++k) {
+						column += 1 + (int) readVarint(in);
+						builder.add(column, readVarint(in));
+					}
+					break;
+				}
+			}
+			builder.endRow();
+		}
+		return builder.build();
+	}
+
+	/**
+	 * @return whether the buffer starts as a binary partition matrix file.
+	 */
+	public static boolean isBinary(byte[] start) {
+		return start.length >= 4 && ByteBuffer.wrap(start).getInt() == MAGIC;
+	}
+
+	private static MappedCellMatrix readHeader(ByteBuffer header) throws IOException {
+		if (header.remaining() < HEADER_LENGTH || header.getInt() != MAGIC) {
+			throw new IOException("Not a binary partition matrix file");
+		}
+		int version = header.getInt();
+		if (version != VERSION) {
+			throw new IOException("Unsupported binary partition matrix version: " + version);
+		}
+		MappedCellMatrix matrix = new MappedCellMatrix();
+		matrix.format = Format.values()[header.get()];
+		matrix.rows = header.getInt();
+		matrix.columns = header.getInt();
+		matrix.nonZero = (int) header.getLong();
+		return matrix;
+	}
+
+	private void readRowOffsets(ByteBuffer index) {
+		rowOffsets = new long[rows + 1];
+		for (int i = 0 ; i <= rows; ++i) {
+			rowOffsets[i] = index.getLong();
+		}
+	}
+
+	/**
+	 * Chunks of consecutive rows, of at most CHUNK_BYTES each (unless a single row exceeds it).
+	 */
+	private void splitChunks() {
+		rowChunk = new int[rows];
+		long[] offsets = new long[rows + 1];
+		int chunkCount = 0;
+		offsets[chunkCount++] = 0;
+		for (int i = 0 ; i < rows; ++i) {
+			if (rowOffsets[i + 1] - offsets[chunkCount - 1] > CHUNK_BYTES && rowOffsets[i] > offsets[chunkCount - 1]) {
+				offsets[chunkCount++] = rowOffsets[i];
+			}
+			rowChunk[i] = chunkCount - 1;
+		}
+		offsets[chunkCount++] = rowOffsets[rows];
+		chunkOffsets = Arrays.copyOf(offsets, chunkCount);
+	}
+
+	/**
+	 * A view of the block of the row, from its start.
+	 */
+	private ByteBuffer rowBuffer(int row) {
+		int c = rowChunk[row];
+		ByteBuffer buffer = chunks[c].duplicate();
+		buffer.position((int) (rowOffsets[row] - chunkOffsets[c]));
+		return buffer;
+	}
+
+	private Row row(int row) {
+		Row cached = decodedRows[row];
+		if (cached != null) {
+			return cached;
+		}
+
+		ByteBuffer buffer = rowBuffer(row);
+		int[] rowColumns;
+		long[] rowValues;
+		switch (format) {
+			case SPARSE: {
+				int count = buffer.getInt();
+				rowColumns = new int[count];
+				rowValues = new long[count];
+				for (int k = 0 ; k < count; ++k) {
+					rowColumns[k] = buffer.getInt();
+				}
+				for (int k = 0 ; k < count; ++k) {
+					rowValues[k] = buffer.getLong();
+				}
+				break;
+			}
+			case SPARSE_VARINT: {
+				int count = (int) readVarint(buffer);
+				rowColumns = new int[count];
+				rowValues = new long[count];
+				int column = -1;
+				for (int k = 0 ; k < count; ++k) {
+					column += 1 + (int) readVarint(buffer);
+					rowColumns[k] = column;
+					rowValues[k] = readVarint(buffer);
+				}
+				break;
+			}
+			default: {
+				int count = 0;
+				rowColumns = new int[16];
+				rowValues = new long[16];
+				for (int j = 0 ; j < columns; ++j) {
+					long value = format == Format.DENSE ? buffer.getLong() : readVarint(buffer);
+					if (value != 0) {
+						if (count == rowColumns.length) {
+							rowColumns = Arrays.copyOf(rowColumns, count << 1);
+							rowValues = Arrays.copyOf(rowValues, count << 1);
+						}
+						rowColumns[count] = j;
+						rowValues[count] = value;
+						++count;
+					}
+				}
+				rowColumns = Arrays.copyOf(rowColumns, count);
+				rowValues = Arrays.copyOf(rowValues, count);
+				break;
+			}
+		}
+
+		Row decoded = new Row(rowColumns, rowValues);
+		decodedRows[row] = decoded;
+		return decoded;
+	}
+
+	@Override
+	public int getRows() {
+		return rows;
+	}
+
+	@Override
+	public int getColumns() {
+		return columns;
+	}
+
+	@Override
+	public long get(int row, int column) {
+		if (format == Format.DENSE) {
+			int c = rowChunk[row];
+			return chunks[c].getLong((int) (rowOffsets[row] - chunkOffsets[c]) + 8 * column);
+		}
+		Row r = row(row);
+		int index = Arrays.binarySearch(r.columns, column);
+		return index >= 0 ? r.values[index] : 0;
+	}
+
+	@Override
+	public int nextNonZero(int row, int column) {
+		Row r = row(row);
+		int index = Arrays.binarySearch(r.columns, column);
+		if (index < 0) {
+			index = -index - 1;
+		}
+		return index < r.columns.length ? r.columns[index] : columns;
+	}
+
+	@Override
+	public int nextZero(int row, int column) {
+		Row r = row(row);
+		int index = Arrays.binarySearch(r.columns, column);
+		if (index < 0) {
+			return Math.min(column, columns);
+		}
+		while (index + 1 < r.columns.length && r.columns[index + 1] == r.columns[index] + 1) {
+			++index;
+		}
+		return r.columns[index] + 1;
+	}
+
+	@Override
+	public int countNonZero() {
+		return nonZero;
+	}
+
+	@Override
+	public CellMatrix permute(int[] rows, int[] columns) {
+		return SparseCellMatrix.of(this).permute(rows, columns);
+	}
+
+	@Override
+	public CellMatrix transpose() {
+		return SparseCellMatrix.of(this).transpose();
+	}
+
+	@Override
+	public long[][] toArray() {
+		long[][] matrix = new long[rows][columns];
+		for (int i = 0 ; i < rows; ++i) {
+			Row r = row(i);
+			for (int k = 0 ; k < r.columns.length; ++k) {
+				matrix[i][r.columns[k]] = r.values[k];
+			}
+		}
+		return matrix;
+	}
+
+	/**
+	 * Writes the matrix in the given Format. The stream is not closed.
+	 */
+	public static void write(CellMatrix matrix, Format format, OutputStream stream) throws IOException {
+		int rows = matrix.getRows();
+		int columns = matrix.getColumns();
+
+		/*	The length of every row, for the offsets that precede the rows	*/
+		long[] rowOffsets = new long[rows + 1];
+		long nonZero = 0;
+		for (int i = 0 ; i < rows; ++i) {
+			long length = 0;
+			int count = 0;
+			int previous = -1;
+			for (int j = matrix.nextNonZero(i, 0) ; j < columns; j = matrix.nextNonZero(i, j + 1)) {
+				++count;
+				if (format == Format.SPARSE_VARINT) {
+					length += varintLength(j - previous - 1) + varintLength(matrix.get(i, j));
+				} else if (format == Format.DENSE_VARINT) {
+					length += varintLength(matrix.get(i, j)) - 1; // the zeros are counted below
+				}
+				previous = j;
+			}
+			switch (format) {
+				case DENSE:
+					length = 8L * columns;
+					break;
+				case SPARSE:
+					length = 4 + 12L * count;
+					break;
+				case DENSE_VARINT:
+					length += columns;
+					break;
+				case SPARSE_VARINT:
+					length += varintLength(count);
+					break;
+			}
+			rowOffsets[i + 1] = rowOffsets[i] + length;
+			nonZero += count;
+		}
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 64 * 1024));
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeByte(format.ordinal());
+		out.writeInt(rows);
+		out.writeInt(columns);
+		out.writeLong(nonZero);
+		for (long offset : rowOffsets) {
+			out.writeLong(offset);
+		}
+
+		int[] rowColumns = new int[16];
+		for (int i = 0 ; i < rows; ++i) {
+			int count = 0;
+			for (int j = matrix.nextNonZero(i, 0) ; j < columns; j = matrix.nextNonZero(i, j + 1)) {
+				if (count == rowColumns.length) {
+					rowColumns = Arrays.copyOf(rowColumns, count << 1);
+				}
+				rowColumns[count++] = j;
+			}
+
+			switch (format) {
+				case DENSE:
+					for (int j = 0 ; j < columns; ++j) {
+						out.writeLong(matrix.get(i, j));
+					}
+					break;
+				case SPARSE:
+					out.writeInt(count);
+					for (int k = 0 ; k < count; ++k) {
+						out.writeInt(rowColumns[k]);
+					}
+					for (int k = 0 ; k < count; ++k) {
+						out.writeLong(matrix.get(i, rowColumns[k]));
+					}
+					break;
+				case DENSE_VARINT:
+					for (int j = 0 ; j < columns; ++j) {
+						writeVarint(out, matrix.get(i, j));
+					}
+					break;
+				case SPARSE_VARINT:
+					writeVarint(out, count);
+					int previous = -1;
+					for (int k = 0 ; k < count; ++k) {
+						writeVarint(out, rowColumns[k] - previous - 1);
+						writeVarint(out, matrix.get(i, rowColumns[k]));
+						previous = rowColumns[k];
+					}
+					break;
+			}
+		}
+		out.flush();
+	}
+
+	private static void writeVarint(DataOutputStream out, long value) throws IOException {
+		long zigzag = (value << 1) ^ (value >> 63);
+		while ((zigzag & ~0x7FL) != 0) {
+			out.writeByte((int) ((zigzag & 0x7F) | 0x80));
+			zigzag >>>= 7;
+		}
+		out.writeByte((int) zigzag);
+	}
+
+	private static long readVarint(ByteBuffer buffer) {
+		long zigzag = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = buffer.get();
+			zigzag |= (long) (b & 0x7F) << shift;
+			shift += 7;
+		} while (b < 0);
+		return (zigzag >>> 1) ^ -(zigzag & 1);
+	}
+
+	private static long readVarint(DataInputStream in) throws IOException {
+		long zigzag = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = in.readByte();
+			zigzag |= (long) (b & 0x7F) << shift;
+			shift += 7;
+		} while (b < 0);
+		return (zigzag >>> 1) ^ -(zigzag & 1);
+	}
+
+	private static int varintLength(long value) {
+		long zigzag = (value << 1) ^ (value >> 63);
+		int length = 1;
+		while ((zigzag & ~0x7FL) != 0) {
+			zigzag >>>= 7;
+			++length;
+		}
+		return length;
+	}
+
+}
@@ -10,13 +10,15 @@
  * 
  * Encapsulates all the necessary information to describe the Partition Matrix.
  * 
+ * The cells are stored in a CellMatrix, dense or sparse (see CellMatrix).
+ * 
  * @author John Koumarelas
  */
 
 package model;
 
 public class PartitionMatrix {
-	protected long[][] matrix;
+	protected CellMatrix matrix;
 	protected BucketBoundaries[] boundariesS;
 	protected BucketBoundaries[] boundariesT; // bucket boundary
 	protected long[] countsS;
@@ -57,12 +59,21 @@ public class PartitionMatrix {
 	public void setCountsT(long[] countsT) {
 		this.countsT = countsT;
 	}
-	public long[][] getMatrix() {
+	public CellMatrix getCells() {
 		return matrix;
 	}
-	public void setMatrix(long[][] matrix) {
+	public void setCells(CellMatrix matrix) {
 		this.matrix = matrix;
 	}
+	/**
+	 * The cells in a long[][]: the matrix itself when they are stored dense, a copy otherwise.
+	 */
+	public long[][] getMatrix() {
+		return matrix.toArray();
+	}
+	public void setMatrix(long[][] matrix) {
+		this.matrix = new DenseCellMatrix(matrix);
+	}
 	public BucketBoundaries[] getBoundariesS() {
 		return boundariesS;
 	}
@@ -0,0 +1,299 @@
+/**
+ * SparseCellMatrix.java
+ *
+ * A CellMatrix that stores only the non-zero cells (CSR):
+ * 	-	rowStarts: row -> index of its first cell, rowStarts[rows] = number of cells
+ * 	-	cellColumns, cellValues: the cells of every row, in ascending column order
+ *
+ * and the intervals of consecutive non-zero cells of every row (a band join has
+ * one or a few per row), from which nextZero is answered:
+ * 	-	intervalRowStarts: row -> index of its first interval
+ * 	-	intervalFrom, intervalTo: the interval [from, to)
+ *
+ * Memory is O(rows + non-zero cells) instead of O(rows * columns). It is built
+ * row by row with a Builder.
+ *
+ * @author John Koumarelas
+ */
+
+package model;
+
+import java.util.Arrays;
+
+public class SparseCellMatrix implements CellMatrix {
+
+	private int rows;
+	private int columns;
+
+	private int[] rowStarts;
+	private int[] cellColumns;
+	private long[] cellValues;
+
+	private int[] intervalRowStarts;
+	private int[] intervalFrom;
+	private int[] intervalTo;
+
+	private SparseCellMatrix() {
+	}
+
+	/**
+	 * The non-zero cells of any CellMatrix.
+	 */
+	public static SparseCellMatrix of(CellMatrix matrix) {
+		if (matrix instanceof SparseCellMatrix) {
+			return (SparseCellMatrix) matrix;
+		}
+		Builder builder = new Builder(matrix.getRows(), matrix.getColumns());
+		for (int row = 0 ; row < matrix.getRows(); ++row) {
+			for (int column = matrix.nextNonZero(row, 0) ; column < matrix.getColumns(); column = matrix.nextNonZero(row, column + 1)) {
+				builder.add(column, matrix.get(row, column));
+			}
+			builder.endRow();
+		}
+		return builder.build();
+	}
+
+	@Override
+	public int getRows() {
+		return rows;
+	}
+
+	@Override
+	public int getColumns() {
+		return columns;
+	}
+
+	@Override
+	public long get(int row, int column) {
+		int index = Arrays.binarySearch(cellColumns, rowStarts[row], rowStarts[row + 1], column);
+		return index >= 0 ? cellValues[index] : 0;
+	}
+
+	@Override
+	public int nextNonZero(int row, int column) {
+		int index = Arrays.binarySearch(cellColumns, rowStarts[row], rowStarts[row + 1], column);
+		if (index < 0) {
+			index = -index - 1;
+		}
+		return index < rowStarts[row + 1] ? cellColumns[index] : columns;
+	}
+
+	@Override
+	public int nextZero(int row, int column) {
+		if (column >= columns) {
+			return columns;
+		}
+		/*	The last interval that starts at or before column	*/
+		int index = Arrays.binarySearch(intervalFrom, intervalRowStarts[row], intervalRowStarts[row + 1], column);
+		if (index < 0) {
+			index = -index - 2;
+		}
+		if (index >= intervalRowStarts[row] && column < intervalTo[index]) {
+			return intervalTo[index];
+		}
+		return column;
+	}
+
+	@Override
+	public int countNonZero() {
+		return rowStarts[rows];
+	}
+
+	/**
+	 * The number of intervals of consecutive non-zero cells of the row.
+	 */
+	public int countIntervals(int row) {
+		return intervalRowStarts[row + 1] - intervalRowStarts[row];
+	}
+
+	@Override
+	public SparseCellMatrix permute(int[] rows, int[] columns) {
+		int[] newColumn = new int[this.columns];
+		for (int j = 0 ; j < columns.length; ++j) {
+			newColumn[columns[j]] = j;
+		}
+
+		Builder builder = new Builder(rows.length, columns.length);
+		long[] sortKeys = new long[0];
+		for (int i = 0 ; i < rows.length; ++i) {
+			int from = rowStarts[rows[i]];
+			int to = rowStarts[rows[i] + 1];
+
+			/*	(new column, index of the cell), sorted by new column	*/
+			if (sortKeys.length < to - from) {
+				sortKeys = new long[to - from];
+			}
+			for (int k = from ; k < to; ++k) {
+				sortKeys[k - from] = ((long) newColumn[cellColumns[k]] << 32) | (k - from);
+			}
+			Arrays.sort(sortKeys, 0, to - from);
+			for (int k = 0 ; k < to - from; ++k) {
+				builder.add((int) (sortKeys[k] >>> 32), cellValues[from + (int) sortKeys[k]]);
+			}
+			builder.endRow();
+		}
+		return builder.build();
+	}
+
+	@Override
+	public SparseCellMatrix transpose() {
+		/*	Counting sort of the cells by column; every column in ascending row order.	*/
+		int cells = countNonZero();
+		int[] columnStarts = new int[columns + 1];
+		for (int k = 0 ; k < cells; ++k) {
+			++columnStarts[cellColumns[k] + 1];
+		}
+		for (int j = 0 ; j < columns; ++j) {
+			columnStarts[j + 1] += columnStarts[j];
+		}
+		int[] next = Arrays.copyOf(columnStarts, columns);
+		int[] transposedRows = new int[cells];
+		long[] transposedValues = new long[cells];
+		for (int i = 0 ; i < rows; ++i) {
+			for (int k = rowStarts[i] ; k < rowStarts[i + 1]; ++k) {
+				int index = next[cellColumns[k]]++;
+				transposedRows[index] = i;
+				transposedValues[index] = cellValues[k];
+			}
+		}
+
+		Builder builder = new Builder(columns, rows);
+		for (int j = 0 ; j < columns; ++j) {
+			for (int k = columnStarts[j] ; k < columnStarts[j + 1]; ++k) {
+				builder.add(transposedRows[k], transposedValues[k]);
+			}
+			builder.endRow();
+		}
+		return builder.build();
+	}
+
+	@Override
+	public long[][] toArray() {
+		long[][] matrix = new long[rows][columns];
+		for (int i = 0 ; i < rows; ++i) {
+			for (int k = rowStarts[i] ; k < rowStarts[i + 1]; ++k) {
+				matrix[i][cellColumns[k]] = cellValues[k];
+			}
+		}
+		return matrix;
+	}
+
+	/**
+	 * Builds a SparseCellMatrix row by row: the cells of a row are added in
+	 * ascending column order and the row is closed with endRow().
+	 */
+	public static class Builder {
+
+		private SparseCellMatrix matrix;
+
+		private int row;
+		private int cells;
+		private int intervals;
+
+		public Builder(int rows, int columns) {
+			matrix = new SparseCellMatrix();
+			matrix.rows = rows;
+			matrix.columns = columns;
+			matrix.rowStarts = new int[rows + 1];
+			matrix.cellColumns = new int[Math.max(rows, 16)];
+			matrix.cellValues = new long[matrix.cellColumns.length];
+			matrix.intervalRowStarts = new int[rows + 1];
+			matrix.intervalFrom = new int[Math.max(rows, 16)];
+			matrix.intervalTo = new int[matrix.intervalFrom.length];
+			row = 0;
+			cells = 0;
+			intervals = 0;
+		}
+
+		/**
+		 * Adds the cell (current row, column); zero values are not stored.
+		 */
+		public void add(int column, long value) {
+			if (value == 0) {
+				return;
+			}
+			if (cells == matrix.cellColumns.length) {
+				int capacity = cells + (cells >>> 1) + 1;
+				matrix.cellColumns = Arrays.copyOf(matrix.cellColumns, capacity);
+				matrix.cellValues = Arrays.copyOf(matrix.cellValues, capacity);
+			}
+			matrix.cellColumns[cells] = column;
+			matrix.cellValues[cells] = value;
+			++cells;
+
+			if (intervals > matrix.intervalRowStarts[row] && matrix.intervalTo[intervals - 1] == column) {
+				matrix.intervalTo[intervals - 1] = column + 1;
+			} else {
+				addInterval(column, column + 1);
+			}
+		}
+
+		/**
+		 * Adds the cells [from, to) of the current row, all with the same value.
+		 */
+		public void addCells(int from, int to, long value) {
+			for (int column = from ; column < to; ++column) {
+				add(column, value);
+			}
+		}
+
+		/**
+		 * Adds all the rows of the given matrix (of the same columns) after the current ones.
+		 */
+		public void addRows(SparseCellMatrix rows) {
+			int rowCells = rows.countNonZero();
+			int rowIntervals = rows.intervalFrom.length;
+			if (matrix.cellColumns.length < cells + rowCells) {
+				int capacity = Math.max(cells + rowCells, cells + (cells >>> 1) + 1);
+				matrix.cellColumns = Arrays.copyOf(matrix.cellColumns, capacity);
+				matrix.cellValues = Arrays.copyOf(matrix.cellValues, capacity);
+			}
+			if (matrix.intervalFrom.length < intervals + rowIntervals) {
+				int capacity = Math.max(intervals + rowIntervals, intervals + (intervals >>> 1) + 1);
+				matrix.intervalFrom = Arrays.copyOf(matrix.intervalFrom, capacity);
+				matrix.intervalTo = Arrays.copyOf(matrix.intervalTo, capacity);
+			}
+			System.arraycopy(rows.cellColumns, 0, matrix.cellColumns, cells, rowCells);
+			System.arraycopy(rows.cellValues, 0, matrix.cellValues, cells, rowCells);
+			System.arraycopy(rows.intervalFrom, 0, matrix.intervalFrom, intervals, rowIntervals);
+			System.arraycopy(rows.intervalTo, 0, matrix.intervalTo, intervals, rowIntervals);
+			for (int r = 1 ; r <= rows.rows; ++r) {
+				matrix.rowStarts[row + r] = cells + rows.rowStarts[r];
+				matrix.intervalRowStarts[row + r] = intervals + rows.intervalRowStarts[r];
+			}
+			row += rows.rows;
+			cells += rowCells;
+			intervals += rowIntervals;
+		}
+
+		public void endRow() {
+			++row;
+			matrix.rowStarts[row] = cells;
+			matrix.intervalRowStarts[row] = intervals;
+		}
+
+		public SparseCellMatrix build() {
+			while (row < matrix.rows) {
+				endRow();
+			}
+			matrix.cellColumns = Arrays.copyOf(matrix.cellColumns, cells);
+			matrix.cellValues = Arrays.copyOf(matrix.cellValues, cells);
+			matrix.intervalFrom = Arrays.copyOf(matrix.intervalFrom, intervals);
+			matrix.intervalTo = Arrays.copyOf(matrix.intervalTo, intervals);
+			return matrix;
+		}
+
+		private void addInterval(int from, int to) {
+			if (intervals == matrix.intervalFrom.length) {
+				int capacity = intervals + (intervals >>> 1) + 1;
+				matrix.intervalFrom = Arrays.copyOf(matrix.intervalFrom, capacity);
+				matrix.intervalTo = Arrays.copyOf(matrix.intervalTo, capacity);
+			}
+			matrix.intervalFrom[intervals] = from;
+			matrix.intervalTo[intervals] = to;
+			++intervals;
+		}
+
+	}
+
+}
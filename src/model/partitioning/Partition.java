@@ -11,33 +11,37 @@
  * be responsible for checking the combinations of the
  * two relations for the possible results.
  * 
+ * The buckets are kept in bitsets (BucketSet) and the cells in a
+ * sorted array (CellSet), so that the unions and intersections of
+ * the merging partitioners need neither boxing nor hashing.
+ * 
  * @author John Koumarelas
  */
 
 package model.partitioning;
 
-import java.util.HashSet;
 import java.util.Iterator;
 
-import datatypes.IntPair;
+import datatypes.BucketSet;
+import datatypes.CellSet;
 import model.PartitionMatrix;
 
 public class Partition {
 
 	protected PartitionMatrix pm;
 	protected int id; // group/reducer's id
-	protected HashSet<Integer> candidateS;
-	protected HashSet<Integer> candidateT;
-	protected HashSet<IntPair> candidateCells;
+	protected BucketSet candidateS;
+	protected BucketSet candidateT;
+	protected CellSet candidateCells;
 	
 	protected boolean changed;
 	protected long inputCost;
 	
 	public Partition() {
 		this.id = Integer.MIN_VALUE;
-		this.candidateS = new HashSet<Integer>();
-		this.candidateT = new HashSet<Integer>();
-		this.candidateCells = new HashSet<IntPair>();
+		this.candidateS = new BucketSet();
+		this.candidateT = new BucketSet();
+		this.candidateCells = new CellSet();
 		this.pm = null;
 		this.changed = true;
 		this.inputCost = Long.MIN_VALUE;
@@ -45,9 +49,9 @@ public class Partition {
 	
 	public Partition(int id, PartitionMatrix pm) {
 		this.id = id;
-		this.candidateS = new HashSet<Integer>();
-		this.candidateT = new HashSet<Integer>();
-		this.candidateCells = new HashSet<IntPair>();
+		this.candidateS = new BucketSet();
+		this.candidateT = new BucketSet();
+		this.candidateCells = new CellSet();
 		this.pm = pm;
 		this.changed = true;
 		this.inputCost = Long.MIN_VALUE;
@@ -57,7 +61,7 @@ public class Partition {
 		candidateS.add(idxS);
 		candidateT.add(idxT);
 		
-		candidateCells.add(new IntPair(idxS,idxT));
+		candidateCells.add(idxS,idxT);
 		
 		changed = true;
 	}
@@ -68,15 +72,7 @@ public class Partition {
 		}
 		changed = false;
 		
-		inputCost = 0L;
-		
-		for (Integer idxS : candidateS) {
-			inputCost += pm.getCountsS()[idxS];
-		}
-		
-		for (Integer idxT : candidateT) {
-			inputCost += pm.getCountsT()[idxT];
-		}
+		inputCost = candidateS.sum(pm.getCountsS()) + candidateT.sum(pm.getCountsT());
 
 		return inputCost;
 	}
@@ -119,27 +115,27 @@ public class Partition {
 		this.id = id;
 	}
 
-	public HashSet<Integer> getCandidateS() {
+	public BucketSet getCandidateS() {
 		return candidateS;
 	}
 
-	public void setCandidateS(HashSet<Integer> candidateS) {
+	public void setCandidateS(BucketSet candidateS) {
 		this.candidateS = candidateS;
 	}
 
-	public HashSet<Integer> getCandidateT() {
+	public BucketSet getCandidateT() {
 		return candidateT;
 	}
 
-	public void setCandidateT(HashSet<Integer> candidateT) {
+	public void setCandidateT(BucketSet candidateT) {
 		this.candidateT = candidateT;
 	}
 
-	public HashSet<IntPair> getCandidateCells() {
+	public CellSet getCandidateCells() {
 		return candidateCells;
 	}
 
-	public void setCandidateCells(HashSet<IntPair> candidateCells) {
+	public void setCandidateCells(CellSet candidateCells) {
 		this.candidateCells = candidateCells;
 	}
 
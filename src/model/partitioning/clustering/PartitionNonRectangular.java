@@ -5,6 +5,10 @@
  * which do not have any limitations as to how they will
  * be formed.
  * 
+ * The input cost is kept up to date on merges: only the
+ * counts of the buckets that the other partition adds are
+ * added to it.
+ * 
  * @author John Koumarelas
  */
 
@@ -24,10 +28,22 @@ public class PartitionNonRectangular extends Partition {
 	}
 
 	public void addPartition(PartitionNonRectangular other) {
+		if (!this.changed) {
+			this.inputCost = inputCostIfMergedWith(other);
+		}
 		this.candidateS.addAll(other.candidateS);
 		this.candidateT.addAll(other.candidateT);
 		this.candidateCells.addAll(other.candidateCells);
-		this.changed = true;
+	}
+	
+	/**
+	 * Input cost of the union of this and the other partition, from the input
+	 * costs of both minus the counts of the buckets they share.
+	 */
+	public long inputCostIfMergedWith(Partition other) {
+		return 	computeInputCost() + other.computeInputCost() - 
+				candidateS.intersectionSum(other.getCandidateS(), pm.getCountsS()) -
+				candidateT.intersectionSum(other.getCandidateT(), pm.getCountsT());
 	}
 	
 	@Override
@@ -11,6 +11,7 @@
 
 package model.partitioning.mbucketi;
 
+import model.CellMatrix;
 import model.PartitionMatrix;
 import model.partitioning.Partition;
 import datatypes.IntPair;
@@ -41,11 +42,11 @@ public class PartitionRectangular extends Partition {
 		boolean columnFound = false;
 		
 		long inputCost = 0;
-		long[][] matrix = pm.getMatrix();
+		CellMatrix matrix = pm.getCells();
 		long[] countsS = pm.getCountsS();
 		long[] countsT = pm.getCountsT();
 		for(int i = row ; i <= row_i; ++i) {
-			if(matrix[i][col_i]>0) {
+			if(matrix.get(i, col_i) > 0) {
 				if(!candidateS.contains(i)) {
 					inputCost += countsS[i];
 				}
@@ -58,14 +59,13 @@ public class PartitionRectangular extends Partition {
 		return inputCost;
 	}
 	
-	public void computeOutputCost(long[][] M, long[] countsS, long[] countsT) {
+	public void computeOutputCost(CellMatrix M, long[] countsS, long[] countsT) {
 		outputCost = 0;
 		
+		int endColumn = rb.getEndBottom().getSecond();
 		for(int i = rb.getStartUpper().getFirst() ; i<= rb.getEndBottom().getFirst() ; ++i) {
-			for(int j = rb.getStartUpper().getSecond() ; j <= rb.getEndBottom().getSecond(); ++j) {
-				if(M[i][j]>0) {
-					outputCost += (countsS[i]*countsT[j]);
-				}
+			for(int j = M.nextNonZero(i, rb.getStartUpper().getSecond()) ; j <= endColumn; j = M.nextNonZero(i, j + 1)) {
+				outputCost += (countsS[i]*countsT[j]);
 			}
 		}
 	}
@@ -82,12 +82,11 @@ public class PartitionRectangular extends Partition {
 		rb.setStartBoundaries(startUpperRow, startUpperCol);
 	}
 	
-	public void addAllCellsWithinRegionBoundaries(long[][] matrix) {
+	public void addAllCellsWithinRegionBoundaries(CellMatrix matrix) {
+		int endColumn = rb.getEndBottom().getSecond();
 		for(int i = rb.getStartUpper().getFirst() ; i<= rb.getEndBottom().getFirst(); ++i) {
-			for(int j = rb.getStartUpper().getSecond(); j <= rb.getEndBottom().getSecond(); ++j){
-				if(matrix[i][j] > 0) {
-					addCell(i,j);
-				}
+			for(int j = matrix.nextNonZero(i, rb.getStartUpper().getSecond()); j <= endColumn; j = matrix.nextNonZero(i, j + 1)){
+				addCell(i,j);
 			}
 		}
 	}
@@ -96,31 +95,31 @@ public class PartitionRectangular extends Partition {
 		rb.setEndBoundaries(endRow, endCol);
 	}
 
-	public void addColumn(long[][] M, int col_i,int row, int row_i) {
+	public void addColumn(CellMatrix M, int col_i,int row, int row_i) {
 		for(int i = row ; i <= row_i; ++i) {
-			if(M[i][col_i]>0) {
+			if(M.get(i, col_i) > 0) {
 				addCell(i,col_i);
 			}
 		}
 		setEndBoundaries(row_i, col_i);
 	}
 	
-	public void addColumns(long[][] M, int colStart, int colEnd, int rowStart, int rowEnd) {
+	public void addColumns(CellMatrix M, int colStart, int colEnd, int rowStart, int rowEnd) {
 		for(int c = colStart ; c<= colEnd ; ++c){
 			addColumn(M,c,rowStart,rowEnd);
 		}
 	}
 	
-	public void addRow(long[][] M, int row_i,int col, int col_i) {
+	public void addRow(CellMatrix M, int row_i,int col, int col_i) {
 		for(int j = col ; j <= col_i; ++j) {
-			if(M[row_i][j]>0) {
+			if(M.get(row_i, j) > 0) {
 				addCell(row_i,j);
 			}
 		}
 		setEndBoundaries(row_i, col_i);
 	}
 	
-	public void addRows(long[][] M, int colStart, int colEnd, int rowStart, int rowEnd) {
+	public void addRows(CellMatrix M, int colStart, int colEnd, int rowStart, int rowEnd) {
 		for(int r = rowStart ; r<= rowEnd ; ++r){
 			addRow(M,r,colStart,colEnd);
 		}
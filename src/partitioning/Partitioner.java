@@ -13,12 +13,14 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Vector;
 
+import model.CellMatrix;
 import model.PartitionMatrix;
 import model.partitioning.Partition;
 import partitioning.clustering.MergingPartitionToPartition;
 import datatypes.DoubleQuad;
 import datatypes.exceptions.PartitioningError;
 import datatypes.partitioning.MetricsScore;
+import utils.metrics.AllMetrics;
 
 public abstract class Partitioner {
 
@@ -60,7 +62,7 @@ public abstract class Partitioner {
 
 	protected PartitionMatrix pm = null;
 	
-	protected long[][] matrix = null;
+	protected CellMatrix matrix = null;
 
 	protected long[] countsS = null;
 	protected long[] countsT = null;
@@ -92,6 +94,10 @@ public abstract class Partitioner {
 	
 	protected Vector<MetricsScore> rangeSearchMetrics= null;
 	
+	/*	Range search options	*/
+	protected String rangeSearchStopMetric = null; // null: every threshold is evaluated
+	protected int rangeSearchStopPatience = 1;
+	
 	protected HashMap<Integer,HashSet<Integer>> idxToPartitionsS = null;
 	protected HashMap<Integer,HashSet<Integer>> idxToPartitionsT = null;
 	
@@ -124,19 +130,35 @@ public abstract class Partitioner {
 		}
 	}
 	
-	protected int calculateCandidateCells(long[][] matrix) {
-		int nRows = matrix.length;
-		int nColumns = matrix[0].length;
+	protected int calculateCandidateCells(CellMatrix matrix) {
+		return matrix.countNonZero();
+	}
+
+	/**
+	 * A RangeSearch with the range search options of this partitioner.
+	 */
+	protected RangeSearch createRangeSearch(RangeSearch.Evaluation evaluation, RangeSearch.EvaluationFactory evaluationFactory,
+			int threads) {
+		RangeSearch rangeSearch = new RangeSearch(evaluation, evaluationFactory, threads);
+		rangeSearch.setStopMetric(rangeSearchStopMetric);
+		rangeSearch.setStopPatience(rangeSearchStopPatience);
+		return rangeSearch;
+	}
+	
+	/**
+	 * The metrics of the current partitions.
+	 */
+	protected MetricsScore calculateMetricsScore() {
+		Partition[] partitions = this.getPartitions();
 		
-		int counter = 0;
-		for(int row = 0; row < nRows; ++row) {
-			for(int column = 0 ; column < nColumns; ++column) {
-				if(matrix[row][column] > 0){
-					++counter;
-				}
-			}
-		}
-		return counter;
+		int bucketsS = this.countsS.length;
+		int bucketsT = this.countsT.length;
+		HashMap<String,Double> metrics = new AllMetrics(partitions, this.getPartitionsCount(), 
+				sizeS, sizeT,bucketsS, bucketsT, countsS).getAllMetrics();
+		
+		double score = Double.NEGATIVE_INFINITY;
+		
+		return new MetricsScore(metrics,score);
 	}
 
 	public Partitioner(PartitionMatrix pm, String partitioningPolicy,
@@ -146,7 +168,7 @@ public abstract class Partitioner {
 
 		this.partitioningPolicy = partitioningPolicy;
 
-		this.matrix = pm.getMatrix();
+		this.matrix = pm.getCells();
 
 		this.countsS = pm.getCountsS();
 		this.countsT = pm.getCountsT();
@@ -191,6 +213,22 @@ public abstract class Partitioner {
 		this.rangeSearchMetrics = rangeSearchMetrics;
 	}
 
+	public String getRangeSearchStopMetric() {
+		return rangeSearchStopMetric;
+	}
+	
+	public void setRangeSearchStopMetric(String rangeSearchStopMetric) {
+		this.rangeSearchStopMetric = rangeSearchStopMetric;
+	}
+	
+	public int getRangeSearchStopPatience() {
+		return rangeSearchStopPatience;
+	}
+	
+	public void setRangeSearchStopPatience(int rangeSearchStopPatience) {
+		this.rangeSearchStopPatience = rangeSearchStopPatience;
+	}
+
 	public abstract void findLowest() throws PartitioningError;
 	public abstract void rangeSearch(long lowerMPI, long upperMPI, int granularity) throws PartitioningError;
 	public abstract void execute(long max) throws PartitioningError;
@@ -0,0 +1,204 @@
+/**
+ * RangeSearch.java
+ *
+ * The range search of the partitioners: the partitioning and its metrics for
+ * every threshold (e.g. max partition input) of a range, from the upper bound
+ * downwards, until the partitioning fails for a threshold.
+ *
+ * With k threads, k thresholds are evaluated concurrently, every thread on its
+ * own Evaluation. The results are taken in the order of the thresholds as soon
+ * as they (and the ones before them) complete, so that the results, and where
+ * the search stops, are the same as with 1 thread.
+ *
+ * Optionally the search stops early, once a metric (lower is better, e.g.
+ * BJmaxIC) has not improved for a number of consecutive thresholds.
+ *
+ * @author John Koumarelas
+ */
+
+package partitioning;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import datatypes.exceptions.PartitioningError;
+import datatypes.partitioning.MetricsScore;
+
+public class RangeSearch {
+
+	public interface Evaluation {
+		/**
+		 * @return the metrics of the partitioning with the given threshold, null if it fails.
+		 */
+		MetricsScore evaluate(long threshold) throws PartitioningError;
+	}
+
+	public interface EvaluationFactory {
+		/**
+		 * A new Evaluation, independent of the other ones.
+		 */
+		Evaluation createEvaluation();
+	}
+
+	private Evaluation evaluation;
+	private EvaluationFactory evaluationFactory;
+	private int threads;
+
+	private String stopMetric = null; // null: no early termination
+	private int stopPatience = 1;
+	
+	/*	Early termination state	*/
+	private double bestStopValue;
+	private int notImproved;
+
+	/**
+	 * @param evaluation: used when evaluating with 1 thread, and by the first thread otherwise
+	 * @param threads: 1 for the sequential search
+	 */
+	public RangeSearch(Evaluation evaluation, EvaluationFactory evaluationFactory, int threads) {
+		this.evaluation = evaluation;
+		this.evaluationFactory = evaluationFactory;
+		this.threads = Math.max(threads, 1);
+	}
+
+	/**
+	 * The thresholds of [lower, upper] in granularity steps, from upper downwards.
+	 */
+	public static List<Long> thresholds(long lower, long upper, int granularity) {
+		long step = (upper - lower) / granularity;
+
+		List<Long> thresholds = new ArrayList<Long>();
+		long tmp = upper;
+		for (int i = 0 ; i < granularity - 1 ; ++i) {
+			if (tmp <= lower) {
+				break;
+			}
+			if (thresholds.isEmpty() || thresholds.get(thresholds.size() - 1) != tmp) {
+				thresholds.add(tmp);
+			}
+			tmp -= step;
+		}
+		thresholds.add(lower);
+		return thresholds;
+	}
+
+	public Vector<MetricsScore> search(List<Long> thresholds) throws PartitioningError {
+		Vector<MetricsScore> rangeSearchMetrics = new Vector<MetricsScore>();
+
+		int threadsUsed = Math.min(threads, thresholds.size());
+		if (threadsUsed <= 1) {
+			for (long threshold : thresholds) {
+				if (!accept(evaluation.evaluate(threshold), rangeSearchMetrics)) {
+					break;
+				}
+			}
+			return rangeSearchMetrics;
+		}
+
+		final BlockingQueue<Evaluation> evaluations = new LinkedBlockingQueue<Evaluation>();
+		evaluations.add(evaluation);
+		for (int t = 1 ; t < threadsUsed; ++t) {
+			evaluations.add(evaluationFactory.createEvaluation());
+		}
+
+		final AtomicBoolean stopped = new AtomicBoolean(false);
+		ExecutorService executor = Executors.newFixedThreadPool(threadsUsed);
+		try {
+			List<Future<MetricsScore>> futures = new ArrayList<Future<MetricsScore>>();
+			for (final long threshold : thresholds) {
+				futures.add(executor.submit(new Callable<MetricsScore>() {
+					@Override
+					public MetricsScore call() throws PartitioningError, InterruptedException {
+						if (stopped.get()) {
+							return null;
+						}
+						Evaluation evaluation = evaluations.take();
+						try {
+							return evaluation.evaluate(threshold);
+						} finally {
+							evaluations.add(evaluation);
+						}
+					}
+				}));
+			}
+
+			for (int t = 0 ; t < thresholds.size(); ++t) {
+				MetricsScore metricsScore = get(futures.get(t), thresholds.get(t));
+				if (!accept(metricsScore, rangeSearchMetrics)) {
+					/*	The ones still running complete, but their results are not used.	*/
+					stopped.set(true);
+					for (int r = t + 1 ; r < futures.size(); ++r) {
+						futures.get(r).cancel(false);
+					}
+					break;
+				}
+			}
+		} finally {
+			executor.shutdown();
+		}
+		return rangeSearchMetrics;
+	}
+
+	private MetricsScore get(Future<MetricsScore> future, long threshold) throws PartitioningError {
+		try {
+			return future.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new PartitioningError("Interrupted while evaluating " + threshold);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof PartitioningError) {
+				throw (PartitioningError) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	/**
+	 * @return whether the search continues with the next threshold.
+	 */
+	private boolean accept(MetricsScore metricsScore, Vector<MetricsScore> rangeSearchMetrics)
+			throws PartitioningError {
+		if (metricsScore == null) {
+			return false;
+		}
+
+		rangeSearchMetrics.addElement(metricsScore);
+
+		if (stopMetric == null) {
+			return true;
+		}
+		Double value = metricsScore.getMetrics().get(stopMetric);
+		if (value == null) {
+			throw new PartitioningError("Unknown range search stop metric: " + stopMetric);
+		}
+		if (rangeSearchMetrics.size() == 1 || value < bestStopValue) {
+			bestStopValue = value;
+			notImproved = 0;
+			return true;
+		}
+		return ++notImproved < stopPatience;
+	}
+
+	/*	GETTERS - SETTERS	*/
+	public String getStopMetric() {
+		return stopMetric;
+	}
+	public void setStopMetric(String stopMetric) {
+		this.stopMetric = stopMetric;
+	}
+	public int getStopPatience() {
+		return stopPatience;
+	}
+	public void setStopPatience(int stopPatience) {
+		this.stopPatience = Math.max(stopPatience, 1);
+	}
+}
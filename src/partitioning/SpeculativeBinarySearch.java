@@ -0,0 +1,182 @@
+/**
+ * SpeculativeBinarySearch.java
+ * 
+ * The binary search of the partitioners for the lowest threshold (e.g. max
+ * partition input) for which a probe succeeds:
+ * 	mid = (lower + upper) / 2
+ * 	-	fails: search in [mid + 1, upper]
+ * 	-	succeeds: mid if lower == mid, otherwise search in [lower, mid]
+ * 
+ * With k threads, the next d levels of the binary search (2^d - 1 <= k
+ * thresholds) are probed concurrently, and the search walks down those levels
+ * with the results. As it follows exactly the same path as the sequential
+ * search, it returns the same threshold, in about 1/d of the rounds.
+ * 
+ * Every thread probes on its own Probe, as probes are not reentrant.
+ * 
+ * @author John Koumarelas
+ */
+
+package partitioning;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import datatypes.exceptions.PartitioningError;
+
+public class SpeculativeBinarySearch {
+
+	public interface Probe {
+		/**
+		 * @return whether the partitioning succeeds with the given threshold.
+		 */
+		boolean probe(long threshold) throws PartitioningError;
+	}
+	
+	public interface ProbeFactory {
+		/**
+		 * A new Probe, independent of the other ones.
+		 */
+		Probe createProbe();
+	}
+
+	private Probe[] probes;
+	private int levels;
+	
+	private Probe resultProbe;
+	
+	/**
+	 * @param probe: probes the thresholds of the first thread (the calling one)
+	 * @param threads: 1 for the sequential search
+	 */
+	public SpeculativeBinarySearch(Probe probe, ProbeFactory probeFactory, int threads) {
+		this.levels = 1;
+		while ((2 << levels) - 1 <= threads) {
+			++levels;
+		}
+		this.probes = new Probe[(1 << levels) - 1];
+		this.probes[0] = probe;
+		for (int p = 1 ; p < probes.length; ++p) {
+			probes[p] = probeFactory.createProbe();
+		}
+	}
+	
+	public long search(long lowerBound, long upperBound) throws PartitioningError {
+		ExecutorService executor = probes.length > 1 ? Executors.newFixedThreadPool(probes.length - 1) : null;
+		try {
+			while (true) {
+				checkBounds(lowerBound, upperBound);
+				
+				HashMap<Long,Probe> probesUsed = new HashMap<Long,Probe>();
+				HashMap<Long,Boolean> results = probeLevels(executor, lowerBound, upperBound, probesUsed);
+				
+				/*	Walk down the probed levels.	*/
+				while (true) {
+					checkBounds(lowerBound, upperBound);
+					long mid = (lowerBound + upperBound) / 2;
+					Boolean result = results.get(mid);
+					if (result == null) {
+						break;
+					}
+					if (!result) {
+						lowerBound = mid + 1;
+					} else {
+						if (lowerBound == mid) {
+							resultProbe = probesUsed.get(mid);
+							return mid;
+						}
+						upperBound = mid;
+					}
+				}
+			}
+		} finally {
+			if (executor != null) {
+				executor.shutdown();
+			}
+		}
+	}
+	
+	/**
+	 * The Probe whose last probe was the threshold returned by search().
+	 */
+	public Probe getResultProbe() {
+		return resultProbe;
+	}
+	
+	private void checkBounds(long lowerBound, long upperBound) throws PartitioningError {
+		if (lowerBound > upperBound) {
+			String errorMessage = "Error when searching for the right max. LowerBound is bigger than UpperBound."
+					+ "(" + lowerBound + ">" + upperBound + ")" + " No max input returned a true value.";
+			throw new PartitioningError(errorMessage);
+		}
+	}
+	
+	/**
+	 * Probes the midpoints of the next levels of the search from [lowerBound, upperBound].
+	 */
+	private HashMap<Long,Boolean> probeLevels(ExecutorService executor, long lowerBound, long upperBound, 
+			HashMap<Long,Probe> probesUsed) throws PartitioningError {
+		List<Long> thresholds = new ArrayList<Long>();
+		List<long[]> intervals = new ArrayList<long[]>();
+		intervals.add(new long[]{lowerBound, upperBound});
+		for (int level = 0 ; level < levels; ++level) {
+			List<long[]> next = new ArrayList<long[]>();
+			for (long[] interval : intervals) {
+				if (interval[0] > interval[1]) {
+					continue;
+				}
+				long mid = (interval[0] + interval[1]) / 2;
+				if (!thresholds.contains(mid)) {
+					thresholds.add(mid);
+				}
+				next.add(new long[]{mid + 1, interval[1]});
+				if (interval[0] != mid) {
+					next.add(new long[]{interval[0], mid});
+				}
+			}
+			intervals = next;
+		}
+		
+		HashMap<Long,Boolean> results = new HashMap<Long,Boolean>();
+		for (int t = 0 ; t < thresholds.size(); ++t) {
+			probesUsed.put(thresholds.get(t), probes[t]);
+		}
+		
+		/*	The first threshold (the one the search needs) on the calling thread	*/
+		List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+		for (int t = 1 ; t < thresholds.size(); ++t) {
+			final Probe probe = probes[t];
+			final long threshold = thresholds.get(t);
+			futures.add(executor.submit(new Callable<Boolean>() {
+				@Override
+				public Boolean call() throws PartitioningError {
+					return probe.probe(threshold);
+				}
+			}));
+		}
+		
+		results.put(thresholds.get(0), probes[0].probe(thresholds.get(0)));
+		
+		for (int t = 1 ; t < thresholds.size(); ++t) {
+			try {
+				results.put(thresholds.get(t), futures.get(t - 1).get());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new PartitioningError("Interrupted while probing " + thresholds.get(t));
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof PartitioningError) {
+					throw (PartitioningError) e.getCause();
+				}
+				throw new RuntimeException(e.getCause());
+			}
+		}
+		return results;
+	}
+	
+}
@@ -0,0 +1,28 @@
+/**
+ * AdjacentCellsNeighbourhood.java
+ *
+ * Candidate cells are neighbours when they are next to each other in a row
+ * or in a column, so that merged partitions stay connected regions.
+ *
+ * @author John Koumarelas
+ */
+
+package partitioning.clustering;
+
+public class AdjacentCellsNeighbourhood extends CandidateNeighbourhood {
+
+	@Override
+	protected void generatePairs() {
+		for (int i = 0 ; i < rows.length; ++i) {
+			int right = find(rows[i], columns[i] + 1);
+			if (right >= 0) {
+				addPair(i, right);
+			}
+			int below = find(rows[i] + 1, columns[i]);
+			if (below >= 0) {
+				addPair(i, below);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,161 @@
+/**
+ * CandidateNeighbourhood.java
+ *
+ * Generates the pairs of candidate cells that a merging partitioner considers,
+ * instead of all n*(n-1)/2 pairs. Each candidate cell is an initial partition,
+ * with the id of its position in row-major order.
+ *
+ * When two partitions are merged, the neighbours of the merged partition are the
+ * union of the neighbours of both, so the neighbourhood only has to be given for
+ * the initial (single cell) partitions.
+ *
+ * The neighbourhoods are symmetric: j is a neighbour of i if i is a neighbour of j.
+ *
+ * @author John Koumarelas
+ */
+
+package partitioning.clustering;
+
+import java.util.Arrays;
+
+import partitioning.clustering.MergingPartitionToPartition.MergingNeighbourhood;
+
+public abstract class CandidateNeighbourhood {
+
+	/*	Candidate cells, in row-major order: cell id -> row, column	*/
+	protected int[] rows;
+	protected int[] columns;
+	protected int nRows;
+	protected int nColumns;
+
+	/*	rowStarts[r]: id of the first cell of row r, rowStarts[nRows] = number of cells	*/
+	protected int[] rowStarts;
+
+	/*	Growable list of pairs (i*n + j, i < j)	*/
+	private long[] pairs = new long[1024];
+	private int numPairs = 0;
+
+	/**
+	 * @return null for ALL (no neighbourhood).
+	 */
+	public static CandidateNeighbourhood create(MergingNeighbourhood mergingNeighbourhood, int size) {
+		switch (mergingNeighbourhood) {
+			case ADJACENT:
+				return new AdjacentCellsNeighbourhood();
+			case SHARED_BUCKETS:
+				return new SharedBucketsNeighbourhood();
+			case NEAREST:
+				return new NearestCellsNeighbourhood(size);
+			case ALL:
+			default:
+				return null;
+		}
+	}
+
+	/**
+	 * @param rows: row of every candidate cell, in row-major order
+	 * @param columns: column of every candidate cell, in row-major order
+	 * @return cell id -> ids of the neighbouring cells
+	 */
+	public int[][] neighbours(int[] rows, int[] columns, int nRows, int nColumns) {
+		this.rows = rows;
+		this.columns = columns;
+		this.nRows = nRows;
+		this.nColumns = nColumns;
+
+		rowStarts = new int[nRows + 1];
+		for (int i = 0 ; i < rows.length; ++i) {
+			++rowStarts[rows[i] + 1];
+		}
+		for (int r = 0 ; r < nRows; ++r) {
+			rowStarts[r + 1] += rowStarts[r];
+		}
+
+		numPairs = 0;
+		generatePairs();
+
+		return toNeighbourLists();
+	}
+
+	/**
+	 * Adds every pair of the neighbourhood with addPair(). Pairs may be added more than once.
+	 */
+	protected abstract void generatePairs();
+
+	protected void addPair(int cellID1, int cellID2) {
+		if (cellID1 == cellID2) {
+			return;
+		}
+		if (numPairs == pairs.length) {
+			pairs = Arrays.copyOf(pairs, pairs.length << 1);
+		}
+		int i = Math.min(cellID1, cellID2);
+		int j = Math.max(cellID1, cellID2);
+		pairs[numPairs++] = (long) i * rows.length + j;
+	}
+
+	/**
+	 * Id of the cell at (row, column), -1 if it is not a candidate cell.
+	 */
+	protected int find(int row, int column) {
+		if (row < 0 || row >= nRows) {
+			return -1;
+		}
+		int position = ceilingInRow(row, column);
+		return position < rowStarts[row + 1] && columns[position] == column ? position : -1;
+	}
+
+	/**
+	 * Id of the first cell of the row with a column greater than or equal to
+	 * the given one (rowStarts[row + 1] if there is none).
+	 */
+	protected int ceilingInRow(int row, int column) {
+		int start = rowStarts[row];
+		int end = rowStarts[row + 1];
+		while (start < end) {
+			int middle = (start + end) >>> 1;
+			if (columns[middle] < column) {
+				start = middle + 1;
+			} else {
+				end = middle;
+			}
+		}
+		return start;
+	}
+
+	private int[][] toNeighbourLists() {
+		int n = rows.length;
+
+		Arrays.sort(pairs, 0, numPairs);
+
+		int[] degrees = new int[n];
+		for (int p = 0 ; p < numPairs; ++p) {
+			if (p > 0 && pairs[p] == pairs[p - 1]) {
+				continue;
+			}
+			++degrees[(int) (pairs[p] / n)];
+			++degrees[(int) (pairs[p] % n)];
+		}
+
+		int[][] neighbours = new int[n][];
+		for (int i = 0 ; i < n; ++i) {
+			neighbours[i] = new int[degrees[i]];
+			degrees[i] = 0;
+		}
+		for (int p = 0 ; p < numPairs; ++p) {
+			if (p > 0 && pairs[p] == pairs[p - 1]) {
+				continue;
+			}
+			int i = (int) (pairs[p] / n);
+			int j = (int) (pairs[p] % n);
+			neighbours[i][degrees[i]++] = j;
+			neighbours[j][degrees[j]++] = i;
+		}
+
+		pairs = new long[1024];
+		numPairs = 0;
+
+		return neighbours;
+	}
+
+}
@@ -9,6 +9,16 @@
  * There are several ways with which the merging of the several cells to
  * partitions can be done.
  * 
+ * The pairs of partitions are kept by one of two engines (MergingEngine):
+ * 	-	TREE_MAP: a dense n*n distance matrix and a TreeMap from distance to pairs.
+ * 	-	HEAP: a PairHeap with lazy invalidation, without any n*n structure. Only the
+ * 		pairs of the MergingNeighbourhood are considered. With ALL, the merges are the
+ * 		same as with TREE_MAP.
+ * 
+ * Both engines take the pairs in ascending order of distance and pairs of equal
+ * distance in ascending order of pair id (i*n + j, i < j), so ties are broken the
+ * same way by every engine, run and probe.
+ * 
  * @author John Koumarelas
  */
 
@@ -20,8 +30,11 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map.Entry;
 import java.util.TreeMap;
-import java.util.Vector;
+import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
 
+import datatypes.BucketSet;
+import datatypes.CellSet;
 import datatypes.IntPair;
 import datatypes.exceptions.PartitioningError;
 import datatypes.partitioning.MetricsScore;
@@ -29,7 +42,8 @@ import model.PartitionMatrix;
 import model.partitioning.Partition;
 import model.partitioning.clustering.PartitionNonRectangular;
 import partitioning.Partitioner;
-import utils.metrics.AllMetrics;
+import partitioning.RangeSearch;
+import partitioning.SpeculativeBinarySearch;
 
 public class MergingPartitionToPartition extends Partitioner {
 	private PartitionNonRectangular[] partitions = null;
@@ -42,28 +56,95 @@ public class MergingPartitionToPartition extends Partitioner {
 	 */
 	
 	private double[][] distancePairsInitial = null;
-	private TreeMap<Double,HashSet<Integer>> distancesTotalInitial = null;
+	private SortedPairs distancesTotalInitial = null;
 	private PartitionNonRectangular[] partitionsInitial = null;
 	private int partitionsCountInitial = Integer.MIN_VALUE;
 	
 	/*
-	 * Upper triangular matrix
+	 * Upper triangular matrix of the final partitions (TREE_MAP engine)
 	 */
  
 	private double[][] distancePairs = null;
 	
 	/*
-	 * For all partitions we store their distances from other partitions.
-	 * In this way we have the minimum distance first.
-	 * 	n*(n-1)/2
+	 * The initial state is only read by the runs (copy-on-write):
+	 * 	-	partitions[i] is partitionsInitial[i] until something is merged into it.
+	 * 	-	A pair of partitions that have not been merged into has its initial distance,
+	 * 		and it is taken from distancesTotalInitial, skipping the pairs that are not
+	 * 		valid anymore.
+	 * 	-	The distances of the other pairs are in the row (mergedDistances) of the one
+	 * 		of the two partitions that was merged into last (lastMerge), and the pairs in
+	 * 		distancesTotal.
+	 * So that a run starts in O(n) rather than with a copy of the n*(n-1)/2 distances.
+	 * 
+	 * Pairs of equal distance are taken in ascending order of pair id.
 	 */	
-	private TreeMap<Double,HashSet<Integer>> distancesTotal = null;
+	private TreeMap<Double,TreeSet<Integer>> distancesTotal = null;
+	private SortedPairs.Skips distancesTotalInitialSkips = null;
+	private double[][] mergedDistances = null; // partition -> distances to the others (allocated on the first merge into it)
 	
 	private boolean[] activePartition = null;
 	
 	private DistanceMeasure dm = null;
 	private HashMap<String, String> dmParameters = null;
 	
+	private MergingEngine mergingEngine = MergingEngine.TREE_MAP;
+	private MergingNeighbourhood mergingNeighbourhood = MergingNeighbourhood.ALL;
+	private int mergingNeighbourhoodSize = 8; // NEAREST only: k
+	private int parallelism = 1; // threads of the initial distances and concurrent probes (1: sequential)
+	
+	/*
+	 * HEAP engine
+	 */
+	
+	private PairHeap heapInitial = null;
+	private PairHeap heap = null;
+	
+	private int mergeStep; // number of merges of the current run
+	private int[] lastMerge = null; // partition -> merge step at which it last changed (0: initial)
+	private int[] mergedInto = null; // partition -> partition that it was merged into (itself if active)
+	
+	private int[][] neighboursInitial = null; // partition -> neighbouring partitions (null for ALL)
+	private int[][] neighbours = null;
+	private int[] neighboursSeen = null;
+	
+	public enum MergingEngine {
+		TREE_MAP("TREE_MAP"), HEAP("HEAP");
+		
+		String engine;
+		
+		private MergingEngine(String engine) {
+			this.engine = engine;
+		}
+		
+		@Override
+		public String toString() {
+			return engine;
+		}
+	}
+	
+	/**
+	 * Pairs of partitions that the HEAP engine considers for merging (see CandidateNeighbourhood):
+	 * 	-	ALL: every pair of partitions.
+	 * 	-	ADJACENT: partitions that have a pair of cells next to each other in a row or a column.
+	 * 	-	SHARED_BUCKETS: partitions that share a bucket of S or T (cells in the same row or column).
+	 * 	-	NEAREST: partitions with cells among the k nearest (Manhattan) of each other.
+	 */
+	public enum MergingNeighbourhood {
+		ALL("ALL"), ADJACENT("ADJACENT"), SHARED_BUCKETS("SHARED_BUCKETS"), NEAREST("NEAREST");
+		
+		String neighbourhood;
+		
+		private MergingNeighbourhood(String neighbourhood) {
+			this.neighbourhood = neighbourhood;
+		}
+		
+		@Override
+		public String toString() {
+			return neighbourhood;
+		}
+	}
+	
 	public enum DistanceMeasure {
 	    JACCARD_BUCKETS("JACCARD_BUCKETS"), MANHATTAN("MANHATTAN"),
 	    EMPTIEST_PARTITION_INPUT_COST("EMPTIEST_PARTITION_INPUT_COST"), EMPTIEST_PARTITION_CANDIDATE_CELLS("EMPTIEST_PARTITION_CANDIDATE_CELLS"), 
@@ -137,6 +218,10 @@ public class MergingPartitionToPartition extends Partitioner {
 		}
 	}
 
+	/**
+	 * The thresholds are evaluated concurrently when parallelism > 1, on partitioners
+	 * sharing the initial state (see RangeSearch).
+	 */
 	@Override
 	public void rangeSearch(long lower, long upper,
 			int granularity) throws PartitioningError {
@@ -144,8 +229,6 @@ public class MergingPartitionToPartition extends Partitioner {
 			return;
 		}
 		
-		this.rangeSearchMetrics = new Vector<MetricsScore>();
-		
 		numCandidateCells = calculateCandidateCells(matrix);
 				
 		initialize(dm);
@@ -153,56 +236,21 @@ public class MergingPartitionToPartition extends Partitioner {
 		
 		long start = System.currentTimeMillis();
 		
-		long step = (upper - lower) / granularity;
+		RangeSearch rangeSearch = createRangeSearch(asEvaluation(this, dm), new RangeSearch.EvaluationFactory() {
+			@Override
+			public RangeSearch.Evaluation createEvaluation() {
+				return asEvaluation(MergingPartitionToPartition.this.createProbe(), dm);
+			}
+		}, parallelism);
 		
-		HashSet<Long> selected = new HashSet<Long>();
-		long tmp = upper;
-		for (int i = 0 ; i < granularity - 1 ; ++i) {
-			selected.add(tmp);
-			tmp -= step;
-		}
-		selected.add(lower);
+		this.rangeSearchMetrics = rangeSearch.search(RangeSearch.thresholds(lower, upper, granularity));
 		
-		for (long value : selected) {
-			cloneInitialPartitionsDistances();
-			switch(bsp){
-				case MAX_PARTITION_INPUT:
-					maxPartitionInput = value;
-					break;
-				case MAX_PARTITION_CANDIDATE_CELLS:
-					maxPartitionCandidateCells = value;
-					break;
-			}
-			
-			boolean result = processMerging(dm);
-			if (!result) {
-				break;
-			}
-			//
-			
-			Partition[] partitions = this.getPartitions();
-			
-			int bucketsS = this.countsS.length;
-			int bucketsT = this.countsT.length;
-			HashMap<String,Double> metrics = new AllMetrics(partitions, this.getPartitionsCount(), 
-					sizeS, sizeT,bucketsS, bucketsT, countsS).getAllMetrics();
-			
-			double score = Double.NEGATIVE_INFINITY;
-			
-			rangeSearchMetrics.addElement(new MetricsScore(metrics,score));
-			
-//			// XXX: Remove
-//			if (mpi > lower && (mpi - step) < lower) {
-//				mpi = lower + step;
-//			}
-		}
 		long end = System.currentTimeMillis();
 		executionTimeRangeSearch = end - start;
 	}
 
 	@Override
 	public void execute(long max) throws PartitioningError {
-		distancePairs = new double[numCandidateCells][numCandidateCells];
 		partitions = new PartitionNonRectangular[numCandidateCells];
 		
 		cloneInitialPartitionsDistances();
@@ -236,6 +284,7 @@ public class MergingPartitionToPartition extends Partitioner {
 			if (!activePartition[i]){
 				continue;
 			}
+			ownPartition(i);
 			partitions[i].setId(counter);
 			tmpPartitions[counter] = partitions[i];
 			initialToFinalID.put(i, counter);
@@ -243,6 +292,11 @@ public class MergingPartitionToPartition extends Partitioner {
 		}
 		partitions = tmpPartitions;
 		
+		if (mergingEngine != MergingEngine.TREE_MAP) {
+			distancePairs = null;
+			return;
+		}
+		
 		double[][] tmpDistancePairs = new double[partitionsCount][partitionsCount];
 		for (int i = 0 ; i < numCandidateCells; ++i) {
 			if (!activePartition[i]) {
@@ -252,7 +306,7 @@ public class MergingPartitionToPartition extends Partitioner {
 				if (!activePartition[j]) {
 					continue;
 				}
-				tmpDistancePairs[initialToFinalID.get(i)][initialToFinalID.get(j)] = distancePairs[i][j];
+				tmpDistancePairs[initialToFinalID.get(i)][initialToFinalID.get(j)] = currentDistance(i, j);
 			}
 		}
 		distancePairs = tmpDistancePairs;
@@ -265,234 +319,327 @@ public class MergingPartitionToPartition extends Partitioner {
 		this.partitionsInitial = new PartitionNonRectangular[numCandidateCells];
 		this.partitionsCountInitial = numCandidateCells;
 		
-		int nRows = matrix.length;
-		int nColumns = matrix[0].length;
+		int nRows = matrix.getRows();
+		int nColumns = matrix.getColumns();
 				
+		int[] rows = new int[numCandidateCells];
+		int[] columns = new int[numCandidateCells];
+		
 		int counter = 0;
 		for (int row = 0; row < nRows; ++row) {
-			for (int column = 0 ; column < nColumns; ++column) {
-				if (matrix[row][column] > 0){
-					PartitionNonRectangular cg = new PartitionNonRectangular(counter,pm);
-					
-					cg.addCell(row, column);
-					
-					partitionsInitial[counter] = cg;
-					
-					++counter;
-				}
+			for (int column = matrix.nextNonZero(row, 0) ; column < nColumns; column = matrix.nextNonZero(row, column + 1)) {
+				PartitionNonRectangular cg = new PartitionNonRectangular(counter,pm);
+				
+				cg.addCell(row, column);
+				
+				partitionsInitial[counter] = cg;
+				rows[counter] = row;
+				columns[counter] = column;
+				
+				++counter;
 			}
 		}
 		
-		distancesTotalInitial = new TreeMap<Double,HashSet<Integer>>();
-		distancePairsInitial = new double[numCandidateCells][numCandidateCells];
-		
-		distancesTotal = new TreeMap<Double,HashSet<Integer>>();
-		distancePairs = new double[numCandidateCells][numCandidateCells];
+		if (mergingEngine == MergingEngine.HEAP) {
+			heapInitial = new PairHeap();
+			
+			CandidateNeighbourhood candidateNeighbourhood = CandidateNeighbourhood.create(mergingNeighbourhood, mergingNeighbourhoodSize);
+			neighboursInitial = null;
+			if (candidateNeighbourhood != null) {
+				neighboursInitial = candidateNeighbourhood.neighbours(rows, columns, nRows, nColumns);
+			}
+		} else {
+			distancePairsInitial = new double[numCandidateCells][numCandidateCells];
+			
+			for(int i = 0 ; i < numCandidateCells ; ++i) {
+				Arrays.fill(distancePairsInitial[i], Double.MIN_VALUE);
+			}
+		}
 		
-		for(int i = 0 ; i < numCandidateCells ; ++i) {
-			Arrays.fill(distancePairsInitial[i], Double.MIN_VALUE);
-			Arrays.fill(distancePairs[i], Double.MIN_VALUE);
+		allocateWorkingState();
+	}
+	
+	/**
+	 * The state of a run of the merging, which starts from the initial state with
+	 * cloneInitialPartitionsDistances().
+	 */
+	private void allocateWorkingState() {
+		if (mergingEngine == MergingEngine.HEAP) {
+			heap = new PairHeap();
+			mergedInto = new int[numCandidateCells];
+			if (neighboursInitial != null) {
+				neighboursSeen = new int[numCandidateCells];
+			}
+		} else {
+			distancesTotal = new TreeMap<Double,TreeSet<Integer>>();
+			distancesTotalInitialSkips = null; // with the next run, from distancesTotalInitial
+			mergedDistances = new double[numCandidateCells][];
 		}
 		
+		lastMerge = new int[numCandidateCells];
 		activePartition = new boolean[numCandidateCells];
 		
 		partitions = new PartitionNonRectangular[numCandidateCells];
 	}
+	
+	/**
+	 * A partitioner that shares the initial state (partitions and distances) of
+	 * this one, which it only reads, with its own working state, for the
+	 * concurrent probes of the binary search.
+	 */
+	private MergingPartitionToPartition createProbe() {
+		MergingPartitionToPartition probe = new MergingPartitionToPartition(pm, partitioningPolicy, sizeS, sizeT, 
+				numPartitions, dm, dmParameters, bsp);
+		probe.mergingEngine = mergingEngine;
+		probe.mergingNeighbourhood = mergingNeighbourhood;
+		probe.mergingNeighbourhoodSize = mergingNeighbourhoodSize;
+		probe.parallelism = 1;
+		
+		probe.numCandidateCells = numCandidateCells;
+		probe.partitionsInitial = partitionsInitial;
+		probe.partitionsCountInitial = partitionsCountInitial;
+		probe.distancePairsInitial = distancePairsInitial;
+		probe.distancesTotalInitial = distancesTotalInitial;
+		probe.heapInitial = heapInitial;
+		probe.neighboursInitial = neighboursInitial;
+		
+		probe.allocateWorkingState();
+		return probe;
+	}
+	
+	private static SpeculativeBinarySearch.Probe asProbe(final MergingPartitionToPartition partitioner, final DistanceMeasure dm) {
+		return new SpeculativeBinarySearch.Probe() {
+			@Override
+			public boolean probe(long threshold) throws PartitioningError {
+				return partitioner.probe(dm, threshold);
+			}
+		};
+	}
 
-	private void calculateInitialPartitionsDistances(DistanceMeasure dm) {
+	private void calculateInitialPartitionsDistances(final DistanceMeasure dm) {
+		warmInputCosts(partitionsInitial);
+		ForkJoinPool pool = ParallelRows.createPool(parallelism);
+		try {
+			if (mergingEngine == MergingEngine.HEAP) {
+				calculateInitialPartitionsDistancesHeap(dm, pool);
+				return;
+			}
+			
+			/*	The rows of the distance matrix, in parallel.	*/
+			ParallelRows.invoke(pool, numCandidateCells, new ParallelRows.Rows() {
+				@Override
+				public void compute(int from, int to) {
+					for (int i = from ; i < to; ++i) {
+						for (int j = i+1 ; j < numCandidateCells; ++j) {
+							distancePairsInitial[i][j] = calculatePartitionsDistance(dm, i, j, true);
+						}
+					}
+				}
+			});
+		} finally {
+			ParallelRows.shutdown(pool);
+		}
+		
+		/*	Every pair once (i < j), sorted as distancesTotal.	*/
+		int numPairs = numCandidateCells * (numCandidateCells - 1) / 2;
+		double[] distances = new double[numPairs];
+		int[] pairs = new int[numPairs];
+		int index = 0;
 		for (int i = 0 ; i < numCandidateCells; ++i) {
-			PartitionNonRectangular partition1 = partitionsInitial[i];
 			for (int j = i+1 ; j < numCandidateCells; ++j) {
-				PartitionNonRectangular partition2 = partitionsInitial[j];
-				
-				double distance = calculatePartitionsDistance(dm, i, j,true);
-				
-				distancePairsInitial[i][j] = distance;
-				
-				/*	Store the distance in a way that it is only stored once per pair of cells.	*/
-				/*	Force ordering.	*/
-				//Integer pair = new IntPair(partition1.getId(),partition2.getId());
-				Integer pair = partition1.getId()*partitionsCountInitial + partition2.getId();
-				
-				HashSet<Integer> pairs = distancesTotalInitial.get(distance);
-				if (pairs == null) {
-					pairs = new HashSet<Integer>();
+				distances[index] = distancePairsInitial[i][j];
+				pairs[index] = partitionsInitial[i].getId()*partitionsCountInitial + partitionsInitial[j].getId();
+				++index;
+			}
+		}
+		distancesTotalInitial = new SortedPairs(distances, pairs);
+	}
+		
+	/**
+	 * HEAP engine: the distances of the pairs of the neighbourhood, heapified at once.
+	 * Every row is written at its own offset, so the entries are in the same order
+	 * as in a sequential pass.
+	 */
+	private void calculateInitialPartitionsDistancesHeap(final DistanceMeasure dm, ForkJoinPool pool) {
+		heapInitial.clear();
+		
+		final int[] rowOffsets = new int[numCandidateCells + 1];
+		for (int i = 0 ; i < numCandidateCells; ++i) {
+			int rowPairs = 0;
+			if (neighboursInitial == null) {
+				rowPairs = numCandidateCells - i - 1;
+			} else {
+				for (int j : neighboursInitial[i]) {
+					if (j > i) {
+						++rowPairs;
+					}
 				}
-				pairs.add(pair);
-				distancesTotalInitial.put(distance,pairs);
-				
-				/* Freeing memory after some loops --- Increase the step accordingly	*/
-				if (++memoryCounter == 50) {
-					long freeMemory = Runtime.getRuntime().freeMemory();
-					if ((double) freeMemory / maxMemory <= 0.2) {
-						System.runFinalization();
-						System.gc();
+			}
+			rowOffsets[i + 1] = rowOffsets[i] + rowPairs;
+		}
+		heapInitial.reserve(rowOffsets[numCandidateCells]);
+		
+		ParallelRows.invoke(pool, numCandidateCells, new ParallelRows.Rows() {
+			@Override
+			public void compute(int from, int to) {
+				for (int i = from ; i < to; ++i) {
+					int index = rowOffsets[i];
+					if (neighboursInitial == null) {
+						for (int j = i+1 ; j < numCandidateCells; ++j) {
+							heapInitial.set(index++, calculatePartitionsDistance(dm, i, j, true), (long) i*partitionsCountInitial + j, 0);
+						}
+					} else {
+						for (int j : neighboursInitial[i]) {
+							if (j > i) {
+								heapInitial.set(index++, calculatePartitionsDistance(dm, i, j, true), (long) i*partitionsCountInitial + j, 0);
+							}
+						}
 					}
-					memoryCounter = 0;
 				}
 			}
+		});
+		heapInitial.heapify();
+	}
+	
+	/**
+	 * Partition caches its input cost lazily; computing it once here makes the
+	 * concurrent calls of calculatePartitionsDistance only read it.
+	 */
+	private static void warmInputCosts(PartitionNonRectangular[] partitions) {
+		for (PartitionNonRectangular partition : partitions) {
+			if (partition != null) {
+				partition.computeInputCost();
+			}
 		}
 	}
-		
+	
 	private void cloneInitialPartitionsDistances() {
-		for (int i = 0 ; i < numCandidateCells ; ++i) {
-			for (int j = i+1 ; j < numCandidateCells ; ++j) {
-				distancePairs[i][j] = distancePairsInitial[i][j];
+		if (mergingEngine == MergingEngine.HEAP) {
+			heap.copyFrom(heapInitial);
+			for (int i = 0 ; i < numCandidateCells; ++i) {
+				mergedInto[i] = i;
+			}
+			if (neighboursInitial != null) {
+				/*	The lists are replaced on merges, never modified.	*/
+				neighbours = neighboursInitial.clone();
+				Arrays.fill(neighboursSeen, 0);
+			}
+		} else {
+			distancesTotal.clear();
+			if (distancesTotalInitialSkips == null) {
+				distancesTotalInitialSkips = new SortedPairs.Skips(distancesTotalInitial.size());
+			} else {
+				distancesTotalInitialSkips.reset();
 			}
 		}
 		
-		distancesTotal.clear();
-		for (Entry<Double,HashSet<Integer>> entryGlobal : distancesTotalInitial.entrySet()){
-			HashSet<Integer> partitionPairsNew = new HashSet<Integer>();
-			partitionPairsNew.addAll(entryGlobal.getValue());
-			
-			distancesTotal.put(entryGlobal.getKey(), partitionPairsNew);
-		}
+		mergeStep = 0;
+		Arrays.fill(lastMerge, 0);
 		
-		Arrays.fill(partitions, null);
-		for (int i = 0 ; i < numCandidateCells; ++i) {
-			PartitionNonRectangular partitionNR = new PartitionNonRectangular(partitionsInitial[i].getId(),partitionsInitial[i].getPm());
-			partitionNR.addPartition(partitionsInitial[i]);
-			partitions[i] = partitionNR;
-		}
+		/*	Copied on the first merge into them (see ownPartition)	*/
+		System.arraycopy(partitionsInitial, 0, partitions, 0, numCandidateCells);
 		
 		partitionsCount = partitionsCountInitial;
 		
 		Arrays.fill(activePartition, true);
 	}
-	/*
-	 * Variables that are used only for the calculatePartitionDistance method.
+	
+	/**
+	 * Replaces the partition by a copy of it, if it is the initial one, before it is modified.
+	 */
+	private void ownPartition(int partitionID) {
+		if (partitions[partitionID] == partitionsInitial[partitionID]) {
+			PartitionNonRectangular partitionNR = new PartitionNonRectangular(partitionsInitial[partitionID].getId(),partitionsInitial[partitionID].getPm());
+			partitionNR.addPartition(partitionsInitial[partitionID]);
+			partitions[partitionID] = partitionNR;
+		}
+	}
+	
+	/**
+	 * TREE_MAP engine: the distance of the active partitions i1 < i2 in the current run.
 	 */
-	private PartitionNonRectangular calcPartition1, calcPartition2;
-	private long calcSumInputCostBefore, calcMaxInputCostBefore, calcInputCostAfter;
-	private HashSet<Integer> calcCandidateS = new HashSet<Integer>(), calcCandidateT = new HashSet<Integer>();
-	private HashSet<IntPair> calcCandidatePairs = new HashSet<IntPair>();
+	private double currentDistance(int i1, int i2) {
+		if (lastMerge[i1] == 0 && lastMerge[i2] == 0) {
+			return distancePairsInitial[i1][i2];
+		}
+		return lastMerge[i1] > lastMerge[i2] ? mergedDistances[i1][i2] : mergedDistances[i2][i1];
+	}
 	
+	private boolean isInitialPairValid(int partitionID1, int partitionID2) {
+		return activePartition[partitionID1] && activePartition[partitionID2] && 
+				lastMerge[partitionID1] == 0 && lastMerge[partitionID2] == 0;
+	}
+	
+	/**
+	 * Reentrant: there is no shared state. The input costs of the partitions must be
+	 * up to date (see warmInputCosts) when called by several threads.
+	 */
 	private double calculatePartitionsDistance(DistanceMeasure dm, int partitionID1, int partitionID2, boolean initial) {
+		long sumInputCostBefore, maxInputCostBefore, inputCostAfter;
 		
-		calcPartition1 = (initial?partitionsInitial:partitions)[partitionID1];
-		calcPartition2 = (initial?partitionsInitial:partitions)[partitionID2];
+		PartitionNonRectangular partition1 = (initial?partitionsInitial:partitions)[partitionID1];
+		PartitionNonRectangular partition2 = (initial?partitionsInitial:partitions)[partitionID2];
 		switch(dm){
 		case JACCARD_BUCKETS:
-			calcCandidateS.clear();
-			calcCandidateS.addAll(calcPartition1.getCandidateS());
-			calcCandidateS.retainAll(calcPartition2.getCandidateS());
-			int intersectionS = calcCandidateS.size();
-			calcCandidateS.clear();
-			calcCandidateS.addAll(calcPartition1.getCandidateS());
-			calcCandidateS.addAll(calcPartition2.getCandidateS());
-			int unionS = calcCandidateS.size();
+			int intersectionS = partition1.getCandidateS().intersectionSize(partition2.getCandidateS());
+			int unionS = partition1.getCandidateS().unionSize(partition2.getCandidateS());
 			
-			calcCandidateT.clear();
-			calcCandidateT.addAll(calcPartition1.getCandidateT());
-			calcCandidateT.retainAll(calcPartition2.getCandidateT());
-			int intersectionT = calcCandidateT.size();
-			calcCandidateT.clear();
-			calcCandidateT.addAll(calcPartition1.getCandidateT());
-			calcCandidateT.addAll(calcPartition2.getCandidateT());
-			int unionT = calcCandidateT.size();
+			int intersectionT = partition1.getCandidateT().intersectionSize(partition2.getCandidateT());
+			int unionT = partition1.getCandidateT().unionSize(partition2.getCandidateT());
 			
 			double jaccard_similarity = (intersectionS + intersectionT) / (unionS + unionT);
 			return 1.0 - jaccard_similarity;
 		case MANHATTAN:
+			CellSet cells1 = partition1.getCandidateCells();
+			CellSet cells2 = partition2.getCandidateCells();
 			double manhattanDistanceTotal = 0;
-			for (IntPair ip1 : calcPartition1.getCandidateCells()) {
+			for (int c1 = 0 ; c1 < cells1.size(); ++c1) {
 				double manhattanDistanceCell = 0.0;
-				for (IntPair ip2 : calcPartition2.getCandidateCells()) {
-					manhattanDistanceCell += Math.abs(ip1.getFirst() - ip2.getFirst()) + Math.abs(ip1.getSecond() - ip2.getSecond());
+				for (int c2 = 0 ; c2 < cells2.size(); ++c2) {
+					manhattanDistanceCell += Math.abs(cells1.row(c1) - cells2.row(c2)) + Math.abs(cells1.column(c1) - cells2.column(c2));
 				}
-				double manhattanDistanceCellAvg = manhattanDistanceCell/calcPartition2.getCandidateCells().size();
+				double manhattanDistanceCellAvg = manhattanDistanceCell/cells2.size();
 				manhattanDistanceTotal += manhattanDistanceCellAvg;
 			}
-			double manhattanDistanceTotalAvg = manhattanDistanceTotal / calcPartition1.getCandidateCells().size();
+			double manhattanDistanceTotalAvg = manhattanDistanceTotal / cells1.size();
 			return manhattanDistanceTotalAvg;
 		case ADDED_INPUT_COST_PARTITION_MAX:
-			calcMaxInputCostBefore = (calcPartition1.computeInputCost() < calcPartition2.computeInputCost() ? calcPartition2.computeInputCost() : calcPartition1.computeInputCost());
+			maxInputCostBefore = (partition1.computeInputCost() < partition2.computeInputCost() ? partition2.computeInputCost() : partition1.computeInputCost());
 			
-			calcCandidateS.clear();
-			calcCandidateT.clear();
-			calcCandidateS.addAll(calcPartition1.getCandidateS());
-			calcCandidateS.addAll(calcPartition2.getCandidateS());
-			calcCandidateT.addAll(calcPartition1.getCandidateT());
-			calcCandidateT.addAll(calcPartition2.getCandidateT());
-			
-			calcInputCostAfter = 0L;
-			
-			for (Integer idxS : calcCandidateS) {
-				calcInputCostAfter += countsS[idxS];
-			}
-			for (Integer idxT : calcCandidateT) {
-				calcInputCostAfter += countsT[idxT];
-			}
+			inputCostAfter = partition1.inputCostIfMergedWith(partition2);
 			
-			return (double) (calcInputCostAfter - calcMaxInputCostBefore);
+			return (double) (inputCostAfter - maxInputCostBefore);
 		case ADDED_CANDIDATE_CELLS_PARTITION_MAX:
-			calcMaxInputCostBefore = (calcPartition1.getCandidateCells().size() < calcPartition2.getCandidateCells().size() ? calcPartition2.getCandidateCells().size() : calcPartition1.getCandidateCells().size());
+			maxInputCostBefore = (partition1.getCandidateCells().size() < partition2.getCandidateCells().size() ? partition2.getCandidateCells().size() : partition1.getCandidateCells().size());
 			
-			calcCandidatePairs.clear();
-			calcCandidatePairs.addAll(calcPartition1.getCandidateCells());
-			calcCandidatePairs.addAll(calcPartition2.getCandidateCells());
+			inputCostAfter = partition1.getCandidateCells().unionSize(partition2.getCandidateCells());
 			
-			calcInputCostAfter = calcCandidatePairs.size();
-			
-			return (double) (calcInputCostAfter - calcMaxInputCostBefore);
+			return (double) (inputCostAfter - maxInputCostBefore);
 		case ADDED_INPUT_COST_PARTITION_SUM:
-			calcSumInputCostBefore = calcPartition1.computeInputCost() + calcPartition2.computeInputCost();
-			
-			calcCandidateS.clear();
-			calcCandidateT.clear();
-			calcCandidateS.addAll(calcPartition1.getCandidateS());
-			calcCandidateS.addAll(calcPartition2.getCandidateS());
-			calcCandidateT.addAll(calcPartition1.getCandidateT());
-			calcCandidateT.addAll(calcPartition2.getCandidateT());
-			
-			calcInputCostAfter = 0L;
+			sumInputCostBefore = partition1.computeInputCost() + partition2.computeInputCost();
 			
-			for (Integer idxS : calcCandidateS) {
-				calcInputCostAfter += countsS[idxS];
-			}
-			for (Integer idxT : calcCandidateT) {
-				calcInputCostAfter += countsT[idxT];
-			}
+			inputCostAfter = partition1.inputCostIfMergedWith(partition2);
 			
-			/*	XXX (alternative): return (double) -1*(calcSumInputCostBefore - calcInputCostAfter);	*/
-			return (double) calcInputCostAfter/calcSumInputCostBefore;
+			/*	XXX (alternative): return (double) -1*(sumInputCostBefore - inputCostAfter);	*/
+			return (double) inputCostAfter/sumInputCostBefore;
 		case EMPTIEST_PARTITION_INPUT_COST:
-			calcCandidateS.clear();
-			calcCandidateT.clear();
-			calcCandidateS.addAll(calcPartition1.getCandidateS());
-			calcCandidateS.addAll(calcPartition2.getCandidateS());
-			calcCandidateT.addAll(calcPartition1.getCandidateT());
-			calcCandidateT.addAll(calcPartition2.getCandidateT());
-			
-			calcInputCostAfter = 0L;
-			
-			for (Integer idxS : calcCandidateS) {
-				calcInputCostAfter += countsS[idxS];
-			}
-			for (Integer idxT : calcCandidateT) {
-				calcInputCostAfter += countsT[idxT];
-			}
+			inputCostAfter = partition1.inputCostIfMergedWith(partition2);
 			
-			if (calcInputCostAfter > maxPartitionInput) {
+			if (inputCostAfter > maxPartitionInput) {
 				return Double.MAX_VALUE;
 			} else {
-				double partition1InputCost = calcPartition1.computeInputCost();
-				double partition2InputCost = calcPartition2.computeInputCost();
+				double partition1InputCost = partition1.computeInputCost();
+				double partition2InputCost = partition2.computeInputCost();
 				return partition1InputCost < partition2InputCost ? partition1InputCost : partition2InputCost;
 			}
 		case EMPTIEST_PARTITION_CANDIDATE_CELLS:
-			calcCandidatePairs.clear();
-			calcCandidatePairs.addAll(calcPartition1.getCandidateCells());
-			calcCandidatePairs.addAll(calcPartition2.getCandidateCells());
+			inputCostAfter = partition1.getCandidateCells().unionSize(partition2.getCandidateCells());
 			
-			calcInputCostAfter = calcCandidatePairs.size();
-			
-			if (calcInputCostAfter > maxPartitionCandidateCells) {
+			if (inputCostAfter > maxPartitionCandidateCells) {
 				return Double.MAX_VALUE;
 			} else {
-				double partition1CandidateCells = calcPartition1.getCandidateCells().size();
-				double partition2CandidateCells = calcPartition2.getCandidateCells().size();
+				double partition1CandidateCells = partition1.getCandidateCells().size();
+				double partition2CandidateCells = partition2.getCandidateCells().size();
 				return partition1CandidateCells < partition2CandidateCells ? partition1CandidateCells : partition2CandidateCells;
 			}
 		case WEIGHTED_INPUT_COST_ROWS_COLUMNS:
@@ -500,8 +647,8 @@ public class MergingPartitionToPartition extends Partitioner {
 			double weightColumns = Double.valueOf(dmParameters.get("wC"));
 			
 			if (initial) {
-				IntPair ip1 = calcPartition1.getCandidateCells().toArray(new IntPair[0])[0];
-				IntPair ip2 = calcPartition2.getCandidateCells().toArray(new IntPair[0])[0];
+				IntPair ip1 = partition1.getCandidateCells().get(0);
+				IntPair ip2 = partition2.getCandidateCells().get(0);
 				
 				double weightedDistance = 	weightRows * (countsS[ip1.getFirst()] + countsS[ip2.getFirst()]) +
 											weightColumns * (countsT[ip1.getSecond()] + countsT[ip2.getSecond()]);
@@ -514,122 +661,142 @@ public class MergingPartitionToPartition extends Partitioner {
 					return Double.MAX_VALUE;
 				}
 			} else {
-				calcCandidateS.clear();
-				calcCandidateT.clear();
-				calcCandidateS.addAll(calcPartition1.getCandidateS());
-				calcCandidateS.addAll(calcPartition2.getCandidateS());
-				calcCandidateT.addAll(calcPartition1.getCandidateT());
-				calcCandidateT.addAll(calcPartition2.getCandidateT());
+				BucketSet mergedS = new BucketSet(partition1.getCandidateS());
+				mergedS.addAll(partition2.getCandidateS());
+				BucketSet mergedT = new BucketSet(partition1.getCandidateT());
+				mergedT.addAll(partition2.getCandidateT());
 				
 				long cost1 = 0L;
 				long cost2 = 0L;
 				long costMerged = 0L;
 				
 				// Input cost of partition 1
-				for (Integer idxS : calcPartition1.getCandidateS()) {
+				for (Integer idxS : partition1.getCandidateS()) {
 					cost1 += weightRows * countsS[idxS];
 				}
-				for (Integer idxT : calcPartition1.getCandidateT()) {
+				for (Integer idxT : partition1.getCandidateT()) {
 					cost1 += weightColumns * countsT[idxT];
 				}
 				
 				// Input cost of partition 2
-				for (Integer idxS : calcPartition2.getCandidateS()) {
+				for (Integer idxS : partition2.getCandidateS()) {
 					cost2 += weightRows * countsS[idxS];
 				}
-				for (Integer idxT : calcPartition2.getCandidateT()) {
+				for (Integer idxT : partition2.getCandidateT()) {
 					cost2 += weightColumns * countsT[idxT];
 				}
 				
-				calcSumInputCostBefore = cost1 + cost2;
+				sumInputCostBefore = cost1 + cost2;
 				
 				// Input cost of merged partition
-				for (Integer idxS : calcCandidateS) {
+				for (Integer idxS : mergedS) {
 					costMerged += weightRows * countsS[idxS];
 				}
-				for (Integer idxT : calcCandidateT) {
+				for (Integer idxT : mergedT) {
 					costMerged += weightColumns * countsT[idxT];
 				}
 				
-				calcInputCostAfter = costMerged;
+				inputCostAfter = costMerged;
 				
-				return (double) calcInputCostAfter / calcSumInputCostBefore;
+				return (double) inputCostAfter / sumInputCostBefore;
 			}
 		default:
 			return Double.MIN_VALUE;
 		}
 	}
 	
+
 	private void mergePartitions(DistanceMeasure dm, int partitionIDRemove, int partitionIDMergeTo) {
 		int i1,i2;
 		activePartition[partitionIDRemove] = false;
-		HashSet<Integer> pairs;
-		Integer pair;
 		for (int i = 0 ; i < numCandidateCells; ++i) {
 			if (!activePartition[i]){
 				continue;
 			}
 			
 			if(i < partitionIDRemove) {
-				i1 = i; // partitions[i].getId();
-				i2 = partitionIDRemove; // partitions[partitionIDRemove].getId();
+				i1 = i;
+				i2 = partitionIDRemove;
 			} else {
-				i1 = partitionIDRemove; // partitions[partitionIDRemove].getId();
-				i2 = i; // partitions[i].getId();
+				i1 = partitionIDRemove;
+				i2 = i;
 			}
-			//pair = new IntPair();
-			//pair.set(i1,i2);
-			pair = i1*partitionsCountInitial + i2;
 			
-			
-			pairs = distancesTotal.get(distancePairs[i1][i2]);
-			pairs.remove(pair);
-			if (pairs.size() == 0) {
-				distancesTotal.remove(distancePairs[i1][i2]);
-			} else {
-				distancesTotal.put(distancePairs[i1][i2],pairs);
-			}
+			/*	A pair of distancesTotalInitial is skipped, as it is not valid anymore.	*/
+			removePairDistance(i1, i2);
 		}
 		
 		/*	We will merge the second into the first (the second will be deleted)	*/
+		ownPartition(partitionIDMergeTo);
 		partitions[partitionIDMergeTo].addPartition(partitions[partitionIDRemove]);
 		
 		partitions[partitionIDRemove] = null;
 		
+		if (mergedDistances[partitionIDMergeTo] == null) {
+			mergedDistances[partitionIDMergeTo] = new double[numCandidateCells];
+		}
+		double[] distances = mergedDistances[partitionIDMergeTo];
+		
 		for (int i = 0 ; i < numCandidateCells ; ++i) {
 			if(!activePartition[i] || i == partitionIDMergeTo){
 				continue;
 			}
 			
 			if (i < partitionIDMergeTo) {
-				i1 = i; // partitions[i].getId();
-				i2 = partitionIDMergeTo; // partitions[partitionIDMergeTo].getId();
+				i1 = i;
+				i2 = partitionIDMergeTo;
 			} else {
-				i1 = partitionIDMergeTo; // partitions[partitionIDMergeTo].getId();
-				i2 = i; // partitions[i].getId();
+				i1 = partitionIDMergeTo;
+				i2 = i;
 			}
-			//pair = new IntPair();
-			//pair.set(i1,i2);
-			
-			pair = i1*partitionsCountInitial + i2;
 			
-			/*	distancePairs[i1][i2] = Double.MIN_VALUE;	*/
-			pairs = distancesTotal.get(distancePairs[i1][i2]);
-			pairs.remove(pair);
-			if (pairs.size() == 0) {
-				distancesTotal.remove(distancePairs[i1][i2]);
-			} else {
-				distancesTotal.put(distancePairs[i1][i2],pairs);
-			}
+			removePairDistance(i1, i2);
 			
-			distancePairs[i1][i2] = calculatePartitionsDistance(dm, i1, i2, false);
+			/*	Only the distance of this pair is read from the row before it is written.	*/
+			double distance = calculatePartitionsDistance(dm, i1, i2, false);
+			distances[i] = distance;
 			
-			pairs = distancesTotal.get(distancePairs[i1][i2]);
+			Integer pair = i1*partitionsCountInitial + i2;
+			TreeSet<Integer> pairs = distancesTotal.get(distance);
 			if (pairs == null) {
-				pairs = new HashSet<Integer>();
+				pairs = new TreeSet<Integer>();
+				distancesTotal.put(distance, pairs);
 			}
 			pairs.add(pair);
-			distancesTotal.put(distancePairs[i1][i2], pairs);
+		}
+		
+		/*	The distances of partitionIDMergeTo are now those of its row.	*/
+		lastMerge[partitionIDMergeTo] = ++mergeStep;
+	}
+	
+	/**
+	 * Removes the pair from distancesTotal, unless it is still a pair of distancesTotalInitial.
+	 */
+	private void removePairDistance(int i1, int i2) {
+		if (lastMerge[i1] == 0 && lastMerge[i2] == 0) {
+			return;
+		}
+		double distance = currentDistance(i1, i2);
+		TreeSet<Integer> pairs = distancesTotal.get(distance);
+		pairs.remove(i1*partitionsCountInitial + i2);
+		if (pairs.size() == 0) {
+			distancesTotal.remove(distance);
+		}
+	}
+	
+	/**
+	 * Whether the partitions may be merged, i.e. their union does not exceed the max
+	 * partition input (or max partition candidate cells).
+	 */
+	private boolean isMergeAllowed(int partitionID1, int partitionID2) {
+		switch(bsp) {
+			case MAX_PARTITION_INPUT:
+				/*	We should not merge these two partitions. The final input cost is too large.	*/
+				return partitions[partitionID1].inputCostIfMergedWith(partitions[partitionID2]) <= maxPartitionInput;
+			case MAX_PARTITION_CANDIDATE_CELLS:
+				return partitions[partitionID1].getCandidateCells().unionSize(partitions[partitionID2].getCandidateCells()) <= maxPartitionCandidateCells;
+			default:
+				return true;
 		}
 	}
 	
@@ -637,69 +804,75 @@ public class MergingPartitionToPartition extends Partitioner {
 	 *  Until less than or equal to numPartitions 
 	 */
 	private boolean processMerging(DistanceMeasure dm) {
+		if (mergingEngine == MergingEngine.HEAP) {
+			return processMergingHeap(dm);
+		}
+		
 		int partitionID1,partitionID2;
-		long tmpInputCost, tmpCandidateCells;
 		int partitionIDRemove,partitionIDMergeTo;
-		HashSet<Integer> candidateS = new HashSet<Integer>(),candidateT = new HashSet<Integer>();
 		while (partitionsCount > numPartitions){
 			partitionIDRemove = Integer.MIN_VALUE;
 			partitionIDMergeTo = Integer.MIN_VALUE;
 			
-			 
 			boolean merge = false;
-			/*	entryDistancePartitionPairs holds all the distances in the form <distance,<partition_id,partition_id>>	*/
-			loop2:for (Entry<Double,HashSet<Integer>> entryDistancePartitionPairs : distancesTotal.entrySet()) {
-				for (Integer pair : entryDistancePartitionPairs.getValue()) {
-					//partitionID1 = pair.getFirst();
-					//partitionID2 = pair.getSecond();
-					partitionID1 = pair / partitionsCountInitial;
-					partitionID2 = pair % partitionsCountInitial;
-					
-					switch(bsp) {
-						case MAX_PARTITION_INPUT:
-					
-							candidateS.clear();
-							candidateS.addAll(partitions[partitionID1].getCandidateS());
-							candidateS.addAll(partitions[partitionID2].getCandidateS());
-							
-							candidateT.clear();
-							candidateT.addAll(partitions[partitionID1].getCandidateT());
-							candidateT.addAll(partitions[partitionID2].getCandidateT());
-							
-							tmpInputCost = 0L;
-							for (Integer idxS : candidateS) {
-								tmpInputCost += countsS[idxS];
-							}
-							for (Integer idxT : candidateT) {
-								tmpInputCost += countsT[idxT];
-							}
-							
-							
-							/*	We should not merge these two partitions. The final input cost is too large.	*/
-							if (tmpInputCost > maxPartitionInput) {
-								continue;
-							}
-							break;
-						case MAX_PARTITION_CANDIDATE_CELLS:
-							HashSet<IntPair> cells = new HashSet<IntPair>();
-							
-							cells.addAll(partitions[partitionID1].getCandidateCells());
-							cells.addAll(partitions[partitionID2].getCandidateCells());
-							
-							tmpCandidateCells = cells.size();
-							
-							if(tmpCandidateCells > maxPartitionCandidateCells) {
-								continue;
-							}
-							break;
+			
+			/*
+			 * The pairs in ascending order of distance: those of distancesTotalInitial
+			 * that are still valid and those of distancesTotal, merged.
+			 */
+			int initialIndex = distancesTotalInitialSkips.next(0);
+			Iterator<Entry<Double,TreeSet<Integer>>> entries = distancesTotal.entrySet().iterator();
+			double distance = Double.NaN;
+			Iterator<Integer> pairs = null;
+			Integer pair = null;
+			while (true) {
+				if (pair == null) {
+					if (pairs != null && pairs.hasNext()) {
+						pair = pairs.next();
+					} else if (entries.hasNext()) {
+						Entry<Double,TreeSet<Integer>> entryDistancePartitionPairs = entries.next();
+						distance = entryDistancePartitionPairs.getKey();
+						pairs = entryDistancePartitionPairs.getValue().iterator();
+						continue;
 					}
+				}
+				
+				boolean initial;
+				int candidate;
+				if (initialIndex < distancesTotalInitial.size() && (pair == null || 
+						SortedPairs.compare(distancesTotalInitial.distance(initialIndex), distancesTotalInitial.pair(initialIndex), distance, pair) < 0)) {
+					initial = true;
+					candidate = distancesTotalInitial.pair(initialIndex);
+				} else if (pair != null) {
+					initial = false;
+					candidate = pair;
+				} else {
+					break;
+				}
 				
+				partitionID1 = candidate / partitionsCountInitial;
+				partitionID2 = candidate % partitionsCountInitial;
+				
+				if (initial) {
+					if (!isInitialPairValid(partitionID1, partitionID2)) {
+						distancesTotalInitialSkips.skip(initialIndex);
+						initialIndex = distancesTotalInitialSkips.next(initialIndex);
+						continue;
+					}
+				}
+				
+				if (isMergeAllowed(partitionID1, partitionID2)) {
 					partitionIDRemove = partitionID2;
 					partitionIDMergeTo = partitionID1;
 					
 					merge = true;
-					
-					break loop2;
+					break;
+				}
+				
+				if (initial) {
+					initialIndex = distancesTotalInitialSkips.next(initialIndex + 1);
+				} else {
+					pair = null;
 				}
 			}
 			if (!merge) {
@@ -714,29 +887,155 @@ public class MergingPartitionToPartition extends Partitioner {
 		}
 		return true;
 	}
-
-	private long binarySearch(DistanceMeasure dm,  long lowerBound, long upperBound) throws PartitioningError {
-
-		if (lowerBound > upperBound) {
-			String errorMessage = "Error when searching for the right max. LowerBound is bigger than UpperBound."
-					+ "(" + lowerBound + ">" + upperBound + ")" + " No max input returned a true value.";
-			throw new PartitioningError(errorMessage);
+	
+	/**
+	 * HEAP engine: the closest pair is at the top of the heap, unless it is stale
+	 * (either partition changed after its distance was calculated).
+	 * 
+	 * A pair that may not be merged is dropped: its union only changes when one of
+	 * the two partitions is merged with another one, and then the pair is pushed again.
+	 */
+	private boolean processMergingHeap(DistanceMeasure dm) {
+		while (partitionsCount > numPartitions) {
+			boolean merge = false;
+			while (!heap.isEmpty()) {
+				long pair = heap.peekPair();
+				int stamp = heap.peekStamp();
+				heap.pop();
+				
+				int partitionID1 = (int) (pair / partitionsCountInitial);
+				int partitionID2 = (int) (pair % partitionsCountInitial);
+				
+				if (!activePartition[partitionID1] || !activePartition[partitionID2] || 
+						lastMerge[partitionID1] > stamp || lastMerge[partitionID2] > stamp) {
+					continue;
+				}
+				
+				if (!isMergeAllowed(partitionID1, partitionID2)) {
+					continue;
+				}
+				
+				mergePartitionsHeap(dm, partitionID2, partitionID1);
+				merge = true;
+				break;
+			}
+			
+			if (!merge) {
+				return false;
+			}
+			--partitionsCount;
+		}
+		return true;
+	}
+	
+	private void mergePartitionsHeap(DistanceMeasure dm, int partitionIDRemove, int partitionIDMergeTo) {
+		activePartition[partitionIDRemove] = false;
+		mergedInto[partitionIDRemove] = partitionIDMergeTo;
+		
+		/*	We will merge the second into the first (the second will be deleted)	*/
+		ownPartition(partitionIDMergeTo);
+		partitions[partitionIDMergeTo].addPartition(partitions[partitionIDRemove]);
+		partitions[partitionIDRemove] = null;
+		
+		lastMerge[partitionIDMergeTo] = ++mergeStep;
+		
+		if (neighbours == null) {
+			for (int i = 0 ; i < numCandidateCells; ++i) {
+				if (activePartition[i] && i != partitionIDMergeTo) {
+					pushPairDistance(dm, i, partitionIDMergeTo);
+				}
+			}
+			return;
 		}
+		
+		/*	Neighbours of either partition, as the partitions they have been merged into.	*/
+		int[] merged = new int[neighbours[partitionIDMergeTo].length + neighbours[partitionIDRemove].length];
+		int size = 0;
+		neighboursSeen[partitionIDMergeTo] = mergeStep;
+		for (int[] list : new int[][]{neighbours[partitionIDMergeTo], neighbours[partitionIDRemove]}) {
+			for (int neighbour : list) {
+				int current = findMergedInto(neighbour);
+				if (neighboursSeen[current] != mergeStep) {
+					neighboursSeen[current] = mergeStep;
+					merged[size++] = current;
+				}
+			}
+		}
+		neighbours[partitionIDMergeTo] = Arrays.copyOf(merged, size);
+		neighbours[partitionIDRemove] = null;
+		
+		for (int i = 0 ; i < size; ++i) {
+			pushPairDistance(dm, merged[i], partitionIDMergeTo);
+		}
+	}
+	
+	private void pushPairDistance(DistanceMeasure dm, int partitionIDA, int partitionIDB) {
+		int i1 = Math.min(partitionIDA, partitionIDB);
+		int i2 = Math.max(partitionIDA, partitionIDB);
+		heap.push(calculatePartitionsDistance(dm, i1, i2, false), (long) i1*partitionsCountInitial + i2, mergeStep);
+	}
+	
+	/**
+	 * The active partition that contains the given (initial) partition.
+	 */
+	private int findMergedInto(int partitionID) {
+		int root = partitionID;
+		while (mergedInto[root] != root) {
+			root = mergedInto[root];
+		}
+		while (mergedInto[partitionID] != root) {
+			int next = mergedInto[partitionID];
+			mergedInto[partitionID] = root;
+			partitionID = next;
+		}
+		return root;
+	}
 
-		/*	calculate midpoint to cut set in half	*/
-		long mid = (lowerBound + upperBound) / 2;
+	private static RangeSearch.Evaluation asEvaluation(final MergingPartitionToPartition partitioner, final DistanceMeasure dm) {
+		return new RangeSearch.Evaluation() {
+			@Override
+			public MetricsScore evaluate(long threshold) {
+				if (!partitioner.probe(dm, threshold)) {
+					return null;
+				}
+				return partitioner.calculateMetricsScore();
+			}
+		};
+	}
+	
+	/**
+	 * Binary search, with the next levels probed concurrently by partitioners of
+	 * their own when parallelism > 1 (see SpeculativeBinarySearch). The state of
+	 * this partitioner is that of the result.
+	 */
+	private long binarySearch(final DistanceMeasure dm,  long lowerBound, long upperBound) throws PartitioningError {
+		SpeculativeBinarySearch.Probe probe = asProbe(this, dm);
+		SpeculativeBinarySearch search = new SpeculativeBinarySearch(probe, new SpeculativeBinarySearch.ProbeFactory() {
+			@Override
+			public SpeculativeBinarySearch.Probe createProbe() {
+				return asProbe(MergingPartitionToPartition.this.createProbe(), dm);
+			}
+		}, parallelism);
 		
+		long result = search.search(lowerBound, upperBound);
+		if (search.getResultProbe() != probe) {
+			probe.probe(result);
+		}
+		return result;
+	}
+	
+	private boolean probe(DistanceMeasure dm, long threshold) {
 		/*	For debugging purposes	*/
-//		System.out.println("mid: " + mid + " lowerBound: " + lowerBound + " upperBound: " + upperBound);
+//		System.out.println("threshold: " + threshold);
 
 		cloneInitialPartitionsDistances();
 		
 		switch(bsp) {
 			case MAX_PARTITION_INPUT:
-				maxPartitionInput = mid;
+				maxPartitionInput = threshold;
 				break;
 			case MAX_PARTITION_CANDIDATE_CELLS:
-				maxPartitionCandidateCells = mid;
+				maxPartitionCandidateCells = threshold;
 				break;
 		}
 
@@ -751,17 +1050,8 @@ public class MergingPartitionToPartition extends Partitioner {
 			}
 			memoryCounter = 0;
 		}
-
-		if (!result) {
-			return binarySearch(dm, mid + 1, upperBound);
-		} else {
-
-			if (lowerBound == mid) {
-				return mid;
-			}
-
-			return binarySearch(dm, lowerBound, mid);
-		}
+		
+		return result;
 	}
 
 	/**
@@ -842,7 +1132,34 @@ public class MergingPartitionToPartition extends Partitioner {
 	public Integer getPartitionsCount() {
 		return partitionsCount;
 	}
+	/**
+	 * TREE_MAP engine only (null with HEAP).
+	 */
 	public double[][] getDistancePairs() {
 		return distancePairs;
 	}
+	public MergingEngine getMergingEngine() {
+		return mergingEngine;
+	}
+	public void setMergingEngine(MergingEngine mergingEngine) {
+		this.mergingEngine = mergingEngine;
+	}
+	public MergingNeighbourhood getMergingNeighbourhood() {
+		return mergingNeighbourhood;
+	}
+	public void setMergingNeighbourhood(MergingNeighbourhood mergingNeighbourhood) {
+		this.mergingNeighbourhood = mergingNeighbourhood;
+	}
+	public int getMergingNeighbourhoodSize() {
+		return mergingNeighbourhoodSize;
+	}
+	public void setMergingNeighbourhoodSize(int mergingNeighbourhoodSize) {
+		this.mergingNeighbourhoodSize = mergingNeighbourhoodSize;
+	}
+	public int getParallelism() {
+		return parallelism;
+	}
+	public void setParallelism(int parallelism) {
+		this.parallelism = parallelism;
+	}
 }
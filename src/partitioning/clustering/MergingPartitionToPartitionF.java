@@ -15,6 +15,7 @@
 package partitioning.clustering;
 
 import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.AbstractMap.SimpleEntry;
 import java.util.Collections;
@@ -22,7 +23,10 @@ import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.TreeSet;
 import java.util.Vector;
+import java.util.concurrent.ForkJoinPool;
 
 import datatypes.exceptions.PartitioningError;
 import datatypes.partitioning.MetricsScore;
@@ -47,6 +51,42 @@ public class MergingPartitionToPartitionF extends Partitioner {
 	
 	private boolean[] activePartition = null;
 	
+	private int parallelism = 1; // threads of the what-if scan (1: sequential)
+	
+	private WhatIfEngine whatIfEngine = WhatIfEngine.SCAN;
+	
+	/*
+	 * INCREMENTAL engine
+	 */
+	
+	/*	Merged input cost -> pairs (i*n + j, i < j), in ascending order of pair	*/
+	private TreeMap<Long,TreeSet<Long>> pairsByMergedInputCost = null;
+	/*	Multiset of the input costs of the active partitions: input cost -> count	*/
+	private TreeMap<Long,Integer> inputCosts = null;
+	private long sumInputCost;
+	
+	/**
+	 * How the pairs are scored on every merge step:
+	 * 	-	SCAN: whatIF_mergeIJ for every pair of active partitions, O(n^3) per step.
+	 * 	-	INCREMENTAL: global aggregates of the input costs and the merged input cost
+	 * 		of every pair, of which only the pairs of the merged partitions change.
+	 * 		Only valid as long as targetF scores by BJimbIC alone (see targetF).
+	 */
+	public enum WhatIfEngine {
+		SCAN("SCAN"), INCREMENTAL("INCREMENTAL");
+		
+		private String engine;
+		
+		private WhatIfEngine(String engine) {
+			this.engine = engine;
+		}
+		
+		@Override
+		public String toString() {
+			return engine;
+		}
+	}
+	
 	public MergingPartitionToPartitionF(PartitionMatrix pm, String partitioningPolicy, long sizeS, long sizeT,
 										int numPartitions) {
 		super(pm,partitioningPolicy,sizeS,sizeT,numPartitions, null);
@@ -55,6 +95,14 @@ public class MergingPartitionToPartitionF extends Partitioner {
 		this.maxMemory = Runtime.getRuntime().maxMemory();
 	}
 	
+	/**
+	 * The score of a merge (the lower the better), for both what-if engines.
+	 * 
+	 * The INCREMENTAL engine depends on it returning BJimbIC_normalized alone: it only
+	 * scores the pairs around the maximum input cost and normalizes with the two ends
+	 * of the merged input costs, which is exact for BJimbIC only (see INCREMENTAL engine).
+	 * A targetF on other metrics needs the SCAN engine.
+	 */
 	private Double targetF(HashMap<String, Double> allMetrics, HashMap<String, Double> maxMetrics, HashMap<String, Double> minMetrics) {
 //		double BJrepIC_normalized = (allMetrics.get("BJrepIC") - minMetrics.get("BJrepIC")) / (maxMetrics.get("BJrepIC") - minMetrics.get("BJrepIC"));
 //		double BJmaxIC_normalized = (allMetrics.get("BJmaxIC") - minMetrics.get("BJmaxIC")) / (maxMetrics.get("BJmaxIC") - minMetrics.get("BJmaxIC"));
@@ -69,15 +117,6 @@ public class MergingPartitionToPartitionF extends Partitioner {
 	}
 	
 	private MetricsScore whatIF_mergeIJ(int i, int j) {
-		HashSet<Integer> calcCandidateS = new HashSet<Integer>();
-		HashSet<Integer> calcCandidateT = new HashSet<Integer>();
-		
-		calcCandidateS.addAll(partitions[i].getCandidateS());
-		calcCandidateS.addAll(partitions[j].getCandidateS());
-		
-		calcCandidateT.addAll(partitions[i].getCandidateT());
-		calcCandidateT.addAll(partitions[j].getCandidateT());
-		
 		// Merge j ij (smaller index)
 		//partitionsTmp[i].addPartition(partitionsTmp[j]);
 		//partitionsTmp[j] = null;
@@ -103,15 +142,7 @@ public class MergingPartitionToPartitionF extends Partitioner {
 			}
 		}
 		
-		double BJsumMergedIC = 0.0;
-		
-		for(Integer ijS : calcCandidateS) {
-			BJsumMergedIC += countsS[ijS];
-		}
-		
-		for(Integer ijT : calcCandidateT) {
-			BJsumMergedIC += countsT[ijT];
-		}
+		double BJsumMergedIC = partitions[i].inputCostIfMergedWith(partitions[j]);
 		
 		if( BJsumMergedIC > BJmaxIC) {
 			BJmaxIC = BJsumMergedIC;
@@ -123,6 +154,14 @@ public class MergingPartitionToPartitionF extends Partitioner {
 		BJsumIC += BJsumMergedIC;
 		
 		// AllMetrics am = new AllMetrics(partitionsTmp, partitionsCount - 1, sizeS, sizeT, 100, 100, countsS);
+		return whatIfMetrics(BJsumIC, BJmaxIC, BJminIC, BJmaxCC);
+	}
+	
+	/**
+	 * The metrics of a merge, from the aggregates of the input costs of the active
+	 * partitions and the merged one. Both what-if engines score with them.
+	 */
+	private MetricsScore whatIfMetrics(double BJsumIC, double BJmaxIC, double BJminIC, long BJmaxCC) {
 		double BJrepIC =  BJsumIC / (sizeS+sizeT);
 		double BJmeanIC = BJsumIC / partitionsCount;
 		double BJimbIC = BJmaxIC / BJmeanIC;
@@ -143,21 +182,19 @@ public class MergingPartitionToPartitionF extends Partitioner {
 		this.partitions = new PartitionNonRectangular[numCandidateCells];
 		this.partitionsCount = numCandidateCells;
 		
-		int nRows = matrix.length;
-		int nColumns = matrix[0].length;
+		int nRows = matrix.getRows();
+		int nColumns = matrix.getColumns();
 				
 		int counter = 0;
 		for (int row = 0; row < nRows; ++row) {
-			for (int column = 0 ; column < nColumns; ++column) {
-				if (matrix[row][column] > 0){
-					PartitionNonRectangular cg = new PartitionNonRectangular(counter,pm);
-					
-					cg.addCell(row, column);
-					
-					partitions[counter] = cg;
-					
-					++counter;
-				}
+			for (int column = matrix.nextNonZero(row, 0) ; column < nColumns; column = matrix.nextNonZero(row, column + 1)) {
+				PartitionNonRectangular cg = new PartitionNonRectangular(counter,pm);
+				
+				cg.addCell(row, column);
+				
+				partitions[counter] = cg;
+				
+				++counter;
 			}
 		}
 		activePartition = new boolean[numCandidateCells];
@@ -170,77 +207,21 @@ public class MergingPartitionToPartitionF extends Partitioner {
 		partitions = new PartitionNonRectangular[numCandidateCells];
 		initialize();
 		
-		while( partitionsCount > numPartitions) {
-			Vector<AbstractMap.SimpleEntry<MetricsScore, AbstractMap.SimpleEntry<Integer,Integer>>> scores = 
-					new Vector<AbstractMap.SimpleEntry<MetricsScore,AbstractMap.SimpleEntry<Integer,Integer>>>();
-			for (int i = 0; i < numCandidateCells - 1; ++i) {
-				if( !activePartition[i]) {
-					continue;
+		ForkJoinPool pool = ParallelRows.createPool(parallelism);
+		try {
+			if (whatIfEngine == WhatIfEngine.INCREMENTAL) {
+				initializeIncremental(pool);
+				while( partitionsCount > numPartitions) {
+					mergeBestIncremental();
 				}
-				// Vector<MetricsScore, LinkedList<Integer>> scores = new TreeMap<MetricsScore, LinkedList<Integer>>();
-				for (int j = i+1; j < numCandidateCells; ++j) {
-					if( !activePartition[j]) {
-						continue;
-					}
-					
-					MetricsScore ms = whatIF_mergeIJ(i, j);
-					
-					scores.add( new java.util.AbstractMap.SimpleEntry<MetricsScore, AbstractMap.SimpleEntry<Integer,Integer>>(ms, 
-							new AbstractMap.SimpleEntry<Integer, Integer>(i, j)) );
-					// System.out.println("Trying " + i + " with " + j);
-				}
-			}
-			Vector<MetricsScore> scoresOnly = new Vector<MetricsScore>();
-			for(Entry<MetricsScore, AbstractMap.SimpleEntry<Integer, Integer>> entry : scores) {
-				scoresOnly.add(entry.getKey());
-			}
-			HashMap<String, Double> maxMetrics = AllMetrics.getMaxMetrics(scoresOnly);
-			HashMap<String, Double> minMetrics = AllMetrics.getMinMetrics(scoresOnly);
-			
-			for(int s = 0 ; s < scores.size(); ++s) {
-				scores.get(s).getKey().setScore(targetF(scores.get(s).getKey().getMetrics(), maxMetrics, minMetrics));
-			}
-			
-//			for(int s = 0 ; s < scores.size(); ++s) {
-//				System.out.println(scores.get(s).getKey().getScore());
-//			}
-			
-			// Collections.sort(scores, new MetricsScore.MetricsScoreComparatorScores());
-//			Collections.sort(scores, new Comparator<AbstractMap.SimpleEntry<MetricsScore, AbstractMap.SimpleEntry<Integer, Integer>>>() {
-//				@Override
-//				public int compare(AbstractMap.SimpleEntry<MetricsScore, AbstractMap.SimpleEntry<Integer, Integer>> entry1, AbstractMap.SimpleEntry<MetricsScore, AbstractMap.SimpleEntry<Integer, Integer>> entry2) {
-//					if(entry1.getKey().getScore() == entry2.getKey().getScore()) {
-//						return 0;
-//					} else {
-//						return entry1.getKey().getScore() > entry2.getKey().getScore() ? 1 : -1;
-//					}
-//				}
-//			});
-			
-//			for(int s = 0 ; s < scores.size(); ++s) {
-//				System.out.println(scores.get(s).getKey().getScore());
-//			}
-			
-			double minScore = Double.MAX_VALUE;
-			Integer minScoreI = -1;
-			Integer minScoreJ = -1;
-			for(int s = 0 ; s < scores.size(); ++s) {
-				if( scores.get(s).getKey().getScore() < minScore ) {
-					minScore = scores.get(s).getKey().getScore();
-					minScoreI = scores.get(s).getValue().getKey();
-					minScoreJ = scores.get(s).getValue().getValue();
+			} else {
+				while( partitionsCount > numPartitions) {
+					Vector<AbstractMap.SimpleEntry<MetricsScore, AbstractMap.SimpleEntry<Integer,Integer>>> scores = scoreMerges(pool);
+					mergeBest(scores);
 				}
 			}
-			
-			/* The best score will be now in the first place */
-//			AbstractMap.SimpleEntry<Integer, Integer> bestScoreIJ = scores.get(0).getValue();
-			
-			partitions[minScoreI].addPartition(partitions[minScoreJ]);
-			partitions[minScoreJ] = null;
-			activePartition[minScoreJ] = false; 
-			--partitionsCount;
-			
-			System.out.println("Merging " + minScoreI + " with " + minScoreJ + " with score: " + minScore);
+		} finally {
+			ParallelRows.shutdown(pool);
 		}
 		
 		transformToFinal();
@@ -253,7 +234,271 @@ public class MergingPartitionToPartitionF extends Partitioner {
 
 		calculateIdxToPartitions(partitions);
 	}
+	
+	/**
+	 * The what-if metrics of all pairs of active partitions, in the order of the
+	 * sequential scan (i, then j). The rows are scored in parallel.
+	 */
+	private Vector<AbstractMap.SimpleEntry<MetricsScore, AbstractMap.SimpleEntry<Integer,Integer>>> scoreMerges(ForkJoinPool pool) {
+		/*	Partition caches its input cost lazily; the concurrent whatIF_mergeIJ calls only read it.	*/
+		for (int k = 0 ; k < numCandidateCells; ++k) {
+			if (activePartition[k]) {
+				partitions[k].computeInputCost();
+			}
+		}
+		
+		final ArrayList<Vector<AbstractMap.SimpleEntry<MetricsScore, AbstractMap.SimpleEntry<Integer,Integer>>>> rowScores = 
+				new ArrayList<Vector<AbstractMap.SimpleEntry<MetricsScore,AbstractMap.SimpleEntry<Integer,Integer>>>>(Collections.nCopies(numCandidateCells, 
+						(Vector<AbstractMap.SimpleEntry<MetricsScore,AbstractMap.SimpleEntry<Integer,Integer>>>) null));
+		ParallelRows.invoke(pool, numCandidateCells - 1, new ParallelRows.Rows() {
+			@Override
+			public void compute(int from, int to) {
+				for (int i = from; i < to; ++i) {
+					if( !activePartition[i]) {
+						continue;
+					}
+					Vector<AbstractMap.SimpleEntry<MetricsScore, AbstractMap.SimpleEntry<Integer,Integer>>> row = 
+							new Vector<AbstractMap.SimpleEntry<MetricsScore,AbstractMap.SimpleEntry<Integer,Integer>>>();
+					for (int j = i+1; j < numCandidateCells; ++j) {
+						if( !activePartition[j]) {
+							continue;
+						}
+						
+						MetricsScore ms = whatIF_mergeIJ(i, j);
+						
+						row.add( new java.util.AbstractMap.SimpleEntry<MetricsScore, AbstractMap.SimpleEntry<Integer,Integer>>(ms, 
+								new AbstractMap.SimpleEntry<Integer, Integer>(i, j)) );
+					}
+					rowScores.set(i, row);
+				}
+			}
+		});
+		
+		Vector<AbstractMap.SimpleEntry<MetricsScore, AbstractMap.SimpleEntry<Integer,Integer>>> scores = 
+				new Vector<AbstractMap.SimpleEntry<MetricsScore,AbstractMap.SimpleEntry<Integer,Integer>>>();
+		for (Vector<AbstractMap.SimpleEntry<MetricsScore, AbstractMap.SimpleEntry<Integer,Integer>>> row : rowScores) {
+			if (row != null) {
+				scores.addAll(row);
+			}
+		}
+		return scores;
+	}
+	
+	private void mergeBest(Vector<AbstractMap.SimpleEntry<MetricsScore, AbstractMap.SimpleEntry<Integer,Integer>>> scores) {
+		Vector<MetricsScore> scoresOnly = new Vector<MetricsScore>();
+		for(Entry<MetricsScore, AbstractMap.SimpleEntry<Integer, Integer>> entry : scores) {
+			scoresOnly.add(entry.getKey());
+		}
+		HashMap<String, Double> maxMetrics = AllMetrics.getMaxMetrics(scoresOnly);
+		HashMap<String, Double> minMetrics = AllMetrics.getMinMetrics(scoresOnly);
+		
+		for(int s = 0 ; s < scores.size(); ++s) {
+			scores.get(s).getKey().setScore(targetF(scores.get(s).getKey().getMetrics(), maxMetrics, minMetrics));
+		}
+		
+//		for(int s = 0 ; s < scores.size(); ++s) {
+//			System.out.println(scores.get(s).getKey().getScore());
+//		}
+		
+		// Collections.sort(scores, new MetricsScore.MetricsScoreComparatorScores());
+//		Collections.sort(scores, new Comparator<AbstractMap.SimpleEntry<MetricsScore, AbstractMap.SimpleEntry<Integer, Integer>>>() {
+//			@Override
+//			public int compare(AbstractMap.SimpleEntry<MetricsScore, AbstractMap.SimpleEntry<Integer, Integer>> entry1, AbstractMap.SimpleEntry<MetricsScore, AbstractMap.SimpleEntry<Integer, Integer>> entry2) {
+//				if(entry1.getKey().getScore() == entry2.getKey().getScore()) {
+//					return 0;
+//				} else {
+//					return entry1.getKey().getScore() > entry2.getKey().getScore() ? 1 : -1;
+//				}
+//			}
+//		});
+		
+//		for(int s = 0 ; s < scores.size(); ++s) {
+//			System.out.println(scores.get(s).getKey().getScore());
+//		}
+		
+		double minScore = Double.MAX_VALUE;
+		Integer minScoreI = -1;
+		Integer minScoreJ = -1;
+		for(int s = 0 ; s < scores.size(); ++s) {
+			if( scores.get(s).getKey().getScore() < minScore ) {
+				minScore = scores.get(s).getKey().getScore();
+				minScoreI = scores.get(s).getValue().getKey();
+				minScoreJ = scores.get(s).getValue().getValue();
+			}
+		}
+		
+		/* The best score will be now in the first place */
+//		AbstractMap.SimpleEntry<Integer, Integer> bestScoreIJ = scores.get(0).getValue();
+		
+		partitions[minScoreI].addPartition(partitions[minScoreJ]);
+		partitions[minScoreJ] = null;
+		activePartition[minScoreJ] = false; 
+		--partitionsCount;
+		
+		System.out.println("Merging " + minScoreI + " with " + minScoreJ + " with score: " + minScore);
+	}
+
+	/*
+	 * INCREMENTAL engine
+	 * 
+	 * whatIF_mergeIJ scores a pair with BJimbIC = max(maxIC, m) / ((sumIC + m) / partitionsCount),
+	 * where maxIC and sumIC are over all the active partitions and m is the input cost of
+	 * the merged pair. Only m depends on the pair: for the pairs with m <= maxIC the score
+	 * decreases with m, for the others it increases with m (and is higher). So the best pair
+	 * is the one with the largest m <= maxIC or, if there is none, the one with the smallest
+	 * m, and the worst (for the normalization of targetF) is at one of the two ends.
+	 * Pairs of equal m are taken in the order of the scan (pair id). The candidates are
+	 * scored with whatIfMetrics and targetF, as in SCAN, which is why targetF must stay
+	 * on BJimbIC: the other metrics have their best pairs elsewhere.
+	 */
+	
+	private void initializeIncremental(ForkJoinPool pool) {
+		inputCosts = new TreeMap<Long,Integer>();
+		sumInputCost = 0L;
+		for (int k = 0 ; k < numCandidateCells; ++k) {
+			if (activePartition[k]) {
+				addInputCost(partitions[k].computeInputCost());
+			}
+		}
+		
+		/*	The merged input costs of all pairs, in parallel, in blocks of rows.	*/
+		final long[][] mergedInputCosts = new long[numCandidateCells][];
+		ParallelRows.invoke(pool, numCandidateCells - 1, new ParallelRows.Rows() {
+			@Override
+			public void compute(int from, int to) {
+				for (int i = from; i < to; ++i) {
+					mergedInputCosts[i] = new long[numCandidateCells - i - 1];
+					for (int j = i+1; j < numCandidateCells; ++j) {
+						mergedInputCosts[i][j - i - 1] = partitions[i].inputCostIfMergedWith(partitions[j]);
+					}
+				}
+			}
+		});
+		
+		pairsByMergedInputCost = new TreeMap<Long,TreeSet<Long>>();
+		for (int i = 0; i < numCandidateCells - 1; ++i) {
+			for (int j = i+1; j < numCandidateCells; ++j) {
+				addPair(mergedInputCosts[i][j - i - 1], i, j);
+			}
+			mergedInputCosts[i] = null;
+		}
+	}
+	
 
+	private void mergeBestIncremental() {
+		long maxInputCost = inputCosts.lastKey();
+		
+		Entry<Long,TreeSet<Long>> below = pairsByMergedInputCost.floorEntry(maxInputCost);
+		Entry<Long,TreeSet<Long>> above = pairsByMergedInputCost.higherEntry(maxInputCost);
+		
+		/*	The candidates, and the ends of the merged input costs for the normalization of targetF	*/
+		Vector<MetricsScore> candidates = new Vector<MetricsScore>();
+		Vector<Long> candidatePairs = new Vector<Long>();
+		if (below != null) {
+			candidates.add(whatIfIncremental(below, maxInputCost));
+			candidatePairs.add(below.getValue().first());
+		}
+		if (above != null) {
+			candidates.add(whatIfIncremental(above, maxInputCost));
+			candidatePairs.add(above.getValue().first());
+		}
+		Vector<MetricsScore> extremes = new Vector<MetricsScore>(candidates);
+		extremes.add(whatIfIncremental(pairsByMergedInputCost.firstEntry(), maxInputCost));
+		extremes.add(whatIfIncremental(pairsByMergedInputCost.lastEntry(), maxInputCost));
+		HashMap<String, Double> maxMetrics = AllMetrics.getMaxMetrics(extremes);
+		HashMap<String, Double> minMetrics = AllMetrics.getMinMetrics(extremes);
+		
+		long bestPair = -1L;
+		double minScore = Double.MAX_VALUE;
+		for (int c = 0; c < candidates.size(); ++c) {
+			double score = targetF(candidates.get(c).getMetrics(), maxMetrics, minMetrics);
+			long pair = candidatePairs.get(c);
+			if (score < minScore || (score == minScore && pair < bestPair)) {
+				bestPair = pair;
+				minScore = score;
+			}
+		}
+		
+		int minScoreI = (int) (bestPair / numCandidateCells);
+		int minScoreJ = (int) (bestPair % numCandidateCells);
+		
+		/*	The pairs of both partitions leave, with their merged input costs before the merge.	*/
+		for (int k = 0 ; k < numCandidateCells; ++k) {
+			if (!activePartition[k]) {
+				continue;
+			}
+			if (k != minScoreI) {
+				removePair(partitions[k].inputCostIfMergedWith(partitions[minScoreI]), Math.min(k, minScoreI), Math.max(k, minScoreI));
+			}
+			if (k != minScoreJ && k != minScoreI) {
+				removePair(partitions[k].inputCostIfMergedWith(partitions[minScoreJ]), Math.min(k, minScoreJ), Math.max(k, minScoreJ));
+			}
+		}
+		removeInputCost(partitions[minScoreI].computeInputCost());
+		removeInputCost(partitions[minScoreJ].computeInputCost());
+		
+		partitions[minScoreI].addPartition(partitions[minScoreJ]);
+		partitions[minScoreJ] = null;
+		activePartition[minScoreJ] = false; 
+		--partitionsCount;
+		
+		/*	The pairs of the merged partition enter.	*/
+		addInputCost(partitions[minScoreI].computeInputCost());
+		for (int k = 0 ; k < numCandidateCells; ++k) {
+			if (!activePartition[k] || k == minScoreI) {
+				continue;
+			}
+			addPair(partitions[k].inputCostIfMergedWith(partitions[minScoreI]), Math.min(k, minScoreI), Math.max(k, minScoreI));
+		}
+		
+		System.out.println("Merging " + minScoreI + " with " + minScoreJ + " with score: " + minScore);
+	}
+	
+	/**
+	 * The metrics of whatIF_mergeIJ for the first pair of the given merged input cost.
+	 * BJminIC stays at its initial value there, as the input costs are positive.
+	 */
+	private MetricsScore whatIfIncremental(Entry<Long,TreeSet<Long>> entry, long maxInputCost) {
+		long mergedInputCost = entry.getKey();
+		int j = (int) (entry.getValue().first() % numCandidateCells);
+		double BJmaxIC = Math.max(Double.MIN_VALUE, Math.max(maxInputCost, mergedInputCost));
+		double BJsumIC = (double) sumInputCost + mergedInputCost;
+		return whatIfMetrics(BJsumIC, BJmaxIC, Double.MIN_VALUE, partitions[j].getCandidateCells().size());
+	}
+	
+	private void addPair(long mergedInputCost, int i, int j) {
+		TreeSet<Long> pairs = pairsByMergedInputCost.get(mergedInputCost);
+		if (pairs == null) {
+			pairs = new TreeSet<Long>();
+			pairsByMergedInputCost.put(mergedInputCost, pairs);
+		}
+		pairs.add((long) i*numCandidateCells + j);
+	}
+	
+	private void removePair(long mergedInputCost, int i, int j) {
+		TreeSet<Long> pairs = pairsByMergedInputCost.get(mergedInputCost);
+		pairs.remove((long) i*numCandidateCells + j);
+		if (pairs.isEmpty()) {
+			pairsByMergedInputCost.remove(mergedInputCost);
+		}
+	}
+	
+	private void addInputCost(long inputCost) {
+		Integer count = inputCosts.get(inputCost);
+		inputCosts.put(inputCost, count == null ? 1 : count + 1);
+		sumInputCost += inputCost;
+	}
+	
+	private void removeInputCost(long inputCost) {
+		int count = inputCosts.get(inputCost);
+		if (count == 1) {
+			inputCosts.remove(inputCost);
+		} else {
+			inputCosts.put(inputCost, count - 1);
+		}
+		sumInputCost -= inputCost;
+	}
+	
 	private void transformToFinal() {
 		HashMap<Integer,Integer> initialToFinalID = new HashMap<Integer,Integer>();
 		int counter = 0;
@@ -301,6 +546,18 @@ public class MergingPartitionToPartitionF extends Partitioner {
 	public double[][] getDistancePairs() {
 		return null;
 	}
+	public int getParallelism() {
+		return parallelism;
+	}
+	public void setParallelism(int parallelism) {
+		this.parallelism = parallelism;
+	}
+	public WhatIfEngine getWhatIfEngine() {
+		return whatIfEngine;
+	}
+	public void setWhatIfEngine(WhatIfEngine whatIfEngine) {
+		this.whatIfEngine = whatIfEngine;
+	}
 
 	@Override
 	public void findLowest() throws PartitioningError {
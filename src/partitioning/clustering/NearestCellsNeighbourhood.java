@@ -0,0 +1,103 @@
+/**
+ * NearestCellsNeighbourhood.java
+ *
+ * Every candidate cell is a neighbour of its k nearest candidate cells in
+ * Manhattan distance (cells at equal distance are taken by id), and vice versa.
+ *
+ * The rows are searched outwards from the row of the cell and the search stops
+ * as soon as the row distance alone exceeds the distance of the k-th nearest
+ * cell found so far.
+ *
+ * @author John Koumarelas
+ */
+
+package partitioning.clustering;
+
+public class NearestCellsNeighbourhood extends CandidateNeighbourhood {
+
+	private int k;
+
+	/*	The k nearest cells found so far, by (distance, id)	*/
+	private int[] bestDistances;
+	private int[] bestIDs;
+	private int bestSize;
+
+	public NearestCellsNeighbourhood(int k) {
+		this.k = Math.max(k, 1);
+		this.bestDistances = new int[this.k];
+		this.bestIDs = new int[this.k];
+	}
+
+	@Override
+	protected void generatePairs() {
+		for (int i = 0 ; i < rows.length; ++i) {
+			bestSize = 0;
+
+			int row = rows[i];
+			int column = columns[i];
+			for (int dr = 0 ; dr < nRows; ++dr) {
+				if (bestSize == k && dr > bestDistances[k - 1]) {
+					break;
+				}
+				if (row - dr < 0 && row + dr >= nRows) {
+					break;
+				}
+
+				searchRow(i, row - dr, column, dr);
+				if (dr > 0) {
+					searchRow(i, row + dr, column, dr);
+				}
+			}
+
+			for (int b = 0 ; b < bestSize; ++b) {
+				addPair(i, bestIDs[b]);
+			}
+		}
+	}
+
+	private void searchRow(int cellID, int row, int column, int dr) {
+		if (row < 0 || row >= nRows) {
+			return;
+		}
+
+		int start = ceilingInRow(row, column);
+
+		/*	Rightwards (including the column itself), then leftwards.	*/
+		for (int j = start ; j < rowStarts[row + 1]; ++j) {
+			if (!offer(cellID, j, dr + columns[j] - column)) {
+				break;
+			}
+		}
+		for (int j = start - 1 ; j >= rowStarts[row]; --j) {
+			if (!offer(cellID, j, dr + column - columns[j])) {
+				break;
+			}
+		}
+	}
+
+	/**
+	 * @return false when no cell further away in the same direction can be among the k nearest.
+	 */
+	private boolean offer(int cellID, int otherID, int distance) {
+		if (otherID == cellID) {
+			return true;
+		}
+		if (bestSize == k && (distance > bestDistances[k - 1] ||
+				(distance == bestDistances[k - 1] && otherID > bestIDs[k - 1]))) {
+			return distance <= bestDistances[k - 1];
+		}
+
+		/*	Insertion into the sorted list	*/
+		int position = bestSize < k ? bestSize++ : k - 1;
+		while (position > 0 && (bestDistances[position - 1] > distance ||
+				(bestDistances[position - 1] == distance && bestIDs[position - 1] > otherID))) {
+			bestDistances[position] = bestDistances[position - 1];
+			bestIDs[position] = bestIDs[position - 1];
+			--position;
+		}
+		bestDistances[position] = distance;
+		bestIDs[position] = otherID;
+		return true;
+	}
+
+}
@@ -0,0 +1,193 @@
+/**
+ * PairHeap.java
+ *
+ * Binary min-heap of pairs of partitions, on primitive arrays:
+ * 	-	distance: the distance of the pair, the key of the heap
+ * 	-	pair: the pair, encoded as i*n + j (i < j)
+ * 	-	stamp: the merge step at which the distance was calculated
+ *
+ * Entries are ordered by distance (as Double.compare) and then by pair,
+ * so the order of pairs with equal distances is deterministic.
+ *
+ * Entries are never updated in place. When a partition changes, the new
+ * distances are pushed and the old entries are invalidated lazily: the
+ * user discards the entries whose stamp is older than the last change of
+ * either of their partitions when they reach the top.
+ *
+ * @author John Koumarelas
+ */
+
+package partitioning.clustering;
+
+import java.util.Arrays;
+
+public class PairHeap {
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private double[] distances;
+	private long[] pairs;
+	private int[] stamps;
+	private int size;
+
+	public PairHeap() {
+		this(INITIAL_CAPACITY);
+	}
+
+	public PairHeap(int capacity) {
+		capacity = Math.max(capacity, 1);
+		this.distances = new double[capacity];
+		this.pairs = new long[capacity];
+		this.stamps = new int[capacity];
+		this.size = 0;
+	}
+
+	public void clear() {
+		size = 0;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Appends an entry without restoring the heap order. heapify() must be
+	 * called before the heap is used.
+	 */
+	public void append(double distance, long pair, int stamp) {
+		ensureCapacity(size + 1);
+		distances[size] = distance;
+		pairs[size] = pair;
+		stamps[size] = stamp;
+		++size;
+	}
+
+	/**
+	 * Reserves count entries at the end, to be filled with set() (possibly by
+	 * several threads, each on its own entries) before heapify().
+	 *
+	 * @return the index of the first reserved entry
+	 */
+	public int reserve(int count) {
+		ensureCapacity(size + count);
+		int start = size;
+		size += count;
+		return start;
+	}
+
+	public void set(int index, double distance, long pair, int stamp) {
+		distances[index] = distance;
+		pairs[index] = pair;
+		stamps[index] = stamp;
+	}
+
+	/**
+	 * Restores the heap order after append(), in O(size).
+	 */
+	public void heapify() {
+		for (int i = (size >>> 1) - 1 ; i >= 0; --i) {
+			siftDown(i);
+		}
+	}
+
+	public void push(double distance, long pair, int stamp) {
+		append(distance, pair, stamp);
+		siftUp(size - 1);
+	}
+
+	public double peekDistance() {
+		return distances[0];
+	}
+
+	public long peekPair() {
+		return pairs[0];
+	}
+
+	public int peekStamp() {
+		return stamps[0];
+	}
+
+	public void pop() {
+		--size;
+		if (size > 0) {
+			distances[0] = distances[size];
+			pairs[0] = pairs[size];
+			stamps[0] = stamps[size];
+			siftDown(0);
+		}
+	}
+
+	/**
+	 * Replaces the contents of this heap with those of another one.
+	 */
+	public void copyFrom(PairHeap other) {
+		ensureCapacity(other.size);
+		System.arraycopy(other.distances, 0, distances, 0, other.size);
+		System.arraycopy(other.pairs, 0, pairs, 0, other.size);
+		System.arraycopy(other.stamps, 0, stamps, 0, other.size);
+		size = other.size;
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity > distances.length) {
+			int newCapacity = Math.max(capacity, distances.length + (distances.length >>> 1));
+			distances = Arrays.copyOf(distances, newCapacity);
+			pairs = Arrays.copyOf(pairs, newCapacity);
+			stamps = Arrays.copyOf(stamps, newCapacity);
+		}
+	}
+
+	private boolean less(int a, int b) {
+		int cmp = Double.compare(distances[a], distances[b]);
+		return cmp < 0 || (cmp == 0 && pairs[a] < pairs[b]);
+	}
+
+	private void siftUp(int i) {
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (!less(i, parent)) {
+				break;
+			}
+			swap(i, parent);
+			i = parent;
+		}
+	}
+
+	private void siftDown(int i) {
+		while (true) {
+			int left = (i << 1) + 1;
+			if (left >= size) {
+				break;
+			}
+			int smallest = left;
+			int right = left + 1;
+			if (right < size && less(right, left)) {
+				smallest = right;
+			}
+			if (!less(smallest, i)) {
+				break;
+			}
+			swap(i, smallest);
+			i = smallest;
+		}
+	}
+
+	private void swap(int a, int b) {
+		double tmpDistance = distances[a];
+		distances[a] = distances[b];
+		distances[b] = tmpDistance;
+
+		long tmpPair = pairs[a];
+		pairs[a] = pairs[b];
+		pairs[b] = tmpPair;
+
+		int tmpStamp = stamps[a];
+		stamps[a] = stamps[b];
+		stamps[b] = tmpStamp;
+	}
+
+}
@@ -0,0 +1,88 @@
+/**
+ * ParallelRows.java
+ *
+ * Runs a computation over the rows [0, n) of a matrix (e.g. the upper
+ * triangular matrix of pairs, or the PartitionMatrix) on a ForkJoinPool, in
+ * blocks of consecutive rows. The row ranges are split in halves down to
+ * blocks of a few rows, so that the work stealing of the pool balances the
+ * rows of different lengths.
+ *
+ * Every block gets its own call of Rows.compute(), which keeps its scratch
+ * state local to the call. The caller sees all the writes of the blocks when
+ * invoke() returns.
+ *
+ * @author John Koumarelas
+ */
+
+package partitioning.clustering;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class ParallelRows {
+
+	/*	Blocks per thread, for the balancing of rows of different lengths	*/
+	private static final int BLOCKS_PER_THREAD = 16;
+
+	public interface Rows {
+		/**
+		 * Computes the rows [from, to).
+		 */
+		void compute(int from, int to);
+	}
+
+	/**
+	 * @param pool: null to compute all rows in the calling thread
+	 */
+	public static void invoke(ForkJoinPool pool, int n, Rows rows) {
+		if (n <= 0) {
+			return;
+		}
+		if (pool == null || pool.getParallelism() <= 1) {
+			rows.compute(0, n);
+			return;
+		}
+		int grain = Math.max(1, n / (pool.getParallelism() * BLOCKS_PER_THREAD));
+		pool.invoke(new RowBlock(rows, 0, n, grain));
+	}
+
+	/**
+	 * @return a pool of the given number of threads, null for a single thread.
+	 */
+	public static ForkJoinPool createPool(int parallelism) {
+		return parallelism > 1 ? new ForkJoinPool(parallelism) : null;
+	}
+
+	public static void shutdown(ForkJoinPool pool) {
+		if (pool != null) {
+			pool.shutdown();
+		}
+	}
+
+	private static class RowBlock extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final Rows rows;
+		private final int from;
+		private final int to;
+		private final int grain;
+
+		public RowBlock(Rows rows, int from, int to, int grain) {
+			this.rows = rows;
+			this.from = from;
+			this.to = to;
+			this.grain = grain;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= grain) {
+				rows.compute(from, to);
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new RowBlock(rows, from, middle, grain), new RowBlock(rows, middle, to, grain));
+		}
+	}
+
+}
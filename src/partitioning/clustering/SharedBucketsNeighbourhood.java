@@ -0,0 +1,56 @@
+/**
+ * SharedBucketsNeighbourhood.java
+ *
+ * Candidate cells are neighbours when they share a bucket, i.e. they are in the
+ * same row (bucket of S) or in the same column (bucket of T). As neighbours are
+ * united on merges, two partitions are neighbours exactly when they share a
+ * bucket. Merging any other pair adds the full input of both partitions.
+ *
+ * This is also the only neighbourhood of WEIGHTED_INPUT_COST_ROWS_COLUMNS,
+ * which puts every other pair of cells at Double.MAX_VALUE.
+ *
+ * @author John Koumarelas
+ */
+
+package partitioning.clustering;
+
+import java.util.Arrays;
+
+public class SharedBucketsNeighbourhood extends CandidateNeighbourhood {
+
+	@Override
+	protected void generatePairs() {
+		/*	Same row	*/
+		for (int r = 0 ; r < nRows; ++r) {
+			for (int i = rowStarts[r] ; i < rowStarts[r + 1]; ++i) {
+				for (int j = i + 1 ; j < rowStarts[r + 1]; ++j) {
+					addPair(i, j);
+				}
+			}
+		}
+
+		/*	Same column: cells grouped by column (counting sort), each column in row order	*/
+		int n = rows.length;
+		int[] columnStarts = new int[nColumns + 1];
+		for (int i = 0 ; i < n; ++i) {
+			++columnStarts[columns[i] + 1];
+		}
+		for (int c = 0 ; c < nColumns; ++c) {
+			columnStarts[c + 1] += columnStarts[c];
+		}
+		int[] next = Arrays.copyOf(columnStarts, nColumns);
+		int[] byColumn = new int[n];
+		for (int i = 0 ; i < n; ++i) {
+			byColumn[next[columns[i]]++] = i;
+		}
+
+		for (int c = 0 ; c < nColumns; ++c) {
+			for (int i = columnStarts[c] ; i < columnStarts[c + 1]; ++i) {
+				for (int j = i + 1 ; j < columnStarts[c + 1]; ++j) {
+					addPair(byColumn[i], byColumn[j]);
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,150 @@
+/**
+ * SortedPairs.java
+ *
+ * The pairs of partitions of the initial state of the TREE_MAP engine, on
+ * primitive arrays, sorted once by distance (as Double.compare) and then by
+ * pair, i.e. in the order in which distancesTotal is iterated.
+ *
+ * It is only read, so it is shared by all the runs (and the concurrent probes)
+ * instead of being copied for every one of them. A run walks it with its own
+ * Skips, which jump over the pairs that the run has invalidated.
+ *
+ * @author John Koumarelas
+ */
+
+package partitioning.clustering;
+
+public class SortedPairs {
+
+	private double[] distances;
+	private int[] pairs;
+
+	/**
+	 * Sorts the given pairs, in any order. The arrays are taken over.
+	 */
+	public SortedPairs(double[] distances, int[] pairs) {
+		this.distances = distances;
+		this.pairs = pairs;
+		sort();
+	}
+
+	public int size() {
+		return pairs.length;
+	}
+
+	public double distance(int index) {
+		return distances[index];
+	}
+
+	public int pair(int index) {
+		return pairs[index];
+	}
+
+	/**
+	 * The order of the entries: by distance (as Double.compare) and then by pair.
+	 */
+	public static int compare(double distance1, int pair1, double distance2, int pair2) {
+		int cmp = Double.compare(distance1, distance2);
+		if (cmp != 0) {
+			return cmp;
+		}
+		return pair1 < pair2 ? -1 : (pair1 == pair2 ? 0 : 1);
+	}
+
+	/**
+	 * Bottom-up merge sort on both arrays.
+	 */
+	private void sort() {
+		int n = pairs.length;
+		double[] distancesFrom = distances, distancesTo = new double[n];
+		int[] pairsFrom = pairs, pairsTo = new int[n];
+		for (int width = 1 ; width < n; width <<= 1) {
+			for (int start = 0 ; start < n; start += width << 1) {
+				int middle = Math.min(start + width, n);
+				int end = Math.min(start + (width << 1), n);
+				int i = start, j = middle, k = start;
+				while (i < middle && j < end) {
+					if (compare(distancesFrom[j], pairsFrom[j], distancesFrom[i], pairsFrom[i]) < 0) {
+						distancesTo[k] = distancesFrom[j];
+						pairsTo[k++] = pairsFrom[j++];
+					} else {
+						distancesTo[k] = distancesFrom[i];
+						pairsTo[k++] = pairsFrom[i++];
+					}
+				}
+				while (i < middle) {
+					distancesTo[k] = distancesFrom[i];
+					pairsTo[k++] = pairsFrom[i++];
+				}
+				while (j < end) {
+					distancesTo[k] = distancesFrom[j];
+					pairsTo[k++] = pairsFrom[j++];
+				}
+			}
+			double[] tmpDistances = distancesFrom;
+			distancesFrom = distancesTo;
+			distancesTo = tmpDistances;
+			int[] tmpPairs = pairsFrom;
+			pairsFrom = pairsTo;
+			pairsTo = tmpPairs;
+		}
+		distances = distancesFrom;
+		pairs = pairsFrom;
+	}
+
+	/**
+	 * The entries of a SortedPairs that a run has skipped. As a pair never becomes
+	 * valid again within a run, skipped entries are jumped over with path
+	 * compression, and reset() only undoes the skips of the last run.
+	 */
+	public static class Skips {
+
+		private int[] next; // entry -> itself, or an entry after it (when skipped)
+		private int[] skipped;
+		private int skippedCount;
+
+		public Skips(int size) {
+			this.next = new int[size + 1];
+			for (int i = 0 ; i <= size; ++i) {
+				next[i] = i;
+			}
+			this.skipped = new int[16];
+			this.skippedCount = 0;
+		}
+
+		/**
+		 * The first entry from index onwards that has not been skipped (size if none).
+		 */
+		public int next(int index) {
+			int root = index;
+			while (next[root] != root) {
+				root = next[root];
+			}
+			while (next[index] != root) {
+				int tmp = next[index];
+				next[index] = root;
+				index = tmp;
+			}
+			return root;
+		}
+
+		public void skip(int index) {
+			if (skippedCount == skipped.length) {
+				int[] tmp = new int[skipped.length << 1];
+				System.arraycopy(skipped, 0, tmp, 0, skippedCount);
+				skipped = tmp;
+			}
+			skipped[skippedCount++] = index;
+			next[index] = index + 1;
+		}
+
+		public void reset() {
+			for (int i = 0 ; i < skippedCount; ++i) {
+				next[skipped[i]] = skipped[i];
+			}
+			skippedCount = 0;
+		}
+
+	}
+
+}
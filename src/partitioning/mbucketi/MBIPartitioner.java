@@ -4,22 +4,31 @@
  * This is the default partitioner as shown at the work:
  * Processing Theta-Joins using MapReduce
  * 
+ * The candidate band heights of coverSubMatrix are evaluated on indexes of
+ * the candidate cells (prefix sums of the candidate cells per row, and the
+ * candidate columns of every row and candidate rows of every column), without
+ * building the partitions. Only the chosen band is covered with partitions.
+ * 
+ * The binary search over the max partition input probes several thresholds
+ * concurrently (see SpeculativeBinarySearch), each on a partitioner of its own.
+ * 
  * @author John Koumarelas
  */
 package partitioning.mbucketi;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.TreeMap;
-import java.util.Vector;
 
 import model.PartitionMatrix;
 import model.partitioning.Partition;
 import model.partitioning.mbucketi.PartitionRectangular;
 import partitioning.Partitioner;
-import utils.metrics.AllMetrics;
+import partitioning.RangeSearch;
+import partitioning.SpeculativeBinarySearch;
 import utils.metrics.ReplicationRateInputCostMetric;
 import datatypes.DoubleQuad;
 import datatypes.IntPair;
@@ -31,6 +40,31 @@ public class MBIPartitioner extends Partitioner {
 
 	private PartitionRectangular[] partitionsR = null;
 	private int partitionsCount = 0;
+	
+	private int parallelism = 1; // concurrent probes of the binary search (1: sequential)
+	
+	/*
+	 * Indexes of the candidate cells, built once per matrix
+	 */
+	
+	private int[] candidateCellsPrefix = null; // row -> candidate cells of the rows before it
+	private int[] rowColumnsStart = null; // row -> start in rowColumns
+	private int[] rowColumns = null; // candidate columns of every row, ascending
+	private int[] columnRowsStart = null; // column -> start in columnRows
+	private int[] columnRows = null; // candidate rows of every column, ascending
+	
+	/*
+	 * State of the band evaluation
+	 */
+	
+	private int[] bandColumns = null; // candidate columns of the band, ascending
+	private int[] bandColumnsMerge = null;
+	private int bandColumnsCount = 0;
+	private int[] columnCursor = null; // column -> position in columnRows of its first candidate row in the band
+	private int[] columnBandEnd = null; // column -> position in columnRows after its last candidate row in the band
+	private long[] columnBandInputS = null; // column -> countsS of its candidate rows in the band
+	private long[] rowRegion = null; // row -> last region that covers it
+	private long region = 0;
 		
 	public MBIPartitioner(PartitionMatrix pm, String partitioningPolicy,
 			long sizeS, long sizeT, int numPartitions) {
@@ -70,6 +104,9 @@ public class MBIPartitioner extends Partitioner {
 		this.maxPartitionInput = maxPartitionInput; 
 	}
 	
+	/**
+	 * The thresholds are evaluated concurrently when parallelism > 1 (see RangeSearch).
+	 */
 	@Override
 	public void rangeSearch(long lowerMPI, long upperMPI,
 			int granularity) throws PartitioningError {
@@ -77,8 +114,6 @@ public class MBIPartitioner extends Partitioner {
 			return;
 		}
 		
-		this.rangeSearchMetrics = new Vector<MetricsScore>();
-		
 		this.maxPartitionInput = -1;
 		this.curP = numPartitions;
 		this.partitionsR = new PartitionRectangular[this.numPartitions];
@@ -86,34 +121,18 @@ public class MBIPartitioner extends Partitioner {
 		
 		long start = System.currentTimeMillis();
 		
-		long step = (upperMPI - lowerMPI) / granularity;
-		
-		HashSet<Long> selectedMPIs = new HashSet<Long>();
-		long tmpMPI = upperMPI;
-		for (int i = 0 ; i < granularity - 1 ; ++i) {
-			selectedMPIs.add(tmpMPI);
-			tmpMPI -= step;
+		if (candidateCellsPrefix == null) {
+			buildCandidateIndexes();
 		}
-		selectedMPIs.add(lowerMPI);
 		
-		for (long mpi : selectedMPIs) {
-			maxPartitionInput = mpi;
-			boolean result = mBucketI(maxPartitionInput);
-			if (!result) {
-				break;
+		RangeSearch rangeSearch = createRangeSearch(asEvaluation(this), new RangeSearch.EvaluationFactory() {
+			@Override
+			public RangeSearch.Evaluation createEvaluation() {
+				return asEvaluation(MBIPartitioner.this.createProbe());
 			}
-			
-			Partition[] partitions = this.getPartitions();
-			
-			int bucketsS = this.countsS.length;
-			int bucketsT = this.countsT.length;
-			HashMap<String,Double> metrics = new AllMetrics(partitions, this.getPartitionsCount(), 
-					sizeS, sizeT,bucketsS, bucketsT, countsS).getAllMetrics();
-			
-			double score = Double.NEGATIVE_INFINITY;
-			
-			rangeSearchMetrics.addElement(new MetricsScore(metrics,score));
-		}
+		}, parallelism);
+		
+		this.rangeSearchMetrics = rangeSearch.search(RangeSearch.thresholds(lowerMPI, upperMPI, granularity));
 		
 		long end = System.currentTimeMillis();
 
@@ -139,18 +158,178 @@ public class MBIPartitioner extends Partitioner {
 	}
 	
 	private int totalCandidateArea(int row, int row_i) {
+		return candidateCellsPrefix[row_i + 1] - candidateCellsPrefix[row];
+	}
+	
+	private void buildCandidateIndexes() {
+		int nRows = matrix.getRows();
+		int nColumns = matrix.getColumns();
+		
+		candidateCellsPrefix = new int[nRows + 1];
+		rowColumnsStart = new int[nRows + 1];
+		columnRowsStart = new int[nColumns + 1];
+		for (int ri = 0; ri < nRows; ++ri) {
+			for (int ci = matrix.nextNonZero(ri, 0) ; ci < nColumns; ci = matrix.nextNonZero(ri, ci + 1)) {
+				++candidateCellsPrefix[ri + 1];
+				++columnRowsStart[ci + 1];
+			}
+		}
+		for (int ri = 0; ri < nRows; ++ri) {
+			candidateCellsPrefix[ri + 1] += candidateCellsPrefix[ri];
+		}
+		for (int ci = 0; ci < nColumns; ++ci) {
+			columnRowsStart[ci + 1] += columnRowsStart[ci];
+		}
+		System.arraycopy(candidateCellsPrefix, 0, rowColumnsStart, 0, nRows + 1);
 		
-		int nColumns = matrix[0].length;
+		int numCandidateCells = candidateCellsPrefix[nRows];
+		rowColumns = new int[numCandidateCells];
+		columnRows = new int[numCandidateCells];
+		int[] columnNext = new int[nColumns];
+		System.arraycopy(columnRowsStart, 0, columnNext, 0, nColumns);
+		int next = 0;
+		for (int ri = 0; ri < nRows; ++ri) {
+			for (int ci = matrix.nextNonZero(ri, 0) ; ci < nColumns; ci = matrix.nextNonZero(ri, ci + 1)) {
+				rowColumns[next++] = ci;
+				columnRows[columnNext[ci]++] = ri;
+			}
+		}
+		
+		allocateBandState();
+	}
+	
+	private void allocateBandState() {
+		bandColumns = new int[countsT.length];
+		bandColumnsMerge = new int[countsT.length];
+		columnCursor = new int[countsT.length];
+		columnBandEnd = new int[countsT.length];
+		columnBandInputS = new long[countsT.length];
+		rowRegion = new long[countsS.length];
+		region = 0;
+	}
+	
+	/**
+	 * A partitioner of the same matrix, sharing the candidate cell indexes, for
+	 * the concurrent probes of the binary search.
+	 */
+	private MBIPartitioner createProbe() {
+		MBIPartitioner probe = new MBIPartitioner(pm, partitioningPolicy, sizeS, sizeT, numPartitions);
+		probe.candidateCellsPrefix = candidateCellsPrefix;
+		probe.rowColumnsStart = rowColumnsStart;
+		probe.rowColumns = rowColumns;
+		probe.columnRowsStart = columnRowsStart;
+		probe.columnRows = columnRows;
+		probe.allocateBandState();
+		return probe;
+	}
+	
+	private static SpeculativeBinarySearch.Probe asProbe(final MBIPartitioner partitioner) {
+		return new SpeculativeBinarySearch.Probe() {
+			@Override
+			public boolean probe(long threshold) throws PartitioningError {
+				partitioner.maxPartitionInput = threshold;
+				return partitioner.mBucketI(threshold);
+			}
+		};
+	}
+	
+	private static RangeSearch.Evaluation asEvaluation(final MBIPartitioner partitioner) {
+		final SpeculativeBinarySearch.Probe probe = asProbe(partitioner);
+		return new RangeSearch.Evaluation() {
+			@Override
+			public MetricsScore evaluate(long threshold) throws PartitioningError {
+				if (!probe.probe(threshold)) {
+					return null;
+				}
+				return partitioner.calculateMetricsScore();
+			}
+		};
+	}
+	
+	/**
+	 * Adds the candidate columns of the row to the band, keeping them in ascending order,
+	 * and the row to the candidate rows in the band of each of them.
+	 */
+	private void addBandRow(int row) {
+		int i = 0, j = rowColumnsStart[row], merged = 0;
+		int end = rowColumnsStart[row + 1];
+		while (i < bandColumnsCount || j < end) {
+			if (j == end || (i < bandColumnsCount && bandColumns[i] < rowColumns[j])) {
+				bandColumnsMerge[merged++] = bandColumns[i++];
+			} else if (i == bandColumnsCount || rowColumns[j] < bandColumns[i]) {
+				/*	The column enters the band at this row.	*/
+				int ci = rowColumns[j++];
+				columnCursor[ci] = Arrays.binarySearch(columnRows, columnRowsStart[ci], columnRowsStart[ci + 1], row);
+				columnBandEnd[ci] = columnCursor[ci] + 1;
+				columnBandInputS[ci] = countsS[row];
+				bandColumnsMerge[merged++] = ci;
+			} else {
+				/*	The rows of a column are ascending, so the row is the next one.	*/
+				int ci = bandColumns[i++];
+				++columnBandEnd[ci];
+				columnBandInputS[ci] += countsS[row];
+				bandColumnsMerge[merged++] = ci;
+				++j;
+			}
+		}
+		int[] tmp = bandColumns;
+		bandColumns = bandColumnsMerge;
+		bandColumnsMerge = tmp;
+		bandColumnsCount = merged;
+	}
+	
+	/**
+	 * The number of partitions with which coverRows(row_s, row_si, maxPartitionInput)
+	 * covers the band, without building them: the columns without candidate cells
+	 * in the band add nothing to a partition, so only the candidate columns are visited.
+	 * 
+	 * The splitting depends on the whole band, so every height is evaluated anew, with
+	 * a single pass over the candidate cells of the band: O(candidate cells of the band).
+	 * Only the input cost of a column that starts a partition is kept per column.
+	 * 
+	 * @return -1 if any of the partitions exceeds maxPartitionInput.
+	 */
+	private int countCoverRows(int row_s, int row_si, long maxPartitionInput) {
+		int regions = 0;
+		boolean hasCells = false;
+		long curInputSize = 0;
+		++region;
 		
-		int counter = 0;
-		for (int ri = row; ri <= row_i; ++ri) {
-			for (int ci = 0 ; ci < nColumns; ++ci) {
-				if (matrix[ri][ci] > 0) {
-					++counter;
+		for (int b = 0 ; b < bandColumnsCount; ++b) {
+			int ci = bandColumns[b];
+			int start = columnCursor[ci];
+			int end = columnBandEnd[ci];
+			
+			/*	The rows are marked as they are counted; if the column starts a new partition they are marked again.	*/
+			long candInCost = countsT[ci];
+			for (int k = start; k < end; ++k) {
+				int ri = columnRows[k];
+				if (rowRegion[ri] != region) {
+					candInCost += countsS[ri];
+					rowRegion[ri] = region;
 				}
 			}
+			
+			if (maxPartitionInput - curInputSize < candInCost && hasCells) {
+				++regions;
+				++region;
+				curInputSize = 0;
+				
+				candInCost = countsT[ci] + columnBandInputS[ci];
+				for (int k = start; k < end; ++k) {
+					rowRegion[columnRows[k]] = region;
+				}
+			}
+			hasCells = true;
+			
+			curInputSize += candInCost;
+			if (curInputSize > maxPartitionInput) {
+				return -1;
+			}
 		}
-		return counter;
+		
+		/*	The last partition (also the single, empty one of a band without candidate cells)	*/
+		return regions + 1;
 	}
 
 	private List<PartitionRectangular> coverRows(int row_s, int row_si, long maxPartitionInput) throws PartitioningError {
@@ -216,19 +395,13 @@ public class MBIPartitioner extends Partitioner {
 
 		int bestRow = -1;
 
-		outerLoop:for (int i = 0; row_s + i < countsS.length; ++i) {
-			List<PartitionRectangular> Pi = coverRows(row_s, row_s + i, maxPartitionInput);
-			int PiCount = Pi.size();
+		bandColumnsCount = 0;
+		for (int i = 0; row_s + i < countsS.length; ++i) {
+			addBandRow(row_s + i);
 			
-			if( PiCount == 0) {
-				System.out.println("Error! No partitions were formed at coverRows! PiCount == 0.");
-//				System.exit(0);
-			}
-			
-			for(PartitionRectangular pr : Pi) {
-				if(pr.computeInputCost() > maxPartitionInput) {
-					break outerLoop; // keep the current best match
-				}
+			int PiCount = countCoverRows(row_s, row_s + i, maxPartitionInput);
+			if (PiCount < 0) {
+				break; // keep the current best match
 			}
 			
 			int area = totalCandidateArea(row_s, row_s + i);
@@ -285,6 +458,9 @@ public class MBIPartitioner extends Partitioner {
 	// This function implements the Algorithm 3 : M-Bucket-I
 	private boolean mBucketI(long maxPartitionInput) throws PartitioningError {
 		mBucketIClean();
+		if (candidateCellsPrefix == null) {
+			buildCandidateIndexes();
+		}
 
 		int row = 0;
 		while (row < countsS.length) {
@@ -302,33 +478,29 @@ public class MBIPartitioner extends Partitioner {
 		return true;
 	}
 
+	/**
+	 * Binary search, with the next levels probed concurrently when parallelism > 1
+	 * (see SpeculativeBinarySearch); the partitions are those of the result.
+	 */
 	private long binarySearchMaxInput(long lowerBound, long upperBound)
 			throws PartitioningError {
-
-		if (lowerBound > upperBound) {
-			String errorMessage = 	"ERROR - MBIPartitioner.binarySearchMaxInput," +
-									"When searching for the right max input. LowerBound is bigger than UpperBound." +
-									"(" + lowerBound + ">" + upperBound + ")" + " No max input returned a true value.";
-			throw new PartitioningError(errorMessage);
+		if (candidateCellsPrefix == null) {
+			buildCandidateIndexes();
 		}
-
-		/*	calculate midpoint to cut set in half	*/
-		long mid = (lowerBound + upperBound) / 2;
-
-		maxPartitionInput = mid;
-
-		boolean result = mBucketI(maxPartitionInput);
-
-		if (!result) {
-			return binarySearchMaxInput(mid + 1, upperBound);
-		} else {
-
-			if (lowerBound == mid) {
-				return mid;
+		
+		SpeculativeBinarySearch.Probe probe = asProbe(this);
+		SpeculativeBinarySearch search = new SpeculativeBinarySearch(probe, new SpeculativeBinarySearch.ProbeFactory() {
+			@Override
+			public SpeculativeBinarySearch.Probe createProbe() {
+				return asProbe(MBIPartitioner.this.createProbe());
 			}
-
-			return binarySearchMaxInput(lowerBound, mid);
+		}, parallelism);
+		
+		long maxPartitionInput = search.search(lowerBound, upperBound);
+		if (search.getResultProbe() != probe) {
+			probe.probe(maxPartitionInput);
 		}
+		return maxPartitionInput;
 	}
 
 	/*	GETTERS - SETTERS	*/
@@ -340,4 +512,10 @@ public class MBIPartitioner extends Partitioner {
 	public Integer getPartitionsCount() {
 		return partitionsCount;
 	}
+	public int getParallelism() {
+		return parallelism;
+	}
+	public void setParallelism(int parallelism) {
+		this.parallelism = parallelism;
+	}
 }
\ No newline at end of file
@@ -15,13 +15,14 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import model.CellMatrix;
 import model.PartitionMatrix;
 import utils.handlers.partitionMatrix.PartitionMatrixSwapper;
 import datatypes.exceptions.RearrangementError;
 
 public class BondEnergyAlgorithmRadius extends Rearrangements {
 	
-	private long[][] M;
+	private CellMatrix M;
     private List<Set<Integer>> Mrows;
     private List<Set<Integer>> Mcols;
 	private int[] placedRows;
@@ -45,9 +46,9 @@ public class BondEnergyAlgorithmRadius extends Rearrangements {
 		// radius == 1+
         if(Mhash.get(lower).contains(c)){            
             if(rows) {
-            	bond += (long)M[upper][c]*M[lower][c];
+            	bond += (long)M.get(upper,c)*M.get(lower,c);
             } else {
-            	bond += (long)M[c][upper]*M[c][lower];
+            	bond += (long)M.get(c,upper)*M.get(c,lower);
             }
         }
         
@@ -58,18 +59,18 @@ public class BondEnergyAlgorithmRadius extends Rearrangements {
         		// left/up
         		if((c-i) >= 0) {
         			if(rows) {
-                    	bond += (long)M[upper][c-i]*M[lower][c-i];
+                    	bond += (long)M.get(upper,c-i)*M.get(lower,c-i);
                     } else {
-                    	bond += (long)M[c-i][upper]*M[c-i][lower];
+                    	bond += (long)M.get(c-i,upper)*M.get(c-i,lower);
                     }
         		}
         		
         		// right/down
-        		if((c+i) < (rows ? M.length : M[0].length)) {
+        		if((c+i) < (rows ? M.getRows() : M.getColumns())) {
         			if(rows) {
-                    	bond += (long)M[upper][c+i]*M[lower][c+i];
+                    	bond += (long)M.get(upper,c+i)*M.get(lower,c+i);
                     } else {
-                    	bond += (long)M[c+i][upper]*M[c+i][lower];
+                    	bond += (long)M.get(c+i,upper)*M.get(c+i,lower);
                     }
         		}
         	}
@@ -170,7 +171,7 @@ public class BondEnergyAlgorithmRadius extends Rearrangements {
     @Override
 	protected void execute() throws RearrangementError {
 		try {
-			M = pm.getMatrix();
+			M = pm.getCells();
 	        getMrowsHash();
 	        getMcolsHash();
 			
@@ -286,28 +287,25 @@ public class BondEnergyAlgorithmRadius extends Rearrangements {
 	}
 	
     private void getMrowsHash() {
-        Mrows = new ArrayList<Set<Integer>>(M.length);
-        for(long[] row : M){
+        Mrows = new ArrayList<Set<Integer>>(M.getRows());
+        for (int r = 0; r < M.getRows(); r++){
             HashSet<Integer> colsHash = new HashSet<Integer>();
-            for(int c=0; c <= row.length-1; c++){
-            	if (row[c] > 0){
-                    colsHash.add(c);
-                }
+            for (int c = M.nextNonZero(r, 0); c < M.getColumns(); c = M.nextNonZero(r, c + 1)){
+                colsHash.add(c);
             }
             Mrows.add(colsHash);
         }
     }
 
     private void getMcolsHash() {
-        Mcols = new ArrayList<Set<Integer>>(M.length);
-        for(int c=0; c < M[0].length; c++){
-        	HashSet<Integer> rowsHash = new HashSet<Integer>();
-        	for(int r=0; r < M.length; r++){
-        		if (M[r][c] > 0){
-                    rowsHash.add(r);
-                }
-        	}
-        	 Mcols.add(rowsHash);
-        }  
+        Mcols = new ArrayList<Set<Integer>>(M.getColumns());
+        for (int c = 0; c < M.getColumns(); c++){
+            Mcols.add(new HashSet<Integer>());
+        }
+        for (int r = 0; r < M.getRows(); r++){
+            for (int c = M.nextNonZero(r, 0); c < M.getColumns(); c = M.nextNonZero(r, c + 1)){
+                Mcols.get(c).add(r);
+            }
+        }
     }
 }
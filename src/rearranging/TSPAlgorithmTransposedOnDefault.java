@@ -13,6 +13,7 @@ package rearranging;
 
 import java.io.IOException;
 
+import model.CellMatrix;
 import model.PartitionMatrix;
 import model.partitioning.mbucketi.PartitionRectangularBoundaries;
 
@@ -42,7 +43,7 @@ public class TSPAlgorithmTransposedOnDefault extends Rearrangements {
 	@Override
 	void execute() throws RearrangementError {
 		try {
-			long[][] originalMatrix = pm.getMatrix().clone();
+			CellMatrix originalMatrix = pm.getCells();
 			
 			TSPAlgorithm tspa;
 			
@@ -61,18 +62,10 @@ public class TSPAlgorithmTransposedOnDefault extends Rearrangements {
 			
 			this.rowsRearrangements = rowsMapping;
 			
-			pm.setMatrix(originalMatrix.clone());
+			pm.setCells(originalMatrix);
 			
 			/*	Transpose matrix	*/
-			long[][] tmpMatrix = new long[pm.getMatrix().length][pm.getMatrix()[0].length];
-			
-			for(int i = 0 ; i < tmpMatrix.length; ++i) {
-				for(int j = 0 ; j < tmpMatrix[0].length ; ++j) {
-					tmpMatrix[i][j] = pm.getMatrix()[j][i];
-				}
-			}
-			
-			pm.setMatrix(tmpMatrix);
+			pm.setCells(originalMatrix.transpose());
 			
 			tspa = new TSPAlgorithm(pm,numPartitions,k,"TSPkTransposedOnDefault",partitionMatrixDirectory);
 			tspa.rearrange();
@@ -89,7 +82,7 @@ public class TSPAlgorithmTransposedOnDefault extends Rearrangements {
 			
 			this.columnsRearrangements = columnsMapping;
 			
-			pm.setMatrix(originalMatrix.clone());
+			pm.setCells(originalMatrix);
 			
 			PartitionRectangularBoundaries rb = new PartitionRectangularBoundaries();		
 			rb.setStartBoundaries(0, 0);
@@ -13,6 +13,7 @@ package rearranging;
 
 import java.io.IOException;
 
+import model.CellMatrix;
 import model.PartitionMatrix;
 
 import org.apache.hadoop.fs.Path;
@@ -60,13 +61,7 @@ public class TSPAlgorithmTransposedOnRearranged extends Rearrangements {
 			this.rowsRearrangements = rowsMapping;
 
 			/*	Transpose matrix	*/
-			long[][] tmpMatrix = new long[pm.getMatrix().length][pm.getMatrix()[0].length];
-			
-			for(int i = 0 ; i < tmpMatrix.length; ++i) {
-				for(int j = 0 ; j < tmpMatrix[0].length ; ++j) {
-					tmpMatrix[i][j] = pm.getMatrix()[j][i];
-				}
-			}
+			CellMatrix tmpMatrix = pm.getCells().transpose();
 			
 			tspa = new TSPAlgorithm(pm,numPartitions,k, "TSPkTransposedOnRearranged",partitionMatrixDirectory);
 			tspa.rearrange();
@@ -0,0 +1,221 @@
+/**
+ * TestThetaPredicates.java
+ *
+ * In this class we validate the ThetaPredicates of the queries parsed by
+ * ThetaJoin.getQueryParts against their join conditions, evaluated exactly
+ * (without overflow) on pairs of values:
+ * 	-	the ranges of S for a value of T, and of T for a value of S, hold
+ * 		exactly the matching values, including at the ends of the domain,
+ * 		and an empty range has its lowest bound greater than its highest one.
+ * 	-	the bounds of the non-empty ranges are non-decreasing.
+ * 	-	mayMatch holds for exactly the buckets with a matching pair.
+ *
+ * @author John Koumarelas
+ */
+
+package test.join;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import join.BandPredicate;
+import join.EpsilonPredicate;
+import join.InequalityPredicate;
+import join.ThetaJoin;
+import join.ThetaPredicate;
+import model.BucketBoundaries;
+
+public class TestThetaPredicates {
+
+	private static final String[] QUERIES = {"[-5|3]", "[10|20]", "[-20|-10]", "[0|0]", "[<]", "[<=]", "[>]", "[>=]",
+		"[~0]", "[~7]", "[-5|3]_[10|20]", "[~0]_[<]"};
+
+	private static final String[] INVALID_QUERIES = {"[5]", "-5|3", "[~-1]", "[<>]", "[-5|3]_", "[~]"};
+
+	/**
+	 * The join condition of the predicate on the values, with their difference
+	 * computed exactly.
+	 */
+	private static boolean matches(ThetaPredicate predicate, long valueS, long valueT) {
+		BigInteger difference = BigInteger.valueOf(valueS).subtract(BigInteger.valueOf(valueT));
+
+		if(predicate instanceof BandPredicate) {
+			BandPredicate band = (BandPredicate) predicate;
+			return difference.compareTo(BigInteger.valueOf(band.getC1())) >= 0 && difference.compareTo(BigInteger.valueOf(band.getC2())) <= 0;
+		} else if(predicate instanceof EpsilonPredicate) {
+			return difference.abs().compareTo(BigInteger.valueOf(((EpsilonPredicate) predicate).getEps())) <= 0;
+		}
+
+		switch(((InequalityPredicate) predicate).getOperator()) {
+			case LT:
+				return valueS < valueT;
+			case LE:
+				return valueS <= valueT;
+			case GT:
+				return valueS > valueT;
+			case GE:
+			default:
+				return valueS >= valueT;
+		}
+	}
+
+	/**
+	 * The ends of the domain and the values next to them, the values around 0,
+	 * and random ones, in ascending order.
+	 */
+	private static List<Long> getValues(Random r) {
+		List<Long> values = new ArrayList<Long>();
+		for(long offset = 0; offset <= 25; ++offset) {
+			values.add(Long.MIN_VALUE + offset);
+			values.add(Long.MAX_VALUE - offset);
+		}
+		for(long value = -25; value <= 25; ++value) {
+			values.add(value);
+		}
+		for(int i = 0; i < 20; ++i) {
+			values.add(r.nextLong());
+		}
+		Collections.sort(values);
+		return values;
+	}
+
+	/**
+	 * The range [lowest, highest] for a value of the other relation, against the
+	 * values that match it: isRelationS for the range of S.
+	 */
+	private static int checkRange(ThetaPredicate predicate, long value, long lowest, long highest, List<Long> values, boolean isRelationS) {
+		int mismatches = 0;
+		String name = predicate + (isRelationS ? " S of T=" : " T of S=") + value + " [" + lowest + ", " + highest + "]";
+
+		for(long other : values) {
+			boolean match = isRelationS ? matches(predicate, other, value) : matches(predicate, value, other);
+			if(match != (lowest <= other && other <= highest)) {
+				System.out.println("MISMATCH " + name + " value=" + other + " matches=" + match);
+				++mismatches;
+			}
+		}
+
+		/*	The bounds are the lowest and highest matching values	*/
+		if(lowest <= highest) {
+			boolean lowestMatch = isRelationS ? matches(predicate, lowest, value) : matches(predicate, value, lowest);
+			boolean highestMatch = isRelationS ? matches(predicate, highest, value) : matches(predicate, value, highest);
+			boolean belowMatch = lowest != Long.MIN_VALUE
+					&& (isRelationS ? matches(predicate, lowest - 1, value) : matches(predicate, value, lowest - 1));
+			boolean aboveMatch = highest != Long.MAX_VALUE
+					&& (isRelationS ? matches(predicate, highest + 1, value) : matches(predicate, value, highest + 1));
+			if(!lowestMatch || !highestMatch || belowMatch || aboveMatch) {
+				System.out.println("MISMATCH " + name + " bounds");
+				++mismatches;
+			}
+		}
+
+		return mismatches;
+	}
+
+	private static int checkRanges(ThetaPredicate predicate, List<Long> values) {
+		int mismatches = 0;
+
+		long[] previousS = null;
+		long[] previousT = null;
+		for(long value : values) {
+			long[] rangeS = {predicate.lowestS(value), predicate.highestS(value)};
+			long[] rangeT = {predicate.lowestT(value), predicate.highestT(value)};
+			mismatches += checkRange(predicate, value, rangeS[0], rangeS[1], values, true);
+			mismatches += checkRange(predicate, value, rangeT[0], rangeT[1], values, false);
+
+			/*	Non-decreasing, over the non-empty ranges	*/
+			if(rangeS[0] <= rangeS[1]) {
+				if(previousS != null && (rangeS[0] < previousS[0] || rangeS[1] < previousS[1])) {
+					System.out.println("MISMATCH " + predicate + " S decreasing at T=" + value);
+					++mismatches;
+				}
+				previousS = rangeS;
+			}
+			if(rangeT[0] <= rangeT[1]) {
+				if(previousT != null && (rangeT[0] < previousT[0] || rangeT[1] < previousT[1])) {
+					System.out.println("MISMATCH " + predicate + " T decreasing at S=" + value);
+					++mismatches;
+				}
+				previousT = rangeT;
+			}
+		}
+
+		return mismatches;
+	}
+
+	private static int checkMayMatch(ThetaPredicate predicate) {
+		int mismatches = 0;
+
+		int width = 5;
+		for(long fromS = -40; fromS < 40; fromS += width) {
+			for(long fromT = -40; fromT < 40; fromT += width) {
+				boolean match = false;
+				for(long valueS = fromS; valueS < fromS + width; ++valueS) {
+					for(long valueT = fromT; valueT < fromT + width; ++valueT) {
+						match |= matches(predicate, valueS, valueT);
+					}
+				}
+
+				BucketBoundaries boundaryS = new BucketBoundaries();
+				boundaryS.set(fromS, fromS + width - 1);
+				BucketBoundaries boundaryT = new BucketBoundaries();
+				boundaryT.set(fromT, fromT + width - 1);
+				if(match != predicate.mayMatch(boundaryS, boundaryT)) {
+					System.out.println("MISMATCH " + predicate + " mayMatch S=" + boundaryS + " T=" + boundaryT + " matches=" + match);
+					++mismatches;
+				}
+			}
+		}
+
+		return mismatches;
+	}
+
+	private static int checkQuery(String query, List<Long> values) {
+		int mismatches = 0;
+
+		ThetaPredicate[] queryParts = ThetaJoin.getQueryParts(query);
+		StringBuilder sb = new StringBuilder();
+		for(ThetaPredicate queryPart : queryParts) {
+			if(sb.length() > 0) {
+				sb.append("_");
+			}
+			sb.append(queryPart.toString());
+		}
+		if(!sb.toString().equals(query)) {
+			System.out.println("MISMATCH " + query + " parsed as " + sb.toString());
+			++mismatches;
+		}
+
+		for(ThetaPredicate queryPart : queryParts) {
+			mismatches += checkRanges(queryPart, values);
+			mismatches += checkMayMatch(queryPart);
+		}
+
+		return mismatches;
+	}
+
+	public static void main(String[] args) {
+		int mismatches = 0;
+		List<Long> values = getValues(new Random(0));
+
+		for(String query : QUERIES) {
+			mismatches += checkQuery(query, values);
+		}
+
+		for(String query : INVALID_QUERIES) {
+			try {
+				ThetaJoin.getQueryParts(query);
+				System.out.println("MISMATCH " + query + " parsed");
+				++mismatches;
+			} catch (IllegalArgumentException e) {
+				;// Rejected
+			}
+		}
+
+		System.out.println("mismatches: " + mismatches);
+	}
+
+}
@@ -0,0 +1,321 @@
+/**
+ * TestJoinEngines.java
+ *
+ * In this class we validate the join engines of the MBIReducer against a
+ * nested loop join: for every predicate and output mode, TREE_MAP, SORTED_RUN
+ * (in memory and spilling S, T or both) and STREAMING_MERGE must give the
+ * results (MATERIALIZE) and the output counter (MATERIALIZE, COUNT, SUM) of
+ * the candidate cells of the partition.
+ *
+ * As the reducer of MBucketI, every engine joins several partitions in a row.
+ * The values arrive sorted and collapsed (one addS/addT per distinct value),
+ * as STREAMING_MERGE needs them. Unsorted values, in chunks of duplication,
+ * are checked for TREE_MAP and SORTED_RUN with MATERIALIZE and SUM only: the
+ * COUNT of TREE_MAP counts the pairs per arrival.
+ *
+ * @author John Koumarelas
+ */
+
+package test.join.mbi;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.TreeMap;
+
+import datatypes.IntPair;
+import join.BandPredicate;
+import join.EpsilonPredicate;
+import join.InequalityPredicate;
+import join.ThetaJoin;
+import join.ThetaPredicate;
+import join.mbi.HistogramIndexer;
+import join.mbi.MBIJoinEngine;
+import join.mbi.MBIJoinEngine.JoinEngine;
+import join.mbi.MBIJoinEngine.JoinOutputMode;
+import join.mbi.PartitionCells;
+import model.BucketBoundaries;
+
+public class TestJoinEngines {
+
+	private static final int BUCKETS = 8;
+	private static final int BUCKET_WIDTH = 125;
+
+	private static final String[] QUERIES = {"[-5|3]", "[-5|3]_[10|20]", "[-30|-10]", "[<]", "[<=]", "[>]", "[>=]",
+		"[~7]", "[~0]", "[~0]_[<]", "[-30|-10]_[>=]"};
+
+	/*	Bytes of heap for the values of S / T, small enough to spill every partition	*/
+	private static final long[][] MEMORY_BUDGETS = {{0, 0}, {256, 0}, {0, 256}, {256, 256}};
+
+	/**
+	 * The values of S and T and the candidate cells of a partition.
+	 */
+	private static class PartitionData {
+		private TreeMap<Long,Long> valuesS;
+		private TreeMap<Long,Long> valuesT;
+		private HashSet<IntPair> cells;
+
+		public PartitionData(TreeMap<Long,Long> valuesS, TreeMap<Long,Long> valuesT, HashSet<IntPair> cells) {
+			this.valuesS = valuesS;
+			this.valuesT = valuesT;
+			this.cells = cells;
+		}
+	}
+
+	private static HistogramIndexer getHistogramIndexer(Random r) {
+		BucketBoundaries[] boundaries = new BucketBoundaries[BUCKETS];
+		for(int i = 0; i < BUCKETS; ++i) {
+			boundaries[i] = new BucketBoundaries();
+			boundaries[i].set(i * BUCKET_WIDTH, (i + 1) * BUCKET_WIDTH - 1);
+		}
+
+		/*	Rearranged rows and columns	*/
+		List<Integer> rearrangedS = new ArrayList<Integer>();
+		List<Integer> rearrangedT = new ArrayList<Integer>();
+		for(int i = 0; i < BUCKETS; ++i) {
+			rearrangedS.add(i);
+			rearrangedT.add(i);
+		}
+		Collections.shuffle(rearrangedS, r);
+		Collections.shuffle(rearrangedT, r);
+
+		int[] defaultToRearrangedS = new int[BUCKETS];
+		int[] defaultToRearrangedT = new int[BUCKETS];
+		for(int i = 0; i < BUCKETS; ++i) {
+			defaultToRearrangedS[i] = rearrangedS.get(i);
+			defaultToRearrangedT[i] = rearrangedT.get(i);
+		}
+
+		return new HistogramIndexer(boundaries, boundaries, defaultToRearrangedS, defaultToRearrangedT);
+	}
+
+	private static TreeMap<Long,Long> getRandomRelation(Random r, int tuples, int maxDuplication) {
+		TreeMap<Long,Long> values = new TreeMap<Long,Long>();
+		for(int i = 0; i < tuples; ++i) {
+			long value = r.nextInt(BUCKETS * BUCKET_WIDTH);
+			Long duplication = values.get(value);
+			values.put(value, (duplication == null ? 0 : duplication) + 1 + r.nextInt(maxDuplication));
+		}
+		return values;
+	}
+
+	private static PartitionData getRandomPartition(Random r) {
+		HashSet<IntPair> cells = new HashSet<IntPair>();
+		for(int i = 0; i < BUCKETS; ++i) {
+			for(int j = 0; j < BUCKETS; ++j) {
+				if(r.nextDouble() < 0.6) {
+					cells.add(new IntPair(i, j));
+				}
+			}
+		}
+		return new PartitionData(getRandomRelation(r, 300, 3), getRandomRelation(r, 200, 2), cells);
+	}
+
+	/**
+	 * The values in ascending order, one per distinct value, or shuffled in
+	 * random chunks of their duplication.
+	 */
+	private static List<long[]> getArrivals(TreeMap<Long,Long> values, boolean sorted, Random r) {
+		List<long[]> arrivals = new ArrayList<long[]>();
+		for(Entry<Long,Long> entry : values.entrySet()) {
+			if(sorted) {
+				arrivals.add(new long[]{entry.getKey(), entry.getValue()});
+				continue;
+			}
+			long duplication = entry.getValue();
+			while(duplication > 0) {
+				long chunk = 1 + r.nextInt((int) duplication);
+				arrivals.add(new long[]{entry.getKey(), chunk});
+				duplication -= chunk;
+			}
+		}
+		if(!sorted) {
+			Collections.shuffle(arrivals, r);
+		}
+		return arrivals;
+	}
+
+	/**
+	 * The join condition of the query, on the values rather than on the ranges of
+	 * the predicates (the values are far from the ends of the domain).
+	 */
+	private static boolean matches(ThetaPredicate[] queryParts, long valueS, long valueT) {
+		for(ThetaPredicate queryPart : queryParts) {
+			boolean match;
+			if(queryPart instanceof BandPredicate) {
+				BandPredicate band = (BandPredicate) queryPart;
+				match = valueT + band.getC1() <= valueS && valueS <= valueT + band.getC2();
+			} else if(queryPart instanceof EpsilonPredicate) {
+				match = Math.abs(valueS - valueT) <= ((EpsilonPredicate) queryPart).getEps();
+			} else {
+				switch(((InequalityPredicate) queryPart).getOperator()) {
+					case LT:
+						match = valueS < valueT;
+						break;
+					case LE:
+						match = valueS <= valueT;
+						break;
+					case GT:
+						match = valueS > valueT;
+						break;
+					case GE:
+					default:
+						match = valueS >= valueT;
+						break;
+				}
+			}
+			if(match) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * The results of a nested loop join: "valueS,valueT" -> multiplicity, and the
+	 * output counter of the output mode.
+	 */
+	private static String nestedLoopJoin(ThetaPredicate[] queryParts, HistogramIndexer histogramIndexer, List<PartitionData> partitions,
+			JoinOutputMode outputMode) {
+		TreeMap<String,Long> results = new TreeMap<String,Long>();
+		long counterOutput = 0;
+
+		for(PartitionData partition : partitions) {
+			for(Entry<Long,Long> entryS : partition.valuesS.entrySet()) {
+				for(Entry<Long,Long> entryT : partition.valuesT.entrySet()) {
+					long valueS = entryS.getKey();
+					long valueT = entryT.getKey();
+					if(!matches(queryParts, valueS, valueT)) {
+						continue;
+					}
+					IntPair cell = new IntPair(histogramIndexer.valueToBoundaryIndex(valueS, true),
+							histogramIndexer.valueToBoundaryIndex(valueT, false));
+					if(!partition.cells.contains(cell)) {
+						continue;
+					}
+					long multiplicity = entryS.getValue() * entryT.getValue();
+					addResult(results, valueS, valueT, multiplicity);
+					counterOutput += outputMode == JoinOutputMode.COUNT ? 1 : multiplicity;
+				}
+			}
+		}
+
+		return getSignature(outputMode == JoinOutputMode.MATERIALIZE ? results : null, counterOutput);
+	}
+
+	private static String join(ThetaPredicate[] queryParts, HistogramIndexer histogramIndexer, List<PartitionData> partitions,
+			JoinEngine joinEngine, JoinOutputMode outputMode, long[] memoryBudgets, File spillDirectory, boolean sorted, Random r)
+					throws IOException, InterruptedException {
+		final TreeMap<String,Long> results = new TreeMap<String,Long>();
+
+		MBIJoinEngine engine = MBIJoinEngine.create(joinEngine, queryParts, histogramIndexer, new MBIJoinEngine.ResultCollector() {
+			@Override
+			public void collect(long valueS, long valueT, long multiplicity) {
+				addResult(results, valueS, valueT, multiplicity);
+			}
+		});
+		engine.setOutputMode(outputMode);
+		if(memoryBudgets[0] > 0) {
+			engine.setMemoryBudgetS(memoryBudgets[0], spillDirectory);
+		}
+		if(memoryBudgets[1] > 0) {
+			engine.setMemoryBudgetT(memoryBudgets[1], spillDirectory);
+		}
+
+		for(PartitionData partition : partitions) {
+			engine.clearS();
+			for(long[] arrival : getArrivals(partition.valuesS, sorted, r)) {
+				engine.addS(arrival[0], arrival[1]);
+			}
+			engine.finishS();
+
+			engine.setPartitionCells(new PartitionCells(partition.cells));
+			for(long[] arrival : getArrivals(partition.valuesT, sorted, r)) {
+				engine.addT(arrival[0], arrival[1]);
+			}
+			engine.finishT();
+		}
+		engine.close();
+
+		return getSignature(outputMode == JoinOutputMode.MATERIALIZE ? results : null, engine.getCounterOutput());
+	}
+
+	private static void addResult(TreeMap<String,Long> results, long valueS, long valueT, long multiplicity) {
+		String key = valueS + "," + valueT;
+		Long sum = results.get(key);
+		results.put(key, (sum == null ? 0 : sum) + multiplicity);
+	}
+
+	private static String getSignature(TreeMap<String,Long> results, long counterOutput) {
+		return counterOutput + (results == null ? "" : " " + results.toString());
+	}
+
+	private static int performExperiment(String query, HistogramIndexer histogramIndexer, List<PartitionData> partitions,
+			File spillDirectory, Random r) throws IOException, InterruptedException {
+		int mismatches = 0;
+		ThetaPredicate[] queryParts = ThetaJoin.getQueryParts(query);
+
+		for(JoinOutputMode outputMode : JoinOutputMode.values()) {
+			String expected = nestedLoopJoin(queryParts, histogramIndexer, partitions, outputMode);
+
+			for(JoinEngine joinEngine : JoinEngine.values()) {
+				for(long[] memoryBudgets : MEMORY_BUDGETS) {
+					if(joinEngine != JoinEngine.SORTED_RUN && (memoryBudgets[0] > 0 || memoryBudgets[1] > 0)) {
+						continue;
+					}
+					for(boolean sorted : new boolean[]{true, false}) {
+						if(!sorted && (joinEngine == JoinEngine.STREAMING_MERGE || outputMode == JoinOutputMode.COUNT)) {
+							continue;
+						}
+
+						String signature = join(queryParts, histogramIndexer, partitions, joinEngine, outputMode, memoryBudgets,
+								spillDirectory, sorted, r);
+						if(!expected.equals(signature)) {
+							System.out.println("MISMATCH " + query + " " + joinEngine + " " + outputMode + " memoryBudgetS=" + memoryBudgets[0]
+									+ " memoryBudgetT=" + memoryBudgets[1] + " sorted=" + sorted);
+							System.out.println("	nested loop: " + expected);
+							System.out.println("	" + joinEngine + ": " + signature);
+							++mismatches;
+						}
+					}
+				}
+			}
+		}
+
+		return mismatches;
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		int mismatches = 0;
+		Random r = new Random(0);
+
+		File spillDirectory = Files.createTempDirectory("spill").toFile();
+		try {
+			for(int matrix = 0; matrix < 2; ++matrix) {
+				HistogramIndexer histogramIndexer = getHistogramIndexer(r);
+				List<PartitionData> partitions = new ArrayList<PartitionData>();
+				for(int partition = 0; partition < 3; ++partition) {
+					partitions.add(getRandomPartition(r));
+				}
+
+				for(String query : QUERIES) {
+					mismatches += performExperiment(query, histogramIndexer, partitions, spillDirectory, r);
+				}
+			}
+		} finally {
+			for(File file : spillDirectory.listFiles()) {
+				file.delete();
+			}
+			spillDirectory.delete();
+		}
+
+		System.out.println("mismatches: " + mismatches);
+	}
+
+}
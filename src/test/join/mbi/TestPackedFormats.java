@@ -0,0 +1,361 @@
+/**
+ * TestPackedFormats.java
+ *
+ * In this class we validate the binary formats of MBucketI against the text
+ * ones:
+ * 	-	PackedRelationValueInputFormat: the CSV dataset is exported to binary
+ * 		records (DatasetGeneratorExporter.exportBinary), which are read back
+ * 		with the RecordReader over splits of several sizes (at any byte, not
+ * 		only at record boundaries). They must be the records of the CSV lines.
+ * 	-	PackedJoinResultOutputFormat: results are written with the RecordWriter
+ * 		and read back with readRecord. They must be the written ones.
+ * 	-	MBucketILocal joins the same dataset with every combination of input and
+ * 		output format. The results and the counters must be those of TEXT.
+ *
+ * @author John Koumarelas
+ */
+
+package test.join.mbi;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import join.mbi.MBIJoinEngine.JoinEngine;
+import join.mbi.MBucketI.RecordFormat;
+import join.mbi.MBucketILocal;
+import join.mbi.PackedJoinResultOutputFormat;
+import join.mbi.PackedRelationValueInputFormat;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+
+import utils.exporters.DatasetGeneratorExporter;
+import datatypes.LongTriple;
+import datatypes.exceptions.JoinException;
+
+public class TestPackedFormats {
+
+	private static final int BUCKETS = 4;
+	private static final int BUCKET_WIDTH = 250;
+	private static final int PARTITIONS = 3;
+
+	/*	The output directory of MBucketILocal	*/
+	private static final File OUTPUT_LOCAL = new File("btj" + File.separator + "mbiLocal");
+
+	/**
+	 * "S,value" and "T,value" lines, with some empty lines and some values
+	 * outside of the histograms (at the ends of the domain).
+	 */
+	private static List<String> getRandomDataset(Random r, int tuples) {
+		List<String> lines = new ArrayList<String>();
+		for(int i = 0; i < tuples; ++i) {
+			String relation = r.nextBoolean() ? "S" : "T";
+			int kind = r.nextInt(40);
+			if(kind == 0) {
+				lines.add("");
+			} else if(kind == 1) {
+				lines.add(relation + "," + Long.MIN_VALUE);
+			} else if(kind == 2) {
+				lines.add(relation + "," + Long.MAX_VALUE);
+			} else if(kind == 3) {
+				lines.add(relation + "," + (-1 - r.nextInt(100)));
+			} else {
+				lines.add(relation + "," + r.nextInt(BUCKETS * BUCKET_WIDTH));
+			}
+		}
+		return lines;
+	}
+
+	private static void writeLines(File file, List<String> lines) throws IOException {
+		BufferedWriter out = new BufferedWriter(new FileWriter(file));
+		for(String line : lines) {
+			out.write(line);
+			out.newLine();
+		}
+		out.close();
+	}
+
+	private static List<String> readLines(File file) throws IOException {
+		List<String> lines = new ArrayList<String>();
+		BufferedReader in = new BufferedReader(new FileReader(file));
+		String line;
+		while((line = in.readLine()) != null) {
+			lines.add(line);
+		}
+		in.close();
+		return lines;
+	}
+
+	/**
+	 * The records of the CSV lines as (relID, value), as the text mapper parses them.
+	 */
+	private static List<String> parseDataset(List<String> lines) {
+		List<String> records = new ArrayList<String>();
+		for(String line : lines) {
+			if(line.trim().equals("")) {
+				continue;
+			}
+			String[] strToks = line.split(",");
+			int relID = strToks[0].equals("S") ? PackedRelationValueInputFormat.relID_S : PackedRelationValueInputFormat.relID_T;
+			records.add(relID + "," + Long.parseLong(strToks[1]));
+		}
+		return records;
+	}
+
+	private static List<String> readSplits(File datasetBinary, long splitSize) throws IOException, InterruptedException {
+		List<String> records = new ArrayList<String>();
+		TaskAttemptContext context = new TaskAttemptContext(new Configuration(), new TaskAttemptID());
+		Path path = new Path(datasetBinary.getAbsolutePath());
+
+		long length = datasetBinary.length();
+		for(long start = 0; start < length; start += splitSize) {
+			FileSplit split = new FileSplit(path, start, Math.min(splitSize, length - start), new String[0]);
+			PackedRelationValueInputFormat.PackedRelationValueRecordReader reader = new PackedRelationValueInputFormat.PackedRelationValueRecordReader();
+			reader.initialize(split, context);
+			while(reader.nextKeyValue()) {
+				records.add(reader.getCurrentKey().get() + "," + reader.getCurrentValue().get());
+			}
+			reader.close();
+		}
+		return records;
+	}
+
+	private static int checkInputFormat(List<String> lines, File directory) throws IOException, InterruptedException {
+		int mismatches = 0;
+
+		File dataset = new File(directory, "dataset.csv");
+		File datasetBinary = new File(directory, "dataset.bin");
+		writeLines(dataset, lines);
+		new DatasetGeneratorExporter(0, new Path(dataset.getAbsolutePath()), null).exportBinary(new Path(datasetBinary.getAbsolutePath()));
+
+		List<String> expected = parseDataset(lines);
+		if(datasetBinary.length() != (long) expected.size() * PackedRelationValueInputFormat.RECORD_LENGTH) {
+			System.out.println("MISMATCH input length " + datasetBinary.length() + " records=" + expected.size());
+			++mismatches;
+		}
+
+		long length = datasetBinary.length();
+		for(long splitSize : new long[]{length, 64 * 1024, 1000, 90, 13, 9, 4, 1}) {
+			List<String> records = readSplits(datasetBinary, splitSize);
+			if(!expected.equals(records)) {
+				System.out.println("MISMATCH input splitSize=" + splitSize + " records=" + records.size() + " expected=" + expected.size());
+				++mismatches;
+			}
+		}
+
+		return mismatches;
+	}
+
+	private static int checkOutputFormat(Random r, File directory) throws IOException {
+		int mismatches = 0;
+
+		List<LongTriple> results = new ArrayList<LongTriple>();
+		for(int i = 0; i < 500; ++i) {
+			results.add(new LongTriple(r.nextLong(), r.nextLong(), 1 + r.nextInt(1000)));
+		}
+		results.add(new LongTriple(Long.MIN_VALUE, Long.MAX_VALUE, Long.MAX_VALUE));
+		results.add(new LongTriple(Long.MAX_VALUE, Long.MIN_VALUE, 1));
+
+		File file = new File(directory, "results.bin");
+		PackedJoinResultOutputFormat.PackedJoinResultRecordWriter writer = new PackedJoinResultOutputFormat.PackedJoinResultRecordWriter(
+				new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file))));
+		for(LongTriple result : results) {
+			writer.write(result, NullWritable.get());
+		}
+		writer.close(null);
+
+		if(file.length() != (long) results.size() * PackedJoinResultOutputFormat.RECORD_LENGTH) {
+			System.out.println("MISMATCH output length " + file.length() + " results=" + results.size());
+			++mismatches;
+		}
+
+		List<LongTriple> read = new ArrayList<LongTriple>();
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+		LongTriple lt = new LongTriple();
+		while(PackedJoinResultOutputFormat.readRecord(in, lt)) {
+			read.add(new LongTriple(lt.getFirst(), lt.getSecond(), lt.getThird()));
+		}
+		in.close();
+
+		if(!toStrings(results).equals(toStrings(read))) {
+			System.out.println("MISMATCH output read=" + read.size() + " written=" + results.size());
+			++mismatches;
+		}
+
+		return mismatches;
+	}
+
+	private static List<String> toStrings(List<LongTriple> results) {
+		List<String> strings = new ArrayList<String>();
+		for(LongTriple result : results) {
+			strings.add(result.getFirst() + "\t" + result.getSecond() + "\t" + result.getThird());
+		}
+		return strings;
+	}
+
+	/**
+	 * boundaries.csv, and the mappings of a partitioning of all the cells into
+	 * PARTITIONS partitions.
+	 */
+	private static void writePartitioning(Random r, File directory) throws IOException {
+		List<String> boundaries = new ArrayList<String>();
+		for(String relation : new String[]{"S", "T"}) {
+			for(int i = 0; i < BUCKETS; ++i) {
+				boundaries.add(relation + "," + (i * BUCKET_WIDTH) + "," + ((i + 1) * BUCKET_WIDTH - 1));
+			}
+		}
+		writeLines(new File(directory, "boundaries.csv"), boundaries);
+
+		List<List<String>> partitionToCells = new ArrayList<List<String>>();
+		List<TreeMap<Integer,HashSet<Integer>>> indexToPartitions = new ArrayList<TreeMap<Integer,HashSet<Integer>>>();
+		for(int p = 0; p < PARTITIONS; ++p) {
+			partitionToCells.add(new ArrayList<String>());
+		}
+		for(int relation = 0; relation < 2; ++relation) {
+			TreeMap<Integer,HashSet<Integer>> partitions = new TreeMap<Integer,HashSet<Integer>>();
+			for(int i = 0; i < BUCKETS; ++i) {
+				partitions.put(i, new HashSet<Integer>());
+			}
+			indexToPartitions.add(partitions);
+		}
+		for(int i = 0; i < BUCKETS; ++i) {
+			for(int j = 0; j < BUCKETS; ++j) {
+				int p = r.nextInt(PARTITIONS);
+				partitionToCells.get(p).add("[" + i + ", " + j + "]");
+				indexToPartitions.get(0).get(i).add(p);
+				indexToPartitions.get(1).get(j).add(p);
+			}
+		}
+
+		List<String> lines = new ArrayList<String>();
+		for(int p = 0; p < PARTITIONS; ++p) {
+			StringBuilder sb = new StringBuilder(String.valueOf(p));
+			for(String cell : partitionToCells.get(p)) {
+				sb.append(",").append(cell);
+			}
+			lines.add(sb.toString());
+		}
+		writeLines(new File(directory, "partitionToCellsMapping.csv"), lines);
+
+		lines = new ArrayList<String>();
+		for(int relation = 0; relation < 2; ++relation) {
+			for(int i = 0; i < BUCKETS; ++i) {
+				StringBuilder sb = new StringBuilder((relation == 0 ? "S" : "T") + "," + i);
+				for(int p : indexToPartitions.get(relation).get(i)) {
+					sb.append(",").append(p);
+				}
+				lines.add(sb.toString());
+			}
+		}
+		writeLines(new File(directory, "histogramIndexToPartitionsMapping.csv"), lines);
+	}
+
+	/**
+	 * The results of MBucketILocal, sorted, read back in the output format, and its counters.
+	 */
+	private static String joinLocal(File directory, RecordFormat inputFormat, RecordFormat outputFormat) throws IOException, JoinException {
+		File dataset = new File(directory, inputFormat == RecordFormat.BINARY ? "dataset.bin" : "dataset.csv");
+		MBucketILocal mbil = new MBucketILocal(BUCKETS, "[-5|3]_[~0]", PARTITIONS, 2, new Path(dataset.getAbsolutePath()),
+				new Path(new File(directory, "boundaries.csv").getAbsolutePath()), new Path("/"),
+				new Path(new File(directory, "histogramIndexToPartitionsMapping.csv").getAbsolutePath()),
+				new Path(new File(directory, "partitionToCellsMapping.csv").getAbsolutePath()));
+		mbil.setJoinEngine(JoinEngine.SORTED_RUN);
+		mbil.setInputFormat(inputFormat);
+		mbil.setOutputFormat(outputFormat);
+		mbil.join();
+
+		List<String> results = new ArrayList<String>();
+		for(File part : OUTPUT_LOCAL.listFiles()) {
+			if(!part.getName().startsWith("part-r-")) {
+				continue;
+			}
+			if(outputFormat == RecordFormat.BINARY) {
+				List<LongTriple> partResults = new ArrayList<LongTriple>();
+				DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(part)));
+				LongTriple lt = new LongTriple();
+				while(PackedJoinResultOutputFormat.readRecord(in, lt)) {
+					partResults.add(new LongTriple(lt.getFirst(), lt.getSecond(), lt.getThird()));
+				}
+				in.close();
+				results.addAll(toStrings(partResults));
+			} else {
+				results.addAll(readLines(part));
+			}
+		}
+		Collections.sort(results);
+
+		return new TreeMap<String,LongTriple>(mbil.getCountersMBucketIPartitionsInOut()).toString() + " " + results;
+	}
+
+	private static int checkLocalJoin(Random r, File directory) throws IOException, JoinException {
+		int mismatches = 0;
+
+		writePartitioning(r, directory);
+
+		String expected = joinLocal(directory, RecordFormat.TEXT, RecordFormat.TEXT);
+		for(RecordFormat inputFormat : RecordFormat.values()) {
+			for(RecordFormat outputFormat : RecordFormat.values()) {
+				String signature = joinLocal(directory, inputFormat, outputFormat);
+				if(!expected.equals(signature)) {
+					System.out.println("MISMATCH local join inputFormat=" + inputFormat + " outputFormat=" + outputFormat);
+					System.out.println("	TEXT: " + expected);
+					System.out.println("	" + inputFormat + "/" + outputFormat + ": " + signature);
+					++mismatches;
+				}
+			}
+		}
+
+		return mismatches;
+	}
+
+	private static void delete(File file) {
+		if(file.isDirectory()) {
+			for(File child : file.listFiles()) {
+				delete(child);
+			}
+		}
+		file.delete();
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException, JoinException {
+		int mismatches = 0;
+		Random r = new Random(0);
+
+		File directory = Files.createTempDirectory("packed").toFile();
+		try {
+			for(int round = 0; round < 2; ++round) {
+				List<String> lines = getRandomDataset(r, 3000);
+				mismatches += checkInputFormat(lines, directory);
+				mismatches += checkOutputFormat(r, directory);
+				mismatches += checkLocalJoin(r, directory);
+			}
+		} finally {
+			delete(directory);
+			delete(OUTPUT_LOCAL);
+		}
+
+		System.out.println("mismatches: " + mismatches);
+	}
+
+}
@@ -0,0 +1,157 @@
+/**
+ * TestConcurrentProbes.java
+ *
+ * In this class we validate that the binary search and the range search
+ * of the partitioners give the same results when their probes run
+ * concurrently (parallelism > 1) as when they run sequentially.
+ *
+ * @author John Koumarelas
+ */
+
+package test.partitioning;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import datatypes.exceptions.PartitioningError;
+import datatypes.partitioning.MetricsScore;
+import model.BucketBoundaries;
+import model.PartitionMatrix;
+import model.partitioning.Partition;
+import partitioning.Partitioner;
+import partitioning.Partitioner.BinarySearchPolicy;
+import partitioning.clustering.MergingPartitionToPartition;
+import partitioning.clustering.MergingPartitionToPartition.DistanceMeasure;
+import partitioning.mbucketi.MBIPartitioner;
+
+public class TestConcurrentProbes {
+
+	private static PartitionMatrix getBandPartitionMatrix(int buckets, int band, long seed) {
+		Random r = new Random(seed);
+
+		long[][] matrix = new long[buckets][buckets];
+		long[] countsS = new long[buckets];
+		long[] countsT = new long[buckets];
+		long sizeS = 0;
+		long sizeT = 0;
+
+		for(int i = 0; i < buckets; ++i) {
+			countsS[i] = 1 + r.nextInt(50);
+			countsT[i] = 1 + r.nextInt(50);
+			sizeS += countsS[i];
+			sizeT += countsT[i];
+		}
+
+		for(int i = 0; i < buckets; ++i) {
+			for(int j = Math.max(0, i - band); j <= Math.min(buckets - 1, i + band); ++j) {
+				if(r.nextDouble() < 0.8) {
+					matrix[i][j] = 1 + r.nextInt(5);
+				}
+			}
+		}
+
+		BucketBoundaries[] boundaries = new BucketBoundaries[buckets];
+		for(int i = 0; i < buckets; ++i) {
+			boundaries[i] = new BucketBoundaries();
+			boundaries[i].set(i, i+1);
+		}
+
+		PartitionMatrix pm = new PartitionMatrix();
+		pm.setMatrix(matrix);
+		pm.setCountsS(countsS);
+		pm.setCountsT(countsT);
+		pm.setBoundariesS(boundaries);
+		pm.setBoundariesT(boundaries);
+		pm.setSizeS(sizeS);
+		pm.setSizeT(sizeT);
+
+		return pm;
+	}
+
+	private static String getSignature(Partitioner prt) {
+		List<String> partitions = new ArrayList<String>();
+		for(int i = 0; i < prt.getPartitionsCount(); ++i) {
+			Partition partition = prt.getPartitions()[i];
+			partitions.add(partition.getCandidateCells().toString());
+		}
+		Collections.sort(partitions);
+
+		return prt.getMaxPartitionInput() + "/" + prt.getMaxPartitionCandidateCells() + " " + partitions;
+	}
+
+	private static String getRangeSearchSignature(Partitioner prt) {
+		List<String> metrics = new ArrayList<String>();
+		for(MetricsScore metricsScore : prt.getRangeSearchMetrics()) {
+			metrics.add(metricsScore.getMetrics().toString());
+		}
+		return metrics.toString();
+	}
+
+	private static Partitioner createPartitioner(PartitionMatrix pm, int numPartitions, String partitioningPolicy, int parallelism) {
+		if(partitioningPolicy.equals("MBI")) {
+			MBIPartitioner prt = new MBIPartitioner(pm, "MBI", pm.getSizeS(), pm.getSizeT(), numPartitions);
+			prt.setParallelism(parallelism);
+			return prt;
+		}
+
+		HashMap<String,String> dmParameters = new HashMap<String,String>();
+		dmParameters.put("wR", "1");
+		dmParameters.put("wC", "2");
+		MergingPartitionToPartition prt = new MergingPartitionToPartition(pm, partitioningPolicy, pm.getSizeS(), pm.getSizeT(), numPartitions,
+				DistanceMeasure.WEIGHTED_INPUT_COST_ROWS_COLUMNS, dmParameters, BinarySearchPolicy.MAX_PARTITION_INPUT);
+		prt.setParallelism(parallelism);
+		return prt;
+	}
+
+	public static void main(String[] args) throws PartitioningError {
+		int mismatches = 0;
+
+		for(long seed = 0; seed < 3; ++seed) {
+			for(int numPartitions : new int[]{5, 9}) {
+				for(String partitioningPolicy : new String[]{"MBI", "WICRC"}) {
+					PartitionMatrix pm = getBandPartitionMatrix(25, 2, seed);
+					String name = partitioningPolicy + " seed=" + seed + " numPartitions=" + numPartitions;
+
+					Partitioner sequential = createPartitioner(pm, numPartitions, partitioningPolicy, 1);
+					sequential.findLowest();
+					String expected = getSignature(sequential);
+
+					for(int parallelism : new int[]{2, 4}) {
+						Partitioner concurrent = createPartitioner(pm, numPartitions, partitioningPolicy, parallelism);
+						concurrent.findLowest();
+						String signature = getSignature(concurrent);
+						if(!expected.equals(signature)) {
+							System.out.println("MISMATCH findLowest " + name + " parallelism=" + parallelism);
+							System.out.println("	sequential: " + expected);
+							System.out.println("	concurrent: " + signature);
+							++mismatches;
+						}
+					}
+
+					/*	Thresholds above the lowest one, of more than two partitions (the median of AllMetrics needs them)	*/
+					long lower = sequential.getMaxPartitionInput();
+					long upper = lower + lower / 2;
+					sequential = createPartitioner(pm, numPartitions, partitioningPolicy, 1);
+					sequential.rangeSearch(lower, upper, 8);
+					expected = getRangeSearchSignature(sequential);
+
+					Partitioner concurrent = createPartitioner(pm, numPartitions, partitioningPolicy, 4);
+					concurrent.rangeSearch(lower, upper, 8);
+					String signature = getRangeSearchSignature(concurrent);
+					if(!expected.equals(signature)) {
+						System.out.println("MISMATCH rangeSearch " + name);
+						System.out.println("	sequential: " + expected);
+						System.out.println("	concurrent: " + signature);
+						++mismatches;
+					}
+				}
+			}
+		}
+
+		System.out.println("mismatches: " + mismatches);
+	}
+
+}
@@ -0,0 +1,130 @@
+/**
+ * TestMergingEngines.java
+ *
+ * In this class we validate that the HEAP merging engine with the ALL
+ * neighbourhood forms the same partitions as the TREE_MAP engine, for every
+ * DistanceMeasure and both binary search policies.
+ *
+ * The partition matrices are band joins, as produced by the partition matrix
+ * factory, so that many pairs of partitions tie on distance. Small counts give
+ * even more ties, large ones fewer.
+ *
+ * @author John Koumarelas
+ */
+
+package test.partitioning.clustering;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import datatypes.exceptions.PartitioningError;
+import model.BucketBoundaries;
+import model.PartitionMatrix;
+import model.partitioning.Partition;
+import partitioning.Partitioner.BinarySearchPolicy;
+import partitioning.clustering.MergingPartitionToPartition;
+import partitioning.clustering.MergingPartitionToPartition.DistanceMeasure;
+import partitioning.clustering.MergingPartitionToPartition.MergingEngine;
+import partitioning.clustering.MergingPartitionToPartition.MergingNeighbourhood;
+
+public class TestMergingEngines {
+
+	private static PartitionMatrix getBandPartitionMatrix(int buckets, int band, int maxCount, long seed) {
+		Random r = new Random(seed);
+
+		long[][] matrix = new long[buckets][buckets];
+		long[] countsS = new long[buckets];
+		long[] countsT = new long[buckets];
+		long sizeS = 0;
+		long sizeT = 0;
+
+		for(int i = 0; i < buckets; ++i) {
+			countsS[i] = 1 + r.nextInt(maxCount);
+			countsT[i] = 1 + r.nextInt(maxCount);
+			sizeS += countsS[i];
+			sizeT += countsT[i];
+		}
+
+		for(int i = 0; i < buckets; ++i) {
+			for(int j = Math.max(0, i - band); j <= Math.min(buckets - 1, i + band); ++j) {
+				if(r.nextDouble() < 0.9) {
+					matrix[i][j] = 1 + r.nextInt(5);
+				}
+			}
+		}
+
+		BucketBoundaries[] boundaries = new BucketBoundaries[buckets];
+		for(int i = 0; i < buckets; ++i) {
+			boundaries[i] = new BucketBoundaries();
+			boundaries[i].set(i, i+1);
+		}
+
+		PartitionMatrix pm = new PartitionMatrix();
+		pm.setMatrix(matrix);
+		pm.setCountsS(countsS);
+		pm.setCountsT(countsT);
+		pm.setBoundariesS(boundaries);
+		pm.setBoundariesT(boundaries);
+		pm.setSizeS(sizeS);
+		pm.setSizeT(sizeT);
+
+		return pm;
+	}
+
+	private static String getPartitionsSignature(MergingPartitionToPartition prt) {
+		List<String> partitions = new ArrayList<String>();
+		for(int i = 0; i < prt.getPartitionsCount(); ++i) {
+			Partition partition = prt.getPartitions()[i];
+			partitions.add(partition.getCandidateCells().toString());
+		}
+		Collections.sort(partitions);
+
+		return prt.getMaxPartitionInput() + "/" + prt.getMaxPartitionCandidateCells() + " " + partitions;
+	}
+
+	private static String performExperiment(PartitionMatrix pm, int numPartitions, DistanceMeasure dm, BinarySearchPolicy bsp,
+			MergingEngine mergingEngine) throws PartitioningError {
+		HashMap<String,String> dmParameters = new HashMap<String,String>();
+		dmParameters.put("wR", "1");
+		dmParameters.put("wC", "2");
+		MergingPartitionToPartition prt = new MergingPartitionToPartition(pm, "merging", pm.getSizeS(), pm.getSizeT(), numPartitions,
+				dm, dmParameters, bsp);
+		prt.setMergingEngine(mergingEngine);
+		prt.setMergingNeighbourhood(MergingNeighbourhood.ALL);
+
+		prt.findLowest();
+
+		return getPartitionsSignature(prt);
+	}
+
+	public static void main(String[] args) throws PartitioningError {
+		int mismatches = 0;
+		int experiments = 0;
+
+		for(long seed = 0; seed < 3; ++seed) {
+			for(int maxCount : new int[]{1000, 1000000}) {
+				PartitionMatrix pm = getBandPartitionMatrix(30, 2, maxCount, seed);
+				for(DistanceMeasure dm : DistanceMeasure.values()) {
+					for(BinarySearchPolicy bsp : BinarySearchPolicy.values()) {
+						String treeMap = performExperiment(pm, 5, dm, bsp, MergingEngine.TREE_MAP);
+						String heap = performExperiment(pm, 5, dm, bsp, MergingEngine.HEAP);
+						++experiments;
+
+						if(!treeMap.equals(heap)) {
+							System.out.println("MISMATCH " + dm + " " + bsp + " seed=" + seed + " maxCount=" + maxCount);
+							System.out.println("	TREE_MAP: " + treeMap);
+							System.out.println("	HEAP: " + heap);
+							++mismatches;
+						}
+					}
+				}
+			}
+		}
+
+		System.out.println("experiments: " + experiments + " mismatches: " + mismatches);
+	}
+
+}
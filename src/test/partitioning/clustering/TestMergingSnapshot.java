@@ -0,0 +1,154 @@
+/**
+ * TestMergingSnapshot.java
+ *
+ * In this class we validate that the runs of MergingPartitionToPartition,
+ * which all start from the same initial state, do not change it: running
+ * the thresholds one after the other, in any order and more than once,
+ * must form the same partitions as a new partitioner for every threshold.
+ *
+ * @author John Koumarelas
+ */
+
+package test.partitioning.clustering;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import datatypes.exceptions.PartitioningError;
+import model.BucketBoundaries;
+import model.PartitionMatrix;
+import model.partitioning.Partition;
+import partitioning.Partitioner.BinarySearchPolicy;
+import partitioning.clustering.MergingPartitionToPartition;
+import partitioning.clustering.MergingPartitionToPartition.DistanceMeasure;
+import partitioning.clustering.MergingPartitionToPartition.MergingEngine;
+import partitioning.clustering.MergingPartitionToPartition.MergingNeighbourhood;
+
+public class TestMergingSnapshot {
+
+	private static PartitionMatrix getBandPartitionMatrix(int buckets, int band, long seed) {
+		Random r = new Random(seed);
+
+		long[][] matrix = new long[buckets][buckets];
+		long[] countsS = new long[buckets];
+		long[] countsT = new long[buckets];
+		long sizeS = 0;
+		long sizeT = 0;
+
+		for(int i = 0; i < buckets; ++i) {
+			countsS[i] = 1 + r.nextInt(50);
+			countsT[i] = 1 + r.nextInt(50);
+			sizeS += countsS[i];
+			sizeT += countsT[i];
+		}
+
+		for(int i = 0; i < buckets; ++i) {
+			for(int j = Math.max(0, i - band); j <= Math.min(buckets - 1, i + band); ++j) {
+				if(r.nextDouble() < 0.8) {
+					matrix[i][j] = 1 + r.nextInt(5);
+				}
+			}
+		}
+
+		BucketBoundaries[] boundaries = new BucketBoundaries[buckets];
+		for(int i = 0; i < buckets; ++i) {
+			boundaries[i] = new BucketBoundaries();
+			boundaries[i].set(i, i+1);
+		}
+
+		PartitionMatrix pm = new PartitionMatrix();
+		pm.setMatrix(matrix);
+		pm.setCountsS(countsS);
+		pm.setCountsT(countsT);
+		pm.setBoundariesS(boundaries);
+		pm.setBoundariesT(boundaries);
+		pm.setSizeS(sizeS);
+		pm.setSizeT(sizeT);
+
+		return pm;
+	}
+
+	private static MergingPartitionToPartition createPartitioner(PartitionMatrix pm, int numPartitions, DistanceMeasure dm,
+			MergingEngine mergingEngine) {
+		HashMap<String,String> dmParameters = new HashMap<String,String>();
+		dmParameters.put("wR", "1");
+		dmParameters.put("wC", "2");
+		MergingPartitionToPartition prt = new MergingPartitionToPartition(pm, "merging", pm.getSizeS(), pm.getSizeT(), numPartitions,
+				dm, dmParameters, BinarySearchPolicy.MAX_PARTITION_INPUT);
+		prt.setMergingEngine(mergingEngine);
+		prt.setMergingNeighbourhood(MergingNeighbourhood.ALL);
+		return prt;
+	}
+
+	private static String getSignature(MergingPartitionToPartition prt) {
+		List<String> partitions = new ArrayList<String>();
+		for(int i = 0; i < prt.getPartitionsCount(); ++i) {
+			Partition partition = prt.getPartitions()[i];
+			partitions.add(partition.getCandidateCells().toString());
+		}
+		Collections.sort(partitions);
+
+		return partitions.toString();
+	}
+
+	private static int performExperiment(PartitionMatrix pm, int numPartitions, DistanceMeasure dm, MergingEngine mergingEngine,
+			Random r) throws PartitioningError {
+		int mismatches = 0;
+
+		MergingPartitionToPartition reused = createPartitioner(pm, numPartitions, dm, mergingEngine);
+		reused.findLowest();
+		long lowest = reused.getMaxPartitionInput();
+
+		List<Long> thresholds = new ArrayList<Long>();
+		for(long threshold = lowest; threshold <= 2 * lowest; threshold += Math.max(1, lowest / 8)) {
+			thresholds.add(threshold);
+		}
+
+		HashMap<Long,String> expected = new HashMap<Long,String>();
+		for(long threshold : thresholds) {
+			MergingPartitionToPartition fresh = createPartitioner(pm, numPartitions, dm, mergingEngine);
+			fresh.findLowest();
+			fresh.execute(threshold);
+			expected.put(threshold, getSignature(fresh));
+		}
+
+		for(int round = 0; round < 2; ++round) {
+			Collections.shuffle(thresholds, r);
+			for(long threshold : thresholds) {
+				reused.execute(threshold);
+				String signature = getSignature(reused);
+				if(!expected.get(threshold).equals(signature)) {
+					System.out.println("MISMATCH " + dm + " " + mergingEngine + " numPartitions=" + numPartitions + " threshold=" + threshold);
+					System.out.println("	fresh: " + expected.get(threshold));
+					System.out.println("	reused: " + signature);
+					++mismatches;
+				}
+			}
+		}
+
+		return mismatches;
+	}
+
+	public static void main(String[] args) throws PartitioningError {
+		int mismatches = 0;
+		Random r = new Random(0);
+
+		for(long seed = 0; seed < 2; ++seed) {
+			PartitionMatrix pm = getBandPartitionMatrix(20, 2, seed);
+			for(int numPartitions : new int[]{3, 6}) {
+				for(DistanceMeasure dm : new DistanceMeasure[]{DistanceMeasure.ADDED_INPUT_COST_PARTITION_SUM,
+						DistanceMeasure.WEIGHTED_INPUT_COST_ROWS_COLUMNS, DistanceMeasure.JACCARD_BUCKETS}) {
+					for(MergingEngine mergingEngine : MergingEngine.values()) {
+						mismatches += performExperiment(pm, numPartitions, dm, mergingEngine, r);
+					}
+				}
+			}
+		}
+
+		System.out.println("mismatches: " + mismatches);
+	}
+
+}
@@ -0,0 +1,108 @@
+/**
+ * TestWhatIfEngines.java
+ *
+ * In this class we validate that the INCREMENTAL what-if engine of
+ * MergingPartitionToPartitionF merges the same pairs of partitions
+ * as the SCAN engine (whatIF_mergeIJ for every pair on every merge).
+ *
+ * @author John Koumarelas
+ */
+
+package test.partitioning.clustering;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import datatypes.exceptions.PartitioningError;
+import model.BucketBoundaries;
+import model.PartitionMatrix;
+import model.partitioning.Partition;
+import partitioning.clustering.MergingPartitionToPartitionF;
+import partitioning.clustering.MergingPartitionToPartitionF.WhatIfEngine;
+
+public class TestWhatIfEngines {
+
+	private static PartitionMatrix getBandPartitionMatrix(int buckets, int band, int maxCount, long seed) {
+		Random r = new Random(seed);
+
+		long[][] matrix = new long[buckets][buckets];
+		long[] countsS = new long[buckets];
+		long[] countsT = new long[buckets];
+		long sizeS = 0;
+		long sizeT = 0;
+
+		for(int i = 0; i < buckets; ++i) {
+			countsS[i] = 1 + r.nextInt(maxCount);
+			countsT[i] = 1 + r.nextInt(maxCount);
+			sizeS += countsS[i];
+			sizeT += countsT[i];
+		}
+
+		for(int i = 0; i < buckets; ++i) {
+			for(int j = Math.max(0, i - band); j <= Math.min(buckets - 1, i + band); ++j) {
+				if(r.nextDouble() < 0.7) {
+					matrix[i][j] = 1 + r.nextInt(5);
+				}
+			}
+		}
+
+		BucketBoundaries[] boundaries = new BucketBoundaries[buckets];
+		for(int i = 0; i < buckets; ++i) {
+			boundaries[i] = new BucketBoundaries();
+			boundaries[i].set(i, i+1);
+		}
+
+		PartitionMatrix pm = new PartitionMatrix();
+		pm.setMatrix(matrix);
+		pm.setCountsS(countsS);
+		pm.setCountsT(countsT);
+		pm.setBoundariesS(boundaries);
+		pm.setBoundariesT(boundaries);
+		pm.setSizeS(sizeS);
+		pm.setSizeT(sizeT);
+
+		return pm;
+	}
+
+	private static String performExperiment(PartitionMatrix pm, int numPartitions, WhatIfEngine whatIfEngine) throws PartitioningError {
+		MergingPartitionToPartitionF prt = new MergingPartitionToPartitionF(pm, "targetf", pm.getSizeS(), pm.getSizeT(), numPartitions);
+		prt.setWhatIfEngine(whatIfEngine);
+
+		prt.execute(-1);
+
+		List<String> partitions = new ArrayList<String>();
+		for(int i = 0; i < prt.getPartitionsCount(); ++i) {
+			Partition partition = prt.getPartitions()[i];
+			partitions.add(partition.getCandidateCells().toString());
+		}
+		Collections.sort(partitions);
+
+		return partitions.toString();
+	}
+
+	public static void main(String[] args) throws PartitioningError {
+		int mismatches = 0;
+
+		for(long seed = 0; seed < 4; ++seed) {
+			for(int numPartitions : new int[]{1, 3, 8}) {
+				/*	Few distinct counts as well, for pairs of equal input cost	*/
+				PartitionMatrix pm = getBandPartitionMatrix(15, 2, seed % 2 == 0 ? 3 : 1000, seed);
+
+				String scan = performExperiment(pm, numPartitions, WhatIfEngine.SCAN);
+				String incremental = performExperiment(pm, numPartitions, WhatIfEngine.INCREMENTAL);
+
+				if(!scan.equals(incremental)) {
+					System.out.println("MISMATCH seed=" + seed + " numPartitions=" + numPartitions);
+					System.out.println("	SCAN: " + scan);
+					System.out.println("	INCREMENTAL: " + incremental);
+					++mismatches;
+				}
+			}
+		}
+
+		System.out.println("mismatches: " + mismatches);
+	}
+
+}
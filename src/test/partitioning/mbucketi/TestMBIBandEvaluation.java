@@ -0,0 +1,272 @@
+/**
+ * TestMBIBandEvaluation.java
+ *
+ * In this class we validate the band evaluation of MBIPartitioner (on the
+ * indexes of the candidate cells) against a reference M-Bucket-I, that builds
+ * the partitions of every candidate band height as in Algorithm 3 of:
+ * Processing Theta-Joins using MapReduce
+ *
+ * The maximum partition input found by the binary search and the partitions
+ * of every maximum partition input must be the same.
+ *
+ * @author John Koumarelas
+ */
+
+package test.partitioning.mbucketi;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import datatypes.exceptions.PartitioningError;
+import model.BucketBoundaries;
+import model.CellMatrix;
+import model.PartitionMatrix;
+import model.partitioning.mbucketi.PartitionRectangular;
+import partitioning.mbucketi.MBIPartitioner;
+
+public class TestMBIBandEvaluation {
+
+	/**
+	 * M-Bucket-I, with every candidate band covered with partitions.
+	 */
+	private static class ReferenceMBucketI {
+
+		private PartitionMatrix pm;
+		private CellMatrix matrix;
+		private long[] countsS;
+		private long[] countsT;
+		private int numPartitions;
+
+		private List<PartitionRectangular> partitions = new ArrayList<PartitionRectangular>();
+		private int curP;
+
+		public ReferenceMBucketI(PartitionMatrix pm, int numPartitions) {
+			this.pm = pm;
+			this.matrix = pm.getCells();
+			this.countsS = pm.getCountsS();
+			this.countsT = pm.getCountsT();
+			this.numPartitions = numPartitions;
+		}
+
+		private int totalCandidateArea(int row, int row_i) {
+			int counter = 0;
+			for (int ri = row; ri <= row_i; ++ri) {
+				for (int ci = 0 ; ci < countsT.length; ++ci) {
+					if (matrix.get(ri, ci) > 0) {
+						++counter;
+					}
+				}
+			}
+			return counter;
+		}
+
+		private List<PartitionRectangular> coverRows(int row_s, int row_si, long maxPartitionInput) {
+			List<PartitionRectangular> regions = new ArrayList<PartitionRectangular>();
+
+			PartitionRectangular r = new PartitionRectangular(row_s, 0, -1, pm);
+			long curInputSize = 0;
+
+			for (int ci = 0; ci < countsT.length; ++ci) {
+				long candInCost = r.candidateInputPartitionCost(row_s, row_si, ci);
+
+				if (maxPartitionInput - curInputSize < candInCost && r.getCandidateCells().size() > 0) {
+					r.computeOutputCost(matrix, countsS, countsT);
+					regions.add(r);
+					r = new PartitionRectangular(row_s, ci, -1, pm);
+					curInputSize = 0;
+					candInCost = r.candidateInputPartitionCost(row_s, row_si, ci);
+				}
+				r.addColumn(matrix, ci, row_s, row_si);
+
+				curInputSize += candInCost;
+			}
+
+			if (regions.size() > 0 && r.getCandidateCells().size() == 0) {
+				PartitionRectangular rLast = regions.get(regions.size() - 1);
+				for (int ci = rLast.getRbEndBottom().getSecond() + 1; ci < countsT.length; ++ci) {
+					rLast.addColumn(matrix, ci, row_s, row_si);
+				}
+			} else {
+				r.computeOutputCost(matrix, countsS, countsT);
+				regions.add(r);
+			}
+
+			return regions;
+		}
+
+		private int coverSubMatrix(int row_s, long maxPartitionInput) {
+			double maxScore = -1.0;
+			int pUsed = 0;
+			int bestRow = -1;
+
+			outerLoop:for (int i = 0; row_s + i < countsS.length; ++i) {
+				List<PartitionRectangular> Pi = coverRows(row_s, row_s + i, maxPartitionInput);
+				for (PartitionRectangular pr : Pi) {
+					if (pr.computeInputCost() > maxPartitionInput) {
+						break outerLoop;
+					}
+				}
+
+				double score = (double) totalCandidateArea(row_s, row_s + i) / Pi.size();
+				if (score >= maxScore) {
+					maxScore = score;
+					bestRow = row_s + i;
+					pUsed = Pi.size();
+				}
+			}
+
+			curP = curP - pUsed;
+
+			if (maxScore != -1 && curP >= 0) {
+				partitions.addAll(coverRows(row_s, bestRow, maxPartitionInput));
+			}
+
+			return bestRow != -1 ? bestRow + 1 : -1;
+		}
+
+		public boolean mBucketI(long maxPartitionInput) {
+			partitions.clear();
+			curP = numPartitions;
+
+			int row = 0;
+			while (row < countsS.length) {
+				row = coverSubMatrix(row, maxPartitionInput);
+				if (curP < 0 || row == -1) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		public long binarySearchMaxInput(long lowerBound, long upperBound) {
+			while (lowerBound < upperBound) {
+				long mid = (lowerBound + upperBound) / 2;
+				if (mBucketI(mid)) {
+					upperBound = mid;
+				} else {
+					lowerBound = mid + 1;
+				}
+			}
+			mBucketI(lowerBound);
+			return lowerBound;
+		}
+
+		public List<PartitionRectangular> getPartitions() {
+			return partitions;
+		}
+	}
+
+	private static PartitionMatrix getRandomPartitionMatrix(int buckets, int band, double density, long seed) {
+		Random r = new Random(seed);
+
+		long[][] matrix = new long[buckets][buckets];
+		long[] countsS = new long[buckets];
+		long[] countsT = new long[buckets];
+		long sizeS = 0;
+		long sizeT = 0;
+
+		for(int i = 0; i < buckets; ++i) {
+			countsS[i] = 1 + r.nextInt(50);
+			countsT[i] = 1 + r.nextInt(50);
+			sizeS += countsS[i];
+			sizeT += countsT[i];
+		}
+
+		for(int i = 0; i < buckets; ++i) {
+			for(int j = Math.max(0, i - band); j <= Math.min(buckets - 1, i + band); ++j) {
+				if(r.nextDouble() < density) {
+					matrix[i][j] = 1 + r.nextInt(5);
+				}
+			}
+		}
+
+		BucketBoundaries[] boundaries = new BucketBoundaries[buckets];
+		for(int i = 0; i < buckets; ++i) {
+			boundaries[i] = new BucketBoundaries();
+			boundaries[i].set(i, i+1);
+		}
+
+		PartitionMatrix pm = new PartitionMatrix();
+		pm.setMatrix(matrix);
+		pm.setCountsS(countsS);
+		pm.setCountsT(countsT);
+		pm.setBoundariesS(boundaries);
+		pm.setBoundariesT(boundaries);
+		pm.setSizeS(sizeS);
+		pm.setSizeT(sizeT);
+
+		return pm;
+	}
+
+	private static String getPartitionsSignature(PartitionRectangular[] partitions, int partitionsCount) {
+		StringBuilder sb = new StringBuilder();
+		for(int i = 0; i < partitionsCount; ++i) {
+			sb.append(partitions[i].getRbToString()).append(" ic=").append(partitions[i].computeInputCost())
+				.append(" oc=").append(partitions[i].getOutputCost()).append(" cc=").append(partitions[i].getCandidateCells().size()).append("; ");
+		}
+		return sb.toString();
+	}
+
+	private static int performExperiment(PartitionMatrix pm, int numPartitions, String name) throws PartitioningError {
+		int mismatches = 0;
+
+		ReferenceMBucketI reference = new ReferenceMBucketI(pm, numPartitions);
+
+		/*	The partitions of every maximum partition input that the reference can cover	*/
+		long step = Math.max(1, (pm.getSizeS() + pm.getSizeT()) / 40);
+		for(long mpi = step; mpi <= pm.getSizeS() + pm.getSizeT(); mpi += step) {
+			if(!reference.mBucketI(mpi)) {
+				continue;
+			}
+			MBIPartitioner prt = new MBIPartitioner(pm, "MBI", pm.getSizeS(), pm.getSizeT(), numPartitions);
+			prt.execute(mpi);
+
+			List<PartitionRectangular> expected = reference.getPartitions();
+			String expectedSignature = getPartitionsSignature(expected.toArray(new PartitionRectangular[0]), expected.size());
+			String signature = getPartitionsSignature(prt.getPartitions(), prt.getPartitionsCount());
+			if(!expectedSignature.equals(signature)) {
+				System.out.println("MISMATCH " + name + " mpi=" + mpi);
+				System.out.println("	reference: " + expectedSignature);
+				System.out.println("	MBIPartitioner: " + signature);
+				++mismatches;
+			}
+		}
+
+		/*	The binary search, over the bounds of findLowest	*/
+		MBIPartitioner prt = new MBIPartitioner(pm, "MBI", pm.getSizeS(), pm.getSizeT(), numPartitions);
+		prt.findLowest();
+
+		int numCandidateCells = pm.getCells().countNonZero();
+		long expectedMaxPartitionInput = reference.binarySearchMaxInput(
+				(long) (2 * Math.sqrt((double) numCandidateCells / numPartitions)), pm.getSizeS() + pm.getSizeT());
+		String expectedSignature = getPartitionsSignature(reference.getPartitions().toArray(new PartitionRectangular[0]), reference.getPartitions().size());
+		String signature = getPartitionsSignature(prt.getPartitions(), prt.getPartitionsCount());
+		if(expectedMaxPartitionInput != prt.getMaxPartitionInput() || !expectedSignature.equals(signature)) {
+			System.out.println("MISMATCH " + name + " findLowest");
+			System.out.println("	reference: " + expectedMaxPartitionInput + " " + expectedSignature);
+			System.out.println("	MBIPartitioner: " + prt.getMaxPartitionInput() + " " + signature);
+			++mismatches;
+		}
+
+		return mismatches;
+	}
+
+	public static void main(String[] args) throws PartitioningError {
+		int mismatches = 0;
+
+		for(long seed = 0; seed < 3; ++seed) {
+			for(int numPartitions : new int[]{1, 2, 5, 17}) {
+				mismatches += performExperiment(getRandomPartitionMatrix(40, 3, 0.9, seed), numPartitions,
+						"narrowBand seed=" + seed + " numPartitions=" + numPartitions);
+				mismatches += performExperiment(getRandomPartitionMatrix(40, 10, 0.5, seed), numPartitions,
+						"wideBand seed=" + seed + " numPartitions=" + numPartitions);
+				mismatches += performExperiment(getRandomPartitionMatrix(40, 40, 0.05, seed), numPartitions,
+						"sparse seed=" + seed + " numPartitions=" + numPartitions);
+			}
+		}
+
+		System.out.println("mismatches: " + mismatches);
+	}
+
+}
@@ -0,0 +1,182 @@
+/**
+ * TestPartitionMatrixFormats.java
+ *
+ * In this class we validate the binary partition matrix file (pm.bin) of
+ * MappedCellMatrix against the CSV one (pm.csv): the PartitionMatrix is
+ * exported in every Format and imported back, memory-mapped and streamed,
+ * and its cells must be those imported from pm.csv.
+ *
+ * @author John Koumarelas
+ */
+
+package test.utils;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+import model.BucketBoundaries;
+import model.CellMatrix;
+import model.DenseCellMatrix;
+import model.MappedCellMatrix;
+import model.MappedCellMatrix.Format;
+import model.PartitionMatrix;
+
+import org.apache.hadoop.fs.Path;
+
+import utils.exporters.PartitionMatrixExporter;
+import utils.importers.PartitionMatrixImporter;
+
+public class TestPartitionMatrixFormats {
+
+	private static PartitionMatrix getRandomPartitionMatrix(int buckets, int band, long seed) {
+		Random r = new Random(seed);
+
+		long[][] matrix = new long[buckets][buckets];
+		long[] countsS = new long[buckets];
+		long[] countsT = new long[buckets];
+		long sizeS = 0;
+		long sizeT = 0;
+
+		for(int i = 0; i < buckets; ++i) {
+			countsS[i] = 1 + r.nextInt(50);
+			countsT[i] = 1 + r.nextInt(50);
+			sizeS += countsS[i];
+			sizeT += countsT[i];
+		}
+
+		for(int i = 0; i < buckets; ++i) {
+			/*	Some empty rows	*/
+			if(r.nextInt(6) == 0) {
+				continue;
+			}
+			for(int j = Math.max(0, i - band); j <= Math.min(buckets - 1, i + band); ++j) {
+				if(r.nextDouble() < 0.7) {
+					/*	Some values of several varint bytes	*/
+					matrix[i][j] = r.nextInt(4) == 0 ? (r.nextLong() >>> (1 + r.nextInt(62))) + 1 : 1 + r.nextInt(5);
+				}
+			}
+		}
+
+		BucketBoundaries[] boundaries = new BucketBoundaries[buckets];
+		for(int i = 0; i < buckets; ++i) {
+			boundaries[i] = new BucketBoundaries();
+			boundaries[i].set(10 * i, 10 * i + 9);
+		}
+
+		PartitionMatrix pm = new PartitionMatrix();
+		pm.setCells(new DenseCellMatrix(matrix));
+		pm.setCountsS(countsS);
+		pm.setCountsT(countsT);
+		pm.setBoundariesS(boundaries);
+		pm.setBoundariesT(boundaries);
+		pm.setSizeS(sizeS);
+		pm.setSizeT(sizeT);
+
+		return pm;
+	}
+
+	/**
+	 * Compares every cell, and every nextNonZero and nextZero, visiting the rows
+	 * alternately from the first and from the last one.
+	 */
+	private static boolean equalCells(CellMatrix expected, CellMatrix matrix) {
+		if(expected.getRows() != matrix.getRows() || expected.getColumns() != matrix.getColumns()
+				|| expected.countNonZero() != matrix.countNonZero()) {
+			return false;
+		}
+
+		int rows = expected.getRows();
+		for(int k = 0; k < rows; ++k) {
+			int i = k % 2 == 0 ? k / 2 : rows - 1 - k / 2;
+			for(int j = 0; j < expected.getColumns(); ++j) {
+				if(expected.get(i, j) != matrix.get(i, j)
+						|| expected.nextNonZero(i, j) != matrix.nextNonZero(i, j)
+						|| expected.nextZero(i, j) != matrix.nextZero(i, j)) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	private static int performExperiment(PartitionMatrix pm, File directory, String name) throws IOException {
+		int mismatches = 0;
+		int buckets = pm.getCountsS().length;
+
+		Path partitionMatrixDirectory = new Path(directory.getPath());
+		Path boundaries = new Path(directory.getPath() + File.separator + "boundaries.csv");
+		Path counts = new Path(directory.getPath() + File.separator + "counts.csv");
+
+		PartitionMatrixExporter pme = new PartitionMatrixExporter(pm, partitionMatrixDirectory);
+		pme.exportBoundariesCSV(boundaries);
+		pme.exportCountsCSV(counts);
+
+		PartitionMatrixImporter pmi = new PartitionMatrixImporter();
+
+		pme.exportPartitionMatrix("CSV");
+		Path partitionMatrixCSV = pmi.getPartitionMatrixPath(partitionMatrixDirectory);
+		CellMatrix expected = pmi.importPartitionMatrix(pm.getSizeS(), pm.getSizeT(), buckets, partitionMatrixCSV,
+				new Path(File.separator), boundaries, counts).getCells();
+		if(!partitionMatrixCSV.getName().equals("pm.csv") || !equalCells(pm.getCells(), expected)) {
+			System.out.println("MISMATCH " + name + " CSV");
+			++mismatches;
+		}
+
+		for(Format format : Format.values()) {
+			pme.exportPartitionMatrix(format.toString());
+
+			Path partitionMatrixBinary = pmi.getPartitionMatrixPath(partitionMatrixDirectory);
+			CellMatrix mapped = pmi.importPartitionMatrix(pm.getSizeS(), pm.getSizeT(), buckets, partitionMatrixBinary,
+					new Path(File.separator), boundaries, counts).getCells();
+			if(!partitionMatrixBinary.getName().equals("pm.bin") || !equalCells(expected, mapped)) {
+				System.out.println("MISMATCH " + name + " " + format + " mapped");
+				++mismatches;
+			}
+
+			/*	As from a file system that cannot be mapped	*/
+			FileInputStream in = new FileInputStream(new File(directory, "pm.bin"));
+			CellMatrix streamed;
+			try {
+				streamed = MappedCellMatrix.read(in);
+			} finally {
+				in.close();
+			}
+			if(!equalCells(expected, streamed)) {
+				System.out.println("MISMATCH " + name + " " + format + " streamed");
+				++mismatches;
+			}
+		}
+
+		/*	A CSV export replaces the binary one	*/
+		pme.exportPartitionMatrix("CSV");
+		if(!pmi.getPartitionMatrixPath(partitionMatrixDirectory).getName().equals("pm.csv")) {
+			System.out.println("MISMATCH " + name + " stale pm.bin");
+			++mismatches;
+		}
+
+		return mismatches;
+	}
+
+	public static void main(String[] args) throws IOException {
+		int mismatches = 0;
+
+		File directory = Files.createTempDirectory("pm").toFile();
+		try {
+			for(long seed = 0; seed < 3; ++seed) {
+				mismatches += performExperiment(getRandomPartitionMatrix(40, 3, seed), directory, "band seed=" + seed);
+				mismatches += performExperiment(getRandomPartitionMatrix(40, 40, seed), directory, "dense seed=" + seed);
+			}
+		} finally {
+			for(File file : directory.listFiles()) {
+				file.delete();
+			}
+			directory.delete();
+		}
+
+		System.out.println("mismatches: " + mismatches);
+	}
+
+}
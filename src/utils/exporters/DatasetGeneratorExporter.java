@@ -7,15 +7,24 @@
  * 	-	generateDistribution: 	Data generated follows a specific distribution.
  * 								(see enum Distribution for the currently available distributions)
  * 
+ * The generated dataset can also be exported in the binary format of
+ * PackedRelationValueInputFormat (see exportBinary), to be joined by MBucketI.
+ * 
  * @author John Koumarelas, john.koumarel@gmail.com
  */
 package utils.exporters;
 
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
 import java.util.Random;
 
+import join.mbi.PackedRelationValueInputFormat;
+
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
@@ -237,6 +246,32 @@ public class DatasetGeneratorExporter {
 			}
 		}
 		
+		/**
+		 * Converts the (already generated) CSV dataset to fixed length binary records.
+		 * 
+		 * @param datasetBinary: the file where the binary records will be written.
+		 */
+		public void exportBinary(Path datasetBinary) throws IOException {
+			FileSystem fs = FileSystem.get(new Configuration());
+			
+			BufferedReader in = new BufferedReader(new InputStreamReader(fs.open(dataset)));
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fs.create(datasetBinary,true)));
+			
+			String line;
+			while ((line = in.readLine()) != null) {
+				if (line.trim().equals("")) {
+					continue;
+				}
+				
+				String[] toks = line.split(",");
+				int relID = toks[0].equals("S") ? PackedRelationValueInputFormat.relID_S : PackedRelationValueInputFormat.relID_T;
+				PackedRelationValueInputFormat.writeRecord(out, relID, Long.parseLong(toks[1]));
+			}
+			
+			in.close();
+			out.close();
+		}
+		
 		public void exportExecutionTimes(Path executionTimes) throws IOException {
 			FileSystem fs = FileSystem.get(new Configuration());
 			
@@ -4,7 +4,9 @@
  * Methods for exporting the PartitionMatrix and other
  * properties of it can be found in this class. Usually
  * the objects are exported in a CSV (Comma Separated Values)
- * form.
+ * form. The PartitionMatrix itself may also be exported in
+ * the binary format of MappedCellMatrix (pm.bin), which is
+ * memory-mapped when imported instead of parsed.
  * 
  * @author John Koumarelas
  */
@@ -14,11 +16,15 @@ package utils.exporters;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.util.HashMap;
 import java.util.Map.Entry;
 
 import model.BucketBoundaries;
+import model.CellMatrix;
+import model.MappedCellMatrix;
+import model.MappedCellMatrix.Format;
 import model.PartitionMatrix;
 
 import org.apache.hadoop.conf.Configuration;
@@ -42,6 +48,36 @@ public class PartitionMatrixExporter {
 		this.partitionMatrixDirectory = partitionMatrixDirectory;
 	}
 	
+	/**
+	 * Exports the PartitionMatrix to the directory: pm.csv for "CSV", otherwise pm.bin in the
+	 * given MappedCellMatrix.Format (e.g. "SPARSE_VARINT"). A pm.bin left from an earlier export
+	 * is deleted when exporting pm.csv, as PartitionMatrixImporter prefers pm.bin.
+	 */
+	public void exportPartitionMatrix(String format) throws IOException {
+		if (format.equals("CSV")) {
+			FileSystem fs = FileSystem.get(new Configuration());
+			Path partitionMatrixBinary = new Path(partitionMatrixDirectory + File.separator + "pm.bin");
+			if (fs.exists(partitionMatrixBinary)) {
+				fs.delete(partitionMatrixBinary, false);
+			}
+			exportPartitionMatrixCSV(new Path(partitionMatrixDirectory + File.separator + "pm.csv"));
+		} else {
+			exportPartitionMatrixBinary(new Path(partitionMatrixDirectory + File.separator + "pm.bin"), Format.valueOf(format));
+		}
+	}
+	
+	public void exportPartitionMatrixBinary(Path partitionMatrixBinary, Format format) {
+		try {
+			FileSystem fs = FileSystem.get(new Configuration());
+			
+			OutputStream out = fs.create(partitionMatrixBinary,true);
+			MappedCellMatrix.write(pm.getCells(), format, out);
+			out.close();
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+	
 	public void exportPartitionMatrixCSV(Path partitionMatrixCSV) {
 		try {
 			FileSystem fs = FileSystem.get(new Configuration());
@@ -49,16 +85,16 @@ public class PartitionMatrixExporter {
 			BufferedWriter out = new BufferedWriter(new OutputStreamWriter(
 					fs.create(partitionMatrixCSV,true)));
 			
-			long[][] matrix = pm.getMatrix();
+			CellMatrix matrix = pm.getCells();
 			
-			for(int i = 0 ; i < matrix.length; ++i) {
-				for(int j = 0 ; j < matrix[0].length; ++j) {
-					out.write(String.valueOf(matrix[i][j]));
-					if((j+1)<matrix[0].length) {
+			for(int i = 0 ; i < matrix.getRows(); ++i) {
+				for(int j = 0 ; j < matrix.getColumns(); ++j) {
+					out.write(String.valueOf(matrix.get(i,j)));
+					if((j+1)<matrix.getColumns()) {
 						out.write(',');
 					}
 				}
-				if((i+1)<matrix.length) {
+				if((i+1)<matrix.getRows()) {
 					out.newLine();
 				}
 			}
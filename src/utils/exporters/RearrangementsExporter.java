@@ -19,6 +19,7 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
 
+import model.CellMatrix;
 import model.PartitionMatrix;
 
 import org.apache.hadoop.conf.Configuration;
@@ -69,15 +70,15 @@ public class RearrangementsExporter {
 		try {
 			BufferedWriter out = new BufferedWriter(new FileWriter(new File(localTSPk.getPath() + File.separator +  "pm.csv"), false));
 			
-			long[][] matrix = pm.getMatrix();
+			CellMatrix matrix = pm.getCells();
 			
 			long maxValue = Long.MIN_VALUE;
 			
 			// Find maxValue
-			for(int i = 0; i < matrix.length; ++i) {
-				for(int j = 0;  j < matrix[0].length; ++j) {
-					if(matrix[i][j] > maxValue) {
-						maxValue = matrix[i][j];
+			for(int i = 0; i < matrix.getRows(); ++i) {
+				for(int j = 0;  j < matrix.getColumns(); ++j) {
+					if(matrix.get(i,j) > maxValue) {
+						maxValue = matrix.get(i,j);
 					}
 				}
 			}
@@ -85,13 +86,13 @@ public class RearrangementsExporter {
 			// Export normalized values
 			for(int i = 0 ; i < pm.getBucketsS(); ++i) {
 				for(int j = 0 ; j < pm.getBucketsT(); ++j) {
-					double normalizedValue = 999*((double)matrix[i][j] / maxValue);
+					double normalizedValue = 999*((double)matrix.get(i,j) / maxValue);
 					out.write(String.valueOf(normalizedValue));
 					if((j+1)<pm.getBucketsT()) {
 						out.write(',');
 					}
 				}
-				if((i+1)<matrix.length) {
+				if((i+1)<matrix.getRows()) {
 					out.newLine();
 				}
 			}
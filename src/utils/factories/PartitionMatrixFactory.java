@@ -5,17 +5,26 @@
  * histograms and the parameters provided. It creates random queries which
  * in practice could represent real user queries for the system's needs.
  * 
+ * The rows of the PartitionMatrix are independent of each other, so with a
+ * parallelism above 1 they are created in blocks on a ForkJoinPool
+ * (see ParallelRows). getExecutionTime() is the wall time of the creation.
+ * 
  * @author John Koumarelas
  */
 package utils.factories;
 
-import java.util.Arrays;
 import java.util.Random;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ForkJoinPool;
 
+import join.ThetaJoin;
+import join.ThetaPredicate;
 import model.BucketBoundaries;
+import model.CellMatrix;
+import model.DenseCellMatrix;
 import model.PartitionMatrix;
-import datatypes.IntPair;
-import datatypes.LongPair;
+import model.SparseCellMatrix;
+import partitioning.clustering.ParallelRows;
 
 public class PartitionMatrixFactory {
 	
@@ -25,6 +34,11 @@ public class PartitionMatrixFactory {
 	private int sparsity;
 	private int bandsOffsetSeed;
 	
+	private String query = null; // null: a random query of bands (see getQuery)
+	
+	private CellStorage cellStorage = CellStorage.DENSE;
+	private int parallelism = 1; // threads that create blocks of rows
+	
 	private long executionTime;
 	
 	/*	Relation S	*/
@@ -37,6 +51,26 @@ public class PartitionMatrixFactory {
 	private long[] countsT;
 	private long sizeT;
 	
+	/**
+	 * How the cells of the PartitionMatrix are stored:
+	 * 	-	DENSE: every cell (DenseCellMatrix).
+	 * 	-	SPARSE: only the candidate cells (SparseCellMatrix), for many buckets and narrow bands.
+	 */
+	public enum CellStorage {
+		DENSE("DENSE"), SPARSE("SPARSE");
+		
+		String storage;
+		
+		private CellStorage(String storage) {
+			this.storage = storage;
+		}
+		
+		@Override
+		public String toString() {
+			return storage;
+		}
+	}
+	
 	public PartitionMatrixFactory(int buckets, BucketBoundaries[] boundariesS, BucketBoundaries[] boundariesT, 
 			long[] countsS, long[] countsT, long sizeS, long sizeT,int bands, int sparsity, int bandsOffsetSeed) {
 		
@@ -54,23 +88,12 @@ public class PartitionMatrixFactory {
 	}
 	
 	/**
-	 * "_" -> splits the bands of the query
-	 * "|" -> sets the threshold of every band
+	 * See ThetaJoin.getQueryParts.
 	 * 
-	 * example [10|15]_[20|25] --> two long pairs: (10,15),(20,25)
+	 * example [10|15]_[20|25] --> two bands: (10,15),(20,25)
 	 */
-	private static LongPair[] getQueryParts(String query) {
-		String[] queryToks = query.trim().split("_");
-		
-		LongPair[] queryParts = new LongPair[queryToks.length];
-		
-		for (int i = 0 ; i < queryToks.length; ++i) {
-			String[] toks = queryToks[i].substring(1,queryToks[i].length()-1).split("\\|");
-			queryParts[i] = new LongPair();
-			queryParts[i].set(Long.valueOf(toks[0]), Long.valueOf(toks[1]));
-		}
-		
-		return queryParts;
+	private static ThetaPredicate[] getQueryParts(String query) {
+		return ThetaJoin.getQueryParts(query);
 	}
 	
 	/**
@@ -179,24 +202,12 @@ public class PartitionMatrixFactory {
 	 * 					T[j].first+c1|----------------|T[j].last+c2
 	 * 
 	 * 
+	 * The cases above are those of a band (BandPredicate); every ThetaPredicate answers it with mayMatch.
+	 * 
 	 * @return: True: Candidate Cell, False: otherwise
 	 */
-	private boolean evaluateQueryHistogramsEnds(LongPair queryPart, BucketBoundaries boundaryS, BucketBoundaries boundaryT) {
-		long c1 = queryPart.getFirst();
-		long c2 = queryPart.getSecond();
-		
-		long bndTFirstC1 = boundaryT.getFrom() + c1;
-		long bndTLastC2 = boundaryT.getTo() + c2;
-		
-		long bndSFirst = boundaryS.getFrom();
-		long bndSLast = boundaryS.getTo();
-		
-		/* 
-			If: The first value from T is lower than the last value from S AND
-				the last value from T is bigger than the first value of S
-			Then: Candidate Cell --> True
-		*/
-		return bndTFirstC1 <= bndSLast && bndSFirst <= bndTLastC2;
+	private boolean evaluateQueryHistogramsEnds(ThetaPredicate queryPart, BucketBoundaries boundaryS, BucketBoundaries boundaryT) {
+		return queryPart.mayMatch(boundaryS, boundaryT);
 	}
 	
 	/**
@@ -208,15 +219,12 @@ public class PartitionMatrixFactory {
 	 * 
 	 * @return: True: Candidate Cell, False: otherwise
 	 */
-	private boolean evaluateQueryBruteForce(LongPair queryPart, BucketBoundaries boundaryS, BucketBoundaries boundaryT) {
-		long c1 = queryPart.getFirst();
-		long c2 = queryPart.getSecond();
-		
+	private boolean evaluateQueryBruteForce(ThetaPredicate queryPart, BucketBoundaries boundaryS, BucketBoundaries boundaryT) {
 		for (long valueS = boundaryS.getFrom(); valueS <= boundaryS.getTo(); ++valueS ) {
 			for (long valueT = boundaryT.getFrom(); valueT <= boundaryT.getTo(); ++valueT){
 				
-				// T.a + c1 <= S.a <= T.a + c2
-				if ((valueT + c1 <= valueS) && (valueS <= valueT + c2)){
+				// e.g. for a band: T.a + c1 <= S.a <= T.a + c2
+				if ((queryPart.lowestS(valueT) <= valueS) && (valueS <= queryPart.highestS(valueT))){
 					return true;
 				}
 				
@@ -226,45 +234,49 @@ public class PartitionMatrixFactory {
 	}
 	
 	private PartitionMatrix createPartitionMatrix() {
-		long[][] M = new long[boundariesS.length][boundariesT.length];
+		final ThetaPredicate[] queryParts = getQueryParts(getQuery());
 		
-		/*	Matrix initialization	*/
-		for (int i = 0 ; i < M.length ; ++i) {
-			Arrays.fill(M[i], 0L);
-		}
+		final boolean intervals = isSorted(boundariesT);
+		final boolean sortedS = isSorted(boundariesS);
 		
-		LongPair[] queryParts = getQueryParts(getQuery(bands,sparsity,bandsOffsetSeed,buckets,boundariesS,boundariesT));
+		final DenseCellMatrix dense = cellStorage == CellStorage.DENSE ? new DenseCellMatrix(boundariesS.length, boundariesT.length) : null;
 		
-		/*
-		 * Fill the cells with values.
-		 * - Sum: For input cost
-		 * - Multiplication: For output cost
-		 */
-		for (int i = 0 ; i<boundariesS.length ; ++i) {
-			for (int j = 0 ; j < boundariesT.length ; ++j) {
-				for (int q = 0 ; q < queryParts.length ; ++q) {
+		/*	SPARSE: the rows of every block, by the first row of the block	*/
+		final ConcurrentSkipListMap<Integer, SparseCellMatrix> sparseBlocks = new ConcurrentSkipListMap<Integer, SparseCellMatrix>();
+		
+		ForkJoinPool pool = ParallelRows.createPool(parallelism);
+		try {
+			ParallelRows.invoke(pool, boundariesS.length, new ParallelRows.Rows() {
+				@Override
+				public void compute(int from, int to) {
+					SparseCellMatrix.Builder sparse = dense == null ? new SparseCellMatrix.Builder(to - from, boundariesT.length) : null;
 					
-					/*	Use the following evaluation method especially in cases of a custom join UDF	*/
-//					if(evaluateQueryBruteForce(queryParts[q],boundariesS[i],boundariesT[j])){
+					if (intervals) {
+						createCandidateIntervals(from, to, sortedS, queryParts, dense, sparse);
+					} else {
+						createCandidateCells(from, to, queryParts, dense, sparse);
+					}
 					
-					if(evaluateQueryHistogramsEnds(queryParts[q],boundariesS[i],boundariesT[j])){
-						long sum = 0;
-						
-						IntPair cell = new IntPair();
-						cell.set(i, j);
-						
-						sum = countsS[i] + countsT[j]; // Sum: input cost
-
-						M[i][j] = sum;
-						
-						break;
+					if (sparse != null) {
+						sparseBlocks.put(from, sparse.build());
 					}
 				}
+			});
+		} finally {
+			ParallelRows.shutdown(pool);
+		}
+		
+		CellMatrix cells = dense;
+		if (dense == null) {
+			SparseCellMatrix.Builder sparse = new SparseCellMatrix.Builder(boundariesS.length, boundariesT.length);
+			for (SparseCellMatrix block : sparseBlocks.values()) {
+				sparse.addRows(block);
 			}
+			cells = sparse.build();
 		}
 		
 		PartitionMatrix pm = new PartitionMatrix();
-		pm.setMatrix(M);
+		pm.setCells(cells);
 		pm.setBoundariesS(boundariesS);
 		pm.setBoundariesT(boundariesT);
 		pm.setCountsS(countsS);
@@ -275,6 +287,164 @@ public class PartitionMatrixFactory {
 		return pm;
 	}
 	
+	/**
+	 * The candidate cells of the rows [from, to), evaluating every cell for every band.
+	 */
+	private void createCandidateCells(int from, int to, ThetaPredicate[] queryParts, DenseCellMatrix dense, SparseCellMatrix.Builder sparse) {
+		for (int i = from ; i < to ; ++i) {
+			for (int j = 0 ; j < boundariesT.length ; ++j) {
+				for (int q = 0 ; q < queryParts.length ; ++q) {
+					
+					/*	Use the following evaluation method especially in cases of a custom join UDF	*/
+//					if(evaluateQueryBruteForce(queryParts[q],boundariesS[i],boundariesT[j])){
+					
+					if(evaluateQueryHistogramsEnds(queryParts[q],boundariesS[i],boundariesT[j])){
+						setCells(i, j, j + 1, dense, sparse);
+						break;
+					}
+				}
+			}
+			if (sparse != null) {
+				sparse.endRow();
+			}
+		}
+	}
+	
+	/**
+	 * The candidate cells of the rows [from, to), as intervals of columns, in O(bucketsS * bands + bucketsT * bands)
+	 * (O(bucketsS * bands * log(bucketsT)) when the boundaries of S are not sorted) instead of evaluating
+	 * every cell for every band.
+	 * 
+	 * The boundaries of T are sorted, so for the band (c1,c2) and the bucket S[i] the condition of
+	 * evaluateQueryHistogramsEnds:
+	 * 		T[j].first+c1 <= S[i].last	AND	S[i].first <= T[j].last+c2
+	 * holds for the buckets of T from the first one with T[j].last >= S[i].first-c2 (lower) up to the
+	 * last one with T[j].first <= S[i].last-c1 (upper - 1). When the boundaries of S are sorted too,
+	 * lower and upper only move forward from one row to the next (after a binary search for the first row).
+	 * For any ThetaPredicate, S[i].first-c2 and S[i].last-c1 are lowestT(S[i].first) and highestT(S[i].last),
+	 * where an end of S[i] that matches nothing (an empty range, see ThetaPredicate) is replaced by the
+	 * value next to it in the bucket.
+	 * 
+	 * The intervals of the bands of a row are merged, so that every cell is set once.
+	 */
+	private void createCandidateIntervals(int from, int to, boolean sortedS, ThetaPredicate[] queryParts,
+			DenseCellMatrix dense, SparseCellMatrix.Builder sparse) {
+		int[] lower = new int[queryParts.length];
+		int[] upper = new int[queryParts.length];
+		
+		int[] intervalFrom = new int[queryParts.length];
+		int[] intervalTo = new int[queryParts.length];
+		
+		for (int i = from ; i < to ; ++i) {
+			int intervals = 0;
+			for (int q = 0 ; q < queryParts.length ; ++q) {
+				long firstS = boundariesS[i].getFrom();
+				long lastS = boundariesS[i].getTo();
+				if (queryParts[q].lowestT(firstS) > queryParts[q].highestT(firstS)) {
+					if (firstS == lastS) {
+						continue;
+					}
+					++firstS;
+				}
+				if (queryParts[q].lowestT(lastS) > queryParts[q].highestT(lastS)) {
+					if (firstS == lastS) {
+						continue;
+					}
+					--lastS;
+				}
+				
+				long minLastT = queryParts[q].lowestT(firstS);
+				long maxFirstT = queryParts[q].highestT(lastS);
+				
+				if (sortedS && i > from) {
+					while (lower[q] < boundariesT.length && boundariesT[lower[q]].getTo() < minLastT) {
+						++lower[q];
+					}
+					while (upper[q] < boundariesT.length && boundariesT[upper[q]].getFrom() <= maxFirstT) {
+						++upper[q];
+					}
+				} else {
+					lower[q] = firstColumn(minLastT, false);
+					upper[q] = firstColumn(maxFirstT, true);
+				}
+				
+				if (lower[q] >= upper[q]) {
+					continue;
+				}
+				
+				/*	Insertion by the start of the interval	*/
+				int k = intervals++;
+				while (k > 0 && intervalFrom[k - 1] > lower[q]) {
+					intervalFrom[k] = intervalFrom[k - 1];
+					intervalTo[k] = intervalTo[k - 1];
+					--k;
+				}
+				intervalFrom[k] = lower[q];
+				intervalTo[k] = upper[q];
+			}
+			
+			/*	Merging of the overlapping intervals	*/
+			int k = 0;
+			while (k < intervals) {
+				int columnFrom = intervalFrom[k];
+				int columnTo = intervalTo[k];
+				for (++k ; k < intervals && intervalFrom[k] <= columnTo ; ++k) {
+					columnTo = Math.max(columnTo, intervalTo[k]);
+				}
+				setCells(i, columnFrom, columnTo, dense, sparse);
+			}
+			if (sparse != null) {
+				sparse.endRow();
+			}
+		}
+	}
+	
+	/**
+	 * Binary search on the sorted boundaries of T.
+	 * 
+	 * @param first: true: the first bucket with T[j].first > value, false: the first bucket with T[j].last >= value
+	 * @return boundariesT.length if none
+	 */
+	private int firstColumn(long value, boolean first) {
+		int low = 0, high = boundariesT.length;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			boolean found = first ? boundariesT[middle].getFrom() > value : boundariesT[middle].getTo() >= value;
+			if (found) {
+				high = middle;
+			} else {
+				low = middle + 1;
+			}
+		}
+		return low;
+	}
+	
+	/**
+	 * Sets the cells [from, to) of the row i, with the sum of the counts of their buckets (input cost).
+	 */
+	private void setCells(int i, int from, int to, DenseCellMatrix dense, SparseCellMatrix.Builder sparse) {
+		for (int j = from ; j < to ; ++j) {
+			long sum = countsS[i] + countsT[j]; // Sum: input cost
+			if (dense != null) {
+				dense.set(i, j, sum);
+			} else {
+				sparse.add(j, sum);
+			}
+		}
+	}
+	
+	/**
+	 * Whether both the first and the last values of the buckets are in ascending order.
+	 */
+	private static boolean isSorted(BucketBoundaries[] boundaries) {
+		for (int k = 1 ; k < boundaries.length ; ++k) {
+			if (boundaries[k].getFrom() < boundaries[k - 1].getFrom() || boundaries[k].getTo() < boundaries[k - 1].getTo()) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
 	public PartitionMatrix getPartitionMatrix() {
 		long start = System.currentTimeMillis();
 		PartitionMatrix pm = createPartitionMatrix();
@@ -287,4 +457,38 @@ public class PartitionMatrixFactory {
 	public long getExecutionTime() {
 		return executionTime;
 	}
+	
+	/**
+	 * The query of the PartitionMatrix: the one set, or else the random query of bands of the
+	 * parameters of the factory.
+	 */
+	public String getQuery() {
+		if (query != null) {
+			return query;
+		}
+		return getQuery(bands,sparsity,bandsOffsetSeed,buckets,boundariesS,boundariesT);
+	}
+	
+	/**
+	 * @param query: any query of ThetaPredicates (see ThetaJoin.getQueryParts), null for a random query of bands.
+	 */
+	public void setQuery(String query) {
+		this.query = query;
+	}
+	
+	public CellStorage getCellStorage() {
+		return cellStorage;
+	}
+	
+	public void setCellStorage(CellStorage cellStorage) {
+		this.cellStorage = cellStorage;
+	}
+	
+	public int getParallelism() {
+		return parallelism;
+	}
+	
+	public void setParallelism(int parallelism) {
+		this.parallelism = parallelism;
+	}
 }
@@ -15,9 +15,11 @@ package utils.factories;
 
 import java.util.Arrays;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 import model.BucketBoundaries;
 import model.PartitionMatrix;
+import partitioning.clustering.ParallelRows;
 import datatypes.IntPair;
 
 /**
@@ -43,6 +45,8 @@ public class VirtualPartitionMatrixFactory {
 
 	private PartitionMatrix pm;
 	
+	private int parallelism = 1; // threads that scan blocks of rows
+	
 	private long executionTime;
 
 	public VirtualPartitionMatrixFactory(int buckets, int sparsity, int bands, int bandsOffsetSeed, String bandType) {
@@ -90,29 +94,48 @@ public class VirtualPartitionMatrixFactory {
 		}
 	}
 	
+	/**
+	 * The rows (countsS) and the columns (countsT) are scanned in blocks on a ForkJoinPool.
+	 * The bands themselves are drawn sequentially, from a single Random.
+	 */
 	void calculateCountAndSize() {
 		/*	XXX: Calculate countsS and countsT differently.	*/
 		/* 		   	this implementation uses the same cell value two times,	*/
 		/* 			one for the row and one for the column	*/
 		
-		for(int i = 0 ; i < buckets; ++i){
-			countsS[i]=0;
-			for(int j = 0 ; j < buckets; ++j) {
-				if(matrix[i][j]>0) {
-					countsS[i] = 1;
-					break;
+		ForkJoinPool pool = ParallelRows.createPool(parallelism);
+		try {
+			ParallelRows.invoke(pool, buckets, new ParallelRows.Rows() {
+				@Override
+				public void compute(int from, int to) {
+					for(int i = from ; i < to; ++i){
+						countsS[i]=0;
+						for(int j = 0 ; j < buckets; ++j) {
+							if(matrix[i][j]>0) {
+								countsS[i] = 1;
+								break;
+							}
+						}
+					}
 				}
-			}
-		}
-		
-		for(int j = 0 ; j < buckets; ++j){
-			countsT[j]=0;
-			for(int i = 0 ; i < buckets; ++i) {
-				if(matrix[i][j]>0) {
-					countsT[j] = 1;
-					break;
+			});
+			
+			ParallelRows.invoke(pool, buckets, new ParallelRows.Rows() {
+				@Override
+				public void compute(int from, int to) {
+					for(int j = from ; j < to; ++j){
+						countsT[j]=0;
+						for(int i = 0 ; i < buckets; ++i) {
+							if(matrix[i][j]>0) {
+								countsT[j] = 1;
+								break;
+							}
+						}
+					}
 				}
-			}
+			});
+		} finally {
+			ParallelRows.shutdown(pool);
 		}
 		
 		sizeS = buckets;
@@ -509,4 +532,12 @@ public class VirtualPartitionMatrixFactory {
 		return executionTime;
 	}
 	
+	public int getParallelism() {
+		return parallelism;
+	}
+	
+	public void setParallelism(int parallelism) {
+		this.parallelism = parallelism;
+	}
+	
 }
@@ -11,6 +11,7 @@ package utils.handlers.partitionMatrix;
 
 import java.io.IOException;
 
+import model.CellMatrix;
 import model.PartitionMatrix;
 
 import org.jfree.chart.ChartFactory;
@@ -23,21 +24,19 @@ import org.jfree.data.xy.XYSeriesCollection;
 
 public class PartitionMatrixChart {
 	
-	private long[][] matrix;
+	private CellMatrix matrix;
 	
 	public PartitionMatrixChart(PartitionMatrix pm) {
-		this.matrix = pm.getMatrix();
+		this.matrix = pm.getCells();
 	}
 
 	private XYSeriesCollection createDatasetChart() {
 	    XYSeriesCollection result = new XYSeriesCollection();
 	    XYSeries series = new XYSeries("Candidate cells");
 	    
-	    for(int i = 0 ; i < matrix.length; ++i){
-	    	for(int j = 0 ; j < matrix[0].length ; ++j) {
-	    		if(matrix[i][j] > 0) {
-	    			series.add(j,i);
-	    		}
+	    for(int i = 0 ; i < matrix.getRows(); ++i){
+	    	for(int j = matrix.nextNonZero(i, 0) ; j < matrix.getColumns() ; j = matrix.nextNonZero(i, j + 1)) {
+	    		series.add(j,i);
 	    	}
 	    }
 	    result.addSeries(series);
@@ -60,11 +59,11 @@ public class PartitionMatrixChart {
 		
 		XYPlot xyPlot = chart.getXYPlot();
 		
-//		xyPlot.getDomainAxis().setRange(0, matrix.length-1);
-//		xyPlot.getRangeAxis().setRange(0, matrix[0].length-1);
+//		xyPlot.getDomainAxis().setRange(0, matrix.getRows()-1);
+//		xyPlot.getRangeAxis().setRange(0, matrix.getColumns()-1);
 		
-		xyPlot.getDomainAxis().setRange(-1, matrix.length+1);
-		xyPlot.getRangeAxis().setRange(-1, matrix[0].length+1);
+		xyPlot.getDomainAxis().setRange(-1, matrix.getRows()+1);
+		xyPlot.getRangeAxis().setRange(-1, matrix.getColumns()+1);
 		
 		chart.setTitle("Partition Matrix");
 		
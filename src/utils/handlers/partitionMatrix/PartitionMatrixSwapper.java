@@ -12,13 +12,14 @@
 package utils.handlers.partitionMatrix;
 
 import model.BucketBoundaries;
+import model.CellMatrix;
 import model.PartitionMatrix;
 
 public class PartitionMatrixSwapper {
 
 	private PartitionMatrix pm;
 	
-	private long[][] matrix;
+	private CellMatrix matrix;
 	
 	private BucketBoundaries[] boundariesS;
 	private BucketBoundaries[] boundariesT;
@@ -28,7 +29,7 @@ public class PartitionMatrixSwapper {
 	
 	public PartitionMatrixSwapper(PartitionMatrix pm) {
 		this.pm = pm;
-		this.matrix = pm.getMatrix();
+		this.matrix = pm.getCells();
 		this.boundariesS = pm.getBoundariesS();
 		this.boundariesT = pm.getBoundariesT();
 		this.countsS = pm.getCountsS();
@@ -43,7 +44,7 @@ public class PartitionMatrixSwapper {
 		pm.setBoundariesT(boundariesT);
 		pm.setCountsS(countsS);
 		pm.setCountsT(countsT);
-		pm.setMatrix(matrix);
+		pm.setCells(matrix);
 	}
 	
 	public void swap(int[] swapRows) {
@@ -54,31 +55,20 @@ public class PartitionMatrixSwapper {
 		pm.setBoundariesT(boundariesT);
 		pm.setCountsS(countsS);
 		pm.setCountsT(countsT);
-		pm.setMatrix(matrix);
+		pm.setCells(matrix);
 	}
 
 	private void createNewMatrix(int[] swapRows, int[] swapColumns) {
-		long[][] newMatrix = new long[boundariesS.length][boundariesT.length];
-
-		for (int i = 0; i < boundariesS.length; ++i) {
-			for (int j = 0; j < boundariesT.length; ++j) {
-				newMatrix[i][j] = matrix[swapRows[i]][swapColumns[j]];
-			}
-		}
-
-		matrix = newMatrix;
+		matrix = matrix.permute(swapRows, swapColumns);
 	}
 	
 	private void createNewMatrix(int[] swapRows) {
-		long[][] newMatrix = new long[boundariesS.length][boundariesT.length];
-
-		for (int i = 0; i < boundariesS.length; ++i) {
-			for (int j = 0; j < boundariesT.length; ++j) {
-				newMatrix[i][j] = matrix[swapRows[i]][j];
-			}
+		int[] columns = new int[boundariesT.length];
+		for (int j = 0; j < boundariesT.length; ++j) {
+			columns[j] = j;
 		}
 
-		matrix = newMatrix;
+		matrix = matrix.permute(swapRows, columns);
 	}
 
 	private void createNewBuckets(int[] swapRows, int[] swapColumns) {
@@ -4,6 +4,12 @@
  *	Methods for importing the PartitionMatrix
  *	and its properties.
  *
+ *	The PartitionMatrix is read either from CSV (pm.csv) or
+ *	from the binary format of MappedCellMatrix (pm.bin), which
+ *	is told apart by its first bytes. A local binary file is
+ *	memory-mapped and its rows are decoded when first accessed;
+ *	any other one is decoded while it is read.
+ *
  *	@author John Koumarelas
  */
 package utils.importers;
@@ -12,40 +18,50 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
 import java.util.HashMap;
 
 import model.BucketBoundaries;
+import model.CellMatrix;
+import model.MappedCellMatrix;
 import model.PartitionMatrix;
+import model.SparseCellMatrix;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.LocalFileSystem;
 import org.apache.hadoop.fs.Path;
 
 public class PartitionMatrixImporter {
 
 	public PartitionMatrixImporter() {}
 
+	/**
+	 * @return pm.bin of the directory if it exists, pm.csv otherwise.
+	 */
+	public Path getPartitionMatrixPath(Path partitionMatrixDirectory) throws IOException {
+		FileSystem fs = FileSystem.get(new Configuration());
+		Path partitionMatrixBinary = new Path(partitionMatrixDirectory.toString() + File.separator + "pm.bin");
+		if (fs.exists(partitionMatrixBinary)) {
+			return partitionMatrixBinary;
+		}
+		return new Path(partitionMatrixDirectory.toString() + File.separator + "pm.csv");
+	}
+	
 	public PartitionMatrix importPartitionMatrix(long sizeS, long sizeT, int buckets, Path partitionMatrix, Path rearrangements, Path boundaries, Path counts) {
 		try {
 			FileSystem fs = FileSystem.get(new Configuration());
-			BufferedReader br = new BufferedReader(new InputStreamReader(fs.open(partitionMatrix)));
-			String line;
-			
-			long[][] matrix = new long[buckets][buckets];
 			
-			int i=0,j;
-			
-			while ((line=br.readLine()) != null){
-				 String[] values = line.split(",");
-				 for(j=0;j<values.length;++j){
-					 matrix[i][j] = Long.valueOf(values[j]);
-				 }
-				 ++i;
-			}
+			int i;
 			
 			PartitionMatrix pm = new PartitionMatrix();
 			
-			pm.setMatrix(matrix);
+			if (isBinary(fs, partitionMatrix)) {
+				pm.setCells(importCellsBinary(fs, partitionMatrix));
+			} else {
+				pm.setCells(importCellsCSV(fs, buckets, partitionMatrix));
+			}
 			
 			BucketBoundaries[] boundariesS = new BucketBoundaries[buckets];
 			BucketBoundaries[] boundariesT = new BucketBoundaries[buckets];
@@ -92,6 +108,65 @@ public class PartitionMatrixImporter {
 		return null;
 	}
 	
+	private boolean isBinary(FileSystem fs, Path partitionMatrix) throws IOException {
+		byte[] start = new byte[4];
+		FSDataInputStream in = fs.open(partitionMatrix);
+		int read = 0;
+		try {
+			while (read < start.length) {
+				int r = in.read(start, read, start.length - read);
+				if (r < 0) {
+					break;
+				}
+				read += r;
+			}
+		} finally {
+			in.close();
+		}
+		return read == start.length && MappedCellMatrix.isBinary(start);
+	}
+	
+	private CellMatrix importCellsCSV(FileSystem fs, int buckets, Path partitionMatrix) throws IOException {
+		BufferedReader br = new BufferedReader(new InputStreamReader(fs.open(partitionMatrix)));
+		String line;
+		
+		SparseCellMatrix.Builder matrix = new SparseCellMatrix.Builder(buckets, buckets);
+		
+		int j;
+		
+		while ((line=br.readLine()) != null){
+			 String[] values = line.split(",");
+			 for(j=0;j<values.length;++j){
+				 matrix.add(j, Long.valueOf(values[j]));
+			 }
+			 matrix.endRow();
+		}
+		br.close();
+		
+		return matrix.build();
+	}
+	
+	/**
+	 * Memory-mapped when the file is local, streamed into a SparseCellMatrix otherwise.
+	 */
+	private CellMatrix importCellsBinary(FileSystem fs, Path partitionMatrix) throws IOException {
+		if (fs instanceof LocalFileSystem) {
+			RandomAccessFile file = new RandomAccessFile(((LocalFileSystem) fs).pathToFile(partitionMatrix), "r");
+			try {
+				return MappedCellMatrix.map(file.getChannel());
+			} finally {
+				file.close();
+			}
+		}
+		
+		FSDataInputStream in = fs.open(partitionMatrix);
+		try {
+			return MappedCellMatrix.read(in);
+		} finally {
+			in.close();
+		}
+	}
+	
 	public HashMap<String,String> importProperties(Path properties) {
 		HashMap<String,String> propertiesMap = new HashMap<String,String>();
 		